@@ -0,0 +1,971 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.BrktExecutors;
+import com.brkt.client.util.BrktFlow;
+import com.brkt.client.util.BrktFuture;
+import com.google.common.base.Preconditions;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * Asynchronous version of {@link BrktService}.  Each method submits the
+ * corresponding {@code BrktService} call to an {@code Executor} and returns
+ * a {@link BrktFuture} for its result.  Errors are reported by the future
+ * as the same {@link BrktService.RuntimeHttpError} and
+ * {@link BrktService.RuntimeIoException} that the synchronous call throws.
+ *
+ * <p>The underlying HTTP client is blocking, so each pending call occupies
+ * a thread of the executor.  The executor's size therefore limits the
+ * number of concurrent requests, unless it runs each call on a virtual
+ * thread.
+ */
+public class AsyncBrktService {
+
+    private final BrktService service;
+    private final Executor executor;
+
+    /**
+     * Run calls on the shared {@link BrktExecutors#getDefaultExecutor}, which
+     * uses a virtual thread per call on Java 21 and later.
+     */
+    public AsyncBrktService(BrktService service) {
+        this(service, BrktExecutors.getDefaultExecutor());
+    }
+
+    public AsyncBrktService(BrktService service, Executor executor) {
+        Preconditions.checkNotNull(service);
+        Preconditions.checkNotNull(executor);
+        this.service = service;
+        this.executor = executor;
+    }
+
+    /**
+     * Return the synchronous service that this object delegates to.
+     */
+    public BrktService getService() {
+        return service;
+    }
+
+    private <T> BrktFuture<T> submit(Callable<T> callable) {
+        BrktFuture<T> future = new BrktFuture<T>(callable);
+        executor.execute(future);
+        return future;
+    }
+
+    // Operating system.
+    public BrktFuture<List<OperatingSystem>> getAllOperatingSystems() {
+        return submit(new Callable<List<OperatingSystem>>() {
+            @Override
+            public List<OperatingSystem> call() {
+                return service.getAllOperatingSystems();
+            }
+        });
+    }
+
+    public BrktFuture<OperatingSystem> getOperatingSystem(final String id) {
+        return submit(new Callable<OperatingSystem>() {
+            @Override
+            public OperatingSystem call() {
+                return service.getOperatingSystem(id);
+            }
+        });
+    }
+
+    public BrktFuture<OperatingSystem> findOperatingSystem(final String id) {
+        return submit(new Callable<OperatingSystem>() {
+            @Override
+            public OperatingSystem call() {
+                return service.findOperatingSystem(id);
+            }
+        });
+    }
+
+    public BrktFuture<List<ImageDefinition>> getOperatingSystemImageDefinitions(final String osId) {
+        return submit(new Callable<List<ImageDefinition>>() {
+            @Override
+            public List<ImageDefinition> call() {
+                return service.getOperatingSystemImageDefinitions(osId);
+            }
+        });
+    }
+
+    // Image definition.
+    public BrktFuture<List<ImageDefinition>> getAllImageDefinitions() {
+        return submit(new Callable<List<ImageDefinition>>() {
+            @Override
+            public List<ImageDefinition> call() {
+                return service.getAllImageDefinitions();
+            }
+        });
+    }
+
+    public BrktFuture<ImageDefinition> getImageDefinition(final String id) {
+        return submit(new Callable<ImageDefinition>() {
+            @Override
+            public ImageDefinition call() {
+                return service.getImageDefinition(id);
+            }
+        });
+    }
+
+    public BrktFuture<ImageDefinition> findImageDefinition(final String id) {
+        return submit(new Callable<ImageDefinition>() {
+            @Override
+            public ImageDefinition call() {
+                return service.findImageDefinition(id);
+            }
+        });
+    }
+
+    public BrktFuture<List<CspImage>> getImageDefinitionCspImages(final String imageDefinitionId) {
+        return submit(new Callable<List<CspImage>>() {
+            @Override
+            public List<CspImage> call() {
+                return service.getImageDefinitionCspImages(imageDefinitionId);
+            }
+        });
+    }
+
+    // CSP image.
+    public BrktFuture<List<CspImage>> getAllCspImages() {
+        return submit(new Callable<List<CspImage>>() {
+            @Override
+            public List<CspImage> call() {
+                return service.getAllCspImages();
+            }
+        });
+    }
+
+    public BrktFuture<CspImage> getCspImage(final String id) {
+        return submit(new Callable<CspImage>() {
+            @Override
+            public CspImage call() {
+                return service.getCspImage(id);
+            }
+        });
+    }
+
+    public BrktFuture<CspImage> findCspImage(final String id) {
+        return submit(new Callable<CspImage>() {
+            @Override
+            public CspImage call() {
+                return service.findCspImage(id);
+            }
+        });
+    }
+
+    // Machine type.
+    public BrktFuture<List<MachineType>> getAllMachineTypes() {
+        return submit(new Callable<List<MachineType>>() {
+            @Override
+            public List<MachineType> call() {
+                return service.getAllMachineTypes();
+            }
+        });
+    }
+
+    public BrktFuture<MachineType> getMachineType(final String id) {
+        return submit(new Callable<MachineType>() {
+            @Override
+            public MachineType call() {
+                return service.getMachineType(id);
+            }
+        });
+    }
+
+    public BrktFuture<MachineType> findMachineType(final String id) {
+        return submit(new Callable<MachineType>() {
+            @Override
+            public MachineType call() {
+                return service.findMachineType(id);
+            }
+        });
+    }
+
+    // Billing group.
+    public BrktFuture<List<BillingGroup>> getAllBillingGroups() {
+        return submit(new Callable<List<BillingGroup>>() {
+            @Override
+            public List<BillingGroup> call() {
+                return service.getAllBillingGroups();
+            }
+        });
+    }
+
+    public BrktFuture<BillingGroup> getBillingGroup(final String id) {
+        return submit(new Callable<BillingGroup>() {
+            @Override
+            public BillingGroup call() {
+                return service.getBillingGroup(id);
+            }
+        });
+    }
+
+    public BrktFuture<BillingGroup> findBillingGroup(final String id) {
+        return submit(new Callable<BillingGroup>() {
+            @Override
+            public BillingGroup call() {
+                return service.findBillingGroup(id);
+            }
+        });
+    }
+
+    public BrktFuture<BillingGroup> createBillingGroup(final Map<String, Object> attrs) {
+        return submit(new Callable<BillingGroup>() {
+            @Override
+            public BillingGroup call() {
+                return service.createBillingGroup(attrs);
+            }
+        });
+    }
+
+    public BrktFuture<BillingGroup> updateBillingGroup(final String id, final Map<String, Object> attrs) {
+        return submit(new Callable<BillingGroup>() {
+            @Override
+            public BillingGroup call() {
+                return service.updateBillingGroup(id, attrs);
+            }
+        });
+    }
+
+    public BrktFuture<BillingGroup> updateBillingGroup(final String id, final String fieldName, final Object value) {
+        return submit(new Callable<BillingGroup>() {
+            @Override
+            public BillingGroup call() {
+                return service.updateBillingGroup(id, fieldName, value);
+            }
+        });
+    }
+
+    public BrktFuture<Void> deleteBillingGroup(final String id) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                service.deleteBillingGroup(id);
+                return null;
+            }
+        });
+    }
+
+    // Network.
+    public BrktFuture<List<Network>> getAllNetworks() {
+        return submit(new Callable<List<Network>>() {
+            @Override
+            public List<Network> call() {
+                return service.getAllNetworks();
+            }
+        });
+    }
+
+    public BrktFuture<Network> getNetwork(final String id) {
+        return submit(new Callable<Network>() {
+            @Override
+            public Network call() {
+                return service.getNetwork(id);
+            }
+        });
+    }
+
+    public BrktFuture<Network> findNetwork(final String id) {
+        return submit(new Callable<Network>() {
+            @Override
+            public Network call() {
+                return service.findNetwork(id);
+            }
+        });
+    }
+
+    // Zone.
+    public BrktFuture<List<Zone>> getAllZones() {
+        return submit(new Callable<List<Zone>>() {
+            @Override
+            public List<Zone> call() {
+                return service.getAllZones();
+            }
+        });
+    }
+
+    public BrktFuture<List<Zone>> getNetworkZones(final String networkId) {
+        return submit(new Callable<List<Zone>>() {
+            @Override
+            public List<Zone> call() {
+                return service.getNetworkZones(networkId);
+            }
+        });
+    }
+
+    public BrktFuture<Zone> getZone(final String id) {
+        return submit(new Callable<Zone>() {
+            @Override
+            public Zone call() {
+                return service.getZone(id);
+            }
+        });
+    }
+
+    public BrktFuture<Zone> findZone(final String id) {
+        return submit(new Callable<Zone>() {
+            @Override
+            public Zone call() {
+                return service.findZone(id);
+            }
+        });
+    }
+
+    // Security group.
+    public BrktFuture<List<SecurityGroup>> getAllSecurityGroups() {
+        return submit(new Callable<List<SecurityGroup>>() {
+            @Override
+            public List<SecurityGroup> call() {
+                return service.getAllSecurityGroups();
+            }
+        });
+    }
+
+    public BrktFuture<SecurityGroup> getSecurityGroup(final String id) {
+        return submit(new Callable<SecurityGroup>() {
+            @Override
+            public SecurityGroup call() {
+                return service.getSecurityGroup(id);
+            }
+        });
+    }
+
+    public BrktFuture<SecurityGroup> findSecurityGroup(final String id) {
+        return submit(new Callable<SecurityGroup>() {
+            @Override
+            public SecurityGroup call() {
+                return service.findSecurityGroup(id);
+            }
+        });
+    }
+
+    public BrktFuture<SecurityGroup> createSecurityGroup(final String networkId, final Map<String, Object> attrs) {
+        return submit(new Callable<SecurityGroup>() {
+            @Override
+            public SecurityGroup call() {
+                return service.createSecurityGroup(networkId, attrs);
+            }
+        });
+    }
+
+    public BrktFuture<SecurityGroup> updateSecurityGroup(final String id, final Map<String, Object> attrs) {
+        return submit(new Callable<SecurityGroup>() {
+            @Override
+            public SecurityGroup call() {
+                return service.updateSecurityGroup(id, attrs);
+            }
+        });
+    }
+
+    public BrktFuture<SecurityGroup> updateSecurityGroup(final String id, final String fieldName, final Object value) {
+        return submit(new Callable<SecurityGroup>() {
+            @Override
+            public SecurityGroup call() {
+                return service.updateSecurityGroup(id, fieldName, value);
+            }
+        });
+    }
+
+    public BrktFuture<SecurityGroup> deleteSecurityGroup(final String id) {
+        return submit(new Callable<SecurityGroup>() {
+            @Override
+            public SecurityGroup call() {
+                return service.deleteSecurityGroup(id);
+            }
+        });
+    }
+
+    // Security group rules.
+    public BrktFuture<List<SecurityGroupRule>> getRulesForSecurityGroup(final String securityGroupId) {
+        return submit(new Callable<List<SecurityGroupRule>>() {
+            @Override
+            public List<SecurityGroupRule> call() {
+                return service.getRulesForSecurityGroup(securityGroupId);
+            }
+        });
+    }
+
+    public BrktFuture<SecurityGroupRule> getSecurityGroupRule(final String ruleId) {
+        return submit(new Callable<SecurityGroupRule>() {
+            @Override
+            public SecurityGroupRule call() {
+                return service.getSecurityGroupRule(ruleId);
+            }
+        });
+    }
+
+    public BrktFuture<SecurityGroupRule> findSecurityGroupRule(final String ruleId) {
+        return submit(new Callable<SecurityGroupRule>() {
+            @Override
+            public SecurityGroupRule call() {
+                return service.findSecurityGroupRule(ruleId);
+            }
+        });
+    }
+
+    public BrktFuture<SecurityGroupRule> createSecurityGroupRule(final String securityGroupId, final Map<String, Object> attrs) {
+        return submit(new Callable<SecurityGroupRule>() {
+            @Override
+            public SecurityGroupRule call() {
+                return service.createSecurityGroupRule(securityGroupId, attrs);
+            }
+        });
+    }
+
+    public BrktFuture<SecurityGroupRule> updateSecurityGroupRule(final String ruleId, final Map<String, Object> attrs) {
+        return submit(new Callable<SecurityGroupRule>() {
+            @Override
+            public SecurityGroupRule call() {
+                return service.updateSecurityGroupRule(ruleId, attrs);
+            }
+        });
+    }
+
+    public BrktFuture<SecurityGroupRule> deleteSecurityGroupRule(final String ruleId) {
+        return submit(new Callable<SecurityGroupRule>() {
+            @Override
+            public SecurityGroupRule call() {
+                return service.deleteSecurityGroupRule(ruleId);
+            }
+        });
+    }
+
+    // Computing cell.
+    public BrktFuture<List<ComputingCell>> getAllComputingCells() {
+        return submit(new Callable<List<ComputingCell>>() {
+            @Override
+            public List<ComputingCell> call() {
+                return service.getAllComputingCells();
+            }
+        });
+    }
+
+    public BrktFuture<ComputingCell> getComputingCell(final String computingCellId) {
+        return submit(new Callable<ComputingCell>() {
+            @Override
+            public ComputingCell call() {
+                return service.getComputingCell(computingCellId);
+            }
+        });
+    }
+
+    public BrktFuture<ComputingCell> findComputingCell(final String computingCellId) {
+        return submit(new Callable<ComputingCell>() {
+            @Override
+            public ComputingCell call() {
+                return service.findComputingCell(computingCellId);
+            }
+        });
+    }
+
+    public BrktFuture<List<Volume>> getComputingCellVolumes(final String computingCellId) {
+        return submit(new Callable<List<Volume>>() {
+            @Override
+            public List<Volume> call() {
+                return service.getComputingCellVolumes(computingCellId);
+            }
+        });
+    }
+
+    // Volume.
+    public BrktFuture<List<Volume>> getAllVolumes() {
+        return submit(new Callable<List<Volume>>() {
+            @Override
+            public List<Volume> call() {
+                return service.getAllVolumes();
+            }
+        });
+    }
+
+    public BrktFuture<List<Volume>> getAllVolumes(final Set<String> fields) {
+        return submit(new Callable<List<Volume>>() {
+            @Override
+            public List<Volume> call() {
+                return service.getAllVolumes(fields);
+            }
+        });
+    }
+
+    /**
+     * See {@link BrktService#publishAllVolumes}.  Reading runs on this
+     * service's executor.
+     */
+    public BrktFlow.Publisher<Volume> publishAllVolumes() {
+        return service.publishAllVolumes(executor);
+    }
+
+    public BrktFuture<Volume> getVolume(final String volumeId) {
+        return submit(new Callable<Volume>() {
+            @Override
+            public Volume call() {
+                return service.getVolume(volumeId);
+            }
+        });
+    }
+
+    public BrktFuture<Volume> findVolume(final String volumeId) {
+        return submit(new Callable<Volume>() {
+            @Override
+            public Volume call() {
+                return service.findVolume(volumeId);
+            }
+        });
+    }
+
+    public BrktFuture<Volume> updateVolume(final String volumeId, final String fieldName, final Object value) {
+        return submit(new Callable<Volume>() {
+            @Override
+            public Volume call() {
+                return service.updateVolume(volumeId, fieldName, value);
+            }
+        });
+    }
+
+    public BrktFuture<Volume> updateVolume(final String volumeId, final Map<String, Object> attrs) {
+        return submit(new Callable<Volume>() {
+            @Override
+            public Volume call() {
+                return service.updateVolume(volumeId, attrs);
+            }
+        });
+    }
+
+    public BrktFuture<Volume> createVolume(final Map<String, Object> attrs) {
+        return submit(new Callable<Volume>() {
+            @Override
+            public Volume call() {
+                return service.createVolume(attrs);
+            }
+        });
+    }
+
+    public BrktFuture<Volume> deleteVolume(final String volumeId) {
+        return submit(new Callable<Volume>() {
+            @Override
+            public Volume call() {
+                return service.deleteVolume(volumeId);
+            }
+        });
+    }
+
+    public BrktFuture<List<Volume>> getVolumeChildren(final String volumeId) {
+        return submit(new Callable<List<Volume>>() {
+            @Override
+            public List<Volume> call() {
+                return service.getVolumeChildren(volumeId);
+            }
+        });
+    }
+
+    public BrktFuture<Volume> snapshotVolume(final String volumeId, final Map<String, Object> attrs) {
+        return submit(new Callable<Volume>() {
+            @Override
+            public Volume call() {
+                return service.snapshotVolume(volumeId, attrs);
+            }
+        });
+    }
+
+    public BrktFuture<Volume> cloneVolume(final String volumeId, final Map<String, Object> attrs) {
+        return submit(new Callable<Volume>() {
+            @Override
+            public Volume call() {
+                return service.cloneVolume(volumeId, attrs);
+            }
+        });
+    }
+
+    // CloudInit.
+    public BrktFuture<List<CloudInit>> getAllCloudInits() {
+        return submit(new Callable<List<CloudInit>>() {
+            @Override
+            public List<CloudInit> call() {
+                return service.getAllCloudInits();
+            }
+        });
+    }
+
+    public BrktFuture<CloudInit> getCloudInit(final String id) {
+        return submit(new Callable<CloudInit>() {
+            @Override
+            public CloudInit call() {
+                return service.getCloudInit(id);
+            }
+        });
+    }
+
+    public BrktFuture<CloudInit> findCloudInit(final String id) {
+        return submit(new Callable<CloudInit>() {
+            @Override
+            public CloudInit call() {
+                return service.findCloudInit(id);
+            }
+        });
+    }
+
+    public BrktFuture<CloudInit> createCloudInit(final Map<String, Object> attrs) {
+        return submit(new Callable<CloudInit>() {
+            @Override
+            public CloudInit call() {
+                return service.createCloudInit(attrs);
+            }
+        });
+    }
+
+    public BrktFuture<CloudInit> updateCloudInit(final String id, final Map<String, Object> attrs) {
+        return submit(new Callable<CloudInit>() {
+            @Override
+            public CloudInit call() {
+                return service.updateCloudInit(id, attrs);
+            }
+        });
+    }
+
+    public BrktFuture<CloudInit> updateCloudInit(final String id, final String fieldName, final Object value) {
+        return submit(new Callable<CloudInit>() {
+            @Override
+            public CloudInit call() {
+                return service.updateCloudInit(id, fieldName, value);
+            }
+        });
+    }
+
+    public BrktFuture<CloudInit> deleteCloudInit(final String id) {
+        return submit(new Callable<CloudInit>() {
+            @Override
+            public CloudInit call() {
+                return service.deleteCloudInit(id);
+            }
+        });
+    }
+
+    // Instance.
+    public BrktFuture<List<Instance>> getAllInstances() {
+        return submit(new Callable<List<Instance>>() {
+            @Override
+            public List<Instance> call() {
+                return service.getAllInstances();
+            }
+        });
+    }
+
+    public BrktFuture<List<Instance>> getAllInstances(final Set<String> fields) {
+        return submit(new Callable<List<Instance>>() {
+            @Override
+            public List<Instance> call() {
+                return service.getAllInstances(fields);
+            }
+        });
+    }
+
+    /**
+     * See {@link BrktService#publishAllInstances}.  Reading runs on this
+     * service's executor.
+     */
+    public BrktFlow.Publisher<Instance> publishAllInstances() {
+        return service.publishAllInstances(executor);
+    }
+
+    public BrktFuture<Instance> getInstance(final String instanceId) {
+        return submit(new Callable<Instance>() {
+            @Override
+            public Instance call() {
+                return service.getInstance(instanceId);
+            }
+        });
+    }
+
+    public BrktFuture<Instance> findInstance(final String instanceId) {
+        return submit(new Callable<Instance>() {
+            @Override
+            public Instance call() {
+                return service.findInstance(instanceId);
+            }
+        });
+    }
+
+    public BrktFuture<Instance> updateInstance(final String instanceId, final String fieldName, final Object value) {
+        return submit(new Callable<Instance>() {
+            @Override
+            public Instance call() {
+                return service.updateInstance(instanceId, fieldName, value);
+            }
+        });
+    }
+
+    public BrktFuture<Instance> updateInstance(final String instanceId, final Map<String, Object> attrs) {
+        return submit(new Callable<Instance>() {
+            @Override
+            public Instance call() {
+                return service.updateInstance(instanceId, attrs);
+            }
+        });
+    }
+
+    public BrktFuture<List<Volume>> getInstanceVolumes(final String instanceId) {
+        return submit(new Callable<List<Volume>>() {
+            @Override
+            public List<Volume> call() {
+                return service.getInstanceVolumes(instanceId);
+            }
+        });
+    }
+
+    public BrktFuture<Instance> deleteInstance(final String instanceId) {
+        return submit(new Callable<Instance>() {
+            @Override
+            public Instance call() {
+                return service.deleteInstance(instanceId);
+            }
+        });
+    }
+
+    public BrktFuture<Instance> createInstance(final Map<String, Object> attrs) {
+        return submit(new Callable<Instance>() {
+            @Override
+            public Instance call() {
+                return service.createInstance(attrs);
+            }
+        });
+    }
+
+    public BrktFuture<InstanceReboot> rebootInstance(final String instanceId) {
+        return submit(new Callable<InstanceReboot>() {
+            @Override
+            public InstanceReboot call() {
+                return service.rebootInstance(instanceId);
+            }
+        });
+    }
+
+    // Workload.
+    public BrktFuture<List<Workload>> getAllWorkloads() {
+        return submit(new Callable<List<Workload>>() {
+            @Override
+            public List<Workload> call() {
+                return service.getAllWorkloads();
+            }
+        });
+    }
+
+    public BrktFuture<Workload> getWorkload(final String workloadId) {
+        return submit(new Callable<Workload>() {
+            @Override
+            public Workload call() {
+                return service.getWorkload(workloadId);
+            }
+        });
+    }
+
+    public BrktFuture<Workload> findWorkload(final String workloadId) {
+        return submit(new Callable<Workload>() {
+            @Override
+            public Workload call() {
+                return service.findWorkload(workloadId);
+            }
+        });
+    }
+
+    public BrktFuture<Workload> createWorkload(final Map<String, Object> attrs) {
+        return submit(new Callable<Workload>() {
+            @Override
+            public Workload call() {
+                return service.createWorkload(attrs);
+            }
+        });
+    }
+
+    public BrktFuture<Workload> updateWorkload(final String workloadId, final String fieldName, final Object value) {
+        return submit(new Callable<Workload>() {
+            @Override
+            public Workload call() {
+                return service.updateWorkload(workloadId, fieldName, value);
+            }
+        });
+    }
+
+    public BrktFuture<Workload> updateWorkload(final String workloadId, final Map<String, Object> attrs) {
+        return submit(new Callable<Workload>() {
+            @Override
+            public Workload call() {
+                return service.updateWorkload(workloadId, attrs);
+            }
+        });
+    }
+
+    public BrktFuture<List<Instance>> getWorkloadInstances(final String workloadId) {
+        return submit(new Callable<List<Instance>>() {
+            @Override
+            public List<Instance> call() {
+                return service.getWorkloadInstances(workloadId);
+            }
+        });
+    }
+
+    public BrktFuture<Workload> deleteWorkload(final String workloadId) {
+        return submit(new Callable<Workload>() {
+            @Override
+            public Workload call() {
+                return service.deleteWorkload(workloadId);
+            }
+        });
+    }
+
+    // Load balancer.
+    public BrktFuture<List<LoadBalancer>> getAllLoadBalancers() {
+        return submit(new Callable<List<LoadBalancer>>() {
+            @Override
+            public List<LoadBalancer> call() {
+                return service.getAllLoadBalancers();
+            }
+        });
+    }
+
+    public BrktFuture<LoadBalancer> getLoadBalancer(final String id) {
+        return submit(new Callable<LoadBalancer>() {
+            @Override
+            public LoadBalancer call() {
+                return service.getLoadBalancer(id);
+            }
+        });
+    }
+
+    public BrktFuture<LoadBalancer> findLoadBalancer(final String id) {
+        return submit(new Callable<LoadBalancer>() {
+            @Override
+            public LoadBalancer call() {
+                return service.findLoadBalancer(id);
+            }
+        });
+    }
+
+    public BrktFuture<LoadBalancer> createLoadBalancer(final Map<String, Object> attrs) {
+        return submit(new Callable<LoadBalancer>() {
+            @Override
+            public LoadBalancer call() {
+                return service.createLoadBalancer(attrs);
+            }
+        });
+    }
+
+    public BrktFuture<LoadBalancer> updateLoadBalancer(final String id, final Map<String, Object> attrs) {
+        return submit(new Callable<LoadBalancer>() {
+            @Override
+            public LoadBalancer call() {
+                return service.updateLoadBalancer(id, attrs);
+            }
+        });
+    }
+
+    public BrktFuture<LoadBalancer> updateLoadBalancer(final String id, final String fieldName, final Object value) {
+        return submit(new Callable<LoadBalancer>() {
+            @Override
+            public LoadBalancer call() {
+                return service.updateLoadBalancer(id, fieldName, value);
+            }
+        });
+    }
+
+    public BrktFuture<LoadBalancer> deleteLoadBalancer(final String id) {
+        return submit(new Callable<LoadBalancer>() {
+            @Override
+            public LoadBalancer call() {
+                return service.deleteLoadBalancer(id);
+            }
+        });
+    }
+
+    // Load balancer listener.
+    public BrktFuture<List<LoadBalancerListener>> getAllLoadBalancerListeners() {
+        return submit(new Callable<List<LoadBalancerListener>>() {
+            @Override
+            public List<LoadBalancerListener> call() {
+                return service.getAllLoadBalancerListeners();
+            }
+        });
+    }
+
+    public BrktFuture<List<LoadBalancerListener>> getListenersForLoadBalancer(final String loadBalancerId) {
+        return submit(new Callable<List<LoadBalancerListener>>() {
+            @Override
+            public List<LoadBalancerListener> call() {
+                return service.getListenersForLoadBalancer(loadBalancerId);
+            }
+        });
+    }
+
+    public BrktFuture<LoadBalancerListener> getLoadBalancerListener(final String id) {
+        return submit(new Callable<LoadBalancerListener>() {
+            @Override
+            public LoadBalancerListener call() {
+                return service.getLoadBalancerListener(id);
+            }
+        });
+    }
+
+    public BrktFuture<LoadBalancerListener> findLoadBalancerListener(final String id) {
+        return submit(new Callable<LoadBalancerListener>() {
+            @Override
+            public LoadBalancerListener call() {
+                return service.findLoadBalancerListener(id);
+            }
+        });
+    }
+
+    public BrktFuture<LoadBalancerListener> createLoadBalancerListener(final Map<String, Object> attrs) {
+        return submit(new Callable<LoadBalancerListener>() {
+            @Override
+            public LoadBalancerListener call() {
+                return service.createLoadBalancerListener(attrs);
+            }
+        });
+    }
+
+    public BrktFuture<LoadBalancerListener> updateLoadBalancerListener(final String id, final Map<String, Object> attrs) {
+        return submit(new Callable<LoadBalancerListener>() {
+            @Override
+            public LoadBalancerListener call() {
+                return service.updateLoadBalancerListener(id, attrs);
+            }
+        });
+    }
+
+    public BrktFuture<LoadBalancerListener> updateLoadBalancerListener(final String id, final String fieldName, final Object value) {
+        return submit(new Callable<LoadBalancerListener>() {
+            @Override
+            public LoadBalancerListener call() {
+                return service.updateLoadBalancerListener(id, fieldName, value);
+            }
+        });
+    }
+
+    public BrktFuture<LoadBalancerListener> deleteLoadBalancerListener(final String id) {
+        return submit(new Callable<LoadBalancerListener>() {
+            @Override
+            public LoadBalancerListener call() {
+                return service.deleteLoadBalancerListener(id);
+            }
+        });
+    }
+}
@@ -16,18 +16,29 @@
 
 package com.brkt.client;
 
+import com.brkt.client.util.BrktFlow;
 import com.brkt.client.util.BrktRestClient;
+import com.brkt.client.util.LazyResourceList;
+import com.brkt.client.util.ParallelTasks;
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 /**
  * High-level abstraction of the Bracket service.  Sends request to the
- * service and returns responses as Java objects.
+ * service and returns responses as Java objects.  Subclasses can intercept
+ * requests by overriding {@link #get(String, Type)}, {@link #find},
+ * {@link #post} and {@link #delete}, for example to cache responses.
  */
 public class BrktService {
 
@@ -67,7 +78,7 @@ public class BrktService {
      * Wraps {@link BrktRestClient#post} and throws a {@link com.brkt.client.BrktService.RuntimeIoException}
      * or {@link com.brkt.client.BrktService.RuntimeHttpError} if an error occurred.
      */
-    private <T> T post(String path, Class<T> myClass, Map<String, Object> attrs) {
+    protected <T> T post(String path, Class<T> myClass, Map<String, Object> attrs) {
         try {
             return client.post(path, myClass, attrs);
         } catch (IOException e) {
@@ -81,7 +92,7 @@ public class BrktService {
      * Wraps {@link BrktRestClient#get} and throws a {@link com.brkt.client.BrktService.RuntimeIoException}
      * or {@link com.brkt.client.BrktService.RuntimeHttpError} if an error occurred.
      */
-    private <T> T get(String path, Type type) {
+    protected <T> T get(String path, Type type) {
         try {
             return client.get(path, type);
         } catch (IOException e) {
@@ -91,11 +102,40 @@ public class BrktService {
         }
     }
 
+    /**
+     * Wraps {@link BrktRestClient#find} and throws a {@link com.brkt.client.BrktService.RuntimeIoException}
+     * or {@link com.brkt.client.BrktService.RuntimeHttpError} if an error other than 404 occurred.
+     */
+    protected <T> T find(String path, Type type) {
+        try {
+            return client.find(path, type);
+        } catch (IOException e) {
+            throw new RuntimeIoException(e);
+        } catch (BrktRestClient.HttpError e) {
+            throw new RuntimeHttpError(e);
+        }
+    }
+
+    /**
+     * Wraps the projected {@link BrktRestClient#get} and throws a
+     * {@link com.brkt.client.BrktService.RuntimeIoException} or
+     * {@link com.brkt.client.BrktService.RuntimeHttpError} if an error occurred.
+     */
+    private <T> List<T> get(String path, Class<T> elementClass, Set<String> projection) {
+        try {
+            return client.get(path, elementClass, projection);
+        } catch (IOException e) {
+            throw new RuntimeIoException(e);
+        } catch (BrktRestClient.HttpError e) {
+            throw new RuntimeHttpError(e);
+        }
+    }
+
     /**
      * Wraps {@link BrktRestClient#delete} and throws a {@link com.brkt.client.BrktService.RuntimeIoException}
      * or {@link com.brkt.client.BrktService.RuntimeHttpError} if an error occurred.
      */
-    private <T> T delete(String path, Class<T> myClass) {
+    protected <T> T delete(String path, Class<T> myClass) {
         try {
             return client.delete(path, myClass);
         } catch (IOException e) {
@@ -105,6 +145,81 @@ public class BrktService {
         }
     }
 
+    /**
+     * Wraps {@link BrktRestClient#publish} and reports errors to the subscriber
+     * as a {@link com.brkt.client.BrktService.RuntimeIoException} or
+     * {@link com.brkt.client.BrktService.RuntimeHttpError}.
+     */
+    private <T> BrktFlow.Publisher<T> publish(String path, Class<T> elementClass, Executor executor) {
+        final BrktFlow.Publisher<T> publisher = client.publish(path, elementClass, executor);
+        return new BrktFlow.Publisher<T>() {
+            @Override
+            public void subscribe(final BrktFlow.Subscriber<? super T> subscriber) {
+                Preconditions.checkNotNull(subscriber);
+                publisher.subscribe(new BrktFlow.Subscriber<T>() {
+                    @Override
+                    public void onSubscribe(BrktFlow.Subscription subscription) {
+                        subscriber.onSubscribe(subscription);
+                    }
+
+                    @Override
+                    public void onNext(T item) {
+                        subscriber.onNext(item);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        if (t instanceof IOException) {
+                            t = new RuntimeIoException((IOException) t);
+                        } else if (t instanceof BrktRestClient.HttpError) {
+                            t = new RuntimeHttpError((BrktRestClient.HttpError) t);
+                        }
+                        subscriber.onError(t);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        subscriber.onComplete();
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Get all resources of the given type.  The elements are instances of
+     * {@link ResourceType#resourceClass}.
+     */
+    public List<?> getAll(ResourceType type) {
+        Preconditions.checkNotNull(type);
+        return get(type.rootPath, type.listType);
+    }
+
+    /**
+     * Get all resources of the given type, binding only the given JSON
+     * fields and {@code id}.  See {@link BrktRestClient#get(String, Class, Set)}.
+     */
+    public List<?> getAll(ResourceType type, Set<String> fields) {
+        Preconditions.checkNotNull(type);
+        return get(type.rootPath, type.resourceClass, fields);
+    }
+
+    /**
+     * Get all resources of the given type as a {@link LazyResourceList},
+     * which can hash each element without deserializing it.  See
+     * {@link BrktRestClient#getLazy}.
+     */
+    public LazyResourceList<?> getAllLazy(ResourceType type) {
+        Preconditions.checkNotNull(type);
+        try {
+            return client.getLazy(type.rootPath, type.resourceClass);
+        } catch (IOException e) {
+            throw new RuntimeIoException(e);
+        } catch (BrktRestClient.HttpError e) {
+            throw new RuntimeHttpError(e);
+        }
+    }
+
     // Operating system.
     public List<OperatingSystem> getAllOperatingSystems() {
         return get(Constants.OPERATING_SYSTEM_ROOT, Constants.TYPE_OPERATING_SYSTEM_LIST);
@@ -116,6 +231,15 @@ public class BrktService {
         return get(uri, OperatingSystem.class);
     }
 
+    /**
+     * Return the operating system with the given id, or {@code null} if it doesn't exist.
+     */
+    public OperatingSystem findOperatingSystem(String id) {
+        Preconditions.checkNotNull(id);
+        String uri = String.format("%s/%s", Constants.OPERATING_SYSTEM_ROOT, id);
+        return find(uri, OperatingSystem.class);
+    }
+
     public List<ImageDefinition> getOperatingSystemImageDefinitions(String osId) {
         Preconditions.checkNotNull(osId);
         String uri = String.format("%s/%s/imagedefinitions", Constants.OPERATING_SYSTEM_ROOT, osId);
@@ -133,6 +257,15 @@ public class BrktService {
         return get(uri, ImageDefinition.class);
     }
 
+    /**
+     * Return the image definition with the given id, or {@code null} if it doesn't exist.
+     */
+    public ImageDefinition findImageDefinition(String id) {
+        Preconditions.checkNotNull(id);
+        String uri = String.format("%s/%s", Constants.IMAGE_DEFINITION_ROOT, id);
+        return find(uri, ImageDefinition.class);
+    }
+
     public List<CspImage> getImageDefinitionCspImages(String imageDefinitionId) {
         Preconditions.checkNotNull(imageDefinitionId);
         String uri = String.format("%s/%s/cspimages", Constants.IMAGE_DEFINITION_ROOT, imageDefinitionId);
@@ -149,6 +282,15 @@ public class BrktService {
         return get(uri, CspImage.class);
     }
 
+    /**
+     * Return the CSP image with the given id, or {@code null} if it doesn't exist.
+     */
+    public CspImage findCspImage(String id) {
+        Preconditions.checkNotNull(id);
+        String uri = String.format("%s/%s", Constants.CSP_IMAGE_ROOT, id);
+        return find(uri, CspImage.class);
+    }
+
     // Machine type.
     public List<MachineType> getAllMachineTypes() {
         return get(Constants.MACHINE_TYPE_ROOT, Constants.TYPE_MACHINE_TYPE_LIST);
@@ -159,6 +301,15 @@ public class BrktService {
         return get(uri, MachineType.class);
     }
 
+    /**
+     * Return the machine type with the given id, or {@code null} if it doesn't exist.
+     */
+    public MachineType findMachineType(String id) {
+        Preconditions.checkNotNull(id);
+        String uri = String.format("%s/%s", Constants.MACHINE_TYPE_ROOT, id);
+        return find(uri, MachineType.class);
+    }
+
     // Billing group.
     public List<BillingGroup> getAllBillingGroups() {
         return get(Constants.BILLING_GROUP_ROOT, Constants.TYPE_BILLING_GROUP_LIST);
@@ -170,6 +321,15 @@ public class BrktService {
         return get(uri, BillingGroup.class);
     }
 
+    /**
+     * Return the billing group with the given id, or {@code null} if it doesn't exist.
+     */
+    public BillingGroup findBillingGroup(String id) {
+        Preconditions.checkNotNull(id);
+        String uri = String.format("%s/%s", Constants.BILLING_GROUP_ROOT, id);
+        return find(uri, BillingGroup.class);
+    }
+
     public BillingGroup createBillingGroup(Map<String, Object> attrs) {
         return post(Constants.BILLING_GROUP_ROOT, BillingGroup.class, attrs);
     }
@@ -202,6 +362,15 @@ public class BrktService {
         return get(uri, Network.class);
     }
 
+    /**
+     * Return the network with the given id, or {@code null} if it doesn't exist.
+     */
+    public Network findNetwork(String id) {
+        Preconditions.checkNotNull(id);
+        String uri = String.format("%s/%s", Constants.NETWORK_ROOT, id);
+        return find(uri, Network.class);
+    }
+
     // Zone.
     public List<Zone> getAllZones() {
         return get(Constants.ZONE_ROOT, Constants.TYPE_ZONE_LIST);
@@ -219,6 +388,15 @@ public class BrktService {
         return get(uri, Zone.class);
     }
 
+    /**
+     * Return the zone with the given id, or {@code null} if it doesn't exist.
+     */
+    public Zone findZone(String id) {
+        Preconditions.checkNotNull(id);
+        String uri = String.format("%s/%s", Constants.ZONE_ROOT, id);
+        return find(uri, Zone.class);
+    }
+
     // Security group.
     public List<SecurityGroup> getAllSecurityGroups() {
         return get(Constants.SECURITY_GROUP_ROOT, Constants.TYPE_SECURITY_GROUP_LIST);
@@ -230,6 +408,15 @@ public class BrktService {
         return get(uri, SecurityGroup.class);
     }
 
+    /**
+     * Return the security group with the given id, or {@code null} if it doesn't exist.
+     */
+    public SecurityGroup findSecurityGroup(String id) {
+        Preconditions.checkNotNull(id);
+        String uri = String.format("%s/%s", Constants.SECURITY_GROUP_ROOT, id);
+        return find(uri, SecurityGroup.class);
+    }
+
     public SecurityGroup createSecurityGroup(String networkId, Map<String, Object> attrs) {
         String uri = String.format("%s/%s/securitygroups", Constants.NETWORK_ROOT, networkId);
         return post(uri, SecurityGroup.class, attrs);
@@ -265,6 +452,15 @@ public class BrktService {
         return get(uri, SecurityGroupRule.class);
     }
 
+    /**
+     * Return the security group rule with the given id, or {@code null} if it doesn't exist.
+     */
+    public SecurityGroupRule findSecurityGroupRule(String ruleId) {
+        Preconditions.checkNotNull(ruleId);
+        String uri = String.format("%s/%s", Constants.SECURITY_GROUP_RULE_ROOT, ruleId);
+        return find(uri, SecurityGroupRule.class);
+    }
+
     public SecurityGroupRule createSecurityGroupRule(String securityGroupId, Map<String, Object> attrs) {
         String uri = String.format("%s/%s/rules", Constants.SECURITY_GROUP_ROOT, securityGroupId);
         return post(uri, SecurityGroupRule.class, attrs);
@@ -293,6 +489,15 @@ public class BrktService {
         return get(uri, ComputingCell.class);
     }
 
+    /**
+     * Return the computing cell with the given id, or {@code null} if it doesn't exist.
+     */
+    public ComputingCell findComputingCell(String computingCellId) {
+        Preconditions.checkNotNull(computingCellId);
+        String uri = String.format("%s/%s", Constants.COMPUTING_CELL_ROOT, computingCellId);
+        return find(uri, ComputingCell.class);
+    }
+
     public List<Volume> getComputingCellVolumes(String computingCellId) {
         Preconditions.checkNotNull(computingCellId);
         String uri = String.format("%s/%s/brktvolumes", Constants.COMPUTING_CELL_ROOT, computingCellId);
@@ -304,12 +509,38 @@ public class BrktService {
         return get(Constants.VOLUME_ROOT, Constants.TYPE_VOLUME_LIST);
     }
 
+    /**
+     * Get all volumes, binding only the given JSON fields and {@code id}.
+     * See {@link BrktRestClient#get(String, Class, Set)}.
+     */
+    public List<Volume> getAllVolumes(Set<String> fields) {
+        return get(Constants.VOLUME_ROOT, Volume.class, fields);
+    }
+
+    /**
+     * Return a publisher that streams all volumes, parsing each one as the
+     * subscriber requests it.  Reading runs on {@code executor}.
+     * See {@link BrktRestClient#publish}.
+     */
+    public BrktFlow.Publisher<Volume> publishAllVolumes(Executor executor) {
+        return publish(Constants.VOLUME_ROOT, Volume.class, executor);
+    }
+
     public Volume getVolume(String volumeId) {
         Preconditions.checkNotNull(volumeId);
         String uri = String.format("%s/%s", Constants.VOLUME_ROOT, volumeId);
         return get(uri, Volume.class);
     }
 
+    /**
+     * Return the volume with the given id, or {@code null} if it doesn't exist.
+     */
+    public Volume findVolume(String volumeId) {
+        Preconditions.checkNotNull(volumeId);
+        String uri = String.format("%s/%s", Constants.VOLUME_ROOT, volumeId);
+        return find(uri, Volume.class);
+    }
+
     public Volume updateVolume(String volumeId, String fieldName, Object value) {
         Map<String, Object> attrs = ImmutableMap.of(fieldName, value);
         return updateVolume(volumeId, attrs);
@@ -360,6 +591,15 @@ public class BrktService {
         return get(uri, CloudInit.class);
     }
 
+    /**
+     * Return the cloud init with the given id, or {@code null} if it doesn't exist.
+     */
+    public CloudInit findCloudInit(String id) {
+        Preconditions.checkNotNull(id);
+        String uri = String.format("%s/%s", Constants.CLOUD_INIT_ROOT, id);
+        return find(uri, CloudInit.class);
+    }
+
     public CloudInit createCloudInit(Map<String, Object> attrs) {
         return post(Constants.CLOUD_INIT_ROOT, CloudInit.class, attrs);
     }
@@ -386,12 +626,38 @@ public class BrktService {
         return get(Constants.INSTANCE_ROOT, Constants.TYPE_INSTANCE_LIST);
     }
 
+    /**
+     * Get all instances, binding only the given JSON fields and {@code id}.
+     * See {@link BrktRestClient#get(String, Class, Set)}.
+     */
+    public List<Instance> getAllInstances(Set<String> fields) {
+        return get(Constants.INSTANCE_ROOT, Instance.class, fields);
+    }
+
+    /**
+     * Return a publisher that streams all instances, parsing each one as the
+     * subscriber requests it.  Reading runs on {@code executor}.
+     * See {@link BrktRestClient#publish}.
+     */
+    public BrktFlow.Publisher<Instance> publishAllInstances(Executor executor) {
+        return publish(Constants.INSTANCE_ROOT, Instance.class, executor);
+    }
+
     public Instance getInstance(String instanceId) {
         Preconditions.checkNotNull(instanceId);
         String uri = String.format("%s/%s", Constants.INSTANCE_ROOT, instanceId);
         return get(uri, Instance.class);
     }
 
+    /**
+     * Return the instance with the given id, or {@code null} if it doesn't exist.
+     */
+    public Instance findInstance(String instanceId) {
+        Preconditions.checkNotNull(instanceId);
+        String uri = String.format("%s/%s", Constants.INSTANCE_ROOT, instanceId);
+        return find(uri, Instance.class);
+    }
+
     public Instance updateInstance(String instanceId, String fieldName, Object value) {
         Map<String, Object> attrs = ImmutableMap.of(fieldName, value);
         return updateInstance(instanceId, attrs);
@@ -436,6 +702,15 @@ public class BrktService {
         return get(uri, Workload.class);
     }
 
+    /**
+     * Return the workload with the given id, or {@code null} if it doesn't exist.
+     */
+    public Workload findWorkload(String workloadId) {
+        Preconditions.checkNotNull(workloadId);
+        String uri = String.format("%s/%s", Constants.WORKLOAD_ROOT, workloadId);
+        return find(uri, Workload.class);
+    }
+
     public Workload createWorkload(Map<String, Object> attrs) {
         return post(Constants.WORKLOAD_ROOT, Workload.class, attrs);
     }
@@ -474,6 +749,15 @@ public class BrktService {
         return get(uri, LoadBalancer.class);
     }
 
+    /**
+     * Return the load balancer with the given id, or {@code null} if it doesn't exist.
+     */
+    public LoadBalancer findLoadBalancer(String id) {
+        Preconditions.checkNotNull(id);
+        String uri = String.format("%s/%s", Constants.LOAD_BALANCER_ROOT, id);
+        return find(uri, LoadBalancer.class);
+    }
+
     public LoadBalancer createLoadBalancer(Map<String, Object> attrs) {
         return post(Constants.LOAD_BALANCER_ROOT, LoadBalancer.class, attrs);
     }
@@ -512,6 +796,15 @@ public class BrktService {
         return get(uri, LoadBalancerListener.class);
     }
 
+    /**
+     * Return the load balancer listener with the given id, or {@code null} if it doesn't exist.
+     */
+    public LoadBalancerListener findLoadBalancerListener(String id) {
+        Preconditions.checkNotNull(id);
+        String uri = String.format("%s/%s", Constants.LOAD_BALANCER_LISTENER_ROOT, id);
+        return find(uri, LoadBalancerListener.class);
+    }
+
     public LoadBalancerListener createLoadBalancerListener(Map<String, Object> attrs) {
         return post(Constants.LOAD_BALANCER_LISTENER_ROOT, LoadBalancerListener.class, attrs);
     }
@@ -532,4 +825,143 @@ public class BrktService {
         String uri = String.format("%s/%s", Constants.LOAD_BALANCER_LISTENER_ROOT, id);
         return delete(uri, LoadBalancerListener.class);
     }
+
+    // Bulk operations.
+
+    /**
+     * Apply {@code operation} to each input with the given options, and
+     * collect the result of each call.
+     */
+    private <I, T> BulkResult<I, T> runBulk(List<I> inputs, final BulkOptions options,
+                                            final Function<I, T> operation)
+            throws InterruptedException {
+        Preconditions.checkNotNull(inputs);
+        Preconditions.checkNotNull(options);
+        List<Callable<T>> tasks = Lists.newArrayList();
+        for (final I input : inputs) {
+            tasks.add(new Callable<T>() {
+                @Override
+                public T call() throws InterruptedException {
+                    return callWithRetries(options, operation, input);
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        List<ParallelTasks.Outcome<T>> outcomes =
+                ParallelTasks.runAll(tasks, options.getExecutor(), options.getParallelism());
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        List<BulkResult.Item<I, T>> items = Lists.newArrayList();
+        for (int i = 0; i < inputs.size(); i++) {
+            ParallelTasks.Outcome<T> outcome = outcomes.get(i);
+            items.add(new BulkResult.Item<I, T>(
+                    inputs.get(i), outcome.getValue(), outcome.getError(), outcome.getElapsedMillis()));
+        }
+        return new BulkResult<I, T>(items, elapsedMillis);
+    }
+
+    private static <I, T> T callWithRetries(BulkOptions options, Function<I, T> operation, I input)
+            throws InterruptedException {
+        long delayMillis = options.getRetryDelayMillis();
+        for (int attempt = 0; ; attempt++) {
+            options.acquire();
+            try {
+                return operation.apply(input);
+            } catch (RuntimeHttpError e) {
+                if (e.status != 429 || attempt >= options.getMaxRetries()) {
+                    throw e;
+                }
+            }
+            Thread.sleep(delayMillis);
+            delayMillis *= 2;
+        }
+    }
+
+    /**
+     * Create an instance for each attribute map.  See {@link BulkOptions}.
+     */
+    public BulkResult<Map<String, Object>, Instance> createInstances(
+            List<? extends Map<String, Object>> attrsList, BulkOptions options)
+            throws InterruptedException {
+        return runBulk(Lists.<Map<String, Object>>newArrayList(attrsList.iterator()), options,
+                new Function<Map<String, Object>, Instance>() {
+                    @Override
+                    public Instance apply(Map<String, Object> attrs) {
+                        return createInstance(attrs);
+                    }
+                });
+    }
+
+    /**
+     * Delete the given instances.  See {@link BulkOptions}.
+     */
+    public BulkResult<String, Instance> deleteInstances(Collection<String> instanceIds, BulkOptions options)
+            throws InterruptedException {
+        return runBulk(Lists.newArrayList(instanceIds.iterator()), options, new Function<String, Instance>() {
+            @Override
+            public Instance apply(String id) {
+                return deleteInstance(id);
+            }
+        });
+    }
+
+    /**
+     * Create a volume for each attribute map.  See {@link BulkOptions}.
+     */
+    public BulkResult<Map<String, Object>, Volume> createVolumes(
+            List<? extends Map<String, Object>> attrsList, BulkOptions options)
+            throws InterruptedException {
+        return runBulk(Lists.<Map<String, Object>>newArrayList(attrsList.iterator()), options,
+                new Function<Map<String, Object>, Volume>() {
+                    @Override
+                    public Volume apply(Map<String, Object> attrs) {
+                        return createVolume(attrs);
+                    }
+                });
+    }
+
+    /**
+     * Delete the given volumes.  See {@link BulkOptions}.
+     */
+    public BulkResult<String, Volume> deleteVolumes(Collection<String> volumeIds, BulkOptions options)
+            throws InterruptedException {
+        return runBulk(Lists.newArrayList(volumeIds.iterator()), options, new Function<String, Volume>() {
+            @Override
+            public Volume apply(String id) {
+                return deleteVolume(id);
+            }
+        });
+    }
+
+    /**
+     * Create a rule in the given security group for each attribute map.
+     * See {@link BulkOptions}.
+     */
+    public BulkResult<Map<String, Object>, SecurityGroupRule> createSecurityGroupRules(
+            final String securityGroupId, List<? extends Map<String, Object>> attrsList, BulkOptions options)
+            throws InterruptedException {
+        Preconditions.checkNotNull(securityGroupId);
+        return runBulk(Lists.<Map<String, Object>>newArrayList(attrsList.iterator()), options,
+                new Function<Map<String, Object>, SecurityGroupRule>() {
+                    @Override
+                    public SecurityGroupRule apply(Map<String, Object> attrs) {
+                        return createSecurityGroupRule(securityGroupId, attrs);
+                    }
+                });
+    }
+
+    /**
+     * Delete the given security group rules.  See {@link BulkOptions}.
+     */
+    public BulkResult<String, SecurityGroupRule> deleteSecurityGroupRules(
+            Collection<String> ruleIds, BulkOptions options)
+            throws InterruptedException {
+        return runBulk(Lists.newArrayList(ruleIds.iterator()), options, new Function<String, SecurityGroupRule>() {
+            @Override
+            public SecurityGroupRule apply(String id) {
+                return deleteSecurityGroupRule(id);
+            }
+        });
+    }
 }
@@ -0,0 +1,135 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.BrktExecutors;
+import com.brkt.client.util.RateLimiter;
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Controls how the bulk methods of {@link BrktService} run: how many calls
+ * run at the same time, how many calls start per second, and how calls that
+ * the server rejects with {@code 429 Too Many Requests} are retried.
+ */
+public class BulkOptions {
+
+    public static final int DEFAULT_PARALLELISM = 8;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_RETRY_DELAY_MILLIS = 500;
+
+    private final Executor executor;
+    private final int parallelism;
+    private final RateLimiter rateLimiter;
+    private final int maxRetries;
+    private final long retryDelayMillis;
+
+    private BulkOptions(Builder builder) {
+        executor = builder.executor != null ? builder.executor : BrktExecutors.getDefaultExecutor();
+        parallelism = builder.parallelism;
+        rateLimiter = builder.requestsPerSecond > 0 ? new RateLimiter(builder.requestsPerSecond) : null;
+        maxRetries = builder.maxRetries;
+        retryDelayMillis = builder.retryDelayMillis;
+    }
+
+    /**
+     * Return options with the default values.
+     */
+    public static BulkOptions defaults() {
+        return new Builder().build();
+    }
+
+    public static class Builder {
+        private Executor executor;
+        private int parallelism = DEFAULT_PARALLELISM;
+        private double requestsPerSecond;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private long retryDelayMillis = DEFAULT_RETRY_DELAY_MILLIS;
+
+        /**
+         * Run calls on the given executor.  The default is
+         * {@link BrktExecutors#getDefaultExecutor}.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Run at most {@code parallelism} calls at the same time.
+         */
+        public Builder parallelism(int parallelism) {
+            Preconditions.checkArgument(parallelism > 0, "parallelism must be positive: " + parallelism);
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Start at most {@code requestsPerSecond} calls per second, including
+         * retries.  The default is {@code 0}, which means no limit.
+         */
+        public Builder requestsPerSecond(double requestsPerSecond) {
+            Preconditions.checkArgument(requestsPerSecond >= 0,
+                    "requestsPerSecond cannot be negative: " + requestsPerSecond);
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+
+        /**
+         * Retry a call up to {@code maxRetries} times if the server returns
+         * {@code 429}.  The delay doubles after each retry.
+         */
+        public Builder retries(int maxRetries, long initialDelayMillis) {
+            Preconditions.checkArgument(maxRetries >= 0, "maxRetries cannot be negative: " + maxRetries);
+            Preconditions.checkArgument(initialDelayMillis >= 0,
+                    "initialDelayMillis cannot be negative: " + initialDelayMillis);
+            this.maxRetries = maxRetries;
+            this.retryDelayMillis = initialDelayMillis;
+            return this;
+        }
+
+        public BulkOptions build() {
+            return new BulkOptions(this);
+        }
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getRetryDelayMillis() {
+        return retryDelayMillis;
+    }
+
+    /**
+     * Wait for the rate limiter, if there is one.
+     */
+    void acquire() throws InterruptedException {
+        if (rateLimiter != null) {
+            rateLimiter.acquire();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a bulk operation: one {@link Item} per input, in the same
+ * order as the inputs.  A failed item doesn't stop the others.
+ *
+ * @param <I> the input type, for example an attribute map or an id
+ * @param <T> the result type of each call
+ */
+public class BulkResult<I, T> {
+
+    /**
+     * The result of one call.
+     */
+    public static class Item<I, T> {
+        private final I input;
+        private final T value;
+        private final Throwable error;
+        private final long elapsedMillis;
+
+        Item(I input, T value, Throwable error, long elapsedMillis) {
+            this.input = input;
+            this.value = value;
+            this.error = error;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public I getInput() {
+            return input;
+        }
+
+        /**
+         * Return the call's result, or {@code null} if it failed.
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * Return the exception that the call threw, usually a
+         * {@link BrktService.RuntimeHttpError} or
+         * {@link BrktService.RuntimeIoException}, or {@code null} if it succeeded.
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * Return how long the call took, including rate limiting and retries.
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("input", input)
+                    .add("value", value)
+                    .add("error", error)
+                    .add("elapsedMillis", elapsedMillis)
+                    .toString();
+        }
+    }
+
+    private final List<Item<I, T>> items;
+    private final long elapsedMillis;
+
+    BulkResult(List<Item<I, T>> items, long elapsedMillis) {
+        this.items = Collections.unmodifiableList(items);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Return all items, in the same order as the inputs.
+     */
+    public List<Item<I, T>> getItems() {
+        return items;
+    }
+
+    public List<Item<I, T>> getSuccesses() {
+        List<Item<I, T>> result = Lists.newArrayList();
+        for (Item<I, T> item : items) {
+            if (item.isSuccess()) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    public List<Item<I, T>> getFailures() {
+        List<Item<I, T>> result = Lists.newArrayList();
+        for (Item<I, T> item : items) {
+            if (!item.isSuccess()) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the results of the successful calls, in input order.
+     */
+    public List<T> getValues() {
+        List<T> result = Lists.newArrayList();
+        for (Item<I, T> item : items) {
+            if (item.isSuccess()) {
+                result.add(item.getValue());
+            }
+        }
+        return result;
+    }
+
+    public boolean isAllSuccessful() {
+        for (Item<I, T> item : items) {
+            if (!item.isSuccess()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the wall-clock time of the whole operation.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public String toString() {
+        int failures = getFailures().size();
+        return MoreObjects.toStringHelper(this)
+                .add("successes", items.size() - failures)
+                .add("failures", failures)
+                .add("elapsedMillis", elapsedMillis)
+                .toString();
+    }
+}
@@ -0,0 +1,563 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.BoundedCache;
+import com.brkt.client.util.BrktExecutors;
+import com.brkt.client.util.BrktRestClient;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link BrktService} that caches the responses of {@code GET} requests
+ * for the resource types that have a time-to-live.  Reference data such
+ * as operating systems, image definitions and machine types rarely
+ * changes, so it is a good candidate for caching.  Requests for other
+ * types are sent to the server every time.
+ *
+ * <p>Mutable resources can be cached too, with {@link Builder#cacheMutableResources}.
+ * Every write through this service updates or invalidates the cached
+ * responses that it affects, including the lists that contain the written
+ * resource, so the caller always reads its own writes.  Changes made by
+ * other clients are seen when the cached responses expire.
+ *
+ * <p>Cached lists are unmodifiable, and cached objects are shared between
+ * callers.
+ *
+ * <p>The {@code find} methods use the same cache.  With
+ * {@link Builder#negativeTtl}, they also remember which resources don't
+ * exist, so that repeated existence checks for a deleted resource don't
+ * contact the server.
+ *
+ * <p>See {@link BoundedCache} for how entries are evicted and refreshed.
+ */
+public class CachingBrktService extends BrktService {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final Map<ResourceType, Long> ttlNanos;
+    private final long maxStaleNanos;
+    private final BoundedCache<String, Object> cache;
+    private final long negativeTtlNanos;
+
+    /**
+     * Paths for which {@link #find} returned {@code null}.
+     */
+    private final BoundedCache<String, Boolean> notFound;
+
+    /**
+     * Thrown by the loader in {@link #find} if the resource doesn't exist,
+     * so that nothing is cached.  It never escapes, so it's preallocated and
+     * has no stack trace.
+     */
+    private static final class NotFoundException extends RuntimeException {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static final NotFoundException NOT_FOUND = new NotFoundException();
+
+    private CachingBrktService(Builder builder) {
+        super(builder.client);
+        ttlNanos = Maps.newEnumMap(ResourceType.class);
+        ttlNanos.putAll(builder.ttlNanos);
+        maxStaleNanos = builder.maxStaleNanos;
+        Executor refreshExecutor = builder.refreshExecutor != null ?
+                builder.refreshExecutor : BrktExecutors.getDefaultExecutor();
+        cache = new BoundedCache<String, Object>(builder.maximumSize, refreshExecutor);
+        negativeTtlNanos = builder.negativeTtlNanos;
+        notFound = new BoundedCache<String, Boolean>(builder.maximumSize, refreshExecutor);
+    }
+
+    public static class Builder {
+        private final BrktRestClient client;
+        private final Map<ResourceType, Long> ttlNanos = Maps.newEnumMap(ResourceType.class);
+        private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+        private long maxStaleNanos;
+        private long negativeTtlNanos;
+        private Executor refreshExecutor;
+
+        public Builder(BrktRestClient client) {
+            Preconditions.checkNotNull(client);
+            this.client = client;
+        }
+
+        /**
+         * Cache responses for {@code type} for the given duration.
+         */
+        public Builder ttl(ResourceType type, long duration, TimeUnit unit) {
+            Preconditions.checkNotNull(type);
+            Preconditions.checkArgument(duration > 0, "duration must be positive: " + duration);
+            ttlNanos.put(type, unit.toNanos(duration));
+            return this;
+        }
+
+        /**
+         * Cache operating systems, image definitions, CSP images and machine
+         * types for the given duration.
+         */
+        public Builder cacheReferenceData(long duration, TimeUnit unit) {
+            ttl(ResourceType.OPERATING_SYSTEM, duration, unit);
+            ttl(ResourceType.IMAGE_DEFINITION, duration, unit);
+            ttl(ResourceType.CSP_IMAGE, duration, unit);
+            ttl(ResourceType.MACHINE_TYPE, duration, unit);
+            return this;
+        }
+
+        /**
+         * Cache instances, volumes, workloads and security groups, including
+         * the rules of each security group, for the given duration.
+         */
+        public Builder cacheMutableResources(long duration, TimeUnit unit) {
+            ttl(ResourceType.INSTANCE, duration, unit);
+            ttl(ResourceType.VOLUME, duration, unit);
+            ttl(ResourceType.WORKLOAD, duration, unit);
+            ttl(ResourceType.SECURITY_GROUP, duration, unit);
+            return this;
+        }
+
+        /**
+         * Cache at most {@code maximumSize} responses.  The default is
+         * {@link #DEFAULT_MAXIMUM_SIZE}.
+         */
+        public Builder maximumSize(int maximumSize) {
+            Preconditions.checkArgument(maximumSize > 0, "maximumSize must be positive: " + maximumSize);
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * After a response expires, keep returning it for up to the given
+         * duration while it is reloaded in the background.  The default is
+         * {@code 0}, which means that expired responses are reloaded before
+         * they are returned.
+         */
+        public Builder maxStale(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration >= 0, "duration cannot be negative: " + duration);
+            this.maxStaleNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Remember for the given duration that a {@code find} method returned
+         * {@code null}, and return {@code null} again without contacting the
+         * server.  Keep this short, since a resource with the same id is
+         * only seen once the entry expires, unless it is created through
+         * this service.  The default is {@code 0}, which turns negative
+         * caching off.
+         */
+        public Builder negativeTtl(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration >= 0, "duration cannot be negative: " + duration);
+            this.negativeTtlNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Reload stale responses on the given executor.  The default is
+         * {@link BrktExecutors#getDefaultExecutor}.
+         */
+        public Builder refreshExecutor(Executor refreshExecutor) {
+            this.refreshExecutor = refreshExecutor;
+            return this;
+        }
+
+        public CachingBrktService build() {
+            return new CachingBrktService(this);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected <T> T get(String path, final Type type) {
+        ResourceType resourceType = ResourceType.forPath(path);
+        Long ttl = resourceType == null ? null : ttlNanos.get(resourceType);
+        if (ttl == null) {
+            return super.get(path, type);
+        }
+        return (T) cache.get(path, ttl, maxStaleNanos, new BoundedCache.Loader<String, Object>() {
+            @Override
+            public Object load(String key) {
+                Object value = CachingBrktService.super.get(key, type);
+                if (value instanceof List) {
+                    value = Collections.unmodifiableList((List<?>) value);
+                }
+                return value;
+            }
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected <T> T find(String path, final Type type) {
+        if (negativeTtlNanos > 0 && notFound.getIfPresent(path, negativeTtlNanos) != null) {
+            return null;
+        }
+        ResourceType resourceType = ResourceType.forPath(path);
+        Long ttl = resourceType == null ? null : ttlNanos.get(resourceType);
+        T result;
+        if (ttl == null) {
+            result = super.find(path, type);
+        } else {
+            try {
+                result = (T) cache.get(path, ttl, maxStaleNanos, new BoundedCache.Loader<String, Object>() {
+                    @Override
+                    public Object load(String key) {
+                        Object value = CachingBrktService.super.find(key, type);
+                        if (value == null) {
+                            throw NOT_FOUND;
+                        }
+                        return value;
+                    }
+                });
+            } catch (NotFoundException e) {
+                result = null;
+            }
+        }
+        if (result == null && negativeTtlNanos > 0) {
+            notFound.put(path, Boolean.TRUE);
+        }
+        return result;
+    }
+
+    @Override
+    protected <T> T post(String path, Class<T> myClass, Map<String, Object> attrs) {
+        T old = getCachedResource(path, myClass);
+        T result = null;
+        try {
+            result = super.post(path, myClass, attrs);
+            return result;
+        } finally {
+            afterWrite(path, myClass, false, old, result);
+        }
+    }
+
+    @Override
+    protected <T> T delete(String path, Class<T> myClass) {
+        T old = getCachedResource(path, myClass);
+        T result = null;
+        try {
+            result = super.delete(path, myClass);
+            return result;
+        } finally {
+            afterWrite(path, myClass, true, old, result);
+        }
+    }
+
+    /**
+     * Return the cached resource at {@code path}, or {@code null} if there
+     * is none.
+     */
+    private <T> T getCachedResource(String path, Class<T> resourceClass) {
+        Object cached = cache.getIfPresent(path);
+        return resourceClass.isInstance(cached) ? resourceClass.cast(cached) : null;
+    }
+
+    /**
+     * A list of resources that belong to one parent resource, for example
+     * the children of a volume.  Its path is {@code prefix + parentId + suffix}.
+     */
+    private abstract static class Relation {
+        final Class<?> elementClass;
+        final String prefix;
+        final String suffix;
+
+        Relation(Class<?> elementClass, String parentRoot, String suffix) {
+            this.elementClass = elementClass;
+            this.prefix = parentRoot + "/";
+            this.suffix = "/" + suffix;
+        }
+
+        /**
+         * Return the id of the parent of {@code element}, or {@code null}.
+         */
+        abstract String getParentId(Object element);
+
+        boolean matches(String path) {
+            return path.length() > prefix.length() + suffix.length()
+                    && path.startsWith(prefix)
+                    && path.endsWith(suffix)
+                    && path.indexOf('/', prefix.length()) == path.length() - suffix.length();
+        }
+    }
+
+    private static final List<Relation> RELATIONS = ImmutableList.copyOf(new Relation[] {
+            new Relation(Volume.class, Constants.VOLUME_ROOT, "children") {
+                @Override
+                String getParentId(Object element) {
+                    return ((Volume) element).getParent();
+                }
+            },
+            new Relation(Volume.class, Constants.V1_INSTANCE_ROOT, "brktvolumes") {
+                @Override
+                String getParentId(Object element) {
+                    return ((Volume) element).getInstanceId();
+                }
+            },
+            new Relation(Volume.class, Constants.COMPUTING_CELL_ROOT, "brktvolumes") {
+                @Override
+                String getParentId(Object element) {
+                    return ((Volume) element).getComputingCellId();
+                }
+            },
+            new Relation(Instance.class, Constants.WORKLOAD_ROOT, "instance") {
+                @Override
+                String getParentId(Object element) {
+                    return ((Instance) element).getWorkloadId();
+                }
+            },
+            new Relation(SecurityGroupRule.class, Constants.SECURITY_GROUP_ROOT, "rules") {
+                @Override
+                String getParentId(Object element) {
+                    return ((SecurityGroupRule) element).getSecurityGroupId();
+                }
+            },
+            new Relation(LoadBalancerListener.class, Constants.LOAD_BALANCER_ROOT, "listeners") {
+                @Override
+                String getParentId(Object element) {
+                    return ((LoadBalancerListener) element).getLoadBalancerId();
+                }
+            }
+    });
+
+    /**
+     * Types whose cached responses are invalidated when a resource of the
+     * key type is deleted, because the server also changes or deletes the
+     * resources that belong to it.
+     */
+    private static final Map<ResourceType, Set<ResourceType>> DELETE_CASCADES =
+            ImmutableMap.<ResourceType, Set<ResourceType>>of(
+                    ResourceType.INSTANCE, EnumSet.of(ResourceType.VOLUME),
+                    ResourceType.WORKLOAD, EnumSet.of(ResourceType.INSTANCE, ResourceType.VOLUME),
+                    ResourceType.LOAD_BALANCER, EnumSet.of(ResourceType.LOAD_BALANCER_LISTENER));
+
+    /**
+     * Return the path of the resource list that contains resources of
+     * {@code resourceClass}, or {@code null}.
+     */
+    private static String getRootPath(Class<?> resourceClass) {
+        if (resourceClass == SecurityGroupRule.class) {
+            return Constants.SECURITY_GROUP_RULE_ROOT;
+        }
+        for (ResourceType type : ResourceType.values()) {
+            if (type.resourceClass == resourceClass) {
+                return type.rootPath;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return {@code path} and, for an instance path, the same path under
+     * the other version of the instance API.
+     */
+    private static List<String> withAliases(String path) {
+        if (ResourceType.isUnder(path, Constants.V1_INSTANCE_ROOT)) {
+            String rest = path.substring(Constants.V1_INSTANCE_ROOT.length());
+            return Lists.newArrayList(path, Constants.INSTANCE_ROOT + rest);
+        }
+        if (ResourceType.isUnder(path, Constants.INSTANCE_ROOT)) {
+            String rest = path.substring(Constants.INSTANCE_ROOT.length());
+            return Lists.newArrayList(path, Constants.V1_INSTANCE_ROOT + rest);
+        }
+        return Lists.newArrayList(path);
+    }
+
+    /**
+     * Add {@code path} and its ancestors, up to the root path of its
+     * resource type, to {@code paths}.
+     */
+    private static void addWithAncestors(Set<String> paths, String path) {
+        ResourceType type = ResourceType.forPath(path);
+        String root = type == null ? path : type.rootPath;
+        if (ResourceType.isUnder(path, Constants.V1_INSTANCE_ROOT)) {
+            root = Constants.V1_INSTANCE_ROOT;
+        }
+        while (path.length() > root.length()) {
+            paths.add(path);
+            path = path.substring(0, path.lastIndexOf('/'));
+        }
+        paths.add(root);
+    }
+
+    /**
+     * Update or invalidate the cached responses that a write to {@code path}
+     * may have changed.  {@code old} is the cached resource at {@code path}
+     * before the write, and {@code result} is the response, or {@code null}
+     * if the write failed.  The cache is updated even if the write failed,
+     * since the server may have applied it anyway.
+     *
+     * <p>These responses are invalidated:
+     * <ul>
+     *     <li>{@code path} and its ancestors, for example the source volume
+     *     of a snapshot</li>
+     *     <li>the list of all resources of the written type</li>
+     *     <li>the lists of the parents that the resource belonged to before
+     *     the write and belongs to after it, for example the rules of a
+     *     security group or the children of a volume.  If a parent isn't
+     *     known, all lists of that kind are invalidated.</li>
+     *     <li>for a delete, everything under the deleted resource, and the
+     *     types in {@link #DELETE_CASCADES}</li>
+     * </ul>
+     * The response of a successful create or update is then cached under the
+     * resource's own path.
+     */
+    private void afterWrite(String path, Class<?> resourceClass, boolean deleted, Object old, Object result) {
+        final Set<String> paths = Sets.newHashSet();
+        final List<String> prefixes = Lists.newArrayList();
+        final List<Relation> relations = Lists.newArrayList();
+        final Set<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+
+        for (String alias : withAliases(path)) {
+            addWithAncestors(paths, alias);
+        }
+
+        String rootPath = getRootPath(resourceClass);
+        String resourcePath = null;
+        if (rootPath != null) {
+            paths.add(rootPath);
+            if (result instanceof BrktResource && ((BrktResource) result).getId() != null) {
+                resourcePath = rootPath + "/" + ((BrktResource) result).getId();
+            }
+        }
+
+        // If an update doesn't tell us where the resource was before, it may
+        // have moved from any parent.
+        boolean update = !deleted && path.equals(resourcePath);
+        for (Relation relation : RELATIONS) {
+            if (relation.elementClass != resourceClass) {
+                continue;
+            }
+            if (result == null || (update && old == null)) {
+                relations.add(relation);
+                continue;
+            }
+            for (Object resource : new Object[] { old, result }) {
+                String parentId = resource == null ? null : relation.getParentId(resource);
+                if (parentId != null) {
+                    paths.add(relation.prefix + parentId + relation.suffix);
+                }
+            }
+        }
+
+        if (deleted) {
+            for (String alias : withAliases(path)) {
+                prefixes.add(alias + "/");
+            }
+            ResourceType type = ResourceType.forPath(path);
+            if (type != null && DELETE_CASCADES.containsKey(type)) {
+                types.addAll(DELETE_CASCADES.get(type));
+            }
+        }
+
+        Predicate<String> affected = new Predicate<String>() {
+            @Override
+            public boolean apply(String cached) {
+                if (paths.contains(cached) || types.contains(ResourceType.forPath(cached))) {
+                    return true;
+                }
+                for (String prefix : prefixes) {
+                    if (cached.startsWith(prefix)) {
+                        return true;
+                    }
+                }
+                for (Relation relation : relations) {
+                    if (relation.matches(cached)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+        cache.invalidateIf(affected);
+        notFound.invalidateIf(affected);
+
+        if (!deleted && resourcePath != null) {
+            notFound.invalidate(resourcePath);
+            if (isCacheable(resourcePath)) {
+                cache.put(resourcePath, result);
+            }
+        }
+    }
+
+    private boolean isCacheable(String path) {
+        ResourceType type = ResourceType.forPath(path);
+        return type != null && ttlNanos.containsKey(type);
+    }
+
+    /**
+     * Invalidate the cached response for {@code path}.
+     */
+    public void invalidate(String path) {
+        cache.invalidate(path);
+        notFound.invalidate(path);
+    }
+
+    /**
+     * Invalidate all cached responses for {@code type}.
+     */
+    public void invalidate(final ResourceType type) {
+        Preconditions.checkNotNull(type);
+        Predicate<String> ofType = new Predicate<String>() {
+            @Override
+            public boolean apply(String path) {
+                return ResourceType.forPath(path) == type;
+            }
+        };
+        cache.invalidateIf(ofType);
+        notFound.invalidateIf(ofType);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        notFound.invalidateAll();
+    }
+
+    /**
+     * Return the number of cached responses.
+     */
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    public BoundedCache.Stats getCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Return the statistics of the negative cache, where a hit is a
+     * {@code find} that returned {@code null} without contacting the server.
+     */
+    public BoundedCache.Stats getNegativeCacheStats() {
+        return notFound.stats();
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.brkt.client;
 
+import com.brkt.client.util.RequestBody;
 import com.brkt.client.util.RequestBuilder;
 
 import java.util.Collection;
@@ -70,4 +71,12 @@ public class CloudInitRequestBuilder {
     public Map<String, Object> build() {
         return reqBuilder.build();
     }
+
+    /**
+     * Build an immutable {@link RequestBody} that contains all of the added
+     * attributes, already encoded as JSON.
+     */
+    public RequestBody buildBody() {
+        return reqBuilder.buildBody();
+    }
 }
@@ -0,0 +1,355 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.BrktExecutors;
+import com.brkt.client.util.ParallelTasks;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of which resources have changed since the last sync, so that
+ * only those are downloaded again.
+ *
+ * <p>The first sync of a type fetches the complete list and remembers the
+ * modified time of every resource.  Later syncs fetch a listing that binds
+ * only {@code id} and {@code modified_time}, which is cheap to parse, and
+ * compare it with what was remembered, id by id.  New resources and
+ * resources whose modified time changed are then fetched one by one, in
+ * parallel.  If more than {@code fanOutThreshold} resources changed, the
+ * complete list is fetched instead.  A single high-water mark would not be
+ * enough: it misses deletions, and a resource can be written with an older
+ * modified time than one seen before.
+ *
+ * <p>The API has no server-side filter on modified time, so the comparison
+ * happens on the client.  Changes that don't update the modified time are
+ * not seen by an incremental sync.  To repair them, a full sync is done
+ * again once {@code fullResyncInterval} has passed.
+ *
+ * <p>Thread-safe.  Syncs are serialized.
+ */
+public class DeltaSync {
+
+    /**
+     * By default, up to this many changed resources are fetched one by one.
+     */
+    public static final int DEFAULT_FAN_OUT_THRESHOLD = 64;
+
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    public static final long DEFAULT_FULL_RESYNC_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final Set<String> MODIFIED_TIME = Collections.singleton("modified_time");
+
+    /**
+     * The changes to one resource type since the previous sync.
+     */
+    public static class Delta {
+        private final ResourceType type;
+        private final List<?> upserted;
+        private final Set<String> removed;
+        private final boolean fullResync;
+        private final long elapsedNanos;
+
+        Delta(ResourceType type, List<?> upserted, Set<String> removed, boolean fullResync, long elapsedNanos) {
+            this.type = type;
+            this.upserted = Collections.unmodifiableList(upserted);
+            this.removed = Collections.unmodifiableSet(removed);
+            this.fullResync = fullResync;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public ResourceType getType() {
+            return type;
+        }
+
+        /**
+         * Return the resources that were added or modified.  After a full
+         * resync, this is every resource of the type.  The elements are
+         * instances of {@link ResourceType#resourceClass}.
+         */
+        public List<?> getUpserted() {
+            return upserted;
+        }
+
+        /**
+         * Return the ids of the resources that were deleted.
+         */
+        public Set<String> getRemovedIds() {
+            return removed;
+        }
+
+        /**
+         * Return {@code true} if the complete list was fetched, and
+         * {@link #getUpserted} contains every resource of the type.
+         */
+        public boolean isFullResync() {
+            return fullResync;
+        }
+
+        public boolean isEmpty() {
+            return upserted.isEmpty() && removed.isEmpty();
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1000000;
+        }
+
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("type", type)
+                    .add("upserted", upserted.size())
+                    .add("removed", removed.size())
+                    .add("fullResync", fullResync)
+                    .add("elapsedMillis", getElapsedMillis())
+                    .toString();
+        }
+    }
+
+    public static class Builder {
+        private final BrktService service;
+        private final Set<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+        private Executor executor;
+        private int parallelism = DEFAULT_PARALLELISM;
+        private int fanOutThreshold = DEFAULT_FAN_OUT_THRESHOLD;
+        private long fullResyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_FULL_RESYNC_INTERVAL_MILLIS);
+
+        public Builder(BrktService service) {
+            Preconditions.checkNotNull(service);
+            this.service = service;
+        }
+
+        /**
+         * Sync the given resource types.  At least one type is required.
+         */
+        public Builder types(ResourceType... types) {
+            Collections.addAll(this.types, types);
+            return this;
+        }
+
+        /**
+         * Fetch changed resources on the given executor.  The default is
+         * {@link BrktExecutors#getDefaultExecutor}.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Fetch at most {@code parallelism} changed resources at a time.
+         * The default is {@link #DEFAULT_PARALLELISM}.
+         */
+        public Builder parallelism(int parallelism) {
+            Preconditions.checkArgument(parallelism > 0, "parallelism must be positive: " + parallelism);
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Fetch up to {@code fanOutThreshold} changed resources one by one,
+         * and fetch the complete list if more changed.  The default is
+         * {@link #DEFAULT_FAN_OUT_THRESHOLD}.
+         */
+        public Builder fanOutThreshold(int fanOutThreshold) {
+            Preconditions.checkArgument(fanOutThreshold >= 0,
+                    "fanOutThreshold cannot be negative: " + fanOutThreshold);
+            this.fanOutThreshold = fanOutThreshold;
+            return this;
+        }
+
+        /**
+         * Fetch the complete list of a type again once the given duration
+         * has passed since its last full sync.  The default is
+         * {@link #DEFAULT_FULL_RESYNC_INTERVAL_MILLIS}.
+         */
+        public Builder fullResyncInterval(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration > 0, "duration must be positive: " + duration);
+            this.fullResyncIntervalNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        public DeltaSync build() {
+            Preconditions.checkState(!types.isEmpty(), "No resource types specified");
+            return new DeltaSync(this);
+        }
+    }
+
+    /**
+     * What the previous sync saw for one resource type.
+     */
+    private static class TypeState {
+        final Map<String, Timestamp> modifiedTimes = Maps.newHashMap();
+        long lastFullSyncNanos;
+        boolean synced;
+
+        void clear() {
+            modifiedTimes.clear();
+            synced = false;
+        }
+
+        void put(BrktResource resource) {
+            modifiedTimes.put(resource.getId(), resource.getModifiedTime());
+        }
+    }
+
+    private final BrktService service;
+    private final Executor executor;
+    private final int parallelism;
+    private final int fanOutThreshold;
+    private final long fullResyncIntervalNanos;
+    private final Map<ResourceType, TypeState> states = Maps.newEnumMap(ResourceType.class);
+
+    private DeltaSync(Builder builder) {
+        this.service = builder.service;
+        this.executor = builder.executor != null ? builder.executor : BrktExecutors.getDefaultExecutor();
+        this.parallelism = builder.parallelism;
+        this.fanOutThreshold = builder.fanOutThreshold;
+        this.fullResyncIntervalNanos = builder.fullResyncIntervalNanos;
+        for (ResourceType type : builder.types) {
+            states.put(type, new TypeState());
+        }
+    }
+
+    /**
+     * Sync every type, in the order in which {@link ResourceType} declares
+     * them, and return the changes.
+     */
+    public synchronized Map<ResourceType, Delta> sync() throws InterruptedException {
+        Map<ResourceType, Delta> result = Maps.newEnumMap(ResourceType.class);
+        for (ResourceType type : states.keySet()) {
+            result.put(type, sync(type));
+        }
+        return result;
+    }
+
+    /**
+     * Sync one type and return its changes.
+     */
+    public synchronized Delta sync(ResourceType type) throws InterruptedException {
+        TypeState state = states.get(type);
+        Preconditions.checkArgument(state != null, "Type is not synced: " + type);
+        long start = System.nanoTime();
+        if (!state.synced || start - state.lastFullSyncNanos >= fullResyncIntervalNanos) {
+            return fullSync(type, state, start);
+        }
+
+        // Compare the cheap listing with what we saw last time.
+        Set<String> changed = Sets.newLinkedHashSet();
+        Set<String> removed = Sets.newHashSet(state.modifiedTimes.keySet());
+        for (Object element : service.getAll(type, MODIFIED_TIME)) {
+            BrktResource resource = (BrktResource) element;
+            String id = resource.getId();
+            removed.remove(id);
+            if (!state.modifiedTimes.containsKey(id)
+                    || !equal(state.modifiedTimes.get(id), resource.getModifiedTime())) {
+                changed.add(id);
+            }
+        }
+
+        List<Object> upserted = Lists.newArrayList();
+        if (changed.size() <= fanOutThreshold) {
+            List<String> ids = Lists.newArrayList(changed.iterator());
+            List<ParallelTasks.Outcome<Object>> outcomes = ParallelTasks.runAll(
+                    findTasks(type, ids), executor, parallelism);
+            for (int i = 0; i < ids.size(); i++) {
+                Object resource = outcomes.get(i).getOrThrow();
+                if (resource == null) {
+                    // Deleted since the listing.
+                    removed.add(ids.get(i));
+                } else {
+                    upserted.add(resource);
+                }
+            }
+        } else {
+            Set<String> seen = Sets.newHashSet();
+            for (Object element : service.getAll(type)) {
+                String id = ((BrktResource) element).getId();
+                seen.add(id);
+                if (changed.contains(id)) {
+                    upserted.add(element);
+                }
+            }
+            for (String id : changed) {
+                if (!seen.contains(id)) {
+                    removed.add(id);
+                }
+            }
+        }
+
+        for (String id : removed) {
+            state.modifiedTimes.remove(id);
+        }
+        for (Object resource : upserted) {
+            state.put((BrktResource) resource);
+        }
+        return new Delta(type, upserted, removed, false, System.nanoTime() - start);
+    }
+
+    private Delta fullSync(ResourceType type, TypeState state, long start) {
+        List<?> all = service.getAll(type);
+        Set<String> removed = Sets.newHashSet(state.modifiedTimes.keySet());
+        state.clear();
+        for (Object element : all) {
+            BrktResource resource = (BrktResource) element;
+            removed.remove(resource.getId());
+            state.put(resource);
+        }
+        state.synced = true;
+        state.lastFullSyncNanos = start;
+        return new Delta(type, all, removed, true, System.nanoTime() - start);
+    }
+
+    private List<Callable<Object>> findTasks(final ResourceType type, List<String> ids) {
+        List<Callable<Object>> tasks = Lists.newArrayList();
+        for (final String id : ids) {
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return service.find(type.rootPath + "/" + id, type.resourceClass);
+                }
+            });
+        }
+        return tasks;
+    }
+
+    private static boolean equal(Timestamp a, Timestamp b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Forget what was seen, so that the next sync of every type is a full sync.
+     */
+    public synchronized void reset() {
+        for (TypeState state : states.values()) {
+            state.clear();
+        }
+    }
+}
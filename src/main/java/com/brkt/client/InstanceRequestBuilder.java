@@ -16,6 +16,7 @@
 
 package com.brkt.client;
 
+import com.brkt.client.util.RequestBody;
 import com.brkt.client.util.RequestBuilder;
 
 import java.sql.Timestamp;
@@ -91,4 +92,12 @@ public class InstanceRequestBuilder extends RequestBuilder {
     public Map<String, Object> build() {
         return reqBuilder.build();
     }
+
+    /**
+     * Build an immutable {@link RequestBody} that contains all of the added
+     * attributes, already encoded as JSON.
+     */
+    public RequestBody buildBody() {
+        return reqBuilder.buildBody();
+    }
 }
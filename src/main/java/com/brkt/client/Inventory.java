@@ -0,0 +1,446 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.SecondaryIndex;
+import com.google.common.base.Function;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory copy of the account's instances and volumes, indexed by the
+ * resources they refer to.  Questions such as "which instances are in
+ * workload X" are answered with a hash lookup instead of a scan of every
+ * instance.
+ *
+ * <p>The inventory is fed with {@link #refresh}, {@link #update(InventorySnapshot)},
+ * {@link #apply(DeltaSync.Delta)} or the {@code put} and {@code remove}
+ * methods.  The indexes are updated incrementally: a resource whose
+ * references didn't change doesn't touch them.
+ *
+ * <p>Thread-safe.  Lookups return copies, so they don't change when the
+ * inventory is updated.
+ */
+public class Inventory {
+
+    /**
+     * The resources of one type, by id, plus their secondary indexes.
+     */
+    private static class Table<T extends BrktResource> {
+        final Map<String, T> byId = Maps.newLinkedHashMap();
+        final List<SecondaryIndex<T>> indexes = Lists.newArrayList();
+
+        SecondaryIndex<T> addIndex(String name, Function<T, String> keyFunction) {
+            return addIndex(SecondaryIndex.forKey(name, keyFunction));
+        }
+
+        SecondaryIndex<T> addIndex(SecondaryIndex<T> index) {
+            indexes.add(index);
+            return index;
+        }
+
+        void put(T resource) {
+            Preconditions.checkNotNull(resource);
+            String id = resource.getId();
+            Preconditions.checkArgument(id != null, "Resource has no id: " + resource);
+            T old = byId.put(id, resource);
+            for (SecondaryIndex<T> index : indexes) {
+                index.update(id, old, resource);
+            }
+        }
+
+        boolean remove(String id) {
+            T old = byId.remove(id);
+            if (old == null) {
+                return false;
+            }
+            for (SecondaryIndex<T> index : indexes) {
+                index.update(id, old, null);
+            }
+            return true;
+        }
+
+        /**
+         * Make the table contain exactly {@code resources}.
+         */
+        void replaceAll(Collection<? extends T> resources) {
+            Set<String> ids = Sets.newHashSet();
+            for (T resource : resources) {
+                put(resource);
+                ids.add(resource.getId());
+            }
+            Iterator<Map.Entry<String, T>> it = byId.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, T> entry = it.next();
+                if (!ids.contains(entry.getKey())) {
+                    it.remove();
+                    for (SecondaryIndex<T> index : indexes) {
+                        index.update(entry.getKey(), entry.getValue(), null);
+                    }
+                }
+            }
+        }
+
+        List<T> lookup(SecondaryIndex<T> index, String key) {
+            List<T> result = Lists.newArrayList();
+            for (String id : index.get(key)) {
+                result.add(byId.get(id));
+            }
+            return Collections.unmodifiableList(result);
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Table<Instance> instances = new Table<Instance>();
+    private final SecondaryIndex<Instance> instancesByWorkload = instances.addIndex("workload",
+            new Function<Instance, String>() {
+                @Override
+                public String apply(Instance instance) {
+                    return instance.getWorkloadId();
+                }
+            });
+    private final SecondaryIndex<Instance> instancesByZone = instances.addIndex("zone",
+            new Function<Instance, String>() {
+                @Override
+                public String apply(Instance instance) {
+                    return instance.getZoneId();
+                }
+            });
+    private final SecondaryIndex<Instance> instancesByBillingGroup = instances.addIndex("billingGroup",
+            new Function<Instance, String>() {
+                @Override
+                public String apply(Instance instance) {
+                    return instance.getBillingGroupId();
+                }
+            });
+    private final SecondaryIndex<Instance> instancesByLoadBalancer = instances.addIndex("loadBalancer",
+            new Function<Instance, String>() {
+                @Override
+                public String apply(Instance instance) {
+                    return instance.getLoadBalancerId();
+                }
+            });
+    private final SecondaryIndex<Instance> instancesBySecurityGroup = instances.addIndex(
+            new SecondaryIndex<Instance>("securityGroups", new Function<Instance, Collection<String>>() {
+                @Override
+                public Collection<String> apply(Instance instance) {
+                    return instance.getSecurityGroupIds();
+                }
+            }));
+
+    private final Table<Volume> volumes = new Table<Volume>();
+    private final SecondaryIndex<Volume> volumesByInstance = volumes.addIndex("instance",
+            new Function<Volume, String>() {
+                @Override
+                public String apply(Volume volume) {
+                    return volume.getInstanceId();
+                }
+            });
+    private final SecondaryIndex<Volume> volumesByComputingCell = volumes.addIndex("computingCell",
+            new Function<Volume, String>() {
+                @Override
+                public String apply(Volume volume) {
+                    return volume.getComputingCellId();
+                }
+            });
+    private final SecondaryIndex<Volume> volumesByParent = volumes.addIndex("parent",
+            new Function<Volume, String>() {
+                @Override
+                public String apply(Volume volume) {
+                    return volume.getParent();
+                }
+            });
+    private final SecondaryIndex<Volume> volumesByBillingGroup = volumes.addIndex("billingGroup",
+            new Function<Volume, String>() {
+                @Override
+                public String apply(Volume volume) {
+                    return volume.getBillingGroupId();
+                }
+            });
+
+    /**
+     * Replace the instances and volumes with the current lists from the
+     * server.
+     */
+    public void refresh(BrktService service) {
+        Preconditions.checkNotNull(service);
+        List<Instance> allInstances = service.getAllInstances();
+        List<Volume> allVolumes = service.getAllVolumes();
+        lock.writeLock().lock();
+        try {
+            instances.replaceAll(allInstances);
+            volumes.replaceAll(allVolumes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the instances and volumes with the ones in {@code snapshot}.
+     * Types that the snapshot doesn't contain are left as they are.
+     */
+    public void update(InventorySnapshot snapshot) {
+        Preconditions.checkNotNull(snapshot);
+        lock.writeLock().lock();
+        try {
+            if (snapshot.contains(ResourceType.INSTANCE)) {
+                instances.replaceAll(snapshot.getInstances());
+            }
+            if (snapshot.contains(ResourceType.VOLUME)) {
+                volumes.replaceAll(snapshot.getVolumes());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Apply the changes from a {@link DeltaSync}.  Deltas of types other
+     * than instances and volumes are ignored.
+     */
+    @SuppressWarnings("unchecked")
+    public void apply(DeltaSync.Delta delta) {
+        Preconditions.checkNotNull(delta);
+        if (delta.getType() == ResourceType.INSTANCE) {
+            apply(instances, (List<Instance>) delta.getUpserted(), delta);
+        } else if (delta.getType() == ResourceType.VOLUME) {
+            apply(volumes, (List<Volume>) delta.getUpserted(), delta);
+        }
+    }
+
+    private <T extends BrktResource> void apply(Table<T> table, List<T> upserted, DeltaSync.Delta delta) {
+        lock.writeLock().lock();
+        try {
+            if (delta.isFullResync()) {
+                table.replaceAll(upserted);
+                return;
+            }
+            for (T resource : upserted) {
+                table.put(resource);
+            }
+            for (String id : delta.getRemovedIds()) {
+                table.remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Instances.
+
+    /**
+     * Add an instance, or replace the instance with the same id.
+     */
+    public void putInstance(Instance instance) {
+        lock.writeLock().lock();
+        try {
+            instances.put(instance);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the instance with the given id.  Return {@code false} if there
+     * was none.
+     */
+    public boolean removeInstance(String instanceId) {
+        Preconditions.checkNotNull(instanceId);
+        lock.writeLock().lock();
+        try {
+            return instances.remove(instanceId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace all instances with {@code newInstances}.
+     */
+    public void replaceInstances(Collection<Instance> newInstances) {
+        Preconditions.checkNotNull(newInstances);
+        lock.writeLock().lock();
+        try {
+            instances.replaceAll(newInstances);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Instance getInstance(String instanceId) {
+        lock.readLock().lock();
+        try {
+            return instances.byId.get(instanceId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Instance> getInstances() {
+        lock.readLock().lock();
+        try {
+            return ImmutableList.copyOf(instances.byId.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Instance> lookupInstances(SecondaryIndex<Instance> index, String key) {
+        Preconditions.checkNotNull(key);
+        lock.readLock().lock();
+        try {
+            return instances.lookup(index, key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Instance> getInstancesInWorkload(String workloadId) {
+        return lookupInstances(instancesByWorkload, workloadId);
+    }
+
+    public List<Instance> getInstancesInZone(String zoneId) {
+        return lookupInstances(instancesByZone, zoneId);
+    }
+
+    public List<Instance> getInstancesInBillingGroup(String billingGroupId) {
+        return lookupInstances(instancesByBillingGroup, billingGroupId);
+    }
+
+    public List<Instance> getInstancesBehindLoadBalancer(String loadBalancerId) {
+        return lookupInstances(instancesByLoadBalancer, loadBalancerId);
+    }
+
+    public List<Instance> getInstancesInSecurityGroup(String securityGroupId) {
+        return lookupInstances(instancesBySecurityGroup, securityGroupId);
+    }
+
+    // Volumes.
+
+    /**
+     * Add a volume, or replace the volume with the same id.
+     */
+    public void putVolume(Volume volume) {
+        lock.writeLock().lock();
+        try {
+            volumes.put(volume);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the volume with the given id.  Return {@code false} if there
+     * was none.
+     */
+    public boolean removeVolume(String volumeId) {
+        Preconditions.checkNotNull(volumeId);
+        lock.writeLock().lock();
+        try {
+            return volumes.remove(volumeId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace all volumes with {@code newVolumes}.
+     */
+    public void replaceVolumes(Collection<Volume> newVolumes) {
+        Preconditions.checkNotNull(newVolumes);
+        lock.writeLock().lock();
+        try {
+            volumes.replaceAll(newVolumes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Volume getVolume(String volumeId) {
+        lock.readLock().lock();
+        try {
+            return volumes.byId.get(volumeId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Volume> getVolumes() {
+        lock.readLock().lock();
+        try {
+            return ImmutableList.copyOf(volumes.byId.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Volume> lookupVolumes(SecondaryIndex<Volume> index, String key) {
+        Preconditions.checkNotNull(key);
+        lock.readLock().lock();
+        try {
+            return volumes.lookup(index, key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Volume> getVolumesForInstance(String instanceId) {
+        return lookupVolumes(volumesByInstance, instanceId);
+    }
+
+    public List<Volume> getVolumesInComputingCell(String computingCellId) {
+        return lookupVolumes(volumesByComputingCell, computingCellId);
+    }
+
+    /**
+     * Return the volumes whose parent is the given volume, such as its
+     * snapshots and clones.
+     */
+    public List<Volume> getVolumeChildren(String volumeId) {
+        return lookupVolumes(volumesByParent, volumeId);
+    }
+
+    public List<Volume> getVolumesInBillingGroup(String billingGroupId) {
+        return lookupVolumes(volumesByBillingGroup, billingGroupId);
+    }
+
+    public String toString() {
+        lock.readLock().lock();
+        try {
+            return MoreObjects.toStringHelper(this)
+                    .add("instances", instances.byId.size())
+                    .add("volumes", volumes.byId.size())
+                    .toString();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
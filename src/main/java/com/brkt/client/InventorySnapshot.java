@@ -0,0 +1,243 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.ParallelTasks;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * An immutable snapshot of the account's resources, fetched with one list
+ * request per {@link ResourceType}.  The requests run concurrently, so the
+ * wall-clock time is close to that of the slowest request instead of the sum
+ * of all of them.  The time that each request took is recorded.
+ *
+ * <p>The lists are fetched independently, so a snapshot is not consistent
+ * across types if resources change while it is being fetched.
+ */
+public class InventorySnapshot {
+
+    /**
+     * The default number of concurrent requests.
+     */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private final Map<ResourceType, List<?>> lists;
+    private final Map<ResourceType, Long> fetchMillis;
+    private final long startTimeMillis;
+    private final long elapsedMillis;
+
+    private InventorySnapshot(Map<ResourceType, List<?>> lists, Map<ResourceType, Long> fetchMillis,
+                              long startTimeMillis, long elapsedMillis) {
+        this.lists = Collections.unmodifiableMap(lists);
+        this.fetchMillis = Collections.unmodifiableMap(fetchMillis);
+        this.startTimeMillis = startTimeMillis;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Fetch all resource types.  See {@link #fetch(BrktService, Executor, int, Set)}.
+     */
+    public static InventorySnapshot fetch(BrktService service, Executor executor, int parallelism)
+            throws InterruptedException {
+        return fetch(service, executor, parallelism, EnumSet.allOf(ResourceType.class));
+    }
+
+    /**
+     * Fetch the given resource types, running at most {@code parallelism}
+     * requests at the same time on {@code executor}.  If any request fails,
+     * wait for the others to finish and then throw the first failure, for
+     * example a {@link BrktService.RuntimeHttpError}.
+     */
+    public static InventorySnapshot fetch(final BrktService service, Executor executor, int parallelism,
+                                          Set<ResourceType> types)
+            throws InterruptedException {
+        Preconditions.checkNotNull(service);
+        Preconditions.checkNotNull(types);
+
+        // Start the largest lists first, since they usually take longest.
+        List<ResourceType> order = Lists.newArrayList();
+        for (ResourceType type : new ResourceType[] { ResourceType.INSTANCE, ResourceType.VOLUME }) {
+            if (types.contains(type)) {
+                order.add(type);
+            }
+        }
+        for (ResourceType type : types) {
+            if (!order.contains(type)) {
+                order.add(type);
+            }
+        }
+
+        List<Callable<List<?>>> tasks = Lists.newArrayList();
+        for (final ResourceType type : order) {
+            tasks.add(new Callable<List<?>>() {
+                @Override
+                public List<?> call() {
+                    return service.getAll(type);
+                }
+            });
+        }
+
+        long startTimeMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        List<ParallelTasks.Outcome<List<?>>> outcomes = ParallelTasks.runAll(tasks, executor, parallelism);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        Map<ResourceType, List<?>> lists = new EnumMap<ResourceType, List<?>>(ResourceType.class);
+        Map<ResourceType, Long> fetchMillis = new EnumMap<ResourceType, Long>(ResourceType.class);
+        for (int i = 0; i < order.size(); i++) {
+            ParallelTasks.Outcome<List<?>> outcome = outcomes.get(i);
+            lists.put(order.get(i), Collections.unmodifiableList(outcome.getOrThrow()));
+            fetchMillis.put(order.get(i), outcome.getElapsedMillis());
+        }
+        return new InventorySnapshot(lists, fetchMillis, startTimeMillis, elapsedMillis);
+    }
+
+    /**
+     * Return {@code true} if this snapshot contains the given resource type.
+     */
+    public boolean contains(ResourceType type) {
+        return lists.containsKey(type);
+    }
+
+    /**
+     * Return the resources of the given type.
+     *
+     * @throws IllegalArgumentException if {@code resourceClass} doesn't match the type
+     * @throws IllegalStateException if the type was not fetched
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> get(ResourceType type, Class<T> resourceClass) {
+        Preconditions.checkArgument(type.resourceClass == resourceClass,
+                "%s is not the resource class of %s", resourceClass, type);
+        List<?> list = lists.get(type);
+        if (list == null) {
+            throw new IllegalStateException(type + " is not in this snapshot");
+        }
+        return (List<T>) list;
+    }
+
+    public List<OperatingSystem> getOperatingSystems() {
+        return get(ResourceType.OPERATING_SYSTEM, OperatingSystem.class);
+    }
+
+    public List<ImageDefinition> getImageDefinitions() {
+        return get(ResourceType.IMAGE_DEFINITION, ImageDefinition.class);
+    }
+
+    public List<CspImage> getCspImages() {
+        return get(ResourceType.CSP_IMAGE, CspImage.class);
+    }
+
+    public List<MachineType> getMachineTypes() {
+        return get(ResourceType.MACHINE_TYPE, MachineType.class);
+    }
+
+    public List<BillingGroup> getBillingGroups() {
+        return get(ResourceType.BILLING_GROUP, BillingGroup.class);
+    }
+
+    public List<Network> getNetworks() {
+        return get(ResourceType.NETWORK, Network.class);
+    }
+
+    public List<Zone> getZones() {
+        return get(ResourceType.ZONE, Zone.class);
+    }
+
+    public List<SecurityGroup> getSecurityGroups() {
+        return get(ResourceType.SECURITY_GROUP, SecurityGroup.class);
+    }
+
+    public List<ComputingCell> getComputingCells() {
+        return get(ResourceType.COMPUTING_CELL, ComputingCell.class);
+    }
+
+    public List<Volume> getVolumes() {
+        return get(ResourceType.VOLUME, Volume.class);
+    }
+
+    public List<CloudInit> getCloudInits() {
+        return get(ResourceType.CLOUD_INIT, CloudInit.class);
+    }
+
+    public List<Instance> getInstances() {
+        return get(ResourceType.INSTANCE, Instance.class);
+    }
+
+    public List<Workload> getWorkloads() {
+        return get(ResourceType.WORKLOAD, Workload.class);
+    }
+
+    public List<LoadBalancer> getLoadBalancers() {
+        return get(ResourceType.LOAD_BALANCER, LoadBalancer.class);
+    }
+
+    public List<LoadBalancerListener> getLoadBalancerListeners() {
+        return get(ResourceType.LOAD_BALANCER_LISTENER, LoadBalancerListener.class);
+    }
+
+    /**
+     * Return how long the request for the given type took, in milliseconds.
+     */
+    public long getFetchMillis(ResourceType type) {
+        Long millis = fetchMillis.get(type);
+        if (millis == null) {
+            throw new IllegalStateException(type + " is not in this snapshot");
+        }
+        return millis;
+    }
+
+    /**
+     * Return how long each request took, in milliseconds.
+     */
+    public Map<ResourceType, Long> getFetchMillis() {
+        return fetchMillis;
+    }
+
+    /**
+     * Return the wall-clock time that fetching the snapshot took, in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Return the time that fetching started, in milliseconds since the epoch.
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public String toString() {
+        MoreObjects.ToStringHelper helper = MoreObjects.toStringHelper(this);
+        for (Map.Entry<ResourceType, List<?>> entry : lists.entrySet()) {
+            helper.add(entry.getKey().name(), entry.getValue().size());
+        }
+        return helper.add("elapsedMillis", elapsedMillis).toString();
+    }
+}
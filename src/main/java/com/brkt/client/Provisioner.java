@@ -0,0 +1,434 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.ProvisioningPlan.Step;
+import com.brkt.client.util.DependencyGraph;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Creates the resources of a {@link ProvisioningPlan}.  A step starts as
+ * soon as every step that it refers to has finished, so independent
+ * branches of the plan are created concurrently, with up to
+ * {@link BulkOptions#getParallelism} creates at a time.  Calls that the
+ * server rejects with {@code 429 Too Many Requests} are retried as
+ * described in {@link BulkOptions}.  Other errors are not retried, since
+ * a create may have succeeded on the server.
+ *
+ * <p>If a step fails, the steps that depend on it are skipped, and their
+ * results fail with an {@code IllegalStateException}.  Independent steps
+ * still run.  The start and end time of every step is recorded, and
+ * {@link Result#getCriticalPath} returns the chain of steps that
+ * determined the total time.
+ */
+public class Provisioner {
+
+    /**
+     * Receives progress reports.  May be called concurrently from several
+     * threads.
+     */
+    public interface Listener {
+        /**
+         * Called when a step succeeded, failed or was skipped.
+         * {@code completed} counts every finished step, including this one.
+         */
+        void onCompleted(StepResult result, int completed, int total);
+    }
+
+    /**
+     * The outcome and timing of one step.
+     */
+    public static class StepResult {
+        private final Step<?> step;
+        private final BrktResource resource;
+        private final Throwable error;
+        private final long startNanos;
+        private final long endNanos;
+        private final Step<?> waitedFor;
+
+        StepResult(Step<?> step, BrktResource resource, Throwable error, long startNanos, long endNanos,
+                   Step<?> waitedFor) {
+            this.step = step;
+            this.resource = resource;
+            this.error = error;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+            this.waitedFor = waitedFor;
+        }
+
+        public Step<?> getStep() {
+            return step;
+        }
+
+        /**
+         * Return the created resource, or {@code null} if the step failed
+         * or was skipped.
+         */
+        public BrktResource getResource() {
+            return resource;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * Return when the step started, in milliseconds after the plan
+         * started.
+         */
+        public long getStartMillis() {
+            return startNanos / 1000000;
+        }
+
+        /**
+         * Return how long the step took, including rate limiting and
+         * retries.  Skipped steps take {@code 0}.
+         */
+        public long getElapsedMillis() {
+            return (endNanos - startNanos) / 1000000;
+        }
+
+        /**
+         * Return the dependency that finished last, and so determined when
+         * this step could start, or {@code null} if it had none.
+         */
+        public Step<?> getWaitedFor() {
+            return waitedFor;
+        }
+
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("step", step.getName())
+                    .add("resourceId", resource != null ? resource.getId() : null)
+                    .add("error", error)
+                    .add("startMillis", getStartMillis())
+                    .add("elapsedMillis", getElapsedMillis())
+                    .toString();
+        }
+    }
+
+    /**
+     * The results of every step of a plan.
+     */
+    public static class Result {
+        private final Map<Step<?>, StepResult> results;
+        private final long elapsedMillis;
+
+        Result(Map<Step<?>, StepResult> results, long elapsedMillis) {
+            this.results = Collections.unmodifiableMap(results);
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Return the resource that {@code step} created, or {@code null}
+         * if it failed or was skipped.
+         */
+        @SuppressWarnings("unchecked")
+        public <T extends BrktResource> T get(Step<T> step) {
+            return (T) getStepResult(step).getResource();
+        }
+
+        public StepResult getStepResult(Step<?> step) {
+            StepResult result = results.get(step);
+            Preconditions.checkArgument(result != null, "Not in the plan: %s", step);
+            return result;
+        }
+
+        /**
+         * Return the results of all steps, in the order in which they were
+         * added to the plan.
+         */
+        public List<StepResult> getStepResults() {
+            return Lists.newArrayList(results.values().iterator());
+        }
+
+        public List<StepResult> getFailures() {
+            List<StepResult> failures = Lists.newArrayList();
+            for (StepResult result : results.values()) {
+                if (!result.isSuccess()) {
+                    failures.add(result);
+                }
+            }
+            return failures;
+        }
+
+        public boolean isAllSuccessful() {
+            return getFailures().isEmpty();
+        }
+
+        /**
+         * Return the chain of steps that ended last: the step that finished
+         * last, preceded by the dependency that it waited for, and so on.
+         * Making any other step faster doesn't shorten the plan.
+         */
+        public List<StepResult> getCriticalPath() {
+            StepResult last = null;
+            for (StepResult result : results.values()) {
+                if (last == null || result.endNanos > last.endNanos) {
+                    last = result;
+                }
+            }
+            List<StepResult> path = Lists.newArrayList();
+            for (StepResult result = last; result != null;
+                 result = result.waitedFor != null ? results.get(result.waitedFor) : null) {
+                path.add(0, result);
+            }
+            return path;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("steps", results.size())
+                    .add("failures", getFailures().size())
+                    .add("elapsedMillis", elapsedMillis)
+                    .toString();
+        }
+    }
+
+    public static class Builder {
+        private final BrktService service;
+        private BulkOptions options;
+        private Listener listener;
+
+        public Builder(BrktService service) {
+            Preconditions.checkNotNull(service);
+            this.service = service;
+        }
+
+        /**
+         * The default is {@link BulkOptions#defaults}.
+         */
+        public Builder options(BulkOptions options) {
+            this.options = options;
+            return this;
+        }
+
+        public Builder listener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public Provisioner build() {
+            return new Provisioner(this);
+        }
+    }
+
+    private final BrktService service;
+    private final BulkOptions options;
+    private final Listener listener;
+
+    private Provisioner(Builder builder) {
+        this.service = builder.service;
+        this.options = builder.options != null ? builder.options : BulkOptions.defaults();
+        this.listener = builder.listener;
+    }
+
+    /**
+     * Create the resources of {@code plan} and return the result of each
+     * step.  Returns when every step has finished or been skipped.
+     *
+     * @throws IllegalStateException if the references form a cycle
+     */
+    public Result run(ProvisioningPlan plan) throws InterruptedException {
+        Preconditions.checkNotNull(plan);
+        return new Run(plan.buildGraph()).run(plan);
+    }
+
+    /**
+     * The state of one call to {@link #run}.
+     */
+    private class Run {
+        final DependencyGraph<Step<?>> graph;
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition changed = lock.newCondition();
+        final long start = System.nanoTime();
+
+        // Guarded by lock.
+        final Map<Step<?>, Integer> remaining = Maps.newHashMap();
+        final Map<Step<?>, String> createdIds = Maps.newHashMap();
+        final Map<Step<?>, StepResult> results = Maps.newHashMap();
+        final Queue<Step<?>> ready = new ArrayDeque<Step<?>>();
+        int running;
+
+        Run(DependencyGraph<Step<?>> graph) {
+            this.graph = graph;
+        }
+
+        Result run(ProvisioningPlan plan) throws InterruptedException {
+            for (Step<?> step : plan.getSteps()) {
+                int count = graph.getDependencies(step).size();
+                remaining.put(step, count);
+                if (count == 0) {
+                    ready.add(step);
+                }
+            }
+
+            lock.lock();
+            try {
+                while (results.size() < graph.size()) {
+                    while (running < options.getParallelism() && !ready.isEmpty()) {
+                        start(ready.poll());
+                    }
+                    // Steps may have finished inside start(), with a direct
+                    // or rejecting executor.  Nothing would signal then.
+                    if (results.size() < graph.size()) {
+                        changed.await();
+                    }
+                }
+            } finally {
+                // If interrupted, the running steps still finish, but nothing new starts.
+                ready.clear();
+                lock.unlock();
+            }
+
+            Map<Step<?>, StepResult> ordered = Maps.newLinkedHashMap();
+            for (Step<?> step : plan.getSteps()) {
+                ordered.put(step, results.get(step));
+            }
+            return new Result(ordered, (System.nanoTime() - start) / 1000000);
+        }
+
+        /**
+         * Start {@code step} on the executor.  Must be called while holding
+         * the lock.
+         */
+        void start(final Step<?> step) {
+            final Map<Step<?>, String> ids = Maps.newHashMap(createdIds);
+            final long stepStart = System.nanoTime() - start;
+            running++;
+            try {
+                options.getExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        BrktResource resource = null;
+                        Throwable error = null;
+                        try {
+                            resource = createWithRetries(step, ids);
+                        } catch (Throwable t) {
+                            error = t;
+                        }
+                        finish(step, resource, error, stepStart);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                running--;
+                record(step, null, e, stepStart, stepStart);
+            }
+        }
+
+        void finish(Step<?> step, BrktResource resource, Throwable error, long stepStart) {
+            lock.lock();
+            try {
+                running--;
+                record(step, resource, error, stepStart, System.nanoTime() - start);
+                changed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Record the result of {@code step}, and make its dependents ready
+         * or skip them.  Must be called while holding the lock.
+         */
+        void record(Step<?> step, BrktResource resource, Throwable error, long stepStart, long stepEnd) {
+            StepResult result = new StepResult(step, resource, error, stepStart, stepEnd, lastDependency(step));
+            results.put(step, result);
+            if (error == null) {
+                createdIds.put(step, resource.getId());
+            }
+            if (listener != null) {
+                try {
+                    listener.onCompleted(result, results.size(), graph.size());
+                } catch (RuntimeException e) {
+                    // Don't let a listener stop the plan.
+                }
+            }
+
+            for (Step<?> dependent : graph.getDependents(step)) {
+                if (results.containsKey(dependent)) {
+                    continue;
+                }
+                if (error != null) {
+                    record(dependent, null, new IllegalStateException(
+                            "Skipped because " + step.getName() + " failed"), stepEnd, stepEnd);
+                    continue;
+                }
+                int count = remaining.get(dependent) - 1;
+                remaining.put(dependent, count);
+                if (count == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        /**
+         * Return the dependency of {@code step} that finished last, or
+         * {@code null}.  Must be called while holding the lock.
+         */
+        Step<?> lastDependency(Step<?> step) {
+            Step<?> last = null;
+            for (Step<?> dependency : graph.getDependencies(step)) {
+                StepResult result = results.get(dependency);
+                if (result != null && (last == null || result.endNanos > results.get(last).endNanos)) {
+                    last = dependency;
+                }
+            }
+            return last;
+        }
+    }
+
+    private BrktResource createWithRetries(Step<?> step, Map<Step<?>, String> createdIds)
+            throws InterruptedException {
+        long delayMillis = options.getRetryDelayMillis();
+        for (int attempt = 0; ; attempt++) {
+            options.acquire();
+            try {
+                BrktResource resource = step.create(service, createdIds);
+                Preconditions.checkState(resource != null && resource.getId() != null,
+                        "%s returned no id", step);
+                return resource;
+            } catch (BrktService.RuntimeHttpError e) {
+                if (e.status != 429 || attempt >= options.getMaxRetries()) {
+                    throw e;
+                }
+            }
+            Thread.sleep(delayMillis);
+            delayMillis *= 2;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.DependencyGraph;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Declares a set of resources to create and the references between them,
+ * for {@link Provisioner} to create in parallel.
+ *
+ * <p>Each method adds a {@link Step} and returns it.  A step can be used as
+ * an attribute value of a later step, on its own or as an element of a
+ * list, wherever the id of the created resource is expected.  The
+ * provisioner replaces it with the id once the resource has been created,
+ * and doesn't start the later step before then:
+ *
+ * <pre>
+ * ProvisioningPlan plan = new ProvisioningPlan();
+ * Step&lt;Workload&gt; workload = plan.workload("web", workloadAttrs);
+ * Map&lt;String, Object&gt; instanceAttrs = ...;
+ * instanceAttrs.put("workload", workload);
+ * plan.instance("web-1", instanceAttrs);
+ * </pre>
+ *
+ * <p>Not thread-safe.  A plan must not be changed while it is running.
+ */
+public class ProvisioningPlan {
+
+    /**
+     * Creates the resource of a step from its resolved attributes.
+     */
+    interface Creator<T> {
+        T create(BrktService service, Object parentId, Map<String, Object> resolved);
+    }
+
+    /**
+     * One resource to create.
+     */
+    public static class Step<T extends BrktResource> {
+        private final String name;
+        private final Creator<T> creator;
+        private final Object parent;
+        private final Map<String, Object> attrs;
+        private final Set<Step<?>> extraDependencies = Sets.newLinkedHashSet();
+
+        Step(String name, Creator<T> creator, Object parent, Map<String, Object> attrs) {
+            this.name = name;
+            this.creator = creator;
+            this.parent = parent;
+            this.attrs = Maps.newLinkedHashMap(attrs);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Don't start this step until {@code steps} have finished, even
+         * though it doesn't refer to them.
+         */
+        public Step<T> dependsOn(Step<?>... steps) {
+            for (Step<?> step : steps) {
+                Preconditions.checkNotNull(step);
+                extraDependencies.add(step);
+            }
+            return this;
+        }
+
+        /**
+         * Return the steps that this step refers to or explicitly depends on.
+         */
+        Set<Step<?>> getDependencies() {
+            Set<Step<?>> result = Sets.newLinkedHashSet();
+            collectSteps(parent, result);
+            for (Object value : attrs.values()) {
+                collectSteps(value, result);
+            }
+            result.addAll(extraDependencies);
+            return result;
+        }
+
+        T create(BrktService service, Map<Step<?>, String> createdIds) {
+            Map<String, Object> resolved = Maps.newLinkedHashMap();
+            for (Map.Entry<String, Object> entry : attrs.entrySet()) {
+                resolved.put(entry.getKey(), resolve(entry.getValue(), createdIds));
+            }
+            return creator.create(service, resolve(parent, createdIds), resolved);
+        }
+
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("name", name)
+                    .toString();
+        }
+    }
+
+    private static void collectSteps(Object value, Set<Step<?>> result) {
+        if (value instanceof Step) {
+            result.add((Step<?>) value);
+        } else if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                collectSteps(element, result);
+            }
+        }
+    }
+
+    private static Object resolve(Object value, Map<Step<?>, String> createdIds) {
+        if (value instanceof Step) {
+            String id = createdIds.get(value);
+            Preconditions.checkState(id != null, "%s has not been created", value);
+            return id;
+        }
+        if (value instanceof Collection) {
+            List<Object> result = Lists.newArrayList();
+            for (Object element : (Collection<?>) value) {
+                result.add(resolve(element, createdIds));
+            }
+            return result;
+        }
+        return value;
+    }
+
+    private final Map<String, Step<?>> steps = Maps.newLinkedHashMap();
+
+    private <T extends BrktResource> Step<T> add(String name, Creator<T> creator, Object parent,
+                                                Map<String, Object> attrs) {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkNotNull(attrs);
+        Preconditions.checkArgument(!steps.containsKey(name), "Duplicate step name: %s", name);
+        Step<T> step = new Step<T>(name, creator, parent, attrs);
+        steps.put(name, step);
+        return step;
+    }
+
+    public Step<BillingGroup> billingGroup(String name, Map<String, Object> attrs) {
+        return add(name, new Creator<BillingGroup>() {
+            @Override
+            public BillingGroup create(BrktService service, Object parentId, Map<String, Object> resolved) {
+                return service.createBillingGroup(resolved);
+            }
+        }, null, attrs);
+    }
+
+    public Step<Workload> workload(String name, Map<String, Object> attrs) {
+        return add(name, new Creator<Workload>() {
+            @Override
+            public Workload create(BrktService service, Object parentId, Map<String, Object> resolved) {
+                return service.createWorkload(resolved);
+            }
+        }, null, attrs);
+    }
+
+    /**
+     * @param network the network's id
+     */
+    public Step<SecurityGroup> securityGroup(String name, String network, Map<String, Object> attrs) {
+        Preconditions.checkNotNull(network);
+        return add(name, new Creator<SecurityGroup>() {
+            @Override
+            public SecurityGroup create(BrktService service, Object parentId, Map<String, Object> resolved) {
+                return service.createSecurityGroup((String) parentId, resolved);
+            }
+        }, network, attrs);
+    }
+
+    /**
+     * @param securityGroup the security group's id, or the step that creates it
+     */
+    public Step<SecurityGroupRule> securityGroupRule(String name, Object securityGroup, Map<String, Object> attrs) {
+        Preconditions.checkArgument(securityGroup instanceof String || securityGroup instanceof Step,
+                "securityGroup must be an id or a step: %s", securityGroup);
+        return add(name, new Creator<SecurityGroupRule>() {
+            @Override
+            public SecurityGroupRule create(BrktService service, Object parentId, Map<String, Object> resolved) {
+                return service.createSecurityGroupRule((String) parentId, resolved);
+            }
+        }, securityGroup, attrs);
+    }
+
+    public Step<CloudInit> cloudInit(String name, Map<String, Object> attrs) {
+        return add(name, new Creator<CloudInit>() {
+            @Override
+            public CloudInit create(BrktService service, Object parentId, Map<String, Object> resolved) {
+                return service.createCloudInit(resolved);
+            }
+        }, null, attrs);
+    }
+
+    public Step<Instance> instance(String name, Map<String, Object> attrs) {
+        return add(name, new Creator<Instance>() {
+            @Override
+            public Instance create(BrktService service, Object parentId, Map<String, Object> resolved) {
+                return service.createInstance(resolved);
+            }
+        }, null, attrs);
+    }
+
+    public Step<Volume> volume(String name, Map<String, Object> attrs) {
+        return add(name, new Creator<Volume>() {
+            @Override
+            public Volume create(BrktService service, Object parentId, Map<String, Object> resolved) {
+                return service.createVolume(resolved);
+            }
+        }, null, attrs);
+    }
+
+    public Step<LoadBalancer> loadBalancer(String name, Map<String, Object> attrs) {
+        return add(name, new Creator<LoadBalancer>() {
+            @Override
+            public LoadBalancer create(BrktService service, Object parentId, Map<String, Object> resolved) {
+                return service.createLoadBalancer(resolved);
+            }
+        }, null, attrs);
+    }
+
+    public Step<LoadBalancerListener> loadBalancerListener(String name, Map<String, Object> attrs) {
+        return add(name, new Creator<LoadBalancerListener>() {
+            @Override
+            public LoadBalancerListener create(BrktService service, Object parentId, Map<String, Object> resolved) {
+                return service.createLoadBalancerListener(resolved);
+            }
+        }, null, attrs);
+    }
+
+    /**
+     * Return the step with the given name, or {@code null}.
+     */
+    public Step<?> getStep(String name) {
+        return steps.get(name);
+    }
+
+    /**
+     * Return the steps in the order in which they were added.
+     */
+    public Collection<Step<?>> getSteps() {
+        return Collections.unmodifiableCollection(steps.values());
+    }
+
+    /**
+     * Build the dependency graph of the steps.
+     *
+     * @throws IllegalArgumentException if a step refers to a step of another plan
+     * @throws IllegalStateException if the references form a cycle
+     */
+    DependencyGraph<Step<?>> buildGraph() {
+        DependencyGraph<Step<?>> graph = new DependencyGraph<Step<?>>();
+        for (Step<?> step : steps.values()) {
+            graph.add(step);
+            for (Step<?> dependency : step.getDependencies()) {
+                Preconditions.checkArgument(steps.get(dependency.getName()) == dependency,
+                        "%s refers to %s, which is not in this plan", step, dependency);
+                graph.addDependency(step, dependency);
+            }
+        }
+        // Fail early on cycles.
+        graph.getWaves();
+        return graph;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import java.lang.reflect.Type;
+
+/**
+ * The resource types whose complete list can be fetched with one request.
+ * Security group rules are not included, because they are listed per
+ * security group.
+ */
+public enum ResourceType {
+    OPERATING_SYSTEM(Constants.OPERATING_SYSTEM_ROOT, Constants.TYPE_OPERATING_SYSTEM_LIST, OperatingSystem.class),
+    IMAGE_DEFINITION(Constants.IMAGE_DEFINITION_ROOT, Constants.TYPE_IMAGE_DEFINITION_LIST, ImageDefinition.class),
+    CSP_IMAGE(Constants.CSP_IMAGE_ROOT, Constants.TYPE_CSP_IMAGE_LIST, CspImage.class),
+    MACHINE_TYPE(Constants.MACHINE_TYPE_ROOT, Constants.TYPE_MACHINE_TYPE_LIST, MachineType.class),
+    BILLING_GROUP(Constants.BILLING_GROUP_ROOT, Constants.TYPE_BILLING_GROUP_LIST, BillingGroup.class),
+    NETWORK(Constants.NETWORK_ROOT, Constants.TYPE_NETWORK_LIST, Network.class),
+    ZONE(Constants.ZONE_ROOT, Constants.TYPE_ZONE_LIST, Zone.class),
+    SECURITY_GROUP(Constants.SECURITY_GROUP_ROOT, Constants.TYPE_SECURITY_GROUP_LIST, SecurityGroup.class),
+    COMPUTING_CELL(Constants.COMPUTING_CELL_ROOT, Constants.TYPE_COMPUTING_CELL_LIST, ComputingCell.class),
+    VOLUME(Constants.VOLUME_ROOT, Constants.TYPE_VOLUME_LIST, Volume.class),
+    CLOUD_INIT(Constants.CLOUD_INIT_ROOT, Constants.TYPE_CLOUD_INIT_LIST, CloudInit.class),
+    INSTANCE(Constants.INSTANCE_ROOT, Constants.TYPE_INSTANCE_LIST, Instance.class),
+    WORKLOAD(Constants.WORKLOAD_ROOT, Constants.TYPE_WORKLOAD_LIST, Workload.class),
+    LOAD_BALANCER(Constants.LOAD_BALANCER_ROOT, Constants.TYPE_LOAD_BALANCER_LIST, LoadBalancer.class),
+    LOAD_BALANCER_LISTENER(Constants.LOAD_BALANCER_LISTENER_ROOT, Constants.TYPE_LOAD_BALANCER_LISTENER_LIST,
+            LoadBalancerListener.class);
+
+    /**
+     * The path of the list, for example {@code /v1/api/config/brktvolume}.
+     */
+    public final String rootPath;
+
+    /**
+     * The type that the list deserializes to.
+     */
+    public final Type listType;
+
+    /**
+     * The class of the list elements.
+     */
+    public final Class<?> resourceClass;
+
+    ResourceType(String rootPath, Type listType, Class<?> resourceClass) {
+        this.rootPath = rootPath;
+        this.listType = listType;
+        this.resourceClass = resourceClass;
+    }
+
+    /**
+     * Return the type whose root path is the longest prefix of {@code path},
+     * or {@code null} if there is none.  For example,
+     * {@code /v1/api/config/brktvolume/v1/children} returns {@link #VOLUME}.
+     * Paths under {@link Constants#V1_INSTANCE_ROOT} return {@link #INSTANCE}.
+     */
+    public static ResourceType forPath(String path) {
+        if (isUnder(path, Constants.V1_INSTANCE_ROOT)) {
+            return INSTANCE;
+        }
+        ResourceType result = null;
+        for (ResourceType type : values()) {
+            if (isUnder(path, type.rootPath)
+                    && (result == null || type.rootPath.length() > result.rootPath.length())) {
+                result = type;
+            }
+        }
+        return result;
+    }
+
+    static boolean isUnder(String path, String root) {
+        return path.startsWith(root) && (path.length() == root.length() || path.charAt(root.length()) == '/');
+    }
+}
@@ -0,0 +1,452 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.BrktExecutors;
+import com.brkt.client.util.LazyResourceList;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Polls the lists of one or more resource types and reports which
+ * resources were added, modified or removed since the previous poll.
+ *
+ * <p>Each list is fetched as a {@link LazyResourceList}, and the raw JSON
+ * of every element is hashed.  An element whose hash was seen in the
+ * previous poll is unchanged, and is neither deserialized nor compared
+ * field by field.  Only new and modified elements are deserialized.
+ *
+ * <p>The polling interval adapts to the rate of change: after a poll that
+ * found changes, the next poll happens after {@code minInterval}.  Each
+ * poll without changes, or that failed, doubles the interval, up to
+ * {@code maxInterval}.
+ *
+ * <p>The first poll of a type reports every resource as added.  Events
+ * are delivered to listeners on the listener executor, one batch at a
+ * time and in the order in which they were found.
+ */
+public class ResourceWatcher {
+
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = 5000;
+    public static final long DEFAULT_MAX_INTERVAL_MILLIS = 60000;
+
+    public enum Kind {
+        ADDED, MODIFIED, REMOVED
+    }
+
+    /**
+     * A change to one resource.
+     */
+    public static class Event {
+        private final Kind kind;
+        private final ResourceType type;
+        private final String id;
+        private final Object oldResource;
+        private final Object newResource;
+
+        Event(Kind kind, ResourceType type, String id, Object oldResource, Object newResource) {
+            this.kind = kind;
+            this.type = type;
+            this.id = id;
+            this.oldResource = oldResource;
+            this.newResource = newResource;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public ResourceType getType() {
+            return type;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Return the resource as it was in the previous poll, or {@code null}
+         * if it was added.
+         */
+        public Object getOldResource() {
+            return oldResource;
+        }
+
+        /**
+         * Return the resource as it is now, or {@code null} if it was removed.
+         */
+        public Object getNewResource() {
+            return newResource;
+        }
+
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("kind", kind)
+                    .add("type", type)
+                    .add("id", id)
+                    .toString();
+        }
+    }
+
+    /**
+     * Receives the changes found by each poll.
+     */
+    public interface Listener {
+        /**
+         * Called with the changes to {@code type} found by one poll.  Not
+         * called for polls that found no changes.
+         */
+        void onEvents(ResourceType type, List<Event> events);
+
+        /**
+         * Called when polling {@code type} failed.  Polling continues.
+         */
+        void onError(ResourceType type, RuntimeException e);
+    }
+
+    public static class Builder {
+        private final BrktService service;
+        private final Set<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+        private long minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MIN_INTERVAL_MILLIS);
+        private long maxIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_INTERVAL_MILLIS);
+        private ScheduledExecutorService scheduler;
+        private Executor listenerExecutor;
+
+        public Builder(BrktService service) {
+            Preconditions.checkNotNull(service);
+            this.service = service;
+        }
+
+        /**
+         * Watch the given resource types.  At least one type is required.
+         */
+        public Builder types(ResourceType... types) {
+            Collections.addAll(this.types, types);
+            return this;
+        }
+
+        /**
+         * Poll again after the given duration when the previous poll found
+         * changes.  The default is {@link #DEFAULT_MIN_INTERVAL_MILLIS}.
+         */
+        public Builder minInterval(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration > 0, "duration must be positive: " + duration);
+            this.minIntervalNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Never wait longer than the given duration between polls.  The
+         * default is {@link #DEFAULT_MAX_INTERVAL_MILLIS}.
+         */
+        public Builder maxInterval(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration > 0, "duration must be positive: " + duration);
+            this.maxIntervalNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Run polls on the given scheduler.  The default is a single daemon
+         * thread that is shut down by {@link #stop}.  A scheduler passed
+         * here is not shut down.
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Deliver events on the given executor.  The default is
+         * {@link BrktExecutors#getDefaultExecutor}.
+         */
+        public Builder listenerExecutor(Executor listenerExecutor) {
+            this.listenerExecutor = listenerExecutor;
+            return this;
+        }
+
+        public ResourceWatcher build() {
+            Preconditions.checkState(!types.isEmpty(), "No resource types specified");
+            Preconditions.checkState(minIntervalNanos <= maxIntervalNanos,
+                    "minInterval cannot be greater than maxInterval");
+            return new ResourceWatcher(this);
+        }
+    }
+
+    /**
+     * What the previous poll of one type saw.
+     */
+    private static class TypeState {
+        Map<Long, String> idsByHash = Maps.newHashMap();
+        Map<String, Object> resourcesById = Maps.newHashMap();
+        long intervalNanos;
+        ScheduledFuture<?> nextPoll;
+    }
+
+    private final BrktService service;
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final Executor listenerExecutor;
+    private final Map<ResourceType, TypeState> states = Maps.newEnumMap(ResourceType.class);
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * Deliveries that haven't run yet.  At most one drain task runs on the
+     * listener executor at a time, so batches are delivered in order.
+     */
+    private final Queue<Runnable> deliveries = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final Object lifecycleLock = new Object();
+    private boolean started;
+    private boolean stopped;
+
+    private ResourceWatcher(Builder builder) {
+        this.service = builder.service;
+        this.minIntervalNanos = builder.minIntervalNanos;
+        this.maxIntervalNanos = builder.maxIntervalNanos;
+        if (builder.scheduler != null) {
+            this.scheduler = builder.scheduler;
+            this.ownsScheduler = false;
+        } else {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(BrktExecutors.newDaemonThreadFactory());
+            this.ownsScheduler = true;
+        }
+        this.listenerExecutor = builder.listenerExecutor != null
+                ? builder.listenerExecutor : BrktExecutors.getDefaultExecutor();
+        for (ResourceType type : builder.types) {
+            TypeState state = new TypeState();
+            state.intervalNanos = minIntervalNanos;
+            states.put(type, state);
+        }
+    }
+
+    public void addListener(Listener listener) {
+        Preconditions.checkNotNull(listener);
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Start polling every type.  The first polls run immediately.
+     */
+    public void start() {
+        synchronized (lifecycleLock) {
+            Preconditions.checkState(!started, "Already started");
+            started = true;
+            for (ResourceType type : states.keySet()) {
+                schedule(type, 0);
+            }
+        }
+    }
+
+    /**
+     * Stop polling.  A poll that is in progress finishes, and its events
+     * are still delivered.
+     */
+    public void stop() {
+        synchronized (lifecycleLock) {
+            stopped = true;
+            for (TypeState state : states.values()) {
+                if (state.nextPoll != null) {
+                    state.nextPoll.cancel(false);
+                }
+            }
+        }
+        if (ownsScheduler) {
+            scheduler.shutdown();
+        }
+    }
+
+    private void schedule(final ResourceType type, long delayNanos) {
+        synchronized (lifecycleLock) {
+            if (stopped) {
+                return;
+            }
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        poll(type);
+                    } catch (RuntimeException e) {
+                        // Already reported to the listeners.
+                    }
+                    schedule(type, getIntervalNanos(type));
+                }
+            };
+            try {
+                states.get(type).nextPoll = scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // The scheduler was shut down.
+            }
+        }
+    }
+
+    /**
+     * Poll {@code type} now, queue its events for delivery and return them.
+     * Errors are reported to the listeners and rethrown.
+     */
+    public List<Event> poll(final ResourceType type) {
+        final TypeState state = states.get(type);
+        Preconditions.checkArgument(state != null, "Type is not watched: " + type);
+        final List<Event> events;
+        synchronized (state) {
+            try {
+                events = diff(type, state, service.getAllLazy(type));
+            } catch (final RuntimeException e) {
+                state.intervalNanos = Math.min(state.intervalNanos * 2, maxIntervalNanos);
+                deliver(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (Listener listener : listeners) {
+                            try {
+                                listener.onError(type, e);
+                            } catch (RuntimeException listenerError) {
+                                // Keep delivering to the other listeners.
+                            }
+                        }
+                    }
+                });
+                throw e;
+            }
+            state.intervalNanos = events.isEmpty()
+                    ? Math.min(state.intervalNanos * 2, maxIntervalNanos) : minIntervalNanos;
+
+            // Queue while holding the lock, so that batches of the same type stay in order.
+            if (!events.isEmpty()) {
+                deliver(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (Listener listener : listeners) {
+                            try {
+                                listener.onEvents(type, events);
+                            } catch (RuntimeException e) {
+                                // Keep delivering to the other listeners.
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        return events;
+    }
+
+    private static List<Event> diff(ResourceType type, TypeState state, LazyResourceList<?> list) {
+        List<Event> events = Lists.newArrayList();
+        Map<Long, String> idsByHash = Maps.newHashMap();
+        Map<String, Object> resourcesById = Maps.newHashMap();
+
+        for (int i = 0; i < list.size(); i++) {
+            long hash = list.contentHash(i);
+            String id = state.idsByHash.get(hash);
+            if (id != null) {
+                // Same bytes as last time.
+                idsByHash.put(hash, id);
+                resourcesById.put(id, state.resourcesById.get(id));
+                continue;
+            }
+            BrktResource resource = (BrktResource) list.get(i);
+            if (resource == null || resource.getId() == null) {
+                continue;
+            }
+            id = resource.getId();
+            idsByHash.put(hash, id);
+            resourcesById.put(id, resource);
+            Object old = state.resourcesById.get(id);
+            events.add(new Event(old == null ? Kind.ADDED : Kind.MODIFIED, type, id, old, resource));
+        }
+
+        for (Map.Entry<String, Object> entry : state.resourcesById.entrySet()) {
+            if (!resourcesById.containsKey(entry.getKey())) {
+                events.add(new Event(Kind.REMOVED, type, entry.getKey(), entry.getValue(), null));
+            }
+        }
+        state.idsByHash = idsByHash;
+        state.resourcesById = resourcesById;
+        return Collections.unmodifiableList(events);
+    }
+
+    private void deliver(Runnable delivery) {
+        deliveries.add(delivery);
+        drain();
+    }
+
+    private void drain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            listenerExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Runnable delivery;
+                        while ((delivery = deliveries.poll()) != null) {
+                            delivery.run();
+                        }
+                    } finally {
+                        draining.set(false);
+                    }
+                    // Pick up deliveries that were queued after the loop ended.
+                    if (!deliveries.isEmpty()) {
+                        drain();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Return how long the watcher waits before polling {@code type} again.
+     */
+    public long getIntervalMillis(ResourceType type) {
+        return TimeUnit.NANOSECONDS.toMillis(getIntervalNanos(type));
+    }
+
+    private long getIntervalNanos(ResourceType type) {
+        TypeState state = states.get(type);
+        Preconditions.checkArgument(state != null, "Type is not watched: " + type);
+        synchronized (state) {
+            return state.intervalNanos;
+        }
+    }
+}
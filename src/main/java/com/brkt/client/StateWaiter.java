@@ -0,0 +1,456 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.BrktExecutors;
+import com.brkt.client.util.BrktFuture;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Waits for instances and volumes to reach a requested state, without a
+ * polling loop per resource.  All pending waits of one type share a single
+ * poll: each poll fetches the list of that type once, binding only
+ * {@code id} and {@code requested_state}, and completes every wait whose
+ * resource reached its state.
+ *
+ * <p>The polling interval backs off while nothing changes, and drops back
+ * to {@code minInterval} when a resource changes state.  Each delay is
+ * randomized by up to {@code jitter}, so that many clients that start at
+ * the same time don't poll in lockstep.  Polling stops while nothing is
+ * pending.
+ *
+ * <p>A wait fails with a {@link TimeoutException} if its deadline passes,
+ * and with an {@link IllegalStateException} if the resource was deleted
+ * or disappeared from the list while waiting for another state.  Failed
+ * polls are retried until the deadline.  The last poll error, if any, is
+ * the cause of the {@code TimeoutException}.
+ *
+ * <p>Thread-safe.
+ */
+public class StateWaiter {
+
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = 1000;
+    public static final long DEFAULT_MAX_INTERVAL_MILLIS = 30000;
+    public static final double DEFAULT_BACKOFF_MULTIPLIER = 1.5;
+    public static final double DEFAULT_JITTER = 0.2;
+
+    private static final Set<String> STATE_FIELDS = Collections.singleton(Volume.REQUESTED_STATE);
+
+    public static class Builder {
+        private final BrktService service;
+        private long minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MIN_INTERVAL_MILLIS);
+        private long maxIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_INTERVAL_MILLIS);
+        private double backoffMultiplier = DEFAULT_BACKOFF_MULTIPLIER;
+        private double jitter = DEFAULT_JITTER;
+        private ScheduledExecutorService scheduler;
+
+        public Builder(BrktService service) {
+            Preconditions.checkNotNull(service);
+            this.service = service;
+        }
+
+        /**
+         * Poll after the given duration when a wait is added or a resource
+         * changed state.  The default is {@link #DEFAULT_MIN_INTERVAL_MILLIS}.
+         */
+        public Builder minInterval(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration > 0, "duration must be positive: " + duration);
+            this.minIntervalNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Never wait longer than the given duration between polls.  The
+         * default is {@link #DEFAULT_MAX_INTERVAL_MILLIS}.
+         */
+        public Builder maxInterval(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration > 0, "duration must be positive: " + duration);
+            this.maxIntervalNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Multiply the interval by {@code multiplier} after each poll in
+         * which nothing changed.  The default is {@link #DEFAULT_BACKOFF_MULTIPLIER}.
+         */
+        public Builder backoffMultiplier(double multiplier) {
+            Preconditions.checkArgument(multiplier >= 1, "multiplier cannot be less than 1: " + multiplier);
+            this.backoffMultiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * Randomize each delay by up to the given fraction in either
+         * direction.  The default is {@link #DEFAULT_JITTER}.
+         */
+        public Builder jitter(double jitter) {
+            Preconditions.checkArgument(jitter >= 0 && jitter < 1, "jitter must be in [0, 1): " + jitter);
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Run polls on the given scheduler.  The default is a single daemon
+         * thread that is shut down by {@link #shutdown}.  A scheduler passed
+         * here is not shut down.
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public StateWaiter build() {
+            Preconditions.checkState(minIntervalNanos <= maxIntervalNanos,
+                    "minInterval cannot be greater than maxInterval");
+            return new StateWaiter(this);
+        }
+    }
+
+    /**
+     * A future that is completed by the poll.  {@code set} and
+     * {@code setException} are only accessible inside this package, so
+     * callers can't complete the futures that they are given.
+     */
+    private static class PollFuture extends BrktFuture<Constants.RequestedState> {
+        @Override
+        protected void set(Constants.RequestedState value) {
+            super.set(value);
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            super.setException(t);
+        }
+    }
+
+    /**
+     * One call to {@link #awaitState}.
+     */
+    private static class Waiter {
+        final String id;
+        final Constants.RequestedState state;
+        final long deadlineNanos;
+        final PollFuture future = new PollFuture();
+        Constants.RequestedState lastState;
+        boolean seen;
+
+        Waiter(String id, Constants.RequestedState state, long deadlineNanos) {
+            this.id = id;
+            this.state = state;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    /**
+     * The pending waits for one resource type and the schedule of its poll.
+     * Guarded by the {@code StateWaiter}.
+     */
+    private static class TypeState {
+        final List<Waiter> waiters = Lists.newArrayList();
+        long intervalNanos;
+        ScheduledFuture<?> nextPoll;
+        long nextPollNanos;
+
+        /**
+         * Incremented by every call to {@code schedule}.  A poll only runs if
+         * it is the latest one scheduled, because {@code cancel} also
+         * succeeds for a poll that has already started.
+         */
+        int pollSequence;
+        boolean polling;
+        RuntimeException lastError;
+    }
+
+    private final BrktService service;
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final double backoffMultiplier;
+    private final double jitter;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final Random random = new Random();
+    private final Map<ResourceType, TypeState> states = Maps.newEnumMap(ResourceType.class);
+    private boolean shutdown;
+
+    private StateWaiter(Builder builder) {
+        this.service = builder.service;
+        this.minIntervalNanos = builder.minIntervalNanos;
+        this.maxIntervalNanos = builder.maxIntervalNanos;
+        this.backoffMultiplier = builder.backoffMultiplier;
+        this.jitter = builder.jitter;
+        if (builder.scheduler != null) {
+            this.scheduler = builder.scheduler;
+            this.ownsScheduler = false;
+        } else {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(BrktExecutors.newDaemonThreadFactory());
+            this.ownsScheduler = true;
+        }
+        states.put(ResourceType.INSTANCE, new TypeState());
+        states.put(ResourceType.VOLUME, new TypeState());
+    }
+
+    /**
+     * Return a future that completes when the instance's requested state
+     * is {@code state}.
+     */
+    public BrktFuture<Constants.RequestedState> awaitInstanceState(
+            String instanceId, Constants.RequestedState state, long timeout, TimeUnit unit) {
+        return awaitState(ResourceType.INSTANCE, instanceId, state, timeout, unit);
+    }
+
+    /**
+     * Return a future that completes when the volume's requested state is
+     * {@code state}.
+     */
+    public BrktFuture<Constants.RequestedState> awaitVolumeState(
+            String volumeId, Constants.RequestedState state, long timeout, TimeUnit unit) {
+        return awaitState(ResourceType.VOLUME, volumeId, state, timeout, unit);
+    }
+
+    /**
+     * Return a future that completes with {@code state} when the requested
+     * state of the resource is {@code state}, or fails when {@code timeout}
+     * has passed.  Cancelling the future stops waiting.
+     *
+     * @param type {@link ResourceType#INSTANCE} or {@link ResourceType#VOLUME}
+     */
+    public BrktFuture<Constants.RequestedState> awaitState(
+            ResourceType type, String id, Constants.RequestedState state, long timeout, TimeUnit unit) {
+        Preconditions.checkNotNull(id);
+        Preconditions.checkNotNull(state);
+        Preconditions.checkArgument(timeout >= 0, "timeout cannot be negative: " + timeout);
+        TypeState typeState = states.get(type);
+        Preconditions.checkArgument(typeState != null, "Unsupported type: " + type);
+        long now = System.nanoTime();
+        Waiter waiter = new Waiter(id, state, now + unit.toNanos(timeout));
+
+        synchronized (this) {
+            Preconditions.checkState(!shutdown, "StateWaiter has been shut down");
+            typeState.waiters.add(waiter);
+            // If a poll is running, it schedules the next one, taking the new deadline into account.
+            if (typeState.polling) {
+                return waiter.future;
+            }
+            if (typeState.nextPoll == null) {
+                typeState.intervalNanos = minIntervalNanos;
+                schedule(type, typeState, Math.min(jitter(minIntervalNanos), waiter.deadlineNanos - now));
+            } else if (waiter.deadlineNanos < typeState.nextPollNanos && typeState.nextPoll.cancel(false)) {
+                // Poll early enough to time the new wait out on time.
+                schedule(type, typeState, waiter.deadlineNanos - now);
+            }
+        }
+        return waiter.future;
+    }
+
+    private long jitter(long nanos) {
+        double factor = 1 + jitter * (2 * random.nextDouble() - 1);
+        return (long) (nanos * factor);
+    }
+
+    /**
+     * Must be called while holding the lock.
+     */
+    private void schedule(final ResourceType type, TypeState typeState, long delayNanos) {
+        delayNanos = Math.max(0, delayNanos);
+        typeState.nextPollNanos = System.nanoTime() + delayNanos;
+        final int sequence = ++typeState.pollSequence;
+        try {
+            typeState.nextPoll = scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    poll(type, sequence);
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            typeState.nextPoll = null;
+            for (Waiter waiter : typeState.waiters) {
+                waiter.future.setException(e);
+            }
+            typeState.waiters.clear();
+        }
+    }
+
+    private void poll(ResourceType type, int sequence) {
+        TypeState typeState = states.get(type);
+        List<Waiter> pending;
+        synchronized (this) {
+            if (typeState.polling || sequence != typeState.pollSequence) {
+                // Superseded by a poll that was scheduled later, or one is already running.
+                return;
+            }
+            typeState.polling = true;
+            typeState.nextPoll = null;
+            pending = new ArrayList<Waiter>(typeState.waiters);
+        }
+
+        Map<String, Constants.RequestedState> current = null;
+        RuntimeException error = null;
+        try {
+            current = Maps.newHashMap();
+            for (Object element : service.getAll(type, STATE_FIELDS)) {
+                BrktResource resource = (BrktResource) element;
+                current.put(resource.getId(), getRequestedState(resource));
+            }
+        } catch (RuntimeException e) {
+            error = e;
+        }
+
+        // Complete futures outside the lock, since their listeners run on this thread.
+        boolean changed = false;
+        long now = System.nanoTime();
+        for (Waiter waiter : pending) {
+            if (waiter.future.isDone()) {
+                continue;
+            }
+            if (error == null) {
+                changed |= check(type, waiter, current);
+            }
+            if (!waiter.future.isDone() && now - waiter.deadlineNanos >= 0) {
+                TimeoutException e = new TimeoutException(String.format(
+                        "Timed out waiting for %s %s to reach %s.  Last state: %s",
+                        type, waiter.id, waiter.state, waiter.lastState));
+                e.initCause(error != null ? error : typeState.lastError);
+                waiter.future.setException(e);
+            }
+        }
+
+        synchronized (this) {
+            typeState.polling = false;
+            typeState.lastError = error;
+            Iterator<Waiter> it = typeState.waiters.iterator();
+            long earliestDeadline = Long.MAX_VALUE;
+            while (it.hasNext()) {
+                Waiter waiter = it.next();
+                if (waiter.future.isDone()) {
+                    it.remove();
+                } else {
+                    earliestDeadline = Math.min(earliestDeadline, waiter.deadlineNanos);
+                }
+            }
+            if (typeState.waiters.isEmpty() || shutdown) {
+                typeState.nextPoll = null;
+                return;
+            }
+            if (changed) {
+                typeState.intervalNanos = minIntervalNanos;
+            } else {
+                typeState.intervalNanos = Math.min(
+                        (long) (typeState.intervalNanos * backoffMultiplier), maxIntervalNanos);
+            }
+            long delay = Math.min(jitter(typeState.intervalNanos), earliestDeadline - System.nanoTime());
+            schedule(type, typeState, delay);
+        }
+    }
+
+    /**
+     * Update {@code waiter} with the current state of its resource, and
+     * complete it if it is finished.  Return {@code true} if the state
+     * changed since the previous poll.
+     */
+    private static boolean check(ResourceType type, Waiter waiter, Map<String, Constants.RequestedState> current) {
+        if (!current.containsKey(waiter.id)) {
+            if (waiter.state == Constants.RequestedState.DELETED) {
+                waiter.future.set(Constants.RequestedState.DELETED);
+                return true;
+            }
+            if (waiter.seen) {
+                // Don't fail before the first sighting, since a new resource may not be listed yet.
+                waiter.future.setException(new IllegalStateException(
+                        String.format("%s %s no longer exists", type, waiter.id)));
+                return true;
+            }
+            return false;
+        }
+
+        Constants.RequestedState state = current.get(waiter.id);
+        boolean changed = waiter.seen && state != waiter.lastState;
+        waiter.seen = true;
+        waiter.lastState = state;
+        if (state == waiter.state) {
+            waiter.future.set(state);
+            return true;
+        }
+        if (state == Constants.RequestedState.DELETED) {
+            waiter.future.setException(new IllegalStateException(
+                    String.format("%s %s was deleted while waiting for %s", type, waiter.id, waiter.state)));
+            return true;
+        }
+        return changed;
+    }
+
+    private static Constants.RequestedState getRequestedState(BrktResource resource) {
+        if (resource instanceof Instance) {
+            return ((Instance) resource).getRequestedState();
+        }
+        return ((Volume) resource).getRequestedState();
+    }
+
+    /**
+     * Return the number of waits that haven't completed yet.
+     */
+    public synchronized int getPendingCount() {
+        int count = 0;
+        for (TypeState typeState : states.values()) {
+            for (Waiter waiter : typeState.waiters) {
+                if (!waiter.future.isDone()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stop polling and cancel every pending wait.
+     */
+    public void shutdown() {
+        List<Waiter> pending = Lists.newArrayList();
+        synchronized (this) {
+            shutdown = true;
+            for (TypeState typeState : states.values()) {
+                if (typeState.nextPoll != null) {
+                    typeState.nextPoll.cancel(false);
+                    typeState.nextPoll = null;
+                }
+                pending.addAll(typeState.waiters);
+                typeState.waiters.clear();
+            }
+        }
+        for (Waiter waiter : pending) {
+            waiter.future.cancel(false);
+        }
+        if (ownsScheduler) {
+            scheduler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.DependencyGraph;
+import com.brkt.client.util.ParallelTasks;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deletes a set of resources in dependency order, as fast as the order
+ * allows.  A dependency graph is built from the references between the
+ * resources: listeners are deleted before their load balancers, volumes
+ * before their instances and parent volumes, instances and load balancers
+ * before their workloads, rules before their security groups, and
+ * everything before the billing groups and cloud-inits that it uses.  The
+ * deletes then run in topological waves, with up to
+ * {@link BulkOptions#getParallelism} deletes at a time within a wave.
+ *
+ * <p>A delete that fails with a transient error is retried with
+ * exponential backoff, up to {@link BulkOptions#getMaxRetries} times.
+ * Transient errors are I/O errors and HTTP 409, 429 and 5xx responses.
+ * A 404 response counts as success, since the resource is already gone.
+ * If a delete fails, the resources that wait for it are skipped, and
+ * their items fail with an {@code IllegalStateException}.
+ *
+ * <p>Supported types are billing groups, security groups and their rules,
+ * volumes, cloud-inits, instances, workloads, load balancers and load
+ * balancer listeners.
+ */
+public class Teardown {
+
+    /**
+     * Receives progress reports.  {@link #onCompleted} may be called
+     * concurrently from several threads.
+     */
+    public interface Listener {
+        /**
+         * Called before the deletes of a wave start.  Waves are numbered
+         * from 0.
+         */
+        void onWaveStarted(int wave, int waveCount, List<BrktResource> resources);
+
+        /**
+         * Called when a delete succeeded, failed or was skipped.
+         * {@code completed} counts every finished item, including this one.
+         */
+        void onCompleted(BulkResult.Item<BrktResource, Object> item, int completed, int total);
+    }
+
+    public static class Builder {
+        private final BrktService service;
+        private BulkOptions options;
+        private Listener listener;
+
+        public Builder(BrktService service) {
+            Preconditions.checkNotNull(service);
+            this.service = service;
+        }
+
+        /**
+         * The default is {@link BulkOptions#defaults}.
+         */
+        public Builder options(BulkOptions options) {
+            this.options = options;
+            return this;
+        }
+
+        public Builder listener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public Teardown build() {
+            return new Teardown(this);
+        }
+    }
+
+    private final BrktService service;
+    private final BulkOptions options;
+    private final Listener listener;
+
+    private Teardown(Builder builder) {
+        this.service = builder.service;
+        this.options = builder.options != null ? builder.options : BulkOptions.defaults();
+        this.listener = builder.listener;
+    }
+
+    /**
+     * Return the order in which {@code resources} would be deleted, as
+     * waves of resources that can be deleted in parallel.
+     *
+     * @throws IllegalArgumentException if a resource type can't be deleted
+     */
+    public static List<List<BrktResource>> plan(Collection<? extends BrktResource> resources) {
+        return buildGraph(resources).getWaves();
+    }
+
+    private static DependencyGraph<BrktResource> buildGraph(Collection<? extends BrktResource> resources) {
+        Preconditions.checkNotNull(resources);
+        Map<String, BrktResource> byId = Maps.newLinkedHashMap();
+        for (BrktResource resource : resources) {
+            Preconditions.checkArgument(isSupported(resource), "Cannot delete %s", resource);
+            if (!byId.containsKey(resource.getId())) {
+                byId.put(resource.getId(), resource);
+            }
+        }
+
+        DependencyGraph<BrktResource> graph = new DependencyGraph<BrktResource>();
+        for (BrktResource resource : byId.values()) {
+            graph.add(resource);
+            if (resource instanceof LoadBalancerListener) {
+                deleteBefore(graph, byId, resource, ((LoadBalancerListener) resource).getLoadBalancerId());
+            } else if (resource instanceof Volume) {
+                Volume volume = (Volume) resource;
+                deleteBefore(graph, byId, resource, volume.getInstanceId());
+                deleteBefore(graph, byId, resource, volume.getParent());
+                deleteBefore(graph, byId, resource, volume.getBillingGroupId());
+            } else if (resource instanceof Instance) {
+                Instance instance = (Instance) resource;
+                deleteBefore(graph, byId, resource, instance.getWorkloadId());
+                deleteBefore(graph, byId, resource, instance.getCloudInitId());
+                deleteBefore(graph, byId, resource, instance.getBillingGroupId());
+                if (instance.getSecurityGroupIds() != null) {
+                    for (String sgId : instance.getSecurityGroupIds()) {
+                        deleteBefore(graph, byId, resource, sgId);
+                    }
+                }
+            } else if (resource instanceof LoadBalancer) {
+                LoadBalancer lb = (LoadBalancer) resource;
+                deleteBefore(graph, byId, resource, lb.getWorkloadId());
+                deleteBefore(graph, byId, resource, lb.getSecurityGroupId());
+                deleteBefore(graph, byId, resource, lb.getBillingGroupId());
+            } else if (resource instanceof Workload) {
+                deleteBefore(graph, byId, resource, ((Workload) resource).getBillingGroupId());
+            } else if (resource instanceof SecurityGroupRule) {
+                SecurityGroupRule rule = (SecurityGroupRule) resource;
+                deleteBefore(graph, byId, resource, rule.getSecurityGroupId());
+                deleteBefore(graph, byId, resource, rule.getSrcSecurityGroupId());
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Make the resource with id {@code laterId}, if it is being deleted,
+     * wait for {@code resource}.
+     */
+    private static void deleteBefore(DependencyGraph<BrktResource> graph, Map<String, BrktResource> byId,
+                                     BrktResource resource, String laterId) {
+        BrktResource later = laterId != null ? byId.get(laterId) : null;
+        if (later != null && later != resource) {
+            graph.addDependency(later, resource);
+        }
+    }
+
+    private static boolean isSupported(BrktResource resource) {
+        return resource instanceof BillingGroup || resource instanceof SecurityGroup
+                || resource instanceof SecurityGroupRule || resource instanceof Volume
+                || resource instanceof CloudInit || resource instanceof Instance
+                || resource instanceof Workload || resource instanceof LoadBalancer
+                || resource instanceof LoadBalancerListener;
+    }
+
+    /**
+     * Delete {@code resources} in dependency order and return the result of
+     * each delete, in the same order as {@code resources}.
+     *
+     * @throws IllegalArgumentException if a resource type can't be deleted
+     * @throws IllegalStateException if the references form a cycle
+     */
+    public BulkResult<BrktResource, Object> run(Collection<? extends BrktResource> resources)
+            throws InterruptedException {
+        DependencyGraph<BrktResource> graph = buildGraph(resources);
+        List<List<BrktResource>> waves = graph.getWaves();
+        final int total = graph.size();
+        final AtomicInteger completed = new AtomicInteger();
+        final Map<BrktResource, BulkResult.Item<BrktResource, Object>> items = Maps.newHashMap();
+        long start = System.nanoTime();
+
+        for (int w = 0; w < waves.size(); w++) {
+            List<BrktResource> wave = waves.get(w);
+            if (listener != null) {
+                listener.onWaveStarted(w, waves.size(), wave);
+            }
+
+            List<BrktResource> toDelete = Lists.newArrayList();
+            for (BrktResource resource : wave) {
+                BrktResource failed = findFailedDependency(graph, items, resource);
+                if (failed == null) {
+                    toDelete.add(resource);
+                } else {
+                    BulkResult.Item<BrktResource, Object> item = new BulkResult.Item<BrktResource, Object>(
+                            resource, null, new IllegalStateException(
+                            "Skipped because " + failed.getId() + " was not deleted"), 0);
+                    items.put(resource, item);
+                    report(item, completed.incrementAndGet(), total);
+                }
+            }
+
+            List<Callable<Object>> tasks = Lists.newArrayList();
+            for (final BrktResource resource : toDelete) {
+                tasks.add(new Callable<Object>() {
+                    @Override
+                    public Object call() throws InterruptedException {
+                        return deleteWithRetries(resource);
+                    }
+                });
+            }
+            List<ParallelTasks.Outcome<Object>> outcomes =
+                    ParallelTasks.runAll(tasks, options.getExecutor(), options.getParallelism());
+            for (int i = 0; i < toDelete.size(); i++) {
+                ParallelTasks.Outcome<Object> outcome = outcomes.get(i);
+                BulkResult.Item<BrktResource, Object> item = new BulkResult.Item<BrktResource, Object>(
+                        toDelete.get(i), outcome.getValue(), outcome.getError(), outcome.getElapsedMillis());
+                items.put(toDelete.get(i), item);
+                report(item, completed.incrementAndGet(), total);
+            }
+        }
+
+        List<BulkResult.Item<BrktResource, Object>> ordered = Lists.newArrayList();
+        Map<String, BrktResource> seen = Maps.newHashMap();
+        for (BrktResource resource : resources) {
+            if (!seen.containsKey(resource.getId())) {
+                seen.put(resource.getId(), resource);
+                ordered.add(items.get(resource));
+            }
+        }
+        return new BulkResult<BrktResource, Object>(ordered, (System.nanoTime() - start) / 1000000);
+    }
+
+    private void report(BulkResult.Item<BrktResource, Object> item, int completed, int total) {
+        if (listener != null) {
+            listener.onCompleted(item, completed, total);
+        }
+    }
+
+    /**
+     * Return a resource that {@code resource} waits for and that wasn't
+     * deleted, or {@code null}.
+     */
+    private static BrktResource findFailedDependency(DependencyGraph<BrktResource> graph,
+                                                     Map<BrktResource, BulkResult.Item<BrktResource, Object>> items,
+                                                     BrktResource resource) {
+        for (BrktResource dependency : graph.getDependencies(resource)) {
+            if (!items.get(dependency).isSuccess()) {
+                return dependency;
+            }
+        }
+        return null;
+    }
+
+    private Object deleteWithRetries(BrktResource resource) throws InterruptedException {
+        long delayMillis = options.getRetryDelayMillis();
+        for (int attempt = 0; ; attempt++) {
+            options.acquire();
+            try {
+                return delete(resource);
+            } catch (BrktService.RuntimeHttpError e) {
+                if (e.status == 404) {
+                    return null;
+                }
+                if (!isTransient(e.status) || attempt >= options.getMaxRetries()) {
+                    throw e;
+                }
+            } catch (BrktService.RuntimeIoException e) {
+                if (attempt >= options.getMaxRetries()) {
+                    throw e;
+                }
+            }
+            Thread.sleep(delayMillis);
+            delayMillis *= 2;
+        }
+    }
+
+    private static boolean isTransient(int status) {
+        return status == 409 || status == 429 || status >= 500;
+    }
+
+    private Object delete(BrktResource resource) {
+        String id = resource.getId();
+        if (resource instanceof LoadBalancerListener) {
+            return service.deleteLoadBalancerListener(id);
+        } else if (resource instanceof LoadBalancer) {
+            return service.deleteLoadBalancer(id);
+        } else if (resource instanceof Volume) {
+            return service.deleteVolume(id);
+        } else if (resource instanceof Instance) {
+            return service.deleteInstance(id);
+        } else if (resource instanceof Workload) {
+            return service.deleteWorkload(id);
+        } else if (resource instanceof SecurityGroupRule) {
+            return service.deleteSecurityGroupRule(id);
+        } else if (resource instanceof SecurityGroup) {
+            return service.deleteSecurityGroup(id);
+        } else if (resource instanceof CloudInit) {
+            return service.deleteCloudInit(id);
+        } else {
+            service.deleteBillingGroup(id);
+            return null;
+        }
+    }
+}
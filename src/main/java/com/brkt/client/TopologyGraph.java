@@ -0,0 +1,472 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.ParallelTasks;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * An immutable graph of the account's resources and the references between
+ * them, built from one prefetched snapshot.  An edge points from a resource
+ * to the resources that depend on it:
+ *
+ * <ul>
+ * <li>computing cell &rarr; network &rarr; zone &rarr; workload &rarr; instance &rarr; volume</li>
+ * <li>zone &rarr; instance, computing cell &rarr; volume, volume &rarr; child volume</li>
+ * <li>workload &rarr; load balancer &rarr; load balancer listener</li>
+ * <li>security group &rarr; instance, load balancer and security group rule</li>
+ * <li>source security group &rarr; security group rule</li>
+ * </ul>
+ *
+ * <p>The network that a computing cell refers to is not an edge, since
+ * it would form a cycle with the network's computing cell.
+ *
+ * <p>{@link #fetch} fetches each level of the graph in parallel: first the
+ * lists of all resource types, then the rules of every security group.
+ * Queries are answered from adjacency indexes, without contacting the
+ * server.  Transitive queries are memoized, and a traversal that reaches a
+ * resource whose result is already known reuses it instead of walking
+ * that part of the graph again.
+ *
+ * <p>Resources are identified by id, which is unique across types.
+ * References to resources that are not in the snapshot are ignored.
+ * Thread-safe.
+ */
+public class TopologyGraph {
+
+    /**
+     * The resource types in the graph.  Security group rules are fetched
+     * per security group.
+     */
+    public static final Set<ResourceType> TYPES = Collections.unmodifiableSet(EnumSet.of(
+            ResourceType.COMPUTING_CELL, ResourceType.NETWORK, ResourceType.ZONE, ResourceType.WORKLOAD,
+            ResourceType.INSTANCE, ResourceType.VOLUME, ResourceType.LOAD_BALANCER,
+            ResourceType.LOAD_BALANCER_LISTENER, ResourceType.SECURITY_GROUP));
+
+    /**
+     * The resources affected by the failure or deletion of one resource.
+     */
+    public static class BlastRadius {
+        private final String rootId;
+        private final List<BrktResource> resources;
+
+        BlastRadius(String rootId, List<BrktResource> resources) {
+            this.rootId = rootId;
+            this.resources = Collections.unmodifiableList(resources);
+        }
+
+        public String getRootId() {
+            return rootId;
+        }
+
+        /**
+         * Return every affected resource, not including the root.
+         */
+        public List<BrktResource> getResources() {
+            return resources;
+        }
+
+        /**
+         * Return the affected resources of the given class.
+         */
+        public <T extends BrktResource> List<T> get(Class<T> resourceClass) {
+            return filter(resources, resourceClass);
+        }
+
+        public int size() {
+            return resources.size();
+        }
+
+        public String toString() {
+            Map<String, Integer> counts = Maps.newTreeMap();
+            for (BrktResource resource : resources) {
+                String name = resource.getClass().getSimpleName();
+                Integer count = counts.get(name);
+                counts.put(name, count == null ? 1 : count + 1);
+            }
+            return MoreObjects.toStringHelper(this)
+                    .add("rootId", rootId)
+                    .add("counts", counts)
+                    .toString();
+        }
+    }
+
+    private final Map<String, BrktResource> resources = Maps.newLinkedHashMap();
+    private final Map<String, List<String>> children = Maps.newHashMap();
+    private final Map<String, List<String>> parents = Maps.newHashMap();
+
+    /**
+     * Instances by the id of the load balancer that they are behind.  Not
+     * a dependency edge, but the instances lose traffic if it fails.
+     */
+    private final Map<String, List<String>> instancesByLoadBalancer = Maps.newHashMap();
+    private int edgeCount;
+
+    /**
+     * The distance of every descendant or ancestor of a resource, nearest first.
+     */
+    private final ConcurrentMap<String, Map<String, Integer>> descendantCache =
+            new ConcurrentHashMap<String, Map<String, Integer>>();
+    private final ConcurrentMap<String, Map<String, Integer>> ancestorCache =
+            new ConcurrentHashMap<String, Map<String, Integer>>();
+    private final ConcurrentMap<String, BlastRadius> blastRadiusCache = new ConcurrentHashMap<String, BlastRadius>();
+
+    private TopologyGraph() {
+    }
+
+    /**
+     * Fetch the resources in {@link #TYPES} and then the rules of every
+     * security group, running at most {@code parallelism} requests at the
+     * same time on {@code executor}, and build the graph.  If a request
+     * fails, its exception is thrown once the others have finished.
+     */
+    public static TopologyGraph fetch(final BrktService service, Executor executor, int parallelism)
+            throws InterruptedException {
+        InventorySnapshot snapshot = InventorySnapshot.fetch(service, executor, parallelism, TYPES);
+
+        List<Callable<List<SecurityGroupRule>>> tasks = Lists.newArrayList();
+        for (final SecurityGroup sg : snapshot.getSecurityGroups()) {
+            tasks.add(new Callable<List<SecurityGroupRule>>() {
+                @Override
+                public List<SecurityGroupRule> call() {
+                    return service.getRulesForSecurityGroup(sg.getId());
+                }
+            });
+        }
+        List<SecurityGroupRule> rules = Lists.newArrayList();
+        for (ParallelTasks.Outcome<List<SecurityGroupRule>> outcome : ParallelTasks.runAll(
+                tasks, executor, parallelism)) {
+            rules.addAll(outcome.getOrThrow());
+        }
+        return build(snapshot, rules);
+    }
+
+    /**
+     * Build the graph from the types in {@code snapshot} and the given
+     * security group rules.
+     */
+    public static TopologyGraph build(InventorySnapshot snapshot, Collection<SecurityGroupRule> rules) {
+        Preconditions.checkNotNull(snapshot);
+        Preconditions.checkNotNull(rules);
+        TopologyGraph graph = new TopologyGraph();
+        for (ResourceType type : TYPES) {
+            if (snapshot.contains(type)) {
+                for (Object resource : snapshot.get(type, type.resourceClass)) {
+                    graph.addNode((BrktResource) resource);
+                }
+            }
+        }
+        for (SecurityGroupRule rule : rules) {
+            graph.addNode(rule);
+        }
+
+        for (BrktResource resource : graph.resources.values()) {
+            graph.addEdges(resource);
+        }
+        return graph;
+    }
+
+    private void addNode(BrktResource resource) {
+        if (resource != null && resource.getId() != null) {
+            resources.put(resource.getId(), resource);
+        }
+    }
+
+    private void addEdges(BrktResource resource) {
+        String id = resource.getId();
+        if (resource instanceof Network) {
+            addEdge(((Network) resource).getComputingCellId(), id);
+        } else if (resource instanceof Zone) {
+            addEdge(((Zone) resource).getNetworkId(), id);
+        } else if (resource instanceof Workload) {
+            addEdge(((Workload) resource).getZoneId(), id);
+        } else if (resource instanceof Instance) {
+            Instance instance = (Instance) resource;
+            addEdge(instance.getWorkloadId(), id);
+            addEdge(instance.getZoneId(), id);
+            if (instance.getSecurityGroupIds() != null) {
+                for (String sgId : instance.getSecurityGroupIds()) {
+                    addEdge(sgId, id);
+                }
+            }
+            String lbId = instance.getLoadBalancerId();
+            if (lbId != null && resources.containsKey(lbId)) {
+                add(instancesByLoadBalancer, lbId, id);
+            }
+        } else if (resource instanceof Volume) {
+            Volume volume = (Volume) resource;
+            addEdge(volume.getInstanceId(), id);
+            addEdge(volume.getComputingCellId(), id);
+            addEdge(volume.getParent(), id);
+        } else if (resource instanceof LoadBalancer) {
+            LoadBalancer lb = (LoadBalancer) resource;
+            addEdge(lb.getWorkloadId(), id);
+            addEdge(lb.getSecurityGroupId(), id);
+        } else if (resource instanceof LoadBalancerListener) {
+            addEdge(((LoadBalancerListener) resource).getLoadBalancerId(), id);
+        } else if (resource instanceof SecurityGroupRule) {
+            SecurityGroupRule rule = (SecurityGroupRule) resource;
+            addEdge(rule.getSecurityGroupId(), id);
+            addEdge(rule.getSrcSecurityGroupId(), id);
+        }
+    }
+
+    private void addEdge(String fromId, String toId) {
+        if (fromId == null || fromId.equals(toId) || !resources.containsKey(fromId)) {
+            return;
+        }
+        List<String> existing = children.get(fromId);
+        if (existing != null && existing.contains(toId)) {
+            return;
+        }
+        add(children, fromId, toId);
+        add(parents, toId, fromId);
+        edgeCount++;
+    }
+
+    private static void add(Map<String, List<String>> adjacency, String key, String value) {
+        List<String> values = adjacency.get(key);
+        if (values == null) {
+            values = Lists.newArrayList();
+            adjacency.put(key, values);
+        }
+        values.add(value);
+    }
+
+    private static List<String> get(Map<String, List<String>> adjacency, String key) {
+        List<String> values = adjacency.get(key);
+        return values != null ? values : Collections.<String>emptyList();
+    }
+
+    private List<BrktResource> toResources(Collection<String> ids) {
+        List<BrktResource> result = Lists.newArrayList();
+        for (String id : ids) {
+            result.add(resources.get(id));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static <T> List<T> filter(Collection<BrktResource> resources, Class<T> resourceClass) {
+        List<T> result = Lists.newArrayList();
+        for (BrktResource resource : resources) {
+            if (resourceClass.isInstance(resource)) {
+                result.add(resourceClass.cast(resource));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Return the ids of every resource reachable from {@code id}, not
+     * including {@code id}, nearest first.  Reuses and fills {@code cache}.
+     */
+    private static Set<String> reachable(String id, Map<String, List<String>> adjacency,
+                                         ConcurrentMap<String, Map<String, Integer>> cache) {
+        Map<String, Integer> cached = cache.get(id);
+        if (cached != null) {
+            return cached.keySet();
+        }
+
+        // Breadth-first, so the first visit of a resource is at its distance.
+        final Map<String, Integer> distances = Maps.newLinkedHashMap();
+        Set<String> visited = Sets.newHashSet();
+        Queue<String> queue = new ArrayDeque<String>();
+        Queue<Integer> queueDistances = new ArrayDeque<Integer>();
+        for (String child : get(adjacency, id)) {
+            queue.add(child);
+            queueDistances.add(1);
+        }
+        while (!queue.isEmpty()) {
+            String next = queue.poll();
+            int distance = queueDistances.poll();
+            if (!visited.add(next)) {
+                continue;
+            }
+            putMin(distances, next, distance);
+            Map<String, Integer> known = cache.get(next);
+            if (known != null) {
+                // Everything reachable from here is already known.  A closer
+                // path to some of it may still be in the queue.
+                for (Map.Entry<String, Integer> entry : known.entrySet()) {
+                    putMin(distances, entry.getKey(), distance + entry.getValue());
+                }
+            } else {
+                for (String child : get(adjacency, next)) {
+                    queue.add(child);
+                    queueDistances.add(distance + 1);
+                }
+            }
+        }
+        distances.remove(id);
+
+        // Resources merged from the cache were added out of order.
+        List<String> ids = Lists.newArrayList(distances.keySet().iterator());
+        Collections.sort(ids, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return distances.get(a).compareTo(distances.get(b));
+            }
+        });
+        Map<String, Integer> value = Maps.newLinkedHashMap();
+        for (String reachableId : ids) {
+            value.put(reachableId, distances.get(reachableId));
+        }
+        value = Collections.unmodifiableMap(value);
+        Map<String, Integer> previous = cache.putIfAbsent(id, value);
+        return (previous != null ? previous : value).keySet();
+    }
+
+    private static void putMin(Map<String, Integer> distances, String id, int distance) {
+        Integer current = distances.get(id);
+        if (current == null || distance < current) {
+            distances.put(id, distance);
+        }
+    }
+
+    private void checkContains(String id) {
+        Preconditions.checkNotNull(id);
+        Preconditions.checkArgument(resources.containsKey(id), "Not in the graph: %s", id);
+    }
+
+    /**
+     * Return the resource with the given id, or {@code null}.
+     */
+    public BrktResource getResource(String id) {
+        return resources.get(id);
+    }
+
+    public boolean contains(String id) {
+        return resources.containsKey(id);
+    }
+
+    /**
+     * Return the resources that directly depend on {@code id}.
+     */
+    public List<BrktResource> getChildren(String id) {
+        checkContains(id);
+        return toResources(get(children, id));
+    }
+
+    /**
+     * Return the resources that {@code id} directly depends on.
+     */
+    public List<BrktResource> getParents(String id) {
+        checkContains(id);
+        return toResources(get(parents, id));
+    }
+
+    /**
+     * Return every resource that directly or indirectly depends on
+     * {@code id}, nearest first.
+     */
+    public List<BrktResource> getDescendants(String id) {
+        checkContains(id);
+        return toResources(reachable(id, children, descendantCache));
+    }
+
+    /**
+     * Return the descendants of {@code id} of the given class.
+     */
+    public <T extends BrktResource> List<T> getDescendants(String id, Class<T> resourceClass) {
+        return filter(getDescendants(id), resourceClass);
+    }
+
+    /**
+     * Return every resource that {@code id} directly or indirectly depends
+     * on, nearest first.
+     */
+    public List<BrktResource> getAncestors(String id) {
+        checkContains(id);
+        return toResources(reachable(id, parents, ancestorCache));
+    }
+
+    /**
+     * Return the ancestors of {@code id} of the given class.
+     */
+    public <T extends BrktResource> List<T> getAncestors(String id, Class<T> resourceClass) {
+        return filter(getAncestors(id), resourceClass);
+    }
+
+    /**
+     * Return the resources affected if {@code id} fails or is deleted: its
+     * descendants, plus the instances behind any affected load balancer.
+     */
+    public BlastRadius getBlastRadius(String id) {
+        checkContains(id);
+        BlastRadius cached = blastRadiusCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        Set<String> ids = Sets.newLinkedHashSet(reachable(id, children, descendantCache));
+        List<String> loadBalancers = Lists.newArrayList();
+        if (resources.get(id) instanceof LoadBalancer) {
+            loadBalancers.add(id);
+        }
+        for (String descendant : ids) {
+            if (resources.get(descendant) instanceof LoadBalancer) {
+                loadBalancers.add(descendant);
+            }
+        }
+        for (String lbId : loadBalancers) {
+            ids.addAll(get(instancesByLoadBalancer, lbId));
+        }
+        ids.remove(id);
+        BlastRadius value = new BlastRadius(id, toResources(ids));
+        BlastRadius previous = blastRadiusCache.putIfAbsent(id, value);
+        return previous != null ? previous : value;
+    }
+
+    /**
+     * Return every resource in the graph.
+     */
+    public Collection<BrktResource> getResources() {
+        return Collections.unmodifiableCollection(resources.values());
+    }
+
+    public int getNodeCount() {
+        return resources.size();
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("nodes", resources.size())
+                .add("edges", edgeCount)
+                .toString();
+    }
+}
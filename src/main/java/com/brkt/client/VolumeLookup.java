@@ -0,0 +1,150 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.ParallelTasks;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * Finds the volumes of many instances or computing cells without one
+ * request per id.  For a small set of ids, the per-id lists are fetched in
+ * parallel.  For a larger set, all volumes are fetched with one request and
+ * grouped in memory.
+ */
+public class VolumeLookup {
+
+    /**
+     * By default, up to this many ids are fetched one by one.
+     */
+    public static final int DEFAULT_FAN_OUT_THRESHOLD = 8;
+
+    private final BrktService service;
+    private final Executor executor;
+    private final int parallelism;
+    private final int fanOutThreshold;
+
+    public VolumeLookup(BrktService service, Executor executor, int parallelism) {
+        this(service, executor, parallelism, DEFAULT_FAN_OUT_THRESHOLD);
+    }
+
+    /**
+     * @param parallelism the maximum number of concurrent per-id requests
+     * @param fanOutThreshold the largest number of ids that are fetched one
+     * by one instead of with a single list request
+     */
+    public VolumeLookup(BrktService service, Executor executor, int parallelism, int fanOutThreshold) {
+        Preconditions.checkNotNull(service);
+        Preconditions.checkNotNull(executor);
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive: " + parallelism);
+        Preconditions.checkArgument(fanOutThreshold >= 0, "fanOutThreshold cannot be negative: " + fanOutThreshold);
+        this.service = service;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.fanOutThreshold = fanOutThreshold;
+    }
+
+    private static final Function<Volume, String> INSTANCE_ID = new Function<Volume, String>() {
+        @Override
+        public String apply(Volume volume) {
+            return volume.getInstanceId();
+        }
+    };
+
+    private static final Function<Volume, String> COMPUTING_CELL_ID = new Function<Volume, String>() {
+        @Override
+        public String apply(Volume volume) {
+            return volume.getComputingCellId();
+        }
+    };
+
+    /**
+     * Return the volumes that are attached to each of the given instances.
+     * Every id is a key in the returned map, and instances without volumes
+     * map to an empty list.
+     */
+    public Map<String, List<Volume>> getVolumesForInstances(Set<String> instanceIds)
+            throws InterruptedException {
+        return lookup(instanceIds, INSTANCE_ID, new Function<String, List<Volume>>() {
+            @Override
+            public List<Volume> apply(String id) {
+                return service.getInstanceVolumes(id);
+            }
+        });
+    }
+
+    /**
+     * Return the volumes in each of the given computing cells.  Every id is a
+     * key in the returned map, and cells without volumes map to an empty list.
+     */
+    public Map<String, List<Volume>> getVolumesForComputingCells(Set<String> computingCellIds)
+            throws InterruptedException {
+        return lookup(computingCellIds, COMPUTING_CELL_ID, new Function<String, List<Volume>>() {
+            @Override
+            public List<Volume> apply(String id) {
+                return service.getComputingCellVolumes(id);
+            }
+        });
+    }
+
+    private Map<String, List<Volume>> lookup(Set<String> ids, Function<Volume, String> key,
+                                             final Function<String, List<Volume>> fetchOne)
+            throws InterruptedException {
+        Preconditions.checkNotNull(ids);
+        Map<String, List<Volume>> result = Maps.newLinkedHashMap();
+        if (ids.isEmpty()) {
+            return result;
+        }
+
+        if (ids.size() <= fanOutThreshold) {
+            List<String> idList = Lists.newArrayList(ids.iterator());
+            List<Callable<List<Volume>>> tasks = Lists.newArrayList();
+            for (final String id : idList) {
+                tasks.add(new Callable<List<Volume>>() {
+                    @Override
+                    public List<Volume> call() {
+                        return fetchOne.apply(id);
+                    }
+                });
+            }
+            List<ParallelTasks.Outcome<List<Volume>>> outcomes = ParallelTasks.runAll(tasks, executor, parallelism);
+            for (int i = 0; i < idList.size(); i++) {
+                result.put(idList.get(i), outcomes.get(i).getOrThrow());
+            }
+            return result;
+        }
+
+        for (String id : ids) {
+            result.put(id, Lists.<Volume>newArrayList());
+        }
+        for (Volume volume : service.getAllVolumes()) {
+            List<Volume> volumes = result.get(key.apply(volume));
+            if (volumes != null) {
+                volumes.add(volume);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,424 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A size-bounded cache with per-call expiration and refresh-ahead.
+ *
+ * <p>Eviction is frequency-aware: the access frequency of every key is
+ * estimated with a small count-min sketch.  When the cache is full, a new
+ * entry only replaces the least recently used entry if its key has been
+ * requested more often.  This keeps frequently used entries from being
+ * flushed by a scan of keys that are used once.
+ *
+ * <p>An entry is fresh for {@code ttl} after it was loaded.  For another
+ * {@code maxStale} after that, {@link #get} returns the stale value and
+ * reloads it on the refresh executor.  After that, {@code get} reloads the
+ * value before returning it.
+ *
+ * <p>Values are loaded outside the cache's lock, so a slow load doesn't
+ * block other callers.  Concurrent misses for the same key may load it
+ * more than once.
+ */
+public class BoundedCache<K, V> {
+
+    /**
+     * Loads the value for a key on a cache miss or refresh.
+     */
+    public interface Loader<K, V> {
+        V load(K key);
+    }
+
+    /**
+     * A snapshot of the cache's counters.
+     */
+    public static class Stats {
+        public final long hitCount;
+        public final long staleHitCount;
+        public final long missCount;
+        public final long loadFailureCount;
+        public final long refreshCount;
+        public final long evictionCount;
+        public final long rejectionCount;
+
+        Stats(long hitCount, long staleHitCount, long missCount, long loadFailureCount,
+              long refreshCount, long evictionCount, long rejectionCount) {
+            this.hitCount = hitCount;
+            this.staleHitCount = staleHitCount;
+            this.missCount = missCount;
+            this.loadFailureCount = loadFailureCount;
+            this.refreshCount = refreshCount;
+            this.evictionCount = evictionCount;
+            this.rejectionCount = rejectionCount;
+        }
+
+        /**
+         * Return the fraction of requests that were served from the cache,
+         * including stale hits.
+         */
+        public double hitRate() {
+            long requests = hitCount + staleHitCount + missCount;
+            return requests == 0 ? 1.0 : (double) (hitCount + staleHitCount) / requests;
+        }
+
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("hitCount", hitCount)
+                    .add("staleHitCount", staleHitCount)
+                    .add("missCount", missCount)
+                    .add("loadFailureCount", loadFailureCount)
+                    .add("refreshCount", refreshCount)
+                    .add("evictionCount", evictionCount)
+                    .add("rejectionCount", rejectionCount)
+                    .toString();
+        }
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long loadedAtNanos;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(V value, long loadedAtNanos) {
+            this.value = value;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+
+    private final int maximumSize;
+    private final Executor refreshExecutor;
+
+    /**
+     * Guards {@link #entries} and {@link #sketch}.  No I/O happens while it is held.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Entries in access order, least recently used first.
+     */
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+
+    /**
+     * Incremented by every invalidation, so that a load after a miss that
+     * started before an invalidation doesn't store its result.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong staleHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong loadFailureCount = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong rejectionCount = new AtomicLong();
+
+    /**
+     * @param maximumSize the maximum number of entries
+     * @param refreshExecutor runs background refreshes of stale entries
+     */
+    public BoundedCache(int maximumSize, Executor refreshExecutor) {
+        Preconditions.checkArgument(maximumSize > 0, "maximumSize must be positive: " + maximumSize);
+        Preconditions.checkNotNull(refreshExecutor);
+        this.maximumSize = maximumSize;
+        this.refreshExecutor = refreshExecutor;
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * Return the cached value for {@code key}, loading it with {@code loader}
+     * if it is missing or has been stale for longer than {@code maxStaleNanos}.
+     * Exceptions thrown by the loader are propagated and nothing is cached.
+     */
+    public V get(K key, long ttlNanos, long maxStaleNanos, Loader<K, V> loader) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(loader);
+        Entry<V> entry;
+        lock.lock();
+        try {
+            sketch.increment(key.hashCode());
+            entry = entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+
+        if (entry != null) {
+            long age = System.nanoTime() - entry.loadedAtNanos;
+            if (age < ttlNanos) {
+                hitCount.incrementAndGet();
+                return entry.value;
+            }
+            if (age - ttlNanos < maxStaleNanos) {
+                staleHitCount.incrementAndGet();
+                refresh(key, entry, loader);
+                return entry.value;
+            }
+        }
+
+        missCount.incrementAndGet();
+        long startGeneration = generation.get();
+        V value;
+        try {
+            value = loader.load(key);
+        } catch (RuntimeException e) {
+            loadFailureCount.incrementAndGet();
+            throw e;
+        }
+        put(key, new Entry<V>(value, System.nanoTime()), startGeneration);
+        return value;
+    }
+
+    /**
+     * Return the cached value for {@code key} if there is one, regardless of
+     * its age, or {@code null}.  Doesn't count as a hit or miss.
+     */
+    public V getIfPresent(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            return entry == null ? null : entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the cached value for {@code key} if it was loaded less than
+     * {@code ttlNanos} ago, or {@code null}.  Counts as a hit or miss.
+     */
+    public V getIfPresent(K key, long ttlNanos) {
+        Preconditions.checkNotNull(key);
+        Entry<V> entry;
+        lock.lock();
+        try {
+            sketch.increment(key.hashCode());
+            entry = entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+        if (entry != null && System.nanoTime() - entry.loadedAtNanos < ttlNanos) {
+            hitCount.incrementAndGet();
+            return entry.value;
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store {@code value} as if it had just been loaded, for example after
+     * writing it to the server.  A load of {@code key} that is in progress
+     * doesn't overwrite it.
+     */
+    public void put(K key, V value) {
+        Preconditions.checkNotNull(key);
+        lock.lock();
+        try {
+            sketch.increment(key.hashCode());
+            put(key, new Entry<V>(value, System.nanoTime()), generation.incrementAndGet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refresh(final K key, final Entry<V> entry, final Loader<K, V> loader) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            // Another caller already started the refresh.
+            return;
+        }
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    V value = loader.load(key);
+                    refreshCount.incrementAndGet();
+                    if (!replace(key, entry, new Entry<V>(value, System.nanoTime()))) {
+                        entry.refreshing.set(false);
+                    }
+                } catch (RuntimeException e) {
+                    // Keep serving the stale value, and try again on the next get().
+                    loadFailureCount.incrementAndGet();
+                    entry.refreshing.set(false);
+                }
+            }
+        };
+        try {
+            refreshExecutor.execute(task);
+        } catch (RuntimeException e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    /**
+     * Replace the refreshed entry {@code expected} with {@code entry}.  If
+     * {@code key} was invalidated, overwritten or evicted since the refresh
+     * started, the refreshed value may be out of date, so discard it and
+     * return {@code false}.  Writes to other keys don't matter.
+     */
+    private boolean replace(K key, Entry<V> expected, Entry<V> entry) {
+        lock.lock();
+        try {
+            if (entries.get(key) != expected) {
+                return false;
+            }
+            entries.put(key, entry);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(K key, Entry<V> entry, long startGeneration) {
+        lock.lock();
+        try {
+            if (generation.get() != startGeneration) {
+                // Invalidated while loading.  The value may be out of date.
+                return;
+            }
+            if (entries.containsKey(key) || entries.size() < maximumSize) {
+                entries.put(key, entry);
+                return;
+            }
+            Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+            K victim = it.next().getKey();
+            if (sketch.frequency(key.hashCode()) > sketch.frequency(victim.hashCode())) {
+                it.remove();
+                evictionCount.incrementAndGet();
+                entries.put(key, entry);
+            } else {
+                rejectionCount.incrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all entries whose keys match {@code predicate}.
+     */
+    public void invalidateIf(Predicate<? super K> predicate) {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            Iterator<K> it = entries.keySet().iterator();
+            while (it.hasNext()) {
+                if (predicate.apply(it.next())) {
+                    it.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hitCount.get(), staleHitCount.get(), missCount.get(), loadFailureCount.get(),
+                refreshCount.get(), evictionCount.get(), rejectionCount.get());
+    }
+
+    /**
+     * Estimates how often each key hash was seen, with four rows of
+     * counters that saturate at 15.  All counters are halved periodically,
+     * so that the estimate follows changes in popularity.
+     */
+    static class FrequencySketch {
+        private static final int[] SEEDS = { 0x97cb3127, 0xb3a7e2d1, 0x5f356495, 0x2c8e9ad3 };
+        private static final int MAX_COUNT = 15;
+
+        private final int[][] rows;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            int width = Integer.highestOneBit(Math.max(64, maximumSize) * 2 - 1);
+            rows = new int[SEEDS.length][width];
+            mask = width - 1;
+            sampleSize = 10 * Math.max(64, maximumSize);
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        void increment(int hash) {
+            for (int row = 0; row < rows.length; row++) {
+                int i = index(hash, row);
+                if (rows[row][i] < MAX_COUNT) {
+                    rows[row][i]++;
+                }
+            }
+            if (++additions >= sampleSize) {
+                for (int[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>>= 1;
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int min = MAX_COUNT;
+            for (int row = 0; row < rows.length; row++) {
+                min = Math.min(min, rows[row][index(hash, row)]);
+            }
+            return min;
+        }
+    }
+}
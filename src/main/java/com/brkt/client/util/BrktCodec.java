@@ -0,0 +1,52 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+
+/**
+ * Converts between JSON and Java objects.  {@link BrktRestClient} uses a
+ * codec to deserialize response payloads and to serialize request
+ * attributes.  The default is {@link GsonCodec}.  {@link StreamingCodec}
+ * binds the Bracket resource classes directly to the JSON stream, without
+ * going through {@code Gson}.
+ *
+ * <p>Projection, lazy lists and publishers need the resource binding of
+ * the built-in codecs, so other implementations don't support them.  To
+ * customize serialization and keep them, extend {@code GsonCodec} or
+ * {@code StreamingCodec}.  See {@link BrktRestClient.Builder#codec}.
+ *
+ * <p>Implementations must be thread-safe.
+ */
+public interface BrktCodec {
+
+    /**
+     * Deserialize one JSON document to an object of the given type.
+     *
+     * @throws com.google.gson.JsonParseException if the document is not valid
+     * JSON or does not match {@code type}
+     */
+    <T> T decode(Reader reader, Type type) throws IOException;
+
+    /**
+     * Serialize {@code value} as a JSON document.
+     */
+    void encode(Object value, Writer writer) throws IOException;
+}
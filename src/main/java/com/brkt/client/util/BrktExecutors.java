@@ -0,0 +1,136 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates executors for running blocking service calls.  On Java 21 and
+ * later, each task runs on its own virtual thread, so the number of
+ * concurrent calls is not limited by the number of platform threads.  On
+ * older runtimes, including Android, tasks run on a cached pool of daemon
+ * threads.
+ *
+ * <p>Virtual threads are looked up with reflection, so the SDK still
+ * compiles and runs on Java 6.  Set the system property
+ * {@code brkt.virtualThreads} to {@code false} to always use platform
+ * threads.
+ */
+public class BrktExecutors {
+
+    public static final String VIRTUAL_THREADS_PROPERTY = "brkt.virtualThreads";
+
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}, or {@code null} if
+     * the runtime doesn't support virtual threads.
+     */
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadMethod();
+
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private BrktExecutors() {
+    }
+
+    private static Method findVirtualThreadMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Return {@code true} if the runtime supports virtual threads and they
+     * haven't been disabled with the {@code brkt.virtualThreads} property.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null
+                && !"false".equalsIgnoreCase(System.getProperty(VIRTUAL_THREADS_PROPERTY));
+    }
+
+    /**
+     * Return an executor that runs each task on a new virtual thread.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not
+     * supported, see {@link #isVirtualThreadSupported}
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        if (!isVirtualThreadSupported()) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this runtime");
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Return an executor for blocking service calls: a virtual thread per
+     * task if supported, otherwise a cached pool of daemon threads.  The
+     * caller is responsible for shutting it down.
+     */
+    public static ExecutorService newBlockingExecutor() {
+        if (isVirtualThreadSupported()) {
+            return newVirtualThreadExecutor();
+        }
+        return Executors.newCachedThreadPool(newDaemonThreadFactory());
+    }
+
+    /**
+     * Holds the shared executor, which is created on first use.
+     */
+    private static class DefaultExecutorHolder {
+        static final ExecutorService EXECUTOR = newBlockingExecutor();
+    }
+
+    /**
+     * Return a shared executor for blocking service calls, created with
+     * {@link #newBlockingExecutor}.  Its threads are daemon threads, so it
+     * never needs to be shut down.  Callers must not shut it down.
+     */
+    public static ExecutorService getDefaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Return a factory for daemon threads named {@code brkt-N-thread-M}.
+     * Daemon threads don't prevent the JVM from exiting if the caller
+     * forgets to shut down the executor.
+     */
+    public static ThreadFactory newDaemonThreadFactory() {
+        final String prefix = "brkt-" + POOL_COUNT.incrementAndGet() + "-thread-";
+        final AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, prefix + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+}
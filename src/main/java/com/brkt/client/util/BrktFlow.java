@@ -0,0 +1,71 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+/**
+ * Interfaces for asynchronous streams with backpressure.  They have the
+ * same methods and contracts as the Reactive Streams interfaces and Java 9's
+ * {@code java.util.concurrent.Flow}, so adapting them is a one-line
+ * delegation per method.  They are defined here so that the SDK doesn't
+ * need an external dependency or Java 9.
+ */
+public class BrktFlow {
+
+    private BrktFlow() {
+    }
+
+    /**
+     * Produces elements for subscribers, according to the demand that they
+     * signal with {@link Subscription#request}.
+     */
+    public interface Publisher<T> {
+        /**
+         * Start a new stream for {@code subscriber}.  The subscriber's
+         * {@code onSubscribe} method is called first.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receives the elements of a stream.  Methods are called serially, never
+     * concurrently.
+     */
+    public interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    /**
+     * Links a subscriber to a publisher.
+     */
+    public interface Subscription {
+        /**
+         * Request up to {@code n} more elements.  {@code n} must be positive.
+         */
+        void request(long n);
+
+        /**
+         * Stop sending elements and release resources.
+         */
+        void cancel();
+    }
+}
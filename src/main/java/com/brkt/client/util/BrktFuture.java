@@ -0,0 +1,206 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@code Future} that runs listeners when it completes, so that results
+ * can be composed without blocking a thread.
+ *
+ * <p>{@link #getUnchecked} rethrows the exception that the task threw,
+ * for example a {@link com.brkt.client.BrktService.RuntimeHttpError},
+ * instead of wrapping it in an {@code ExecutionException}.
+ */
+public class BrktFuture<V> extends FutureTask<V> {
+
+    /**
+     * Runs listeners on the thread that completes the future.
+     */
+    public static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final Callable<Object> UNUSED = new Callable<Object>() {
+        @Override
+        public Object call() {
+            throw new IllegalStateException("This future is completed by set()");
+        }
+    };
+
+    private final Object lock = new Object();
+
+    /**
+     * Listeners that run when the future completes, or {@code null} after it
+     * has completed.
+     */
+    private List<Runnable> listeners = Lists.newArrayList();
+
+    public BrktFuture(Callable<V> callable) {
+        super(callable);
+    }
+
+    /**
+     * Create a future that is completed by {@link #set} or
+     * {@link #setException}.  Those methods are protected, so only the
+     * subclass that created the future can complete it.
+     */
+    @SuppressWarnings("unchecked")
+    protected BrktFuture() {
+        super((Callable<V>) UNUSED);
+    }
+
+    /**
+     * Return a future that has already completed with {@code value}.
+     */
+    public static <V> BrktFuture<V> immediate(V value) {
+        BrktFuture<V> future = new BrktFuture<V>();
+        future.set(value);
+        return future;
+    }
+
+    /**
+     * Run {@code listener} on {@code executor} when this future completes.
+     * If it has already completed, the listener is run immediately.
+     */
+    public void addListener(final Runnable listener, final Executor executor) {
+        Preconditions.checkNotNull(listener);
+        Preconditions.checkNotNull(executor);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(listener);
+            }
+        };
+        synchronized (lock) {
+            if (listeners != null) {
+                listeners.add(task);
+                return;
+            }
+        }
+        task.run();
+    }
+
+    @Override
+    protected void done() {
+        List<Runnable> toRun;
+        synchronized (lock) {
+            toRun = listeners;
+            listeners = null;
+        }
+        for (Runnable task : toRun) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Don't let one listener or a rejecting executor prevent the others from running.
+            }
+        }
+    }
+
+    /**
+     * Return the result, rethrowing the task's exception if it failed.
+     *
+     * @throws CancellationException if the future was cancelled
+     * @throws RuntimeException the exception thrown by the task, or a
+     * {@code RuntimeException} that wraps a checked exception
+     */
+    public V getUnchecked() {
+        try {
+            return get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Return a future whose result is {@code function} applied to the result
+     * of this future.  The function runs on the thread that completes this
+     * future, so it should be fast.  If this future fails, the returned
+     * future fails with the same exception.
+     */
+    public <R> BrktFuture<R> transform(final Function<? super V, ? extends R> function) {
+        Preconditions.checkNotNull(function);
+        final BrktFuture<R> result = new BrktFuture<R>(new Callable<R>() {
+            @Override
+            public R call() {
+                return function.apply(getUnchecked());
+            }
+        });
+        addListener(result, DIRECT_EXECUTOR);
+        return result;
+    }
+
+    /**
+     * Return a future whose result is the list of results of {@code futures},
+     * in order.  If any of them fails, the returned future fails with its
+     * exception.
+     */
+    public static <V> BrktFuture<List<V>> allAsList(final List<? extends BrktFuture<? extends V>> futures) {
+        final BrktFuture<List<V>> result = new BrktFuture<List<V>>();
+        if (futures.isEmpty()) {
+            result.set(Collections.<V>emptyList());
+            return result;
+        }
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+                if (remaining.decrementAndGet() > 0) {
+                    return;
+                }
+                List<V> values = Lists.newArrayList();
+                try {
+                    for (BrktFuture<? extends V> future : futures) {
+                        values.add(future.getUnchecked());
+                    }
+                } catch (Throwable t) {
+                    result.setException(t);
+                    return;
+                }
+                result.set(values);
+            }
+        };
+        for (BrktFuture<? extends V> future : futures) {
+            future.addListener(listener, DIRECT_EXECUTOR);
+        }
+        return result;
+    }
+}
@@ -21,6 +21,7 @@ import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
@@ -58,6 +59,43 @@ public class BrktHttpClient {
         }
     }
 
+    /**
+     * A response whose payload is read incrementally from the connection.
+     * The caller must close it.
+     */
+    public static class StreamingResponse implements Closeable {
+        public final int status;
+        public final String message;
+
+        /**
+         * The response payload.  Reads block until data arrives from the server.
+         */
+        public final InputStream payload;
+
+        private final HttpURLConnection conn;
+
+        StreamingResponse(HttpURLConnection conn, int status, String message, InputStream payload) {
+            this.conn = conn;
+            this.status = status;
+            this.message = message;
+            this.payload = payload;
+        }
+
+        /**
+         * Close the payload stream and release the connection.  Closing before
+         * the payload has been read discards the rest of the response.
+         */
+        @Override
+        public void close() {
+            Closeables.closeQuietly(payload);
+            conn.disconnect();
+        }
+
+        public String toString() {
+            return String.format("%d %s", status, message);
+        }
+    }
+
     private BrktHttpClient(Builder builder) {
         rootUri = builder.rootUri;
         macKey = builder.macKey;
@@ -96,6 +134,10 @@ public class BrktHttpClient {
             } else {
                 in = conn.getErrorStream();
             }
+            if (in == null) {
+                // The error response has no body.
+                return NO_CONTENT;
+            }
             return ByteStreams.toByteArray(in);
         } finally {
             Closeables.closeQuietly(in);
@@ -108,6 +150,24 @@ public class BrktHttpClient {
         return new Response(conn.getResponseCode(), conn.getResponseMessage(), readPayload(conn));
     }
 
+    /**
+     * Send a GET request and return as soon as the response headers have been
+     * received.  If the status is not 2xx, the payload has already been read
+     * and the returned stream reads from memory.
+     */
+    public StreamingResponse getStream(String path) throws IOException {
+        HttpURLConnection conn = newConnection(path, Method.GET);
+        conn.connect();
+        int status = conn.getResponseCode();
+        InputStream in;
+        if (status / 100 == 2) {
+            in = conn.getInputStream();
+        } else {
+            in = new ByteArrayInputStream(readPayload(conn));
+        }
+        return new StreamingResponse(conn, status, conn.getResponseMessage(), in);
+    }
+
     public Response post(String path, byte[] requestPayload) throws IOException {
         HttpURLConnection conn = newConnection(path, Method.POST);
         conn.setDoOutput(true);
@@ -17,17 +17,22 @@
 package com.brkt.client.util;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.gson.*;
-import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
+import com.google.gson.stream.JsonReader;
 
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * Sends a REST request to the Bracket service and deserializes the response
@@ -36,11 +41,23 @@ import java.util.Map;
 public class BrktRestClient {
 
     private final BrktHttpClient httpClient;
-    private final Gson gson;
+    private final BrktCodec codec;
 
-    private BrktRestClient(BrktHttpClient httpClient) {
+    /**
+     * {@code true} if {@link #codec} writes the same JSON as
+     * {@link RequestBuilder}, so that a {@link RequestBody} can be sent as-is.
+     */
+    private final boolean defaultEncoding;
+    private final boolean lazyLists;
+    private final ResponseCache responseCache;
+
+    private BrktRestClient(BrktHttpClient httpClient, BrktCodec codec, boolean defaultEncoding,
+                           boolean lazyLists, ResponseCache responseCache) {
         this.httpClient = httpClient;
-        gson = newGson();
+        this.codec = codec;
+        this.defaultEncoding = defaultEncoding;
+        this.lazyLists = lazyLists;
+        this.responseCache = responseCache;
     }
 
     public static class Builder {
@@ -48,6 +65,9 @@ public class BrktRestClient {
         private String accessToken;
         private String macKey;
         private Integer timeoutMillis;
+        private boolean lazyLists;
+        private BrktCodec codec;
+        private ResponseCache responseCache;
 
         public Builder (String rootUri) {
             this.rootUri = rootUri;
@@ -68,6 +88,55 @@ public class BrktRestClient {
             return this;
         }
 
+        /**
+         * If {@code true}, lists of resources are returned as a
+         * {@link LazyResourceList}, which deserializes each element the
+         * first time it is accessed.
+         */
+        public Builder lazyLists(boolean lazyLists) {
+            this.lazyLists = lazyLists;
+            return this;
+        }
+
+        /**
+         * Use the given codec to serialize requests and deserialize responses.
+         * The default is {@link GsonCodec}.
+         *
+         * <p>Some features depend on the resource binding of the built-in
+         * codecs.  They are only available if {@code codec} is a
+         * {@link GsonCodec} or a {@link StreamingCodec}, or a subclass of
+         * either:
+         * <ul>
+         * <li>{@link BrktRestClient#get(String, Class, Set)}, which binds only the
+         * requested fields
+         * <li>{@link BrktRestClient#getLazy} and {@link #lazyLists}, which deserialize
+         * list elements on first access
+         * <li>{@link BrktRestClient#publish}, which streams list elements as they arrive
+         * </ul>
+         * With any other codec, projection, {@code getLazy} and
+         * {@code publish} throw {@code IllegalArgumentException}, and
+         * {@code lazyLists} has no effect.  A {@link RequestBody} is only
+         * sent as encoded with the default codec or a {@code StreamingCodec}.
+         * Otherwise its attributes are encoded again with {@code codec}.
+         */
+        public Builder codec(BrktCodec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * Return cached payloads for {@code GET} requests from the given
+         * cache, and store the payloads of successful responses in it.
+         * Published lists are not cached.  Errors thrown by the cache are
+         * ignored: a failed read is treated as a miss, so the request goes
+         * to the server, and a failed write or invalidation doesn't change
+         * the result of the request.
+         */
+        public Builder responseCache(ResponseCache responseCache) {
+            this.responseCache = responseCache;
+            return this;
+        }
+
         public BrktRestClient build() {
             Preconditions.checkNotNull(rootUri, "rootUri cannot be null");
             Preconditions.checkNotNull(accessToken, "accessToken cannot be null");
@@ -78,7 +147,13 @@ public class BrktRestClient {
             if (timeoutMillis != null) {
                 builder.timeoutMillis(timeoutMillis);
             }
-            return new BrktRestClient(builder.build());
+            BrktCodec c = codec;
+            if (c == null) {
+                c = new GsonCodec();
+            }
+            // A GsonCodec passed by the caller may wrap a customized Gson.
+            boolean defaultEncoding = codec == null || codec instanceof StreamingCodec;
+            return new BrktRestClient(builder.build(), c, defaultEncoding, lazyLists, responseCache);
         }
     }
 
@@ -120,7 +195,7 @@ public class BrktRestClient {
 
             // The payload doesn't provide anything useful for 404.
             if (status != 404 && payload.length > 0) {
-                buf.append(' ').append(new String(payload));
+                buf.append(' ').append(new String(payload, Utf8Reader.UTF_8));
             }
             if (buf.length() <= 200) {
                 return buf.toString();
@@ -130,60 +205,217 @@ public class BrktRestClient {
     }
 
     public static Gson newGson() {
-        // Custom serialization for ISO 8601 timestamps.
-        JsonSerializer timestampSerializer = new JsonSerializer<Timestamp>() {
-            public JsonElement serialize(Timestamp ts, Type typeOfSrc, JsonSerializationContext context) {
-                DateTime dt = new DateTime(ts.getTime()).withZone(DateTimeZone.UTC);
-                return new JsonPrimitive(dt.toString());
-            }
-        };
+        // Bind resource classes with precomputed field tables instead of Gson's
+        // generic reflective adapter.
+        FieldNamingPolicy namingPolicy = FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES;
+
+        return new GsonBuilder()
+                .setFieldNamingPolicy(namingPolicy)
+                .registerTypeAdapterFactory(new BrktTypeAdapterFactory(namingPolicy))
+                // Custom serialization for ISO 8601 timestamps.
+                .registerTypeAdapter(Timestamp.class, Iso8601.TIMESTAMP_ADAPTER)
+                .create();
+    }
+
+    private static void checkStatus(BrktHttpClient.Response response) throws HttpError {
+        if (response.status / 100 != 2) {
+            throw new HttpError(response.status, response.message, response.payload);
+        }
+    }
 
-        JsonDeserializer<Timestamp> timestampDeserializer = new JsonDeserializer<Timestamp>() {
-            @Override
-            public Timestamp deserialize(
-                    JsonElement jsonElement, Type type, JsonDeserializationContext jsonDeserializationContext)
-                    throws JsonParseException {
-                DateTime dt = new DateTime(jsonElement.getAsJsonPrimitive().getAsString());
-                return new Timestamp(dt.getMillis());
+    /**
+     * Return the codec's adapter for a resource class, or {@code null} if the
+     * codec doesn't bind resource classes with {@link BrktTypeAdapterFactory}.
+     */
+    private <T> BrktTypeAdapterFactory.ResourceAdapter<T> getResourceAdapter(Class<T> rawType) {
+        if (codec instanceof GsonCodec) {
+            return ((GsonCodec) codec).getResourceAdapter(rawType);
+        }
+        if (codec instanceof StreamingCodec) {
+            return ((StreamingCodec) codec).getResourceAdapter(rawType);
+        }
+        return null;
+    }
+
+    /**
+     * Return the payload of a successful {@code GET} of {@code path}, from
+     * the response cache if possible.  If {@code notFoundAsNull} is
+     * {@code true}, return {@code null} if the server returns 404.
+     */
+    private byte[] fetch(String path, boolean notFoundAsNull) throws IOException, HttpError {
+        if (responseCache != null) {
+            try {
+                byte[] cached = responseCache.get(path);
+                if (cached != null) {
+                    return cached;
+                }
+            } catch (IOException e) {
+                // Treat an unreadable cache as a miss.
+            }
+        }
+        BrktHttpClient.Response response = httpClient.get(path);
+        if (notFoundAsNull && response.status == 404) {
+            return null;
+        }
+        checkStatus(response);
+        if (responseCache != null) {
+            try {
+                responseCache.put(path, response.payload);
+            } catch (IOException e) {
+                // The server's response is still good.
+            }
+        }
+        return response.payload;
+    }
 
+    /**
+     * Invalidate the cached payloads that a write of {@code path} may have
+     * changed.  Doesn't throw, so that the result or error of the write
+     * itself is reported.
+     */
+    private void invalidate(String path) {
+        if (responseCache != null) {
+            try {
+                responseCache.invalidate(path);
+            } catch (IOException e) {
+                // Ignore.  The cache decides how long stale entries can live.
             }
-        };
+        }
+    }
 
-        return new GsonBuilder()
-                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
-                .registerTypeAdapter(Timestamp.class, timestampSerializer)
-                .registerTypeAdapter(Timestamp.class, timestampDeserializer)
-                .create();
+    private <T> T decode(byte[] payload, Type type) throws IOException {
+        return codec.decode(new Utf8Reader(payload), type);
     }
 
     /**
-     * Get the resource and deserialize to an object of the given type.
+     * If {@code type} is a list of resources, return the adapter for the
+     * element type.  Otherwise return {@code null}.
      */
+    @SuppressWarnings("unchecked")
+    private BrktTypeAdapterFactory.ResourceAdapter<Object> getListElementAdapter(Type type) {
+        if (!(type instanceof ParameterizedType)) {
+            return null;
+        }
+        ParameterizedType pt = (ParameterizedType) type;
+        if (pt.getRawType() != List.class && pt.getRawType() != ArrayList.class) {
+            return null;
+        }
+        Type elementType = pt.getActualTypeArguments()[0];
+        if (!(elementType instanceof Class) || !BrktTypeAdapterFactory.isModelClass((Class<?>) elementType)) {
+            return null;
+        }
+        return getResourceAdapter((Class<Object>) elementType);
+    }
+
+    /**
+     * Get the resource and deserialize to an object of the given type.  If
+     * lazy lists are enabled and {@code type} is a list of resources, return
+     * a {@link LazyResourceList}.
+     */
+    @SuppressWarnings("unchecked")
     public <T> T get(String path, Type type) throws IOException, HttpError {
-        BrktHttpClient.Response response = httpClient.get(path);
-        if (response.status / 100 != 2) {
-            throw new HttpError(response.status, response.message, response.payload);
+        byte[] payload = fetch(path, false);
+        if (lazyLists) {
+            BrktTypeAdapterFactory.ResourceAdapter<Object> adapter = getListElementAdapter(type);
+            if (adapter != null) {
+                return (T) new LazyResourceList<Object>(payload, adapter);
+            }
+        }
+        return decode(payload, type);
+    }
+
+    /**
+     * Get a list of resources as a {@link LazyResourceList}, whether or not
+     * lazy lists are enabled.
+     */
+    public <T> LazyResourceList<T> getLazy(String path, Class<T> elementClass) throws IOException, HttpError {
+        BrktTypeAdapterFactory.ResourceAdapter<T> adapter = getResourceAdapter(elementClass);
+        Preconditions.checkArgument(adapter != null, "lazy lists are not supported for " + elementClass);
+        return new LazyResourceList<T>(fetch(path, false), adapter);
+    }
+
+    /**
+     * Like {@link #get(String, Type)}, but return {@code null} if the
+     * resource doesn't exist.  No exception is created for the 404
+     * response, so checking whether a resource still exists is cheap.
+     */
+    public <T> T find(String path, Type type) throws IOException, HttpError {
+        byte[] payload = fetch(path, true);
+        if (payload == null) {
+            return null;
+        }
+        return decode(payload, type);
+    }
+
+    /**
+     * Get a list of resources and deserialize each element to an object of
+     * the given class.  Only the JSON fields named in {@code projection}
+     * (for example {@code "name"} or {@code "requested_state"}) and
+     * {@code id} are bound.  The values of other fields are skipped without
+     * being materialized, which saves time and memory for large lists.
+     */
+    public <T> List<T> get(String path, Class<T> elementClass, Set<String> projection)
+            throws IOException, HttpError {
+        Preconditions.checkNotNull(projection, "projection cannot be null");
+        BrktTypeAdapterFactory.ResourceAdapter<T> resourceAdapter = getResourceAdapter(elementClass);
+        Preconditions.checkArgument(resourceAdapter != null,
+                "projection is not supported for " + elementClass);
+        JsonReader in = new JsonReader(new Utf8Reader(fetch(path, false)));
+        List<T> list = Lists.newArrayList();
+        try {
+            in.beginArray();
+            while (in.hasNext()) {
+                list.add(resourceAdapter.read(in, projection));
+            }
+            in.endArray();
+        } catch (IllegalStateException e) {
+            throw new JsonSyntaxException(e);
         }
-        Reader reader = new InputStreamReader(new ByteArrayInputStream(response.payload));
-        return gson.fromJson(reader, type);
+        return list;
+    }
+
+    /**
+     * Return a publisher for a list of resources.  Each subscription gets the
+     * resource and sends elements to the subscriber as they are parsed,
+     * reading from the connection only as fast as the subscriber requests
+     * elements.  Reading and parsing run on {@code executor}.
+     *
+     * @see ResourceListPublisher
+     */
+    public <T> BrktFlow.Publisher<T> publish(String path, Class<T> elementClass, Executor executor) {
+        Preconditions.checkNotNull(path, "path cannot be null");
+        Preconditions.checkNotNull(executor, "executor cannot be null");
+        BrktTypeAdapterFactory.ResourceAdapter<T> adapter = getResourceAdapter(elementClass);
+        Preconditions.checkArgument(adapter != null, "publishing is not supported for " + elementClass);
+        return new ResourceListPublisher<T>(httpClient, path, adapter, executor);
     }
 
     /**
      * Post an element map to the server and deserialize to an object of the given type.
+     * If {@code attrs} is a {@link RequestBody} and the client uses a built-in
+     * codec, its encoded payload is sent as-is.
      */
     public <T> T post(String path, Type type, Map<String, Object> attrs)
             throws IOException, HttpError {
         byte[] requestPayload = BrktHttpClient.NO_CONTENT;
-        if (attrs != null) {
-            String json = gson.toJson(attrs);
-            requestPayload = json.getBytes();
+        if (attrs instanceof RequestBody && defaultEncoding) {
+            // Already encoded.
+            requestPayload = ((RequestBody) attrs).payload();
+        } else if (attrs != null) {
+            ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+            Writer writer = new OutputStreamWriter(bytesOut, Utf8Reader.UTF_8);
+            codec.encode(attrs, writer);
+            writer.flush();
+            requestPayload = bytesOut.toByteArray();
         }
-        BrktHttpClient.Response response = httpClient.post(path, requestPayload);
-        if (response.status / 100 != 2) {
-            throw new HttpError(response.status, response.message, response.payload);
+        BrktHttpClient.Response response;
+        try {
+            response = httpClient.post(path, requestPayload);
+        } finally {
+            invalidate(path);
         }
-        Reader reader = new InputStreamReader(new ByteArrayInputStream(response.payload));
-        return gson.fromJson(reader, type);
+        checkStatus(response);
+        return decode(response.payload, type);
     }
 
     /**
@@ -191,15 +423,62 @@ public class BrktRestClient {
      * to an object of the given type.
      */
     public <T> T delete(String path, Type type) throws IOException, HttpError {
-        BrktHttpClient.Response response = httpClient.delete(path);
-        if (response.status / 100 != 2) {
-            throw new HttpError(response.status, response.message, response.payload);
+        BrktHttpClient.Response response;
+        try {
+            response = httpClient.delete(path);
+        } finally {
+            invalidate(path);
         }
+        checkStatus(response);
         if (type != null) {
-            Reader reader = new InputStreamReader(new ByteArrayInputStream(response.payload));
-            return gson.fromJson(reader, type);
+            return decode(response.payload, type);
         }
         return null;
     }
 
+    /**
+     * Get the resource and return the response payload without deserializing
+     * it.  The returned array is not copied, so it can be relayed as-is.
+     */
+    public byte[] getRaw(String path) throws IOException, HttpError {
+        return fetch(path, false);
+    }
+
+    /**
+     * Get the resource and return the response payload as a JSON tree.
+     */
+    public JsonElement getJson(String path) throws IOException, HttpError {
+        JsonReader in = new JsonReader(new Utf8Reader(getRaw(path)));
+        in.setLenient(true);
+        return new JsonParser().parse(in);
+    }
+
+    /**
+     * Post a payload that is already encoded as JSON and return the response
+     * payload without deserializing it.
+     */
+    public byte[] postRaw(String path, byte[] requestPayload) throws IOException, HttpError {
+        BrktHttpClient.Response response;
+        try {
+            response = httpClient.post(path, requestPayload);
+        } finally {
+            invalidate(path);
+        }
+        checkStatus(response);
+        return response.payload;
+    }
+
+    /**
+     * Delete the resource and return the response payload without deserializing it.
+     */
+    public byte[] deleteRaw(String path) throws IOException, HttpError {
+        BrktHttpClient.Response response;
+        try {
+            response = httpClient.delete(path);
+        } finally {
+            invalidate(path);
+        }
+        checkStatus(response);
+        return response.payload;
+    }
 }
@@ -0,0 +1,568 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.brkt.client.BrktResource;
+import com.brkt.client.InstanceReboot;
+import com.brkt.client.MachineType;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.FieldNamingStrategy;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates streaming {@code TypeAdapter}s for the Bracket resource classes.
+ * Each adapter looks up fields by their JSON name in a table that is built
+ * once per class, and reads strings, numbers, booleans, enums and string
+ * collections directly from the {@code JsonReader}, and writes them directly
+ * to the {@code JsonWriter}.  Other field types are delegated to the adapters
+ * returned by an {@link AdapterResolver}, which is backed by {@code Gson}
+ * when this class is used as a {@code TypeAdapterFactory}.
+ */
+public class BrktTypeAdapterFactory implements TypeAdapterFactory {
+
+    /**
+     * Returns the adapter for field types that aren't handled directly.
+     */
+    interface AdapterResolver {
+        TypeAdapter<?> getAdapter(Type type);
+    }
+
+    private final FieldNamingStrategy namingStrategy;
+
+    public BrktTypeAdapterFactory(FieldNamingStrategy namingStrategy) {
+        Preconditions.checkNotNull(namingStrategy);
+        this.namingStrategy = namingStrategy;
+    }
+
+    /**
+     * Return {@code true} if this factory creates an adapter for the given class.
+     */
+    static boolean isModelClass(Class<?> rawType) {
+        if (Modifier.isAbstract(rawType.getModifiers())) {
+            return false;
+        }
+        return BrktResource.class.isAssignableFrom(rawType)
+                || rawType == MachineType.class
+                || rawType == InstanceReboot.class;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(final Gson gson, TypeToken<T> typeToken) {
+        Class<? super T> rawType = typeToken.getRawType();
+        if (!isModelClass(rawType)) {
+            return null;
+        }
+        AdapterResolver resolver = new AdapterResolver() {
+            @Override
+            public TypeAdapter<?> getAdapter(Type type) {
+                return gson.getAdapter(TypeToken.get(type));
+            }
+        };
+        return newResourceAdapter((Class<T>) rawType, resolver);
+    }
+
+    /**
+     * Create an adapter for the given model class.
+     */
+    <T> ResourceAdapter<T> newResourceAdapter(Class<T> rawType, AdapterResolver resolver) {
+        return new ResourceAdapter<T>(rawType, bindFields(rawType, resolver));
+    }
+
+    private Map<String, BoundField> bindFields(Class<?> rawType, AdapterResolver resolver) {
+        // Keep the declaration order, so that we write fields in the same order as Gson.
+        Map<String, BoundField> fields = Maps.newLinkedHashMap();
+        for (Class<?> c = rawType; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                int modifiers = f.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || f.isSynthetic()) {
+                    continue;
+                }
+                f.setAccessible(true);
+                String name = getJsonName(f);
+                if (fields.put(name, bindField(resolver, f)) != null) {
+                    throw new IllegalArgumentException(
+                            rawType + " declares multiple JSON fields named " + name);
+                }
+            }
+        }
+        return fields;
+    }
+
+    private String getJsonName(Field f) {
+        SerializedName annotation = f.getAnnotation(SerializedName.class);
+        if (annotation != null) {
+            return annotation.value();
+        }
+        return namingStrategy.translateName(f);
+    }
+
+    private static BoundField bindField(AdapterResolver resolver, Field f) {
+        Class<?> type = f.getType();
+        if (type == String.class) {
+            return new StringField(f);
+        }
+        if (type == Integer.class || type == int.class) {
+            return new IntegerField(f);
+        }
+        if (type == Long.class || type == long.class) {
+            return new LongField(f);
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return new BooleanField(f);
+        }
+        if (type == BigDecimal.class) {
+            return new BigDecimalField(f);
+        }
+        if (type.isEnum()) {
+            return new EnumField(f);
+        }
+        if (isParameterized(f.getGenericType(), List.class, String.class)) {
+            return new StringListField(f);
+        }
+        if (isParameterized(f.getGenericType(), Map.class, String.class, String.class)) {
+            return new StringMapField(f);
+        }
+        return new DelegateField(f, resolver);
+    }
+
+    private static boolean isParameterized(Type type, Class<?> rawType, Class<?>... typeArgs) {
+        if (!(type instanceof ParameterizedType)) {
+            return false;
+        }
+        ParameterizedType pt = (ParameterizedType) type;
+        if (pt.getRawType() != rawType) {
+            return false;
+        }
+        Type[] actual = pt.getActualTypeArguments();
+        if (actual.length != typeArgs.length) {
+            return false;
+        }
+        for (int i = 0; i < actual.length; i++) {
+            if (actual[i] != typeArgs[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a resource object by looking up each JSON field in the precomputed
+     * field table.  Unknown fields are skipped.
+     */
+    static class ResourceAdapter<T> extends TypeAdapter<T> {
+        private final Constructor<T> constructor;
+        private final Map<String, BoundField> fields;
+
+        ResourceAdapter(Class<T> rawType, Map<String, BoundField> fields) {
+            try {
+                constructor = rawType.getDeclaredConstructor();
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(rawType + " does not have a no-arg constructor", e);
+            }
+            constructor.setAccessible(true);
+            this.fields = fields;
+        }
+
+        T newInstance() {
+            try {
+                return constructor.newInstance();
+            } catch (InstantiationException e) {
+                throw new RuntimeException(e);
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            } catch (InvocationTargetException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+            return read(in, null);
+        }
+
+        /**
+         * Read a resource object, binding only the JSON fields whose names are
+         * in {@code projection}, plus {@code id}.  The values of other fields
+         * are skipped without being materialized.  If {@code projection} is
+         * {@code null}, bind all fields.
+         */
+        T read(JsonReader in, Set<String> projection) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            T instance = newInstance();
+            in.beginObject();
+            try {
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    BoundField field = fields.get(name);
+                    if (field == null || (projection != null && !projection.contains(name) && !name.equals("id"))) {
+                        in.skipValue();
+                    } else {
+                        field.read(in, instance);
+                    }
+                }
+            } catch (IllegalStateException e) {
+                throw new JsonSyntaxException(e);
+            } catch (NumberFormatException e) {
+                throw new JsonSyntaxException(e);
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+            in.endObject();
+            return instance;
+        }
+
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            try {
+                for (Map.Entry<String, BoundField> entry : fields.entrySet()) {
+                    BoundField field = entry.getValue();
+                    Object fieldValue = field.field.get(value);
+                    out.name(entry.getKey());
+                    if (fieldValue == null) {
+                        // The writer drops the name unless it serializes nulls.
+                        out.nullValue();
+                    } else {
+                        field.writeValue(out, fieldValue);
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+            out.endObject();
+        }
+    }
+
+    /**
+     * Reads the value of one JSON field and stores it in the target object,
+     * and writes the value of the field.
+     */
+    abstract static class BoundField {
+        final Field field;
+
+        BoundField(Field field) {
+            this.field = field;
+        }
+
+        void read(JsonReader in, Object target) throws IOException, IllegalAccessException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                if (!field.getType().isPrimitive()) {
+                    field.set(target, null);
+                }
+                return;
+            }
+            readValue(in, target);
+        }
+
+        abstract void readValue(JsonReader in, Object target) throws IOException, IllegalAccessException;
+
+        /**
+         * Write a non-null field value.
+         */
+        abstract void writeValue(JsonWriter out, Object value) throws IOException;
+    }
+
+    static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    private static class StringField extends BoundField {
+        StringField(Field field) {
+            super(field);
+        }
+
+        @Override
+        void readValue(JsonReader in, Object target) throws IOException, IllegalAccessException {
+            field.set(target, nextString(in));
+        }
+
+        @Override
+        void writeValue(JsonWriter out, Object value) throws IOException {
+            out.value((String) value);
+        }
+    }
+
+    private static class IntegerField extends BoundField {
+        IntegerField(Field field) {
+            super(field);
+        }
+
+        @Override
+        void readValue(JsonReader in, Object target) throws IOException, IllegalAccessException {
+            int value = in.nextInt();
+            if (field.getType().isPrimitive()) {
+                field.setInt(target, value);
+            } else {
+                field.set(target, Integer.valueOf(value));
+            }
+        }
+
+        @Override
+        void writeValue(JsonWriter out, Object value) throws IOException {
+            out.value((Number) value);
+        }
+    }
+
+    private static class LongField extends BoundField {
+        LongField(Field field) {
+            super(field);
+        }
+
+        @Override
+        void readValue(JsonReader in, Object target) throws IOException, IllegalAccessException {
+            long value = in.nextLong();
+            if (field.getType().isPrimitive()) {
+                field.setLong(target, value);
+            } else {
+                field.set(target, Long.valueOf(value));
+            }
+        }
+
+        @Override
+        void writeValue(JsonWriter out, Object value) throws IOException {
+            out.value((Number) value);
+        }
+    }
+
+    private static class BooleanField extends BoundField {
+        BooleanField(Field field) {
+            super(field);
+        }
+
+        @Override
+        void readValue(JsonReader in, Object target) throws IOException, IllegalAccessException {
+            boolean value;
+            if (in.peek() == JsonToken.STRING) {
+                value = Boolean.parseBoolean(in.nextString());
+            } else {
+                value = in.nextBoolean();
+            }
+            if (field.getType().isPrimitive()) {
+                field.setBoolean(target, value);
+            } else {
+                field.set(target, Boolean.valueOf(value));
+            }
+        }
+
+        @Override
+        void writeValue(JsonWriter out, Object value) throws IOException {
+            out.value(((Boolean) value).booleanValue());
+        }
+    }
+
+    private static class BigDecimalField extends BoundField {
+        BigDecimalField(Field field) {
+            super(field);
+        }
+
+        @Override
+        void readValue(JsonReader in, Object target) throws IOException, IllegalAccessException {
+            field.set(target, new BigDecimal(in.nextString()));
+        }
+
+        @Override
+        void writeValue(JsonWriter out, Object value) throws IOException {
+            out.value((Number) value);
+        }
+    }
+
+    private static class EnumField extends BoundField {
+        private final Map<String, Object> nameToConstant = Maps.newHashMap();
+        private final Map<Object, String> constantToName = Maps.newHashMap();
+
+        EnumField(Field field) {
+            super(field);
+            for (Object constant : field.getType().getEnumConstants()) {
+                String name = ((Enum<?>) constant).name();
+                try {
+                    SerializedName annotation = field.getType().getField(name)
+                            .getAnnotation(SerializedName.class);
+                    if (annotation != null) {
+                        name = annotation.value();
+                    }
+                } catch (NoSuchFieldException e) {
+                    throw new AssertionError(e);
+                }
+                nameToConstant.put(name, constant);
+                constantToName.put(constant, name);
+            }
+        }
+
+        @Override
+        void readValue(JsonReader in, Object target) throws IOException, IllegalAccessException {
+            // Unknown names map to null, which matches Gson's enum adapter.
+            field.set(target, nameToConstant.get(in.nextString()));
+        }
+
+        @Override
+        void writeValue(JsonWriter out, Object value) throws IOException {
+            out.value(constantToName.get(value));
+        }
+    }
+
+    private static class StringListField extends BoundField {
+        StringListField(Field field) {
+            super(field);
+        }
+
+        @Override
+        void readValue(JsonReader in, Object target) throws IOException, IllegalAccessException {
+            List<String> list = Lists.newArrayList();
+            in.beginArray();
+            while (in.hasNext()) {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    list.add(null);
+                } else {
+                    list.add(nextString(in));
+                }
+            }
+            in.endArray();
+            field.set(target, list);
+        }
+
+        @Override
+        void writeValue(JsonWriter out, Object value) throws IOException {
+            out.beginArray();
+            for (Object element : (List<?>) value) {
+                if (element == null) {
+                    out.nullValue();
+                } else {
+                    out.value((String) element);
+                }
+            }
+            out.endArray();
+        }
+    }
+
+    private static class StringMapField extends BoundField {
+        StringMapField(Field field) {
+            super(field);
+        }
+
+        @Override
+        void readValue(JsonReader in, Object target) throws IOException, IllegalAccessException {
+            Map<String, String> map = Maps.newLinkedHashMap();
+            in.beginObject();
+            while (in.hasNext()) {
+                String key = in.nextName();
+                String value = null;
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                } else {
+                    value = nextString(in);
+                }
+                if (map.put(key, value) != null) {
+                    throw new JsonSyntaxException("duplicate key: " + key);
+                }
+            }
+            in.endObject();
+            field.set(target, map);
+        }
+
+        @Override
+        void writeValue(JsonWriter out, Object value) throws IOException {
+            out.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                out.name((String) entry.getKey());
+                if (entry.getValue() == null) {
+                    out.nullValue();
+                } else {
+                    out.value((String) entry.getValue());
+                }
+            }
+            out.endObject();
+        }
+    }
+
+    private static class DelegateField extends BoundField {
+        private final AdapterResolver resolver;
+
+        /**
+         * Resolved on first use, so that adapters for nested model classes
+         * don't need to exist before the adapter for the outer class.
+         */
+        private volatile TypeAdapter<Object> adapter;
+
+        DelegateField(Field field, AdapterResolver resolver) {
+            super(field);
+            this.resolver = resolver;
+        }
+
+        @SuppressWarnings("unchecked")
+        private TypeAdapter<Object> getAdapter() {
+            TypeAdapter<Object> result = adapter;
+            if (result == null) {
+                result = (TypeAdapter<Object>) resolver.getAdapter(field.getGenericType());
+                adapter = result;
+            }
+            return result;
+        }
+
+        @Override
+        void read(JsonReader in, Object target) throws IOException, IllegalAccessException {
+            Object value = getAdapter().read(in);
+            if (value != null || !field.getType().isPrimitive()) {
+                field.set(target, value);
+            }
+        }
+
+        @Override
+        void readValue(JsonReader in, Object target) throws IOException, IllegalAccessException {
+            read(in, target);
+        }
+
+        @Override
+        void writeValue(JsonWriter out, Object value) throws IOException {
+            getAdapter().write(out, value);
+        }
+    }
+}
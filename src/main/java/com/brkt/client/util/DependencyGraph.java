@@ -0,0 +1,149 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A directed acyclic graph of tasks, where an edge means that one task
+ * must finish before another starts.  {@link #getWaves} groups the tasks
+ * into waves: every task in a wave depends only on tasks in earlier
+ * waves, so the tasks of one wave can run in parallel.
+ *
+ * <p>Nodes are compared with {@code equals}.  Within a wave, nodes are in
+ * the order in which they were added.  Not thread-safe.
+ */
+public class DependencyGraph<T> {
+
+    /**
+     * The nodes that each node waits for.
+     */
+    private final Map<T, Set<T>> dependencies = Maps.newLinkedHashMap();
+
+    /**
+     * The nodes that wait for each node.
+     */
+    private final Map<T, Set<T>> dependents = Maps.newHashMap();
+
+    /**
+     * Add a node without dependencies, if it isn't in the graph yet.
+     */
+    public void add(T node) {
+        Preconditions.checkNotNull(node);
+        if (!dependencies.containsKey(node)) {
+            dependencies.put(node, Sets.<T>newLinkedHashSet());
+            dependents.put(node, Sets.<T>newLinkedHashSet());
+        }
+    }
+
+    /**
+     * Record that {@code node} can't start until {@code dependency} has
+     * finished.  Both are added to the graph if necessary.
+     */
+    public void addDependency(T node, T dependency) {
+        Preconditions.checkArgument(!node.equals(dependency), "A node cannot depend on itself: %s", node);
+        add(node);
+        add(dependency);
+        dependencies.get(node).add(dependency);
+        dependents.get(dependency).add(node);
+    }
+
+    public boolean contains(T node) {
+        return dependencies.containsKey(node);
+    }
+
+    public int size() {
+        return dependencies.size();
+    }
+
+    /**
+     * Return the nodes that {@code node} directly waits for.
+     */
+    public Set<T> getDependencies(T node) {
+        Preconditions.checkArgument(contains(node), "Not in the graph: %s", node);
+        return Collections.unmodifiableSet(dependencies.get(node));
+    }
+
+    /**
+     * Return the nodes that directly wait for {@code node}.
+     */
+    public Set<T> getDependents(T node) {
+        Preconditions.checkArgument(contains(node), "Not in the graph: %s", node);
+        return Collections.unmodifiableSet(dependents.get(node));
+    }
+
+    /**
+     * Return the nodes in topological waves.  The first wave contains the
+     * nodes without dependencies, and each later wave the nodes whose
+     * dependencies are all in earlier waves.
+     *
+     * @throws IllegalStateException if the graph has a cycle
+     */
+    public List<List<T>> getWaves() {
+        Map<T, Integer> remaining = Maps.newHashMap();
+        List<T> wave = Lists.newArrayList();
+        for (Map.Entry<T, Set<T>> entry : dependencies.entrySet()) {
+            remaining.put(entry.getKey(), entry.getValue().size());
+            if (entry.getValue().isEmpty()) {
+                wave.add(entry.getKey());
+            }
+        }
+
+        List<List<T>> waves = Lists.newArrayList();
+        int placed = 0;
+        while (!wave.isEmpty()) {
+            waves.add(Collections.unmodifiableList(wave));
+            placed += wave.size();
+            Set<T> next = Sets.newHashSet();
+            for (T node : wave) {
+                for (T dependent : dependents.get(node)) {
+                    int count = remaining.get(dependent) - 1;
+                    remaining.put(dependent, count);
+                    if (count == 0) {
+                        next.add(dependent);
+                    }
+                }
+            }
+            // Keep insertion order within the wave.
+            wave = Lists.newArrayList();
+            for (T node : dependencies.keySet()) {
+                if (next.contains(node)) {
+                    wave.add(node);
+                }
+            }
+        }
+
+        if (placed < dependencies.size()) {
+            List<T> cycle = Lists.newArrayList();
+            for (Map.Entry<T, Integer> entry : remaining.entrySet()) {
+                if (entry.getValue() > 0) {
+                    cycle.add(entry.getKey());
+                }
+            }
+            throw new IllegalStateException("Dependency cycle among " + cycle);
+        }
+        return Collections.unmodifiableList(waves);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.base.Preconditions;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+
+/**
+ * Serializes with {@code Gson}.  Resource classes are bound by
+ * {@link BrktTypeAdapterFactory}.
+ */
+public class GsonCodec implements BrktCodec {
+
+    private final Gson gson;
+
+    public GsonCodec() {
+        this(BrktRestClient.newGson());
+    }
+
+    /**
+     * Use the given {@code Gson} instance, for example one that was created by
+     * {@link BrktRestClient#newGson} and customized.
+     */
+    public GsonCodec(Gson gson) {
+        Preconditions.checkNotNull(gson);
+        this.gson = gson;
+    }
+
+    @Override
+    public <T> T decode(Reader reader, Type type) throws IOException {
+        return gson.fromJson(reader, type);
+    }
+
+    @Override
+    public void encode(Object value, Writer writer) throws IOException {
+        gson.toJson(value, writer);
+    }
+
+    /**
+     * Return the adapter for a resource class, or {@code null} if the class is
+     * not bound by {@link BrktTypeAdapterFactory}.
+     */
+    @SuppressWarnings("unchecked")
+    <T> BrktTypeAdapterFactory.ResourceAdapter<T> getResourceAdapter(Class<T> rawType) {
+        TypeAdapter<T> adapter = gson.getAdapter(rawType);
+        if (adapter instanceof BrktTypeAdapterFactory.ResourceAdapter) {
+            return (BrktTypeAdapterFactory.ResourceAdapter<T>) adapter;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+
+/**
+ * Parses and formats ISO 8601 timestamps, for example
+ * {@code 2015-03-31T22:34:51.270584+00:00}.  Fractional seconds are
+ * preserved down to the nanosecond.
+ */
+public class Iso8601 {
+
+    private static final int MILLIS_PER_SECOND = 1000;
+    private static final int SECONDS_PER_DAY = 86400;
+    private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+    private Iso8601() {
+    }
+
+    /**
+     * Serializes {@code Timestamp} fields as ISO 8601 strings in UTC.
+     */
+    public static final TypeAdapter<Timestamp> TIMESTAMP_ADAPTER = new TypeAdapter<Timestamp>() {
+        @Override
+        public void write(JsonWriter out, Timestamp ts) throws IOException {
+            if (ts == null) {
+                out.nullValue();
+            } else {
+                out.value(format(ts));
+            }
+        }
+
+        @Override
+        public Timestamp read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            try {
+                return parse(in.nextString());
+            } catch (IllegalArgumentException e) {
+                throw new JsonSyntaxException(e);
+            }
+        }
+    };
+
+    /**
+     * Parse a date ({@code yyyy-MM-dd}) or date and time
+     * ({@code yyyy-MM-ddTHH:mm[:ss[.fraction]][offset]}).  The offset is
+     * either {@code Z} or {@code +/-HH[[:]mm]}.  Timestamps without an
+     * offset are interpreted as UTC.
+     *
+     * @throws IllegalArgumentException if {@code s} is not a valid timestamp
+     */
+    public static Timestamp parse(CharSequence s) {
+        int len = s.length();
+        int pos = 0;
+
+        // Date.
+        int year = digits(s, pos, 4);
+        pos = expect(s, pos + 4, '-');
+        int month = digits(s, pos, 2);
+        pos = expect(s, pos + 2, '-');
+        int day = digits(s, pos, 2);
+        pos += 2;
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            throw invalid(s);
+        }
+
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int nanos = 0;
+        int offsetSeconds = 0;
+
+        if (pos < len) {
+            // Time.
+            char c = s.charAt(pos);
+            if (c != 'T' && c != 't' && c != ' ') {
+                throw invalid(s);
+            }
+            hour = digits(s, pos + 1, 2);
+            pos = expect(s, pos + 3, ':');
+            minute = digits(s, pos, 2);
+            pos += 2;
+            if (pos < len && s.charAt(pos) == ':') {
+                second = digits(s, pos + 1, 2);
+                pos += 3;
+                if (pos < len && (s.charAt(pos) == '.' || s.charAt(pos) == ',')) {
+                    // Digits beyond nanosecond precision are truncated.
+                    int start = ++pos;
+                    int scale = 100000000;
+                    while (pos < len && isDigit(s.charAt(pos))) {
+                        nanos += (s.charAt(pos) - '0') * scale;
+                        scale /= 10;
+                        pos++;
+                    }
+                    if (pos == start) {
+                        throw invalid(s);
+                    }
+                }
+            }
+            if (hour > 23 || minute > 59 || second > 59) {
+                throw invalid(s);
+            }
+
+            // Offset.
+            if (pos < len) {
+                c = s.charAt(pos);
+                if (c == 'Z' || c == 'z') {
+                    pos++;
+                } else if (c == '+' || c == '-') {
+                    int offsetHours = digits(s, pos + 1, 2);
+                    int offsetMinutes = 0;
+                    pos += 3;
+                    if (pos < len) {
+                        if (s.charAt(pos) == ':') {
+                            pos++;
+                        }
+                        offsetMinutes = digits(s, pos, 2);
+                        pos += 2;
+                    }
+                    if (offsetHours > 23 || offsetMinutes > 59) {
+                        throw invalid(s);
+                    }
+                    offsetSeconds = offsetHours * 3600 + offsetMinutes * 60;
+                    if (c == '-') {
+                        offsetSeconds = -offsetSeconds;
+                    }
+                } else {
+                    throw invalid(s);
+                }
+            }
+        }
+        if (pos != len) {
+            throw invalid(s);
+        }
+
+        long epochSeconds = daysFromCivil(year, month, day) * SECONDS_PER_DAY
+                + hour * 3600 + minute * 60 + second - offsetSeconds;
+        Timestamp ts = new Timestamp(epochSeconds * MILLIS_PER_SECOND);
+        ts.setNanos(nanos);
+        return ts;
+    }
+
+    /**
+     * Format the timestamp in UTC, for example
+     * {@code 2015-03-31T22:34:51.270584Z}.  Fractional seconds are written
+     * with 3, 6 or 9 digits, depending on the precision of the timestamp.
+     */
+    public static String format(Timestamp ts) {
+        long epochSeconds = floorDiv(ts.getTime(), MILLIS_PER_SECOND);
+        long days = floorDiv(epochSeconds, SECONDS_PER_DAY);
+        int secondOfDay = (int) (epochSeconds - days * SECONDS_PER_DAY);
+        int nanos = ts.getNanos();
+
+        // Convert days since the epoch to year, month and day.
+        // See http://howardhinnant.github.io/date_algorithms.html#civil_from_days.
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        StringBuilder buf = new StringBuilder(30);
+        if (year < 0) {
+            buf.append('-');
+            year = -year;
+        }
+        pad(buf, year, 4).append('-');
+        pad(buf, month, 2).append('-');
+        pad(buf, day, 2).append('T');
+        pad(buf, secondOfDay / 3600, 2).append(':');
+        pad(buf, secondOfDay / 60 % 60, 2).append(':');
+        pad(buf, secondOfDay % 60, 2).append('.');
+        if (nanos % 1000000 == 0) {
+            pad(buf, nanos / 1000000, 3);
+        } else if (nanos % 1000 == 0) {
+            pad(buf, nanos / 1000, 6);
+        } else {
+            pad(buf, nanos, 9);
+        }
+        return buf.append('Z').toString();
+    }
+
+    /**
+     * Return the number of days between 1970-01-01 and the given date.  See
+     * http://howardhinnant.github.io/date_algorithms.html#days_from_civil.
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) {
+            return 29;
+        }
+        return DAYS_IN_MONTH[month - 1];
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            q--;
+        }
+        return q;
+    }
+
+    private static StringBuilder pad(StringBuilder buf, long value, int width) {
+        for (long limit = 10; width > 1; width--, limit *= 10) {
+            if (value < limit) {
+                buf.append('0');
+            }
+        }
+        return buf.append(value);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int digits(CharSequence s, int pos, int count) {
+        if (pos + count > s.length()) {
+            throw invalid(s);
+        }
+        int value = 0;
+        for (int i = pos; i < pos + count; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) {
+                throw invalid(s);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int expect(CharSequence s, int pos, char expected) {
+        if (pos >= s.length() || s.charAt(pos) != expected) {
+            throw invalid(s);
+        }
+        return pos + 1;
+    }
+
+    private static IllegalArgumentException invalid(CharSequence s) {
+        return new IllegalArgumentException("Invalid ISO 8601 timestamp: " + s);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.base.Preconditions;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable list of resources that is backed by the raw JSON response
+ * payload.  The payload is indexed once to find the byte range of each
+ * element.  An element is deserialized the first time it is accessed, and
+ * the result is cached.  Elements that are never accessed are never
+ * deserialized.
+ *
+ * <p>The list retains the entire payload until it is garbage collected.
+ * Deserialization errors are reported by {@link #get} as a
+ * {@code JsonSyntaxException}.
+ */
+public class LazyResourceList<T> extends AbstractList<T> implements RandomAccess {
+
+    private final byte[] payload;
+
+    /**
+     * Start and end offsets of each element in {@link #payload}.
+     */
+    private final int[] bounds;
+    private final BrktTypeAdapterFactory.ResourceAdapter<T> adapter;
+    private final AtomicReferenceArray<T> elements;
+
+    LazyResourceList(byte[] payload, BrktTypeAdapterFactory.ResourceAdapter<T> adapter) {
+        Preconditions.checkNotNull(payload);
+        Preconditions.checkNotNull(adapter);
+        this.payload = payload;
+        this.bounds = indexArray(payload);
+        this.adapter = adapter;
+        this.elements = new AtomicReferenceArray<T>(bounds.length / 2);
+    }
+
+    @Override
+    public int size() {
+        return elements.length();
+    }
+
+    @Override
+    public T get(int index) {
+        T element = elements.get(index);
+        if (element == null) {
+            element = decode(index, null);
+            // If another thread got here first, return its copy.
+            if (!elements.compareAndSet(index, null, element)) {
+                element = elements.get(index);
+            }
+        }
+        return element;
+    }
+
+    /**
+     * Deserialize the element at {@code index}, binding only the JSON fields
+     * named in {@code projection} and {@code id}.  The result is not cached.
+     */
+    public T get(int index, Set<String> projection) {
+        Preconditions.checkNotNull(projection);
+        Preconditions.checkElementIndex(index, size());
+        return decode(index, projection);
+    }
+
+    /**
+     * Return a 64-bit FNV-1a hash of the raw JSON of the element at
+     * {@code index}, without deserializing it.  Elements with the same
+     * bytes have the same hash, so an unchanged element can be recognized
+     * in a later response without comparing its fields.
+     */
+    public long contentHash(int index) {
+        Preconditions.checkElementIndex(index, size());
+        long hash = 0xcbf29ce484222325L;
+        for (int i = bounds[index * 2]; i < bounds[index * 2 + 1]; i++) {
+            hash ^= payload[i] & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private T decode(int index, Set<String> projection) {
+        int start = bounds[index * 2];
+        int end = bounds[index * 2 + 1];
+        if (end - start == 4 && payload[start] == 'n') {
+            // JsonReader doesn't accept a bare null.
+            return null;
+        }
+        JsonReader in = new JsonReader(new Utf8Reader(payload, start, end - start));
+        try {
+            return adapter.read(in, projection);
+        } catch (IOException e) {
+            // Not possible, since we're reading from memory.
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Scan a JSON array and return the start and end offsets of each element.
+     * Only the structure of the array is validated.  The elements themselves
+     * are validated when they are deserialized.
+     */
+    static int[] indexArray(byte[] json) {
+        int[] bounds = new int[32];
+        int count = 0;
+        int pos = skipWhitespace(json, 0);
+        if (pos >= json.length || json[pos] != '[') {
+            throw new JsonSyntaxException("Expected a JSON array");
+        }
+        pos = skipWhitespace(json, pos + 1);
+        if (pos < json.length && json[pos] == ']') {
+            checkEnd(json, pos + 1);
+            return new int[0];
+        }
+
+        while (true) {
+            int start = pos;
+            int end = skipValue(json, pos);
+            if (count + 2 > bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            bounds[count++] = start;
+            bounds[count++] = end;
+
+            pos = skipWhitespace(json, end);
+            if (pos >= json.length) {
+                throw new JsonSyntaxException("Unterminated JSON array");
+            }
+            if (json[pos] == ']') {
+                checkEnd(json, pos + 1);
+                return Arrays.copyOf(bounds, count);
+            }
+            if (json[pos] != ',') {
+                throw new JsonSyntaxException("Expected ',' or ']' at offset " + pos);
+            }
+            pos = skipWhitespace(json, pos + 1);
+        }
+    }
+
+    /**
+     * Return the offset just past the JSON value that starts at {@code pos}.
+     */
+    private static int skipValue(byte[] json, int pos) {
+        int depth = 0;
+        for (int i = pos; i < json.length; i++) {
+            byte b = json[i];
+            if (b == '"') {
+                i = skipString(json, i);
+                if (depth == 0) {
+                    return i + 1;
+                }
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (depth == 0) {
+                    return trimWhitespace(json, pos, i);
+                }
+                if (--depth == 0) {
+                    return i + 1;
+                }
+            } else if (b == ',' && depth == 0) {
+                return trimWhitespace(json, pos, i);
+            }
+        }
+        throw new JsonSyntaxException("Unterminated JSON value at offset " + pos);
+    }
+
+    /**
+     * Return the offset of the closing quote of the string that starts at {@code pos}.
+     */
+    private static int skipString(byte[] json, int pos) {
+        for (int i = pos + 1; i < json.length; i++) {
+            if (json[i] == '\\') {
+                i++;
+            } else if (json[i] == '"') {
+                return i;
+            }
+        }
+        throw new JsonSyntaxException("Unterminated string at offset " + pos);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static int skipWhitespace(byte[] json, int pos) {
+        while (pos < json.length && isWhitespace(json[pos])) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int trimWhitespace(byte[] json, int start, int end) {
+        while (end > start && isWhitespace(json[end - 1])) {
+            end--;
+        }
+        if (end == start) {
+            throw new JsonSyntaxException("Expected a JSON value at offset " + start);
+        }
+        return end;
+    }
+
+    private static void checkEnd(byte[] json, int pos) {
+        if (skipWhitespace(json, pos) != json.length) {
+            throw new JsonSyntaxException("Unexpected data after JSON array at offset " + pos);
+        }
+    }
+}
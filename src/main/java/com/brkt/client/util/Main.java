@@ -43,6 +43,8 @@ import com.google.common.base.MoreObjects;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
@@ -50,12 +52,14 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class Main {
 
     private Arguments args;
+    private MappedFileResponseCache responseCache;
 
     static class Arguments {
         // Without this, JCommand will throw an unintuitive exception if the user specifies an
@@ -75,6 +79,18 @@ public class Main {
         @Parameter(names = { "--all-fields" }, description = "Print all fields on the returned objects.")
         boolean allFields;
 
+        @Parameter(names = { "--cache" }, description = "Cache responses on disk, in the user's cache directory.  "
+                + "Operating systems, image definitions, CSP images and machine types are cached for a day.")
+        boolean cache;
+
+        @Parameter(names = { "--no-cache" }, description = "Don't use the response cache, even if --cache or "
+                + "--max-stale is specified.")
+        boolean noCache;
+
+        @Parameter(names = { "--max-stale" }, description = "Use cached responses that are up to this many seconds "
+                + "past their expiration time, for any resource type.  Implies --cache.")
+        Long maxStaleSeconds;
+
         @Parameter(names = { "-h", "--help"}, help = true, description = "Show usage")
         boolean help;
     }
@@ -227,6 +243,28 @@ public class Main {
         }
     }
 
+    /**
+     * Open the response cache, or return {@code null} and print a warning if
+     * it can't be opened.
+     */
+    private static MappedFileResponseCache openResponseCache(Arguments args) {
+        long maxStaleSeconds = args.maxStaleSeconds != null ? args.maxStaleSeconds : 0;
+        if (maxStaleSeconds < 0) {
+            System.err.println("--max-stale cannot be negative.");
+            System.exit(1);
+        }
+        File file = MappedFileResponseCache.getDefaultFile(args.rootUri, args.token);
+        try {
+            return new MappedFileResponseCache.Builder(file)
+                    .cacheReferenceData(1, TimeUnit.DAYS)
+                    .maxStale(maxStaleSeconds, TimeUnit.SECONDS)
+                    .build();
+        } catch (IOException e) {
+            System.err.println("Unable to open response cache " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     private void run(String[] stringArgs) {
         Arguments args = new Arguments();
         JCommander jc = null;
@@ -349,9 +387,13 @@ public class Main {
             System.exit(1);
         }
 
-        BrktRestClient client = new BrktRestClient.Builder(args.rootUri)
-                .macKey(args.macKey).accessToken(args.token).build();
-        BrktService service = new BrktService(client);
+        BrktRestClient.Builder clientBuilder = new BrktRestClient.Builder(args.rootUri)
+                .macKey(args.macKey).accessToken(args.token);
+        if ((args.cache || args.maxStaleSeconds != null) && !args.noCache) {
+            responseCache = openResponseCache(args);
+            clientBuilder.responseCache(responseCache);
+        }
+        BrktService service = new BrktService(clientBuilder.build());
 
         // Operating system.
         if (command.equals("getAllOperatingSystems")) {
@@ -707,11 +749,20 @@ public class Main {
     }
 
     public static void main(String[] args) {
+        Main main = new Main();
         try {
-            new Main().run(args);
+            main.run(args);
         } catch (BrktService.RuntimeHttpError e) {
             System.err.println(e.getMessage());
             System.exit(1);
+        } finally {
+            if (main.responseCache != null) {
+                try {
+                    main.responseCache.close();
+                } catch (IOException e) {
+                    // Ignore.
+                }
+            }
         }
     }
 }
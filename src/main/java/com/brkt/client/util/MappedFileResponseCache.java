@@ -0,0 +1,614 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.brkt.client.ResourceType;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A {@link ResponseCache} that persists compressed payloads in a file, so
+ * that they survive between runs of a short-lived process such as the
+ * command line client.
+ *
+ * <p>The file is an append-only log of records.  Each record holds a path,
+ * the time it was stored and the deflated payload, or marks the path as
+ * invalidated.  The file is memory-mapped, and the cache keeps an index of
+ * the latest record for each path.  When the file grows past its maximum
+ * size, the live records are written to a temporary file, which is then
+ * renamed over the old one.  The old file is never truncated while it may
+ * be mapped.  If it can't be replaced, for example on Windows while
+ * another process has it open, the write that needed the space fails and
+ * the file is left as it was.
+ *
+ * <p>Several processes can share the file.  Each operation holds a lock on
+ * a separate {@code .lock} file, which also records the generation of the
+ * current cache file.  Each operation first reopens the cache file if it
+ * was replaced, and indexes the records that other processes appended, so
+ * a write in one process invalidates the cached payloads in all of them.
+ *
+ * <p>A payload is returned while it is younger than the time-to-live of its
+ * resource type plus the maximum staleness.  Paths whose type has no
+ * time-to-live are only cached if the maximum staleness is positive.  A
+ * write invalidates all payloads for the same resource type.
+ */
+public class MappedFileResponseCache implements ResponseCache, Closeable {
+
+    public static final long DEFAULT_MAX_FILE_BYTES = 16 * 1024 * 1024;
+
+    private static final int MAGIC = 0x42524b43;
+    private static final int VERSION = 1;
+
+    /**
+     * Magic number, version and generation.  The generation changes every
+     * time the file is rewritten.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Length, stored time, path length and payload length.
+     */
+    private static final int RECORD_OVERHEAD = 20;
+
+    private static final int INVALIDATED = -1;
+
+    private static class IndexEntry {
+        final long storedAtMillis;
+        final long dataOffset;
+        final int dataLength;
+        final int payloadLength;
+
+        IndexEntry(long storedAtMillis, long dataOffset, int dataLength, int payloadLength) {
+            this.storedAtMillis = storedAtMillis;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.payloadLength = payloadLength;
+        }
+    }
+
+    private final File cacheFile;
+    private final RandomAccessFile lockFile;
+
+    /**
+     * Locked by every operation.  Holds the generation of the current cache
+     * file, which changes when the file is replaced.
+     */
+    private final FileChannel lockChannel;
+    private final Map<ResourceType, Long> ttlMillis;
+    private final long maxStaleMillis;
+    private final long maxFileBytes;
+
+    // Guarded by this.
+    private RandomAccessFile file;
+    private FileChannel channel;
+
+    /**
+     * The generation in the header of {@link #file} when it was opened.
+     */
+    private long openGeneration;
+    private final Map<String, IndexEntry> index = Maps.newHashMap();
+    private MappedByteBuffer mapped;
+    private long generation;
+    private long indexedEnd;
+
+    private MappedFileResponseCache(Builder builder) throws IOException {
+        ttlMillis = Maps.newEnumMap(ResourceType.class);
+        ttlMillis.putAll(builder.ttlMillis);
+        maxStaleMillis = builder.maxStaleMillis;
+        maxFileBytes = builder.maxFileBytes;
+
+        File parent = builder.file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        cacheFile = builder.file;
+        lockFile = openRestricted(getLockFile(cacheFile));
+        lockChannel = lockFile.getChannel();
+
+        FileLock lock = lockChannel.lock();
+        try {
+            openFile();
+            if (!hasValidHeader()) {
+                writeHeader(System.currentTimeMillis());
+                channel.truncate(HEADER_SIZE);
+                openGeneration = readHeaderGeneration();
+            }
+            writeLockGeneration(openGeneration);
+        } catch (IOException e) {
+            if (file != null) {
+                file.close();
+            }
+            lockFile.close();
+            throw e;
+        } finally {
+            if (lock.isValid()) {
+                lock.release();
+            }
+        }
+    }
+
+    private static File getLockFile(File file) {
+        return new File(file.getPath() + ".lock");
+    }
+
+    /**
+     * Open {@code f} for reading and writing.  If it is created, only the
+     * user can read it, since the payloads belong to the user's account.
+     */
+    private static RandomAccessFile openRestricted(File f) throws IOException {
+        boolean created = !f.exists();
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        if (created) {
+            f.setReadable(false, false);
+            f.setReadable(true, true);
+            f.setWritable(false, false);
+            f.setWritable(true, true);
+        }
+        return raf;
+    }
+
+    /**
+     * Open the cache file at {@link #cacheFile}.  Must be called while holding
+     * the lock.
+     */
+    private void openFile() throws IOException {
+        file = openRestricted(cacheFile);
+        channel = file.getChannel();
+        openGeneration = hasValidHeader() ? readHeaderGeneration() : 0;
+    }
+
+    public static class Builder {
+        private final File file;
+        private final Map<ResourceType, Long> ttlMillis = Maps.newEnumMap(ResourceType.class);
+        private long maxStaleMillis;
+        private long maxFileBytes = DEFAULT_MAX_FILE_BYTES;
+
+        public Builder(File file) {
+            Preconditions.checkNotNull(file);
+            this.file = file;
+        }
+
+        /**
+         * Cache payloads for {@code type} for the given duration.
+         */
+        public Builder ttl(ResourceType type, long duration, TimeUnit unit) {
+            Preconditions.checkNotNull(type);
+            Preconditions.checkArgument(duration > 0, "duration must be positive: " + duration);
+            ttlMillis.put(type, unit.toMillis(duration));
+            return this;
+        }
+
+        /**
+         * Cache operating systems, image definitions, CSP images and machine
+         * types for the given duration.
+         */
+        public Builder cacheReferenceData(long duration, TimeUnit unit) {
+            ttl(ResourceType.OPERATING_SYSTEM, duration, unit);
+            ttl(ResourceType.IMAGE_DEFINITION, duration, unit);
+            ttl(ResourceType.CSP_IMAGE, duration, unit);
+            ttl(ResourceType.MACHINE_TYPE, duration, unit);
+            return this;
+        }
+
+        /**
+         * Return payloads for up to the given duration after their
+         * time-to-live has passed.  The default is {@code 0}.
+         */
+        public Builder maxStale(long duration, TimeUnit unit) {
+            Preconditions.checkArgument(duration >= 0, "duration cannot be negative: " + duration);
+            this.maxStaleMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Rewrite the file when it grows past {@code maxFileBytes}.  The
+         * default is {@link #DEFAULT_MAX_FILE_BYTES}.
+         */
+        public Builder maxFileBytes(long maxFileBytes) {
+            Preconditions.checkArgument(maxFileBytes > HEADER_SIZE && maxFileBytes <= Integer.MAX_VALUE,
+                    "maxFileBytes is out of range: " + maxFileBytes);
+            this.maxFileBytes = maxFileBytes;
+            return this;
+        }
+
+        public MappedFileResponseCache build() throws IOException {
+            return new MappedFileResponseCache(this);
+        }
+    }
+
+    /**
+     * Return the per-user cache directory: {@code %LOCALAPPDATA%} on
+     * Windows, {@code ~/Library/Caches} on OS X and {@code $XDG_CACHE_HOME}
+     * or {@code ~/.cache} elsewhere.
+     */
+    public static File getUserCacheDirectory() {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ENGLISH);
+        String home = System.getProperty("user.home");
+        if (os.startsWith("windows")) {
+            String localAppData = System.getenv("LOCALAPPDATA");
+            if (localAppData != null && localAppData.length() > 0) {
+                return new File(localAppData);
+            }
+            return new File(home, "AppData" + File.separator + "Local");
+        }
+        if (os.startsWith("mac")) {
+            return new File(home, "Library/Caches");
+        }
+        String xdg = System.getenv("XDG_CACHE_HOME");
+        if (xdg != null && xdg.length() > 0) {
+            return new File(xdg);
+        }
+        return new File(home, ".cache");
+    }
+
+    /**
+     * Return the default cache file for a server and account, under
+     * {@link #getUserCacheDirectory}.  The file name is derived from a hash
+     * of {@code rootUri} and {@code accessToken}, so accounts don't share
+     * cached payloads and the token isn't stored.
+     */
+    public static File getDefaultFile(String rootUri, String accessToken) {
+        Preconditions.checkNotNull(rootUri);
+        Preconditions.checkNotNull(accessToken);
+        byte[] digest;
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            digest = md.digest((rootUri + "\n" + accessToken).getBytes(Utf8Reader.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256.
+            throw new IllegalStateException(e);
+        }
+        StringBuilder name = new StringBuilder("responses-");
+        for (int i = 0; i < 8; i++) {
+            name.append(String.format("%02x", digest[i]));
+        }
+        name.append(".cache");
+        return new File(new File(getUserCacheDirectory(), "brkt"), name.toString());
+    }
+
+    private long getMaxAgeMillis(String path) {
+        ResourceType type = ResourceType.forPath(path);
+        Long ttl = type == null ? null : ttlMillis.get(type);
+        return (ttl == null ? 0 : ttl) + maxStaleMillis;
+    }
+
+    @Override
+    public synchronized byte[] get(String path) throws IOException {
+        long maxAgeMillis = getMaxAgeMillis(path);
+        if (maxAgeMillis <= 0) {
+            return null;
+        }
+        IndexEntry entry;
+        byte[] data;
+        FileLock lock = lockChannel.lock(0, Long.MAX_VALUE, true);
+        try {
+            refresh();
+            entry = index.get(path);
+            if (entry == null) {
+                return null;
+            }
+            long age = System.currentTimeMillis() - entry.storedAtMillis;
+            if (age < 0 || age >= maxAgeMillis) {
+                return null;
+            }
+            data = new byte[entry.dataLength];
+            ByteBuffer buf = mapped.duplicate();
+            buf.position((int) entry.dataOffset);
+            buf.get(data);
+        } finally {
+            lock.release();
+        }
+        return inflate(data, entry.payloadLength);
+    }
+
+    @Override
+    public synchronized void put(String path, byte[] payload) throws IOException {
+        Preconditions.checkNotNull(payload);
+        if (getMaxAgeMillis(path) <= 0) {
+            return;
+        }
+        byte[] record = encodeRecord(path, System.currentTimeMillis(), payload.length, deflate(payload));
+        FileLock lock = lockChannel.lock();
+        try {
+            refresh();
+            if (indexedEnd + record.length > maxFileBytes) {
+                compact(record.length);
+            }
+            append(record);
+        } finally {
+            lock.release();
+        }
+    }
+
+    @Override
+    public synchronized void invalidate(String path) throws IOException {
+        ResourceType type = ResourceType.forPath(path);
+        FileLock lock = lockChannel.lock();
+        try {
+            refresh();
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            long now = System.currentTimeMillis();
+            for (String cached : index.keySet()) {
+                // A path without a type, such as a security group rule, may affect anything.
+                if (type == null || ResourceType.forPath(cached) == type) {
+                    records.write(encodeRecord(cached, now, INVALIDATED, new byte[0]));
+                }
+            }
+            if (records.size() > 0) {
+                append(records.toByteArray());
+            }
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Return the number of paths that have a payload in the file, including
+     * expired payloads.
+     */
+    public synchronized int size() throws IOException {
+        FileLock lock = lockChannel.lock(0, Long.MAX_VALUE, true);
+        try {
+            refresh();
+            return index.size();
+        } finally {
+            lock.release();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mapped = null;
+        try {
+            file.close();
+        } finally {
+            lockFile.close();
+        }
+    }
+
+    private boolean hasValidHeader() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        return header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+    }
+
+    private long readHeaderGeneration() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        return header.getLong(8);
+    }
+
+    private void writeHeader(long newGeneration) throws IOException {
+        writeHeader(channel, newGeneration);
+    }
+
+    private static void writeHeader(FileChannel target, long newGeneration) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(newGeneration).flip();
+        target.write(header, 0);
+    }
+
+    private void writeLockGeneration(long newGeneration) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putLong(newGeneration).flip();
+        lockChannel.write(buf, 0);
+    }
+
+    /**
+     * Bring the index up to date with the file, reopening the file if
+     * another instance replaced it.  Must be called while holding the lock.
+     */
+    private void refresh() throws IOException {
+        ByteBuffer lockGeneration = ByteBuffer.allocate(8);
+        if (lockChannel.read(lockGeneration, 0) == 8 && lockGeneration.getLong(0) != openGeneration) {
+            // Compacted by another instance.  The old file is no longer used.
+            mapped = null;
+            file.close();
+            openFile();
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not a response cache file");
+        }
+        long fileGeneration = header.getLong(8);
+        long size = channel.size();
+        if (fileGeneration != generation || size < indexedEnd) {
+            // Another process rewrote the file.
+            index.clear();
+            mapped = null;
+            generation = fileGeneration;
+            indexedEnd = HEADER_SIZE;
+        }
+        if (mapped == null || mapped.capacity() < size) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        // Index the records that were appended since the last refresh.  Stop
+        // at a partial record, which a process that crashed may have left.
+        int pos = (int) indexedEnd;
+        while (pos + RECORD_OVERHEAD <= size) {
+            int length = mapped.getInt(pos);
+            if (length < RECORD_OVERHEAD - 4 || pos + 4L + length > size) {
+                break;
+            }
+            long storedAtMillis = mapped.getLong(pos + 4);
+            int pathLength = mapped.getInt(pos + 12);
+            if (pathLength < 0 || pathLength > length - (RECORD_OVERHEAD - 4)) {
+                break;
+            }
+            byte[] pathBytes = new byte[pathLength];
+            ByteBuffer buf = mapped.duplicate();
+            buf.position(pos + 16);
+            buf.get(pathBytes);
+            String path = new String(pathBytes, Utf8Reader.UTF_8);
+            int payloadLength = mapped.getInt(pos + 16 + pathLength);
+            if (payloadLength == INVALIDATED) {
+                index.remove(path);
+            } else {
+                int dataOffset = pos + RECORD_OVERHEAD + pathLength;
+                int dataLength = length - (RECORD_OVERHEAD - 4) - pathLength;
+                index.put(path, new IndexEntry(storedAtMillis, dataOffset, dataLength, payloadLength));
+            }
+            pos += 4 + length;
+        }
+        indexedEnd = pos;
+    }
+
+    /**
+     * Append records at the end of the indexed part of the file, overwriting
+     * a partial record if there is one.  Must be called while holding the
+     * exclusive file lock, after {@link #refresh}.
+     */
+    private void append(byte[] records) throws IOException {
+        long end = indexedEnd + records.length;
+        channel.write(ByteBuffer.wrap(records), indexedEnd);
+        long size = channel.size();
+        if (size > end) {
+            // Zero the rest of the partial record instead of truncating the
+            // mapped file.  A zero length ends the indexing.
+            channel.write(ByteBuffer.allocate((int) Math.min(size - end, RECORD_OVERHEAD)), end);
+        }
+        refresh();
+    }
+
+    /**
+     * Rewrite the file with only the payloads that haven't expired.  If they
+     * don't leave room for {@code reserve} more bytes, drop all of them.
+     * Must be called while holding the exclusive file lock, after
+     * {@link #refresh}.
+     */
+    private void compact(int reserve) throws IOException {
+        ByteArrayOutputStream live = new ByteArrayOutputStream();
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, IndexEntry>> entries = Lists.newArrayList(index.entrySet().iterator());
+        for (Map.Entry<String, IndexEntry> e : entries) {
+            IndexEntry entry = e.getValue();
+            long age = now - entry.storedAtMillis;
+            if (age < 0 || age >= getMaxAgeMillis(e.getKey())) {
+                continue;
+            }
+            byte[] data = new byte[entry.dataLength];
+            ByteBuffer buf = mapped.duplicate();
+            buf.position((int) entry.dataOffset);
+            buf.get(data);
+            live.write(encodeRecord(e.getKey(), entry.storedAtMillis, entry.payloadLength, data));
+        }
+        if (HEADER_SIZE + live.size() + reserve > maxFileBytes) {
+            live.reset();
+        }
+
+        long newGeneration = generation + 1;
+        File temp = new File(cacheFile.getPath() + ".tmp");
+        RandomAccessFile out = openRestricted(temp);
+        try {
+            out.setLength(0);
+            FileChannel outChannel = out.getChannel();
+            writeHeader(outChannel, newGeneration);
+            outChannel.write(ByteBuffer.wrap(live.toByteArray()), HEADER_SIZE);
+            outChannel.force(true);
+        } finally {
+            out.close();
+        }
+
+        mapped = null;
+        file.close();
+        boolean renamed = temp.renameTo(cacheFile);
+        if (!renamed) {
+            temp.delete();
+        }
+        // Reopen either file.  Other instances reopen it in refresh().
+        openFile();
+        if (!renamed) {
+            throw new IOException("Unable to replace " + cacheFile);
+        }
+        writeLockGeneration(newGeneration);
+        refresh();
+    }
+
+    private static byte[] encodeRecord(String path, long storedAtMillis, int payloadLength, byte[] data) {
+        byte[] pathBytes = path.getBytes(Utf8Reader.UTF_8);
+        int length = RECORD_OVERHEAD - 4 + pathBytes.length + data.length;
+        ByteBuffer buf = ByteBuffer.allocate(4 + length);
+        buf.putInt(length).putLong(storedAtMillis).putInt(pathBytes.length).put(pathBytes)
+                .putInt(payloadLength).put(data);
+        return buf.array();
+    }
+
+    private static byte[] deflate(byte[] payload) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 4 + 16);
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Inflate a payload, or return {@code null} if the data is corrupt.
+     */
+    private static byte[] inflate(byte[] data, int payloadLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] payload = new byte[payloadLength];
+            int count = 0;
+            while (count < payloadLength) {
+                int n = inflater.inflate(payload, count, payloadLength - count);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                count += n;
+            }
+            return count == payloadLength ? payload : null;
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs a list of blocking tasks with bounded parallelism.  At most
+ * {@code parallelism} tasks run at the same time, regardless of how many
+ * threads the executor has, so a virtual-thread executor doesn't flood the
+ * server with requests.
+ */
+public class ParallelTasks {
+
+    private ParallelTasks() {
+    }
+
+    /**
+     * The result of one task: either a value or an exception, and how long
+     * the task ran.
+     */
+    public static class Outcome<T> {
+        private final T value;
+        private final Throwable error;
+        private final long elapsedNanos;
+
+        Outcome(T value, Throwable error, long elapsedNanos) {
+            this.value = value;
+            this.error = error;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * Return the task's result, or {@code null} if it failed.
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * Return the exception that the task threw, or {@code null} if it succeeded.
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1000000;
+        }
+
+        /**
+         * Return the task's result, or rethrow its exception.
+         */
+        public T getOrThrow() {
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            if (error != null) {
+                throw new RuntimeException(error);
+            }
+            return value;
+        }
+
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("value", value)
+                    .add("error", error)
+                    .add("elapsedMillis", getElapsedMillis())
+                    .toString();
+        }
+    }
+
+    /**
+     * Run all tasks on {@code executor}, with at most {@code parallelism}
+     * running at once, and wait for them to finish.  A failing task doesn't
+     * stop the others.  If the executor rejects a worker, the worker runs on
+     * the calling thread.
+     *
+     * @return the outcome of each task, in the same order as {@code tasks}
+     */
+    public static <T> List<Outcome<T>> runAll(final List<? extends Callable<? extends T>> tasks,
+                                             Executor executor, int parallelism)
+            throws InterruptedException {
+        Preconditions.checkNotNull(tasks);
+        Preconditions.checkNotNull(executor);
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive: " + parallelism);
+
+        final AtomicReferenceArray<Outcome<T>> outcomes = new AtomicReferenceArray<Outcome<T>>(tasks.size());
+        final AtomicInteger nextIndex = new AtomicInteger();
+        int workerCount = Math.min(parallelism, tasks.size());
+        final CountDownLatch finished = new CountDownLatch(workerCount);
+
+        // Each worker runs tasks until there are none left, so no more than
+        // workerCount tasks run at once.
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int i;
+                    while ((i = nextIndex.getAndIncrement()) < tasks.size()) {
+                        outcomes.set(i, call(tasks.get(i)));
+                    }
+                } finally {
+                    finished.countDown();
+                }
+            }
+        };
+        for (int i = 0; i < workerCount; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                worker.run();
+            }
+        }
+        finished.await();
+
+        List<Outcome<T>> result = Lists.newArrayList();
+        for (int i = 0; i < tasks.size(); i++) {
+            result.add(outcomes.get(i));
+        }
+        return result;
+    }
+
+    private static <T> Outcome<T> call(Callable<? extends T> task) {
+        long start = System.nanoTime();
+        try {
+            T value = task.call();
+            return new Outcome<T>(value, null, System.nanoTime() - start);
+        } catch (Throwable t) {
+            return new Outcome<T>(null, t, System.nanoTime() - start);
+        }
+    }
+}
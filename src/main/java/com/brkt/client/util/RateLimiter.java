@@ -0,0 +1,66 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spaces out calls so that no more than a given number start per second.
+ * Each {@link #acquire} reserves the next free time slot with a
+ * compare-and-set, then sleeps until that slot, so callers never block each
+ * other on a lock.  There is no bursting: slots are evenly spaced.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+
+    /**
+     * The {@code System.nanoTime()} of the next free slot.
+     */
+    private final AtomicLong nextSlotNanos;
+
+    public RateLimiter(double permitsPerSecond) {
+        Preconditions.checkArgument(permitsPerSecond > 0,
+                "permitsPerSecond must be positive: " + permitsPerSecond);
+        intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        nextSlotNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Wait until the caller may proceed.
+     *
+     * @return the number of nanoseconds that the caller waited
+     */
+    public long acquire() throws InterruptedException {
+        while (true) {
+            long now = System.nanoTime();
+            long next = nextSlotNanos.get();
+            // Don't accumulate credit for idle time.
+            long slot = next - now > 0 ? next : now;
+            if (nextSlotNanos.compareAndSet(next, slot + intervalNanos)) {
+                long waitNanos = slot - now;
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+                return waitNanos;
+            }
+        }
+    }
+}
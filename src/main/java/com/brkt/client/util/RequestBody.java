@@ -0,0 +1,91 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.base.Preconditions;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable request payload that was encoded as JSON when it was built.
+ * {@link BrktRestClient#post} sends the encoded bytes as-is, so the same
+ * body can be posted, retried or replayed any number of times without
+ * being serialized again.  The attributes are also available as a read-only
+ * {@code Map}, so a {@code RequestBody} can be passed to any method that
+ * accepts the attribute map.
+ *
+ * <p>The JSON is fixed when the body is built.  Changes to mutable
+ * attribute values (for example a metadata {@code Map}) after that are not
+ * reflected in the payload.
+ */
+public final class RequestBody extends AbstractMap<String, Object> {
+
+    private final Map<String, Object> attrs;
+    private final byte[] json;
+
+    RequestBody(Map<String, Object> attrs, byte[] json) {
+        Preconditions.checkNotNull(attrs);
+        Preconditions.checkNotNull(json);
+        this.attrs = Collections.unmodifiableMap(attrs);
+        this.json = json;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return attrs.entrySet();
+    }
+
+    @Override
+    public Object get(Object key) {
+        return attrs.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return attrs.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return attrs.size();
+    }
+
+    /**
+     * Return a copy of the UTF-8 encoded JSON payload.
+     */
+    public byte[] toByteArray() {
+        return json.clone();
+    }
+
+    /**
+     * Return the JSON payload as a string.
+     */
+    public String toJson() {
+        return new String(json, Utf8Reader.UTF_8);
+    }
+
+    /**
+     * Return the encoded payload without copying it.  Callers must not
+     * modify the array.
+     */
+    byte[] payload() {
+        return json;
+    }
+}
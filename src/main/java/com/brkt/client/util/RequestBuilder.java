@@ -8,8 +8,8 @@
 * https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
 *
 * or in the "license" file accompanying this file. This file is
-* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR 
-* CONDITIONS OF ANY KIND, either express or implied. See the 
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
 * License for the specific language governing permissions and
 * limitations under the License.
 */
@@ -17,20 +17,62 @@
 package com.brkt.client.util;
 
 import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
 import java.util.Map;
 
 /**
  * Builds a {@code Map} of attributes that represents the request payload.
+ * Attributes are also written as compact JSON to an internal buffer as they
+ * are added, so that {@link #buildBody} can return an encoded
+ * {@link RequestBody} without serializing the map again.  If a value has a
+ * type that {@link StreamingCodec} doesn't support, the whole body is
+ * serialized with {@code Gson} when it is built instead.
  */
 public class RequestBuilder {
 
-    private Map<String, Object> attrs = Maps.newHashMap();
+    private static final StreamingCodec CODEC = new StreamingCodec();
+    private static final Gson GSON = BrktRestClient.newGson();
+
+    private Map<String, Object> attrs = Maps.newLinkedHashMap();
+    private final ByteArrayOutputStream buf = new ByteArrayOutputStream(256);
+    private JsonWriter writer;
+
+    /**
+     * {@code true} if the buffer doesn't match {@link #attrs}, because an
+     * attribute was replaced or couldn't be written.
+     */
+    private boolean stale;
+
+    /**
+     * {@code true} if an attribute value is not supported by {@link #CODEC}.
+     */
+    private boolean useGson;
+
+    public RequestBuilder() {
+        resetWriter();
+    }
 
     /**
      * Add an attribute to this request.
      */
     public RequestBuilder attr(String fieldName, Object value) {
+        if (attrs.containsKey(fieldName)) {
+            // The old value is already in the buffer.  Rewrite when building.
+            stale = true;
+        } else if (!stale && !useGson) {
+            try {
+                writeAttr(fieldName, value);
+            } catch (IllegalArgumentException e) {
+                // Part of the value may have been written.
+                useGson = true;
+            }
+        }
         attrs.put(fieldName, value);
         return this;
     }
@@ -42,4 +84,58 @@ public class RequestBuilder {
         // Return a new Map, so that the caller can't modify the internal map.
         return Maps.newHashMap(attrs);
     }
+
+    /**
+     * Build an immutable {@link RequestBody} that contains all of the added
+     * attributes, encoded as JSON.  The builder can still be used afterwards.
+     */
+    public RequestBody buildBody() {
+        if (stale && !useGson) {
+            resetWriter();
+            try {
+                for (Map.Entry<String, Object> entry : attrs.entrySet()) {
+                    writeAttr(entry.getKey(), entry.getValue());
+                }
+            } catch (IllegalArgumentException e) {
+                useGson = true;
+            }
+            stale = false;
+        }
+        if (useGson) {
+            return new RequestBody(Maps.newLinkedHashMap(attrs), GSON.toJson(attrs).getBytes(Utf8Reader.UTF_8));
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        // The writer is left inside the object, so that more attributes can
+        // be appended.  Close the object in the copy.
+        int length = buf.size();
+        byte[] json = Arrays.copyOf(buf.toByteArray(), length + 1);
+        json[length] = '}';
+        return new RequestBody(Maps.newLinkedHashMap(attrs), json);
+    }
+
+    private void resetWriter() {
+        buf.reset();
+        writer = new JsonWriter(new OutputStreamWriter(buf, Utf8Reader.UTF_8));
+        // Omit null attributes, like Gson does.
+        writer.setSerializeNulls(false);
+        try {
+            writer.beginObject();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private void writeAttr(String fieldName, Object value) {
+        try {
+            writer.name(fieldName);
+            CODEC.writeValue(writer, value);
+        } catch (IOException e) {
+            // Not possible, since we're writing to memory.
+            throw new AssertionError(e);
+        }
+    }
 }
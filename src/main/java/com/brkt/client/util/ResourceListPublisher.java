@@ -0,0 +1,240 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the elements of a JSON list of resources as they are parsed
+ * from the HTTP response.  Each subscription sends its own request.
+ *
+ * <p>Elements are read from the connection only when the subscriber has
+ * requested them.  When demand runs out, the publisher stops reading and
+ * releases its thread, and the unread part of the response stays in the
+ * socket buffers, so TCP flow control slows down the server.  Reading
+ * resumes on the executor when more elements are requested.
+ *
+ * <p>Errors are reported with {@code onError}: a
+ * {@link BrktRestClient.HttpError} if the server returns an unsuccessful
+ * status, an {@code IOException} if the connection fails, or a
+ * {@code JsonParseException} if the payload is invalid.
+ */
+public class ResourceListPublisher<T> implements BrktFlow.Publisher<T> {
+
+    private final BrktHttpClient httpClient;
+    private final String path;
+    private final BrktTypeAdapterFactory.ResourceAdapter<T> adapter;
+    private final Executor executor;
+
+    ResourceListPublisher(BrktHttpClient httpClient, String path,
+                          BrktTypeAdapterFactory.ResourceAdapter<T> adapter, Executor executor) {
+        this.httpClient = httpClient;
+        this.path = path;
+        this.adapter = adapter;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(BrktFlow.Subscriber<? super T> subscriber) {
+        Preconditions.checkNotNull(subscriber);
+        ListSubscription<T> subscription = new ListSubscription<T>(this, subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private static class ListSubscription<T> implements BrktFlow.Subscription, Runnable {
+        private final ResourceListPublisher<T> publisher;
+        private final BrktFlow.Subscriber<? super T> subscriber;
+
+        /**
+         * Number of elements requested and not yet sent.  {@code Long.MAX_VALUE}
+         * means unbounded.
+         */
+        private final AtomicLong requested = new AtomicLong();
+
+        /**
+         * Number of times the drain loop was signalled.  Only the thread that
+         * increments it from zero runs the loop, so the subscriber is never
+         * called concurrently.
+         */
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        /**
+         * An invalid request, reported by the drain loop.
+         */
+        private volatile Throwable requestError;
+
+        // Only accessed by the drain loop.
+        private BrktHttpClient.StreamingResponse response;
+        private JsonReader reader;
+        private boolean done;
+
+        ListSubscription(ResourceListPublisher<T> publisher, BrktFlow.Subscriber<? super T> subscriber) {
+            this.publisher = publisher;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                requestError = new IllegalArgumentException("n must be positive: " + n);
+            } else {
+                while (true) {
+                    long current = requested.get();
+                    long next = current + n;
+                    if (next < 0) {
+                        next = Long.MAX_VALUE;
+                    }
+                    if (requested.compareAndSet(current, next)) {
+                        break;
+                    }
+                }
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            signal();
+        }
+
+        private void signal() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    publisher.executor.execute(this);
+                } catch (RuntimeException e) {
+                    // The executor rejected the task.
+                    cancelled = true;
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        /**
+         * The drain loop.  Reads and sends elements while there is demand.
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            while (true) {
+                if (!done) {
+                    try {
+                        drain();
+                    } catch (Throwable t) {
+                        finish();
+                        if (!cancelled) {
+                            subscriber.onError(t);
+                        }
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void drain() throws IOException, BrktRestClient.HttpError {
+            long r = requested.get();
+            long emitted = 0;
+            while (true) {
+                if (cancelled) {
+                    finish();
+                    return;
+                }
+                if (requestError != null) {
+                    cancelled = true;
+                    finish();
+                    subscriber.onError(requestError);
+                    return;
+                }
+                if (emitted == r) {
+                    break;
+                }
+                if (reader == null) {
+                    open();
+                }
+                if (!hasNext()) {
+                    finish();
+                    subscriber.onComplete();
+                    return;
+                }
+                T item = read();
+                subscriber.onNext(item);
+                emitted++;
+            }
+            if (emitted > 0 && r != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+        }
+
+        private void open() throws IOException, BrktRestClient.HttpError {
+            response = publisher.httpClient.getStream(publisher.path);
+            if (response.status / 100 != 2) {
+                // The error payload has already been read into memory.
+                byte[] payload = ByteStreams.toByteArray(response.payload);
+                throw new BrktRestClient.HttpError(response.status, response.message, payload);
+            }
+            reader = new JsonReader(new InputStreamReader(response.payload, Utf8Reader.UTF_8));
+            try {
+                reader.beginArray();
+            } catch (IllegalStateException e) {
+                throw new JsonParseException(e);
+            }
+        }
+
+        private boolean hasNext() throws IOException {
+            if (reader.hasNext()) {
+                return true;
+            }
+            reader.endArray();
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonParseException("Unexpected data after JSON array");
+            }
+            return false;
+        }
+
+        private T read() throws IOException {
+            try {
+                return publisher.adapter.read(reader);
+            } catch (IllegalStateException e) {
+                throw new JsonParseException(e);
+            }
+        }
+
+        private void finish() {
+            done = true;
+            reader = null;
+            if (response != null) {
+                response.close();
+                response = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import java.io.IOException;
+
+/**
+ * Stores the payloads of successful {@code GET} responses, so that
+ * {@link BrktRestClient} can return them without contacting the server.
+ * The cache decides which paths are cached and for how long.
+ *
+ * <p>Implementations must be thread-safe.
+ *
+ * @see MappedFileResponseCache
+ */
+public interface ResponseCache {
+
+    /**
+     * Return the cached payload for {@code path}, or {@code null} if there
+     * is none or it has expired.
+     */
+    byte[] get(String path) throws IOException;
+
+    /**
+     * Store the payload of a successful {@code GET} of {@code path}.
+     */
+    void put(String path, byte[] payload) throws IOException;
+
+    /**
+     * Called after a {@code POST} or {@code DELETE} of {@code path}, whether
+     * or not it succeeded.  Implementations invalidate the cached payloads
+     * that the write may have changed.
+     */
+    void invalidate(String path) throws IOException;
+}
@@ -0,0 +1,145 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps each key of a resource, such as the id of the workload that an
+ * instance belongs to, to the ids of the resources that have it.  A resource
+ * can have any number of keys, for example one per security group.
+ * Lookups are constant-time, and {@link #update} only touches the keys
+ * that changed.
+ *
+ * <p>Not thread-safe.
+ */
+public class SecondaryIndex<T> {
+
+    private final String name;
+    private final Function<? super T, ? extends Collection<String>> keyFunction;
+    private final Map<String, Set<String>> idsByKey = Maps.newHashMap();
+
+    /**
+     * @param name the name of the index, for {@link #toString}
+     * @param keyFunction returns the keys of a resource.  {@code null}
+     *                    elements are ignored.
+     */
+    public SecondaryIndex(String name, Function<? super T, ? extends Collection<String>> keyFunction) {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkNotNull(keyFunction);
+        this.name = name;
+        this.keyFunction = keyFunction;
+    }
+
+    /**
+     * Return an index with at most one key per resource.
+     */
+    public static <T> SecondaryIndex<T> forKey(String name, final Function<? super T, String> keyFunction) {
+        Preconditions.checkNotNull(keyFunction);
+        return new SecondaryIndex<T>(name, new Function<T, Collection<String>>() {
+            @Override
+            public Collection<String> apply(T resource) {
+                String key = keyFunction.apply(resource);
+                return key == null ? Collections.<String>emptySet() : Collections.singleton(key);
+            }
+        });
+    }
+
+    private Set<String> keysOf(T resource) {
+        if (resource == null) {
+            return Collections.emptySet();
+        }
+        Collection<String> keys = keyFunction.apply(resource);
+        if (keys == null || keys.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> result = Sets.newHashSet(keys);
+        result.remove(null);
+        return result;
+    }
+
+    /**
+     * Move the resource with the given id from the keys of {@code oldValue}
+     * to the keys of {@code newValue}.  Either value can be {@code null}, to
+     * add or remove the resource.
+     */
+    public void update(String id, T oldValue, T newValue) {
+        Preconditions.checkNotNull(id);
+        Set<String> oldKeys = keysOf(oldValue);
+        Set<String> newKeys = keysOf(newValue);
+        if (oldKeys.equals(newKeys)) {
+            return;
+        }
+        for (String key : oldKeys) {
+            if (!newKeys.contains(key)) {
+                Set<String> ids = idsByKey.get(key);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        idsByKey.remove(key);
+                    }
+                }
+            }
+        }
+        for (String key : newKeys) {
+            if (!oldKeys.contains(key)) {
+                Set<String> ids = idsByKey.get(key);
+                if (ids == null) {
+                    ids = Sets.newLinkedHashSet();
+                    idsByKey.put(key, ids);
+                }
+                ids.add(id);
+            }
+        }
+    }
+
+    /**
+     * Return the ids of the resources that have {@code key}, in the order
+     * they were added.  The returned set is a read-only view.
+     */
+    public Set<String> get(String key) {
+        Set<String> ids = idsByKey.get(key);
+        return ids == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * Return the number of distinct keys.
+     */
+    public int keyCount() {
+        return idsByKey.size();
+    }
+
+    public void clear() {
+        idsByKey.clear();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String toString() {
+        return "SecondaryIndex{" + name + ", keyCount=" + idsByKey.size() + "}";
+    }
+}
@@ -0,0 +1,456 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reads and writes JSON with {@code JsonReader} and {@code JsonWriter} only.
+ * Resource classes are bound with the field tables built by
+ * {@link BrktTypeAdapterFactory}.  Timestamps, scalars, lists and maps with
+ * string keys are handled by small built-in adapters, so no {@code Gson}
+ * instance or reflective adapter is created.
+ *
+ * <p>Supported types are the resource classes, {@code Timestamp},
+ * {@code String}, the boxed and primitive {@code int}, {@code long},
+ * {@code double} and {@code boolean}, {@code BigDecimal}, {@code JsonElement},
+ * {@code List}, {@code ArrayList}, {@code Map}, {@code LinkedHashMap} and
+ * {@code Object}.  Any other type causes an {@code IllegalArgumentException}.
+ */
+public class StreamingCodec implements BrktCodec {
+
+    private final BrktTypeAdapterFactory factory =
+            new BrktTypeAdapterFactory(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES);
+    private final ConcurrentMap<Type, TypeAdapter<?>> adapters =
+            new ConcurrentHashMap<Type, TypeAdapter<?>>();
+    private final BrktTypeAdapterFactory.AdapterResolver resolver =
+            new BrktTypeAdapterFactory.AdapterResolver() {
+                @Override
+                public TypeAdapter<?> getAdapter(Type type) {
+                    return StreamingCodec.this.getAdapter(type);
+                }
+            };
+    private final ObjectAdapter objectAdapter = new ObjectAdapter();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T decode(Reader reader, Type type) throws IOException {
+        TypeAdapter<T> adapter = (TypeAdapter<T>) getAdapter(type);
+        JsonReader in = new JsonReader(reader);
+        // Match Gson.fromJson(), which reads leniently.
+        in.setLenient(true);
+        try {
+            in.peek();
+        } catch (EOFException e) {
+            // An empty document deserializes to null.
+            return null;
+        }
+        T value;
+        try {
+            value = adapter.read(in);
+        } catch (MalformedJsonException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        } catch (EOFException e) {
+            throw new JsonSyntaxException(e);
+        }
+        if (in.peek() != JsonToken.END_DOCUMENT) {
+            throw new JsonIOException("JSON document was not fully consumed.");
+        }
+        return value;
+    }
+
+    @Override
+    public void encode(Object value, Writer writer) throws IOException {
+        JsonWriter out = new JsonWriter(writer);
+        // Match Gson, which omits null fields by default.
+        out.setSerializeNulls(false);
+        objectAdapter.write(out, value);
+        out.flush();
+    }
+
+    /**
+     * Write a value according to its runtime type, like {@link #encode}.
+     */
+    void writeValue(JsonWriter out, Object value) throws IOException {
+        objectAdapter.write(out, value);
+    }
+
+    /**
+     * Return the adapter for a resource class, or {@code null} if the class is
+     * not a resource class.
+     */
+    @SuppressWarnings("unchecked")
+    <T> BrktTypeAdapterFactory.ResourceAdapter<T> getResourceAdapter(Class<T> rawType) {
+        if (!BrktTypeAdapterFactory.isModelClass(rawType)) {
+            return null;
+        }
+        return (BrktTypeAdapterFactory.ResourceAdapter<T>) getAdapter(rawType);
+    }
+
+    TypeAdapter<?> getAdapter(Type type) {
+        TypeAdapter<?> adapter = adapters.get(type);
+        if (adapter == null) {
+            adapter = createAdapter(type);
+            TypeAdapter<?> existing = adapters.putIfAbsent(type, adapter);
+            if (existing != null) {
+                adapter = existing;
+            }
+        }
+        return adapter;
+    }
+
+    private TypeAdapter<?> createAdapter(Type type) {
+        if (type instanceof Class) {
+            Class<?> c = (Class<?>) type;
+            if (BrktTypeAdapterFactory.isModelClass(c)) {
+                return factory.newResourceAdapter(c, resolver);
+            }
+            if (c == Timestamp.class) {
+                return Iso8601.TIMESTAMP_ADAPTER;
+            }
+            if (c == Object.class) {
+                return objectAdapter;
+            }
+            if (c == JsonElement.class) {
+                return JSON_ELEMENT_ADAPTER;
+            }
+            if (c == List.class || c == ArrayList.class) {
+                return new ListAdapter(objectAdapter);
+            }
+            if (c == Map.class || c == LinkedHashMap.class) {
+                return new MapAdapter(objectAdapter);
+            }
+            ScalarAdapter scalar = ScalarAdapter.forClass(c);
+            if (scalar != null) {
+                return scalar;
+            }
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType pt = (ParameterizedType) type;
+            Type raw = pt.getRawType();
+            Type[] args = pt.getActualTypeArguments();
+            if (raw == List.class || raw == ArrayList.class) {
+                return new ListAdapter(getAdapter(args[0]));
+            }
+            if ((raw == Map.class || raw == LinkedHashMap.class) && args[0] == String.class) {
+                return new MapAdapter(getAdapter(args[1]));
+            }
+        }
+        throw new IllegalArgumentException("StreamingCodec does not support " + type);
+    }
+
+    private static final TypeAdapter<JsonElement> JSON_ELEMENT_ADAPTER = new TypeAdapter<JsonElement>() {
+        @Override
+        public void write(JsonWriter out, JsonElement value) throws IOException {
+            if (value == null || value.isJsonNull()) {
+                out.nullValue();
+            } else if (value.isJsonPrimitive()) {
+                JsonPrimitive primitive = value.getAsJsonPrimitive();
+                if (primitive.isNumber()) {
+                    out.value(primitive.getAsNumber());
+                } else if (primitive.isBoolean()) {
+                    out.value(primitive.getAsBoolean());
+                } else {
+                    out.value(primitive.getAsString());
+                }
+            } else if (value.isJsonArray()) {
+                out.beginArray();
+                for (JsonElement element : value.getAsJsonArray()) {
+                    write(out, element);
+                }
+                out.endArray();
+            } else {
+                out.beginObject();
+                for (Map.Entry<String, JsonElement> entry : value.getAsJsonObject().entrySet()) {
+                    out.name(entry.getKey());
+                    write(out, entry.getValue());
+                }
+                out.endObject();
+            }
+        }
+
+        @Override
+        public JsonElement read(JsonReader in) throws IOException {
+            return new JsonParser().parse(in);
+        }
+    };
+
+    private static class ScalarAdapter extends TypeAdapter<Object> {
+        private final Class<?> boxedClass;
+
+        private ScalarAdapter(Class<?> boxedClass) {
+            this.boxedClass = boxedClass;
+        }
+
+        static ScalarAdapter forClass(Class<?> c) {
+            if (c == int.class) {
+                c = Integer.class;
+            } else if (c == long.class) {
+                c = Long.class;
+            } else if (c == double.class) {
+                c = Double.class;
+            } else if (c == boolean.class) {
+                c = Boolean.class;
+            }
+            if (c == String.class || c == Integer.class || c == Long.class || c == Double.class
+                    || c == Boolean.class || c == BigDecimal.class) {
+                return new ScalarAdapter(c);
+            }
+            return null;
+        }
+
+        @Override
+        public Object read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            if (boxedClass == String.class) {
+                return BrktTypeAdapterFactory.nextString(in);
+            }
+            if (boxedClass == Integer.class) {
+                return in.nextInt();
+            }
+            if (boxedClass == Long.class) {
+                return in.nextLong();
+            }
+            if (boxedClass == Double.class) {
+                return in.nextDouble();
+            }
+            if (boxedClass == Boolean.class) {
+                if (in.peek() == JsonToken.STRING) {
+                    return Boolean.valueOf(in.nextString());
+                }
+                return in.nextBoolean();
+            }
+            return new BigDecimal(in.nextString());
+        }
+
+        @Override
+        public void write(JsonWriter out, Object value) throws IOException {
+            writeScalar(out, value);
+        }
+    }
+
+    private static class ListAdapter extends TypeAdapter<List<Object>> {
+        private final TypeAdapter<Object> elementAdapter;
+
+        @SuppressWarnings("unchecked")
+        ListAdapter(TypeAdapter<?> elementAdapter) {
+            this.elementAdapter = (TypeAdapter<Object>) elementAdapter;
+        }
+
+        @Override
+        public List<Object> read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            List<Object> list = Lists.newArrayList();
+            in.beginArray();
+            while (in.hasNext()) {
+                list.add(elementAdapter.read(in));
+            }
+            in.endArray();
+            return list;
+        }
+
+        @Override
+        public void write(JsonWriter out, List<Object> value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginArray();
+            for (Object element : value) {
+                elementAdapter.write(out, element);
+            }
+            out.endArray();
+        }
+    }
+
+    private static class MapAdapter extends TypeAdapter<Map<String, Object>> {
+        private final TypeAdapter<Object> valueAdapter;
+
+        @SuppressWarnings("unchecked")
+        MapAdapter(TypeAdapter<?> valueAdapter) {
+            this.valueAdapter = (TypeAdapter<Object>) valueAdapter;
+        }
+
+        @Override
+        public Map<String, Object> read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Map<String, Object> map = Maps.newLinkedHashMap();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (map.put(name, valueAdapter.read(in)) != null) {
+                    throw new JsonSyntaxException("duplicate key: " + name);
+                }
+            }
+            in.endObject();
+            return map;
+        }
+
+        @Override
+        public void write(JsonWriter out, Map<String, Object> value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            for (Map.Entry<String, Object> entry : value.entrySet()) {
+                out.name(String.valueOf(entry.getKey()));
+                valueAdapter.write(out, entry.getValue());
+            }
+            out.endObject();
+        }
+    }
+
+    /**
+     * Reads JSON into maps, lists, strings, doubles and booleans, like
+     * {@code Gson}'s {@code ObjectTypeAdapter}.  Writes according to the
+     * runtime type of the value, which is how request attributes are
+     * serialized.
+     */
+    private class ObjectAdapter extends TypeAdapter<Object> {
+        @Override
+        public Object read(JsonReader in) throws IOException {
+            switch (in.peek()) {
+                case BEGIN_ARRAY:
+                    List<Object> list = Lists.newArrayList();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        list.add(read(in));
+                    }
+                    in.endArray();
+                    return list;
+                case BEGIN_OBJECT:
+                    Map<String, Object> map = Maps.newLinkedHashMap();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        map.put(in.nextName(), read(in));
+                    }
+                    in.endObject();
+                    return map;
+                case STRING:
+                    return in.nextString();
+                case NUMBER:
+                    return in.nextDouble();
+                case BOOLEAN:
+                    return in.nextBoolean();
+                case NULL:
+                    in.nextNull();
+                    return null;
+                default:
+                    throw new IllegalStateException("Unexpected token " + in.peek());
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void write(JsonWriter out, Object value) throws IOException {
+            if (value == null || value instanceof String || value instanceof Number
+                    || value instanceof Boolean || value instanceof Enum) {
+                writeScalar(out, value);
+            } else if (value instanceof Map) {
+                out.beginObject();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    out.name(String.valueOf(entry.getKey()));
+                    write(out, entry.getValue());
+                }
+                out.endObject();
+            } else if (value instanceof Collection) {
+                out.beginArray();
+                for (Object element : (Collection<?>) value) {
+                    write(out, element);
+                }
+                out.endArray();
+            } else if (value instanceof Object[]) {
+                out.beginArray();
+                for (Object element : (Object[]) value) {
+                    write(out, element);
+                }
+                out.endArray();
+            } else {
+                ((TypeAdapter<Object>) getAdapter(value.getClass())).write(out, value);
+            }
+        }
+    }
+
+    private static void writeScalar(JsonWriter out, Object value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else if (value instanceof String) {
+            out.value((String) value);
+        } else if (value instanceof Number) {
+            out.value((Number) value);
+        } else if (value instanceof Boolean) {
+            out.value(((Boolean) value).booleanValue());
+        } else {
+            out.value(enumName((Enum<?>) value));
+        }
+    }
+
+    private static String enumName(Enum<?> constant) {
+        try {
+            SerializedName annotation = constant.getDeclaringClass().getField(constant.name())
+                    .getAnnotation(SerializedName.class);
+            if (annotation != null) {
+                return annotation.value();
+            }
+        } catch (NoSuchFieldException e) {
+            throw new AssertionError(e);
+        }
+        return constant.name();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.base.Preconditions;
+
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes UTF-8 directly from a byte array.  Runs of ASCII characters, which
+ * make up almost all of a typical JSON payload, are copied with a simple
+ * loop.  Each malformed byte sequence is replaced with {@code U+FFFD}, so
+ * the result doesn't depend on the platform's charset decoder.
+ */
+public class Utf8Reader extends Reader {
+
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final char REPLACEMENT = '\ufffd';
+
+    private final byte[] bytes;
+    private final int end;
+    private int pos;
+
+    /**
+     * The low surrogate of a supplementary character that didn't fit in
+     * the caller's buffer, or {@code 0}.
+     */
+    private char pendingLowSurrogate;
+
+    public Utf8Reader(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Decode {@code length} bytes of {@code bytes}, starting at {@code offset}.
+     */
+    public Utf8Reader(byte[] bytes, int offset, int length) {
+        Preconditions.checkNotNull(bytes);
+        Preconditions.checkPositionIndexes(offset, offset + length, bytes.length);
+        this.bytes = bytes;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+        Preconditions.checkPositionIndexes(off, off + len, cbuf.length);
+        if (len == 0) {
+            return 0;
+        }
+        int out = off;
+        int outEnd = off + len;
+
+        if (pendingLowSurrogate != 0) {
+            cbuf[out++] = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+        }
+
+        while (out < outEnd && pos < end) {
+            // Fast path for ASCII.
+            int asciiEnd = Math.min(end, pos + (outEnd - out));
+            while (pos < asciiEnd && bytes[pos] >= 0) {
+                cbuf[out++] = (char) bytes[pos++];
+            }
+            if (out < outEnd && pos < end) {
+                int codePoint = decodeMultiByte();
+                if (codePoint < 0x10000) {
+                    cbuf[out++] = (char) codePoint;
+                } else {
+                    char high = (char) (Character.MIN_HIGH_SURROGATE + ((codePoint - 0x10000) >>> 10));
+                    char low = (char) (Character.MIN_LOW_SURROGATE + (codePoint & 0x3ff));
+                    cbuf[out++] = high;
+                    if (out < outEnd) {
+                        cbuf[out++] = low;
+                    } else {
+                        pendingLowSurrogate = low;
+                    }
+                }
+            }
+        }
+
+        if (out == off) {
+            return -1;
+        }
+        return out - off;
+    }
+
+    /**
+     * Decode the non-ASCII character at {@code pos} and advance past it.
+     * Return {@link #REPLACEMENT} if the byte sequence is malformed.
+     */
+    private int decodeMultiByte() {
+        int b0 = bytes[pos++] & 0xff;
+        int count;
+        int min;
+        int max = 0xbf;
+        int codePoint;
+
+        if (b0 >= 0xc2 && b0 <= 0xdf) {
+            count = 1;
+            min = 0x80;
+            codePoint = b0 & 0x1f;
+        } else if (b0 >= 0xe0 && b0 <= 0xef) {
+            count = 2;
+            // Reject overlong encodings and surrogates.
+            min = b0 == 0xe0 ? 0xa0 : 0x80;
+            max = b0 == 0xed ? 0x9f : 0xbf;
+            codePoint = b0 & 0x0f;
+        } else if (b0 >= 0xf0 && b0 <= 0xf4) {
+            count = 3;
+            // Reject overlong encodings and code points above U+10FFFF.
+            min = b0 == 0xf0 ? 0x90 : 0x80;
+            max = b0 == 0xf4 ? 0x8f : 0xbf;
+            codePoint = b0 & 0x07;
+        } else {
+            return REPLACEMENT;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (pos >= end) {
+                return REPLACEMENT;
+            }
+            int b = bytes[pos] & 0xff;
+            if (b < min || b > max) {
+                // Don't consume the invalid byte.  It may start the next character.
+                return REPLACEMENT;
+            }
+            pos++;
+            codePoint = (codePoint << 6) | (b & 0x3f);
+            min = 0x80;
+            max = 0xbf;
+        }
+        return codePoint;
+    }
+
+    @Override
+    public void close() {
+        pos = end;
+        pendingLowSurrogate = 0;
+    }
+}
@@ -84,13 +84,14 @@ public class IntegrationTest {
      * Delete any resources that were created by this test run or a
      * previous failed test run.
      */
-    private void cleanUp() {
+    private void cleanUp() throws InterruptedException {
         System.out.println("Cleaning up.");
 
+        List<BrktResource> resources = Lists.newArrayList();
         for (Volume v : service.getAllVolumes()) {
             if (v.getName().startsWith(PREFIX) &&
                     v.getRequestedState() != RequestedState.DELETED) {
-                service.deleteVolume(v.getId());
+                resources.add(v);
             }
         }
         // No need to explicitly delete instances or load balancers.
@@ -98,20 +99,30 @@ public class IntegrationTest {
         for (Workload w : service.getAllWorkloads()) {
             if (w.getName().startsWith(PREFIX) &&
                     w.getRequestedState() != RequestedState.DELETED) {
-                service.deleteWorkload(w.getId());
+                resources.add(w);
             }
         }
         for (BillingGroup group : service.getAllBillingGroups()) {
             if (group.getName().startsWith(PREFIX)) {
-                service.deleteBillingGroup(group.getId());
+                resources.add(group);
             }
         }
         for (SecurityGroup sg : service.getAllSecurityGroups()) {
             if (sg.getName().startsWith(PREFIX) &&
                     sg.getRequestedState() != RequestedState.DELETED) {
-                service.deleteSecurityGroup(sg.getId());
+                resources.add(sg);
             }
         }
+
+        BulkResult<BrktResource, Object> result = new Teardown.Builder(service).build().run(resources);
+        List<BulkResult.Item<BrktResource, Object>> failures = result.getFailures();
+        if (!failures.isEmpty()) {
+            List<String> ids = Lists.newArrayList();
+            for (BulkResult.Item<BrktResource, Object> item : failures) {
+                ids.add(item.getInput().getId());
+            }
+            throw new RuntimeException("Unable to delete " + ids, failures.get(0).getError());
+        }
     }
 
     private void testOperatingSystem() {
@@ -622,7 +633,7 @@ public class IntegrationTest {
         // TODO: test delete after NUC-8392 is fixed.
     }
 
-    public static void main(String[] stringArgs) {
+    public static void main(String[] stringArgs) throws InterruptedException {
         Arguments args = null;
         try {
             args = parseArgs(stringArgs);
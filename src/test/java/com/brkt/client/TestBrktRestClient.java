@@ -17,13 +17,20 @@
 package com.brkt.client;
 
 import com.brkt.client.util.BrktRestClient;
+import com.brkt.client.util.Iso8601;
+import com.brkt.client.util.StubServer;
+import com.brkt.client.util.Utf8Reader;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.sql.Timestamp;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TestBrktRestClient {
 
@@ -46,7 +53,64 @@ public class TestBrktRestClient {
 
         JsonObject jsonObj = gson.toJsonTree(th).getAsJsonObject();
         String iso8601 = jsonObj.get("timestamp").getAsString();
-        assertEquals("2015-03-31T22:34:51.270Z", iso8601); // JodaTime doesn't handle nanoseconds.
+        assertEquals("2015-03-31T22:34:51.270584Z", iso8601);
+    }
+
+    @Test
+    public void testParseIso8601() {
+        Timestamp ts = Iso8601.parse("2015-03-31T22:34:51.270584+00:00");
+        assertEquals(1427841291270L, ts.getTime());
+        assertEquals(270584000, ts.getNanos());
+
+        // Offsets.
+        assertEquals(1427841291000L, Iso8601.parse("2015-03-31T22:34:51Z").getTime());
+        assertEquals(1427841291000L, Iso8601.parse("2015-04-01T00:04:51+01:30").getTime());
+        assertEquals(1427841291000L, Iso8601.parse("2015-03-31T17:34:51-0500").getTime());
+        assertEquals(1427841291000L, Iso8601.parse("2015-03-31T23:34:51+01").getTime());
+        assertEquals(1427841291000L, Iso8601.parse("2015-03-31T22:34:51").getTime());
+
+        // Date only, minute precision, and excess fraction digits.
+        assertEquals(1427760000000L, Iso8601.parse("2015-03-31").getTime());
+        assertEquals(1427841240000L, Iso8601.parse("2015-03-31T22:34Z").getTime());
+        assertEquals(123456789, Iso8601.parse("2015-03-31T22:34:51.1234567891Z").getNanos());
+
+        // Leap years and dates before the epoch.
+        assertEquals(951782400000L, Iso8601.parse("2000-02-29T00:00:00Z").getTime());
+        assertEquals(-1000L, Iso8601.parse("1969-12-31T23:59:59Z").getTime());
+    }
+
+    @Test
+    public void testParseInvalidIso8601() {
+        String[] invalid = {
+                "", "2015", "2015-3-31", "2015-02-29", "2015-13-01", "2015-03-31T24:00:00Z",
+                "2015-03-31T22:34:51.Z", "2015-03-31T22:34:51+5", "2015-03-31T22:34:51Zjunk",
+                "2015-03-31X22:34:51Z"
+        };
+        for (String s : invalid) {
+            try {
+                Iso8601.parse(s);
+                fail("Parsed invalid timestamp " + s);
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testFormatIso8601() {
+        assertEquals("2015-03-31T22:34:51.000Z", Iso8601.format(new Timestamp(1427841291000L)));
+        assertEquals("2015-03-31T22:34:51.270Z", Iso8601.format(new Timestamp(1427841291270L)));
+        assertEquals("1969-12-31T23:59:59.999Z", Iso8601.format(new Timestamp(-1L)));
+
+        Timestamp ts = new Timestamp(1427841291000L);
+        ts.setNanos(270584000);
+        assertEquals("2015-03-31T22:34:51.270584Z", Iso8601.format(ts));
+        ts.setNanos(1);
+        assertEquals("2015-03-31T22:34:51.000000001Z", Iso8601.format(ts));
+
+        // Round trip.
+        String s = "2016-02-29T01:02:03.456789Z";
+        assertEquals(s, Iso8601.format(Iso8601.parse(s)));
     }
 
     @Test
@@ -73,4 +137,72 @@ public class TestBrktRestClient {
         expected = expected.substring(0, 200) + "...";
         assertEquals(expected, error.getMessage());
     }
+
+    @Test
+    public void testRawRequests() throws Exception {
+        StubServer server = new StubServer();
+        try {
+            String json = "[{\"id\": \"z1\", \"name\": \"caf\u00e9\"}]";
+            server.stub("GET", Constants.ZONE_ROOT, json);
+            server.stub("POST", Constants.ZONE_ROOT + "/z1", "{\"id\": \"z1\"}");
+            server.stub("DELETE", Constants.ZONE_ROOT + "/z1", "{\"deleted\": true}");
+            BrktRestClient client = server.newClient();
+
+            // Payloads are passed through unchanged.
+            assertArrayEquals(json.getBytes(Utf8Reader.UTF_8), client.getRaw(Constants.ZONE_ROOT));
+            assertEquals("caf\u00e9", client.getJson(Constants.ZONE_ROOT).getAsJsonArray().get(0)
+                    .getAsJsonObject().get("name").getAsString());
+            byte[] request = "{\"name\":\"east\"}".getBytes(Utf8Reader.UTF_8);
+            assertEquals("{\"id\": \"z1\"}",
+                    new String(client.postRaw(Constants.ZONE_ROOT + "/z1", request), Utf8Reader.UTF_8));
+            assertEquals("{\"name\":\"east\"}", server.getRequestBodies().get(2));
+            assertEquals("{\"deleted\": true}",
+                    new String(client.deleteRaw(Constants.ZONE_ROOT + "/z1"), Utf8Reader.UTF_8));
+
+            // Every request is signed.
+            for (String authorization : server.getAuthorizations()) {
+                assertTrue(authorization, authorization.startsWith("MAC id=\"token\""));
+            }
+            assertEquals(4, server.getAuthorizations().size());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testRawRequestErrors() throws Exception {
+        StubServer server = new StubServer();
+        try {
+            server.stub("POST", Constants.ZONE_ROOT, 400, "{\"error\": \"bad\"}", 0);
+            server.stub("DELETE", Constants.ZONE_ROOT + "/z1", 409, "{}", 0);
+            BrktRestClient client = server.newClient();
+            assertEquals(404, getStatus(client, "GET", Constants.ZONE_ROOT + "/missing"));
+            assertEquals(404, getStatus(client, "JSON", Constants.ZONE_ROOT + "/missing"));
+            assertEquals(400, getStatus(client, "POST", Constants.ZONE_ROOT));
+            assertEquals(409, getStatus(client, "DELETE", Constants.ZONE_ROOT + "/z1"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Make a raw request that is expected to fail, and return the status of the {@code HttpError}.
+     */
+    private static int getStatus(BrktRestClient client, String method, String path) throws IOException {
+        try {
+            if (method.equals("GET")) {
+                client.getRaw(path);
+            } else if (method.equals("JSON")) {
+                client.getJson(path);
+            } else if (method.equals("POST")) {
+                client.postRaw(path, "{}".getBytes(Utf8Reader.UTF_8));
+            } else {
+                client.deleteRaw(path);
+            }
+            fail(method + " " + path + " should have failed");
+            return 0;
+        } catch (BrktRestClient.HttpError e) {
+            return e.status;
+        }
+    }
 }
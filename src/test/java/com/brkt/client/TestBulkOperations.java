@@ -0,0 +1,107 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.StubServer;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestBulkOperations {
+
+    private StubServer server;
+    private ExecutorService executor;
+    private BrktService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubServer();
+        executor = Executors.newCachedThreadPool();
+        service = new BrktService(server.newClient());
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testPartialFailure() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            server.stub("DELETE", Constants.VOLUME_ROOT + "/v" + i, 200, "{\"id\": \"v" + i + "\"}", 50);
+        }
+        server.stub("DELETE", Constants.VOLUME_ROOT + "/v3", 409, "{\"error\": \"in use\"}", 0);
+        List<String> ids = Lists.newArrayList("v0", "v1", "v2", "v3", "v4", "v5", "v6", "v7", "v8", "v9", "v10");
+
+        BulkOptions options = new BulkOptions.Builder().executor(executor).parallelism(3).build();
+        BulkResult<String, Volume> result = service.deleteVolumes(ids, options);
+
+        assertFalse(result.isAllSuccessful());
+        assertEquals(9, result.getSuccesses().size());
+        assertEquals(2, result.getFailures().size());
+        assertEquals("v3", result.getFailures().get(0).getInput());
+        assertEquals(409, ((BrktService.RuntimeHttpError) result.getFailures().get(0).getError()).status);
+        assertEquals(404, ((BrktService.RuntimeHttpError) result.getFailures().get(1).getError()).status);
+        assertEquals("v9", result.getItems().get(9).getValue().getId());
+        assertTrue(result.getItems().get(0).getElapsedMillis() >= 50);
+        assertTrue(server.getMaxActive() <= 3);
+    }
+
+    @Test
+    public void testRateLimit() throws InterruptedException {
+        server.stub("POST", Constants.INSTANCE_ROOT, "{\"id\": \"i1\"}");
+        List<Map<String, Object>> attrsList = Lists.newArrayList();
+        for (int i = 0; i < 6; i++) {
+            attrsList.add(ImmutableMap.<String, Object>of("name", "web" + i));
+        }
+
+        BulkOptions options = new BulkOptions.Builder()
+                .executor(executor).parallelism(6).requestsPerSecond(20).build();
+        BulkResult<Map<String, Object>, Instance> result = service.createInstances(attrsList, options);
+
+        assertTrue(result.isAllSuccessful());
+        assertEquals(6, result.getValues().size());
+        // Six evenly spaced calls at 20 per second span at least 250ms.
+        assertTrue(result.getElapsedMillis() >= 240);
+    }
+
+    @Test
+    public void testRetryTooManyRequests() throws InterruptedException {
+        server.stub("POST", Constants.SECURITY_GROUP_ROOT + "/sg1/rules", 429, "", 0);
+        List<Map<String, Object>> attrsList = Lists.newArrayList();
+        attrsList.add(ImmutableMap.<String, Object>of("port_range_from", 22));
+
+        BulkOptions options = new BulkOptions.Builder().executor(executor).retries(2, 10).build();
+        BulkResult<Map<String, Object>, SecurityGroupRule> result =
+                service.createSecurityGroupRules("sg1", attrsList, options);
+
+        assertEquals(1, result.getFailures().size());
+        assertEquals(3, server.count("POST", Constants.SECURITY_GROUP_ROOT + "/sg1/rules"));
+    }
+}
@@ -0,0 +1,252 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.BrktFuture;
+import com.brkt.client.util.StubServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class TestCachingBrktService {
+
+    private StubServer server;
+    private CachingBrktService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubServer();
+        server.stub("GET", Constants.OPERATING_SYSTEM_ROOT, "[{\"id\": \"os1\"}]");
+        server.stub("GET", Constants.MACHINE_TYPE_ROOT, "[{\"id\": \"m1\"}]");
+        server.stub("GET", Constants.BILLING_GROUP_ROOT, "[{\"id\": \"b1\"}]");
+        server.stub("GET", Constants.BILLING_GROUP_ROOT + "/b1", "{\"id\": \"b1\"}");
+        server.stub("DELETE", Constants.BILLING_GROUP_ROOT + "/b1", "{}");
+        server.stub("GET", Constants.VOLUME_ROOT, "[{\"id\": \"v1\"}]");
+        service = new CachingBrktService.Builder(server.newClient())
+                .cacheReferenceData(1, TimeUnit.HOURS)
+                .ttl(ResourceType.BILLING_GROUP, 1, TimeUnit.MINUTES)
+                .refreshExecutor(BrktFuture.DIRECT_EXECUTOR)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testCachesReferenceData() {
+        assertEquals("os1", service.getAllOperatingSystems().get(0).getId());
+        assertEquals("os1", service.getAllOperatingSystems().get(0).getId());
+        assertEquals(1, server.count("GET", Constants.OPERATING_SYSTEM_ROOT));
+
+        // Volumes have no TTL, so they aren't cached.
+        service.getAllVolumes();
+        service.getAllVolumes();
+        assertEquals(2, server.count("GET", Constants.VOLUME_ROOT));
+
+        assertEquals(1, service.getCacheSize());
+        assertEquals(1, service.getCacheStats().hitCount);
+    }
+
+    @Test
+    public void testCachedListIsUnmodifiable() {
+        List<OperatingSystem> list = service.getAllOperatingSystems();
+        try {
+            list.clear();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testWriteInvalidates() {
+        service.getAllBillingGroups();
+        service.getBillingGroup("b1");
+        service.getAllOperatingSystems();
+        assertEquals(3, service.getCacheSize());
+
+        // Deleting a billing group invalidates only billing groups.
+        service.deleteBillingGroup("b1");
+        assertEquals(1, service.getCacheSize());
+        service.getAllBillingGroups();
+        assertEquals(2, server.count("GET", Constants.BILLING_GROUP_ROOT));
+    }
+
+    @Test
+    public void testExplicitInvalidation() {
+        service.getAllOperatingSystems();
+        service.getAllMachineTypes();
+        service.invalidate(ResourceType.OPERATING_SYSTEM);
+        assertEquals(1, service.getCacheSize());
+        service.invalidate(Constants.MACHINE_TYPE_ROOT);
+        assertEquals(0, service.getCacheSize());
+    }
+
+    private CachingBrktService newMutableCache() {
+        return new CachingBrktService.Builder(server.newClient())
+                .cacheMutableResources(1, TimeUnit.HOURS)
+                .refreshExecutor(BrktFuture.DIRECT_EXECUTOR)
+                .build();
+    }
+
+    @Test
+    public void testCreateRuleInvalidatesRules() {
+        String sg1Rules = Constants.SECURITY_GROUP_ROOT + "/sg1/rules";
+        String sg2Rules = Constants.SECURITY_GROUP_ROOT + "/sg2/rules";
+        server.stub("GET", sg1Rules, "[]");
+        server.stub("GET", sg2Rules, "[]");
+        server.stub("POST", sg1Rules, "{\"id\": \"r1\", \"security_group\": \"sg1\"}");
+        CachingBrktService service = newMutableCache();
+
+        service.getRulesForSecurityGroup("sg1");
+        service.getRulesForSecurityGroup("sg2");
+        service.createSecurityGroupRule("sg1", new SecurityGroupRuleRequestBuilder().build());
+        service.getRulesForSecurityGroup("sg1");
+        service.getRulesForSecurityGroup("sg2");
+        assertEquals(2, server.count("GET", sg1Rules));
+        assertEquals(1, server.count("GET", sg2Rules));
+    }
+
+    @Test
+    public void testSnapshotInvalidatesChildren() {
+        String v1 = Constants.VOLUME_ROOT + "/v1";
+        server.stub("GET", v1, "{\"id\": \"v1\"}");
+        server.stub("GET", v1 + "/children", "[]");
+        server.stub("GET", Constants.VOLUME_ROOT + "/v9/children", "[]");
+        server.stub("POST", v1 + "/snapshot", "{\"id\": \"v2\", \"parent\": \"v1\"}");
+        CachingBrktService service = newMutableCache();
+
+        service.getVolume("v1");
+        service.getVolumeChildren("v1");
+        service.getVolumeChildren("v9");
+        service.snapshotVolume("v1", new VolumeRequestBuilder().build());
+
+        // The source volume and its children are invalidated, and the snapshot is cached.
+        assertEquals(2, service.getCacheSize());
+        service.getVolumeChildren("v9");
+        assertEquals(1, server.count("GET", Constants.VOLUME_ROOT + "/v9/children"));
+        assertEquals("v1", service.getVolume("v2").getParent());
+        assertEquals(0, server.count("GET", Constants.VOLUME_ROOT + "/v2"));
+    }
+
+    @Test
+    public void testUpdateIsWrittenThrough() {
+        String v1 = Constants.VOLUME_ROOT + "/v1";
+        String i1Volumes = Constants.V1_INSTANCE_ROOT + "/i1/brktvolumes";
+        String i2Volumes = Constants.V1_INSTANCE_ROOT + "/i2/brktvolumes";
+        server.stub("GET", v1, "{\"id\": \"v1\", \"instance\": \"i1\"}");
+        server.stub("GET", i1Volumes, "[]");
+        server.stub("GET", i2Volumes, "[]");
+        server.stub("GET", Constants.V1_INSTANCE_ROOT + "/i3/brktvolumes", "[]");
+        server.stub("POST", v1, "{\"id\": \"v1\", \"instance\": \"i2\"}");
+        CachingBrktService service = newMutableCache();
+
+        service.getVolume("v1");
+        service.getInstanceVolumes("i1");
+        service.getInstanceVolumes("i2");
+        service.getInstanceVolumes("i3");
+        service.updateVolume("v1", "instance", "i2");
+
+        // The volume moved from i1 to i2, so both lists are invalidated.
+        assertEquals("i2", service.getVolume("v1").getInstanceId());
+        assertEquals(1, server.count("GET", v1));
+        service.getInstanceVolumes("i1");
+        service.getInstanceVolumes("i2");
+        service.getInstanceVolumes("i3");
+        assertEquals(2, server.count("GET", i1Volumes));
+        assertEquals(2, server.count("GET", i2Volumes));
+        assertEquals(1, server.count("GET", Constants.V1_INSTANCE_ROOT + "/i3/brktvolumes"));
+    }
+
+    @Test
+    public void testDeleteInstanceCascades() {
+        String i1 = Constants.INSTANCE_ROOT + "/i1";
+        server.stub("GET", i1, "{\"id\": \"i1\", \"workload\": \"w1\"}");
+        server.stub("GET", Constants.WORKLOAD_ROOT + "/w1/instance", "[{\"id\": \"i1\"}]");
+        server.stub("GET", Constants.WORKLOAD_ROOT + "/w1", "{\"id\": \"w1\"}");
+        server.stub("GET", Constants.V1_INSTANCE_ROOT + "/i1/brktvolumes", "[]");
+        server.stub("DELETE", i1, "{\"id\": \"i1\", \"workload\": \"w1\"}");
+        CachingBrktService service = newMutableCache();
+
+        service.getInstance("i1");
+        service.getWorkloadInstances("w1");
+        service.getWorkload("w1");
+        service.getInstanceVolumes("i1");
+        service.getAllVolumes();
+        assertEquals(5, service.getCacheSize());
+
+        service.deleteInstance("i1");
+        assertEquals(1, service.getCacheSize());
+        service.getWorkload("w1");
+        assertEquals(1, server.count("GET", Constants.WORKLOAD_ROOT + "/w1"));
+    }
+
+    @Test
+    public void testFind() {
+        server.stub("GET", Constants.VOLUME_ROOT + "/v1", "{\"id\": \"v1\"}");
+        server.stub("GET", Constants.VOLUME_ROOT + "/v2", 500, "", 0);
+        BrktService plain = new BrktService(server.newClient());
+        assertEquals("v1", plain.findVolume("v1").getId());
+        assertNull(plain.findVolume("missing"));
+        try {
+            plain.findVolume("v2");
+            fail();
+        } catch (BrktService.RuntimeHttpError e) {
+            assertEquals(500, e.status);
+        }
+    }
+
+    @Test
+    public void testNegativeCache() {
+        server.stub("POST", Constants.INSTANCE_ROOT, "{\"id\": \"i1\"}");
+        CachingBrktService service = new CachingBrktService.Builder(server.newClient())
+                .cacheMutableResources(1, TimeUnit.HOURS)
+                .negativeTtl(1, TimeUnit.MINUTES)
+                .build();
+        String i1 = Constants.INSTANCE_ROOT + "/i1";
+        assertNull(service.findInstance("i1"));
+        assertNull(service.findInstance("i1"));
+        assertEquals(1, server.count("GET", i1));
+        assertEquals(1, service.getNegativeCacheStats().hitCount);
+
+        // Creating the instance clears the negative entry, and the created
+        // instance is written through to the cache.
+        service.createInstance(new InstanceRequestBuilder().build());
+        assertEquals("i1", service.findInstance("i1").getId());
+        assertEquals(1, server.count("GET", i1));
+    }
+
+    @Test
+    public void testNegativeCacheExpires() throws InterruptedException {
+        CachingBrktService service = new CachingBrktService.Builder(server.newClient())
+                .negativeTtl(1, TimeUnit.MILLISECONDS)
+                .build();
+        assertNull(service.findMachineType("m9"));
+        Thread.sleep(5);
+        assertNull(service.findMachineType("m9"));
+        assertEquals(2, server.count("GET", Constants.MACHINE_TYPE_ROOT + "/m9"));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.StubServer;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.brkt.client.util.ResourceAsserts.assertIds;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestDeltaSync {
+
+    private static final String T1 = "2015-06-01T10:00:00.000000+00:00";
+    private static final String T2 = "2015-06-02T10:00:00.000000+00:00";
+
+    private StubServer server;
+    private ExecutorService executor;
+    private BrktService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubServer();
+        executor = Executors.newCachedThreadPool();
+        service = new BrktService(server.newClient());
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        executor.shutdown();
+    }
+
+    private static String volume(String id, String instanceId, String modified) {
+        return String.format("{\"id\": \"%s\", \"instance\": \"%s\", \"modified_time\": \"%s\"}",
+                id, instanceId, modified);
+    }
+
+    private DeltaSync.Builder builder() {
+        return new DeltaSync.Builder(service).types(ResourceType.VOLUME).executor(executor);
+    }
+
+    @Test
+    public void testIncrementalSync() throws Exception {
+        server.stub("GET", Constants.VOLUME_ROOT,
+                "[" + volume("v1", "i1", T1) + ", " + volume("v2", "i1", T1) + ", " + volume("v3", "i2", T1) + "]");
+        DeltaSync sync = builder().build();
+        Inventory inventory = new Inventory();
+
+        DeltaSync.Delta delta = sync.sync(ResourceType.VOLUME);
+        assertTrue(delta.isFullResync());
+        assertIds(delta.getUpserted(), "v1", "v2", "v3");
+        inventory.apply(delta);
+        assertEquals(2, inventory.getVolumesForInstance("i1").size());
+
+        // v1 moves to i2, v2 is deleted and v4 is created.
+        server.stub("GET", Constants.VOLUME_ROOT,
+                "[" + volume("v1", "i2", T2) + ", " + volume("v3", "i2", T1) + ", " + volume("v4", "i1", T2) + "]");
+        server.stub("GET", Constants.VOLUME_ROOT + "/v1", volume("v1", "i2", T2));
+        server.stub("GET", Constants.VOLUME_ROOT + "/v4", volume("v4", "i1", T2));
+        int requests = server.getRequests().size();
+
+        delta = sync.sync(ResourceType.VOLUME);
+        assertFalse(delta.isFullResync());
+        assertEquals(Sets.newHashSet("v1", "v4"), Sets.newHashSet(
+                ((Volume) delta.getUpserted().get(0)).getId(), ((Volume) delta.getUpserted().get(1)).getId()));
+        assertEquals(Sets.newHashSet("v2"), delta.getRemovedIds());
+        assertEquals(2, server.count("GET", Constants.VOLUME_ROOT));
+        assertEquals(1, server.count("GET", Constants.VOLUME_ROOT + "/v1"));
+        assertEquals(0, server.count("GET", Constants.VOLUME_ROOT + "/v3"));
+        assertEquals(requests + 3, server.getRequests().size());
+
+        inventory.apply(delta);
+        assertEquals(1, inventory.getVolumesForInstance("i1").size());
+        assertEquals(2, inventory.getVolumesForInstance("i2").size());
+        assertNull(inventory.getVolume("v2"));
+
+        // Nothing changed.
+        delta = sync.sync(ResourceType.VOLUME);
+        assertTrue(delta.isEmpty());
+    }
+
+    @Test
+    public void testManyChangesFetchTheList() throws Exception {
+        server.stub("GET", Constants.VOLUME_ROOT, "[" + volume("v1", "i1", T1) + ", " + volume("v2", "i1", T1) + "]");
+        DeltaSync sync = builder().fanOutThreshold(1).build();
+        sync.sync(ResourceType.VOLUME);
+
+        server.stub("GET", Constants.VOLUME_ROOT, "[" + volume("v1", "i1", T2) + ", " + volume("v2", "i1", T2) + "]");
+        DeltaSync.Delta delta = sync.sync(ResourceType.VOLUME);
+        assertFalse(delta.isFullResync());
+        assertIds(delta.getUpserted(), "v1", "v2");
+        // The first sync, the listing and the complete list.
+        assertEquals(3, server.count("GET", Constants.VOLUME_ROOT));
+        assertEquals(3, server.getRequests().size());
+    }
+
+    @Test
+    public void testDeletedBeforeFetch() throws Exception {
+        server.stub("GET", Constants.VOLUME_ROOT, "[" + volume("v1", "i1", T1) + "]");
+        DeltaSync sync = builder().build();
+        sync.sync(ResourceType.VOLUME);
+
+        // v1 is listed as modified, but is gone by the time it's fetched.
+        server.stub("GET", Constants.VOLUME_ROOT, "[" + volume("v1", "i1", T2) + "]");
+        DeltaSync.Delta delta = sync.sync(ResourceType.VOLUME);
+        assertIds(delta.getUpserted());
+        assertEquals(Sets.newHashSet("v1"), delta.getRemovedIds());
+    }
+
+    @Test
+    public void testFullResync() throws Exception {
+        server.stub("GET", Constants.VOLUME_ROOT, "[" + volume("v1", "i1", T1) + "]");
+        DeltaSync sync = builder().fullResyncInterval(1, TimeUnit.NANOSECONDS).build();
+        assertTrue(sync.sync(ResourceType.VOLUME).isFullResync());
+        assertTrue(sync.sync(ResourceType.VOLUME).isFullResync());
+
+        sync = builder().build();
+        sync.sync();
+        sync.reset();
+        assertTrue(sync.sync().get(ResourceType.VOLUME).isFullResync());
+    }
+}
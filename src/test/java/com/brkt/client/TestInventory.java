@@ -0,0 +1,119 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.BrktRestClient;
+import com.brkt.client.util.StubServer;
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.brkt.client.util.ResourceAsserts.assertIds;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestInventory {
+
+    private static final Gson GSON = BrktRestClient.newGson();
+
+    private static Instance instance(String json) {
+        return GSON.fromJson(json, Instance.class);
+    }
+
+    private static Volume volume(String json) {
+        return GSON.fromJson(json, Volume.class);
+    }
+
+    @Test
+    public void testInstanceIndexes() {
+        Inventory inventory = new Inventory();
+        inventory.putInstance(instance("{\"id\": \"i1\", \"workload\": \"w1\", \"zone\": \"z1\", "
+                + "\"billing_group\": \"b1\", \"load_balancer\": \"lb1\", \"security_groups\": [\"sg1\", \"sg2\"]}"));
+        inventory.putInstance(instance("{\"id\": \"i2\", \"workload\": \"w1\", \"security_groups\": [\"sg2\"]}"));
+
+        assertIds(inventory.getInstancesInWorkload("w1"), "i1", "i2");
+        assertIds(inventory.getInstancesInZone("z1"), "i1");
+        assertIds(inventory.getInstancesInBillingGroup("b1"), "i1");
+        assertIds(inventory.getInstancesBehindLoadBalancer("lb1"), "i1");
+        assertIds(inventory.getInstancesInSecurityGroup("sg1"), "i1");
+        assertIds(inventory.getInstancesInSecurityGroup("sg2"), "i1", "i2");
+        assertIds(inventory.getInstancesInWorkload("w2"));
+
+        // Updates move the instance between keys.
+        inventory.putInstance(instance("{\"id\": \"i1\", \"workload\": \"w2\", \"security_groups\": [\"sg1\"]}"));
+        assertIds(inventory.getInstancesInWorkload("w1"), "i2");
+        assertIds(inventory.getInstancesInWorkload("w2"), "i1");
+        assertIds(inventory.getInstancesInSecurityGroup("sg2"), "i2");
+        assertIds(inventory.getInstancesBehindLoadBalancer("lb1"));
+
+        assertTrue(inventory.removeInstance("i1"));
+        assertFalse(inventory.removeInstance("i1"));
+        assertIds(inventory.getInstancesInSecurityGroup("sg1"));
+        assertNull(inventory.getInstance("i1"));
+    }
+
+    @Test
+    public void testVolumeIndexes() {
+        Inventory inventory = new Inventory();
+        inventory.replaceVolumes(Lists.newArrayList(
+                volume("{\"id\": \"v1\", \"instance\": \"i1\", \"computing_cell\": \"c1\", \"billing_group\": \"b1\"}"),
+                volume("{\"id\": \"v2\", \"parent\": \"v1\", \"computing_cell\": \"c1\"}"),
+                volume("{\"id\": \"v3\", \"parent\": \"v1\"}")));
+        assertIds(inventory.getVolumesForInstance("i1"), "v1");
+        assertIds(inventory.getVolumesInComputingCell("c1"), "v1", "v2");
+        assertIds(inventory.getVolumeChildren("v1"), "v2", "v3");
+        assertIds(inventory.getVolumesInBillingGroup("b1"), "v1");
+
+        // Replacing the list removes volumes that are gone.
+        inventory.replaceVolumes(Lists.newArrayList(
+                volume("{\"id\": \"v1\", \"computing_cell\": \"c2\"}"),
+                volume("{\"id\": \"v3\", \"parent\": \"v1\"}")));
+        assertIds(inventory.getVolumes(), "v1", "v3");
+        assertIds(inventory.getVolumesForInstance("i1"));
+        assertIds(inventory.getVolumesInComputingCell("c1"));
+        assertIds(inventory.getVolumesInComputingCell("c2"), "v1");
+        assertIds(inventory.getVolumeChildren("v1"), "v3");
+    }
+
+    @Test
+    public void testLookupsAreCopies() {
+        Inventory inventory = new Inventory();
+        inventory.putInstance(instance("{\"id\": \"i1\", \"workload\": \"w1\"}"));
+        List<Instance> before = inventory.getInstancesInWorkload("w1");
+        inventory.putInstance(instance("{\"id\": \"i2\", \"workload\": \"w1\"}"));
+        assertIds(before, "i1");
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        StubServer server = new StubServer();
+        try {
+            server.stub("GET", Constants.INSTANCE_ROOT, "[{\"id\": \"i1\", \"workload\": \"w1\"}]");
+            server.stub("GET", Constants.VOLUME_ROOT, "[{\"id\": \"v1\", \"instance\": \"i1\"}]");
+            Inventory inventory = new Inventory();
+            inventory.refresh(new BrktService(server.newClient()));
+            assertIds(inventory.getInstancesInWorkload("w1"), "i1");
+            assertIds(inventory.getVolumesForInstance("i1"), "v1");
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.StubServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestInventorySnapshot {
+
+    private static final long DELAY_MILLIS = 200;
+
+    private StubServer server;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubServer();
+        for (ResourceType type : ResourceType.values()) {
+            server.stub("GET", type.rootPath, 200, "[]", DELAY_MILLIS);
+        }
+        server.stub("GET", ResourceType.VOLUME.rootPath, 200, "[{\"id\": \"v1\"}, {\"id\": \"v2\"}]", DELAY_MILLIS);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFetch() throws InterruptedException {
+        BrktService service = new BrktService(server.newClient());
+        InventorySnapshot snapshot = InventorySnapshot.fetch(service, executor, 4);
+
+        assertEquals(2, snapshot.getVolumes().size());
+        assertEquals("v2", snapshot.getVolumes().get(1).getId());
+        assertEquals(0, snapshot.getInstances().size());
+        for (ResourceType type : ResourceType.values()) {
+            assertTrue(snapshot.contains(type));
+            assertTrue(snapshot.getFetchMillis(type) >= DELAY_MILLIS);
+        }
+
+        // The 15 requests ran 4 at a time.
+        assertEquals(4, server.getMaxActive());
+    }
+
+    @Test
+    public void testSubset() throws InterruptedException {
+        BrktService service = new BrktService(server.newClient());
+        InventorySnapshot snapshot = InventorySnapshot.fetch(service, executor, 2,
+                EnumSet.of(ResourceType.VOLUME, ResourceType.ZONE));
+        assertFalse(snapshot.contains(ResourceType.INSTANCE));
+        assertEquals(2, server.getRequests().size());
+        try {
+            snapshot.getInstances();
+            fail("Got instances that weren't fetched");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testFailure() throws InterruptedException {
+        server.stub("GET", ResourceType.ZONE.rootPath, 500, "{}", 0);
+        BrktService service = new BrktService(server.newClient());
+        try {
+            InventorySnapshot.fetch(service, executor, 4);
+            fail("Fetch succeeded");
+        } catch (BrktService.RuntimeHttpError e) {
+            assertEquals(500, e.status);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.ProvisioningPlan.Step;
+import com.brkt.client.util.BrktFuture;
+import com.brkt.client.util.StubServer;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestProvisioner {
+
+    private static final long DELAY_MILLIS = 50;
+    private static final String SECURITY_GROUP_PATH = Constants.NETWORK_ROOT + "/n1/securitygroups";
+
+    private StubServer server;
+    private ExecutorService executor;
+    private BrktService service;
+
+    private ProvisioningPlan plan;
+    private Step<BillingGroup> billingGroup;
+    private Step<Workload> workload;
+    private Step<SecurityGroup> securityGroup;
+    private Step<CloudInit> cloudInit;
+    private Step<Instance> instance;
+    private Step<Volume> volume;
+    private Step<LoadBalancerListener> listener;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubServer();
+        executor = Executors.newCachedThreadPool();
+        service = new BrktService(server.newClient());
+
+        stub(Constants.BILLING_GROUP_ROOT, "{\"id\": \"bg1\"}", DELAY_MILLIS);
+        stub(Constants.WORKLOAD_ROOT, "{\"id\": \"w1\"}", DELAY_MILLIS);
+        stub(SECURITY_GROUP_PATH, "{\"id\": \"sg1\"}", DELAY_MILLIS);
+        stub(Constants.SECURITY_GROUP_ROOT + "/sg1/rules", "{\"id\": \"r1\"}", DELAY_MILLIS);
+        stub(Constants.CLOUD_INIT_ROOT, "{\"id\": \"ci1\"}", DELAY_MILLIS);
+        stub(Constants.INSTANCE_ROOT, "{\"id\": \"i1\"}", DELAY_MILLIS * 3);
+        stub(Constants.VOLUME_ROOT, "{\"id\": \"v1\"}", DELAY_MILLIS);
+        stub(Constants.LOAD_BALANCER_ROOT, "{\"id\": \"lb1\"}", DELAY_MILLIS);
+        stub(Constants.LOAD_BALANCER_LISTENER_ROOT, "{\"id\": \"l1\"}", DELAY_MILLIS);
+
+        plan = new ProvisioningPlan();
+        billingGroup = plan.billingGroup("bg", attrs("name", "bg"));
+        workload = plan.workload("w", attrs("name", "w", "billing_group", billingGroup));
+        securityGroup = plan.securityGroup("sg", "n1", attrs("name", "sg"));
+        plan.securityGroupRule("rule", securityGroup, attrs("port_range_from", 22));
+        cloudInit = plan.cloudInit("ci", attrs("name", "ci"));
+        instance = plan.instance("web", attrs("name", "web", "workload", workload,
+                "security_groups", Collections.<Object>singletonList(securityGroup), "cloudinit", cloudInit));
+        volume = plan.volume("data", attrs("name", "data", "instance", instance));
+        Step<LoadBalancer> loadBalancer = plan.loadBalancer("lb", attrs("workload", workload));
+        listener = plan.loadBalancerListener("listener", attrs("load_balancer", loadBalancer));
+    }
+
+    private void stub(String root, String json, long delayMillis) {
+        server.stub("POST", root, 200, json, delayMillis);
+    }
+
+    private static Map<String, Object> attrs(Object... keysAndValues) {
+        Map<String, Object> attrs = Maps.newLinkedHashMap();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            attrs.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return attrs;
+    }
+
+    /**
+     * Return the body of the request that created the resource with the given name.
+     */
+    private String bodyOf(String name) {
+        for (String body : server.getRequestBodies()) {
+            if (body.contains("\"name\":\"" + name + "\"")) {
+                return body;
+            }
+        }
+        throw new AssertionError("Not created: " + name);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRun() throws InterruptedException {
+        final List<Integer> progress = Collections.synchronizedList(Lists.<Integer>newArrayList());
+        Provisioner provisioner = new Provisioner.Builder(service)
+                .options(new BulkOptions.Builder().executor(executor).parallelism(8).build())
+                .listener(new Provisioner.Listener() {
+                    @Override
+                    public void onCompleted(Provisioner.StepResult result, int completed, int total) {
+                        progress.add(completed);
+                        assertEquals(9, total);
+                    }
+                })
+                .build();
+
+        Provisioner.Result result = provisioner.run(plan);
+        assertTrue(result.isAllSuccessful());
+        assertEquals(9, progress.size());
+        assertEquals("i1", result.get(instance).getId());
+        assertEquals("l1", result.get(listener).getId());
+
+        // References were replaced by the ids of the created resources.
+        String instanceBody = bodyOf("web");
+        assertTrue(instanceBody, instanceBody.contains("\"workload\":\"w1\""));
+        assertTrue(instanceBody, instanceBody.contains("\"security_groups\":[\"sg1\"]"));
+        assertTrue(instanceBody, instanceBody.contains("\"cloudinit\":\"ci1\""));
+        assertTrue(bodyOf("w").contains("\"billing_group\":\"bg1\""));
+        assertEquals(1, server.count("POST", Constants.SECURITY_GROUP_ROOT + "/sg1/rules"));
+
+        // The billing group, security group and cloud-init were created in parallel.
+        assertTrue(server.getMaxActive() >= 3);
+
+        List<Step<?>> path = Lists.newArrayList();
+        for (Provisioner.StepResult stepResult : result.getCriticalPath()) {
+            path.add(stepResult.getStep());
+        }
+        // The instance takes longest, so the chain through it ends last.
+        assertEquals(Lists.<Step<?>>newArrayList(billingGroup, workload, instance, volume), path);
+        Provisioner.StepResult instanceResult = result.getStepResult(instance);
+        assertTrue(instanceResult.getStartMillis() >= DELAY_MILLIS * 2);
+        assertTrue(instanceResult.getElapsedMillis() >= DELAY_MILLIS * 3);
+    }
+
+    @Test
+    public void testFailureSkipsDependents() throws InterruptedException {
+        server.stub("POST", SECURITY_GROUP_PATH, 503, "{}", 0);
+        Provisioner provisioner = new Provisioner.Builder(service)
+                .options(new BulkOptions.Builder().executor(executor).retries(2, 1).build())
+                .build();
+
+        Provisioner.Result result = provisioner.run(plan);
+        assertFalse(result.isAllSuccessful());
+        // Server errors are not retried, since the group may have been created.
+        assertEquals(1, server.count("POST", SECURITY_GROUP_PATH));
+
+        List<String> failed = Lists.newArrayList();
+        for (Provisioner.StepResult stepResult : result.getFailures()) {
+            failed.add(stepResult.getStep().getName());
+        }
+        assertEquals(Lists.newArrayList("sg", "rule", "web", "data"), failed);
+        assertTrue(result.getStepResult(volume).getError() instanceof IllegalStateException);
+        assertNull(result.get(instance));
+        assertEquals(0, server.count("POST", Constants.INSTANCE_ROOT));
+
+        // Independent branches still ran.
+        assertEquals("l1", result.get(listener).getId());
+        assertEquals("ci1", result.get(cloudInit).getId());
+    }
+
+    @Test
+    public void testRetryTooManyRequests() throws InterruptedException {
+        server.stub("POST", Constants.CLOUD_INIT_ROOT, 429, "{}", 0);
+        Provisioner provisioner = new Provisioner.Builder(service)
+                .options(new BulkOptions.Builder().executor(executor).retries(2, 1).build())
+                .build();
+
+        Provisioner.Result result = provisioner.run(plan);
+        assertEquals(3, server.count("POST", Constants.CLOUD_INIT_ROOT));
+        assertFalse(result.getStepResult(cloudInit).isSuccess());
+        assertFalse(result.getStepResult(instance).isSuccess());
+        assertTrue(result.getStepResult(listener).isSuccess());
+    }
+
+    @Test(timeout = 10000)
+    public void testDirectExecutor() throws InterruptedException {
+        Provisioner provisioner = new Provisioner.Builder(service)
+                .options(new BulkOptions.Builder().executor(BrktFuture.DIRECT_EXECUTOR).build())
+                .build();
+
+        Provisioner.Result result = provisioner.run(plan);
+        assertTrue(result.isAllSuccessful());
+        assertEquals("v1", result.get(volume).getId());
+        assertEquals(1, server.getMaxActive());
+    }
+
+    @Test(timeout = 10000)
+    public void testRejectingExecutor() throws InterruptedException {
+        Executor rejecting = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+        Provisioner provisioner = new Provisioner.Builder(service)
+                .options(new BulkOptions.Builder().executor(rejecting).build())
+                .build();
+
+        Provisioner.Result result = provisioner.run(plan);
+        assertEquals(9, result.getFailures().size());
+        assertTrue(result.getStepResult(billingGroup).getError() instanceof RejectedExecutionException);
+        assertTrue(result.getStepResult(volume).getError() instanceof IllegalStateException);
+        assertTrue(server.getRequests().isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCycle() throws InterruptedException {
+        ProvisioningPlan cyclic = new ProvisioningPlan();
+        Step<BillingGroup> a = cyclic.billingGroup("a", attrs());
+        Step<BillingGroup> b = cyclic.billingGroup("b", attrs());
+        a.dependsOn(b);
+        b.dependsOn(a);
+        new Provisioner.Builder(service).build().run(cyclic);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.StubServer;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestResourceWatcher {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private StubServer server;
+    private final List<ResourceWatcher.Event> received = Lists.newArrayList();
+    private final List<RuntimeException> errors = Lists.newArrayList();
+
+    private final ResourceWatcher.Listener listener = new ResourceWatcher.Listener() {
+        @Override
+        public void onEvents(ResourceType type, List<ResourceWatcher.Event> events) {
+            received.addAll(events);
+        }
+
+        @Override
+        public void onError(ResourceType type, RuntimeException e) {
+            errors.add(e);
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubServer();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    private ResourceWatcher.Builder builder() {
+        return new ResourceWatcher.Builder(new BrktService(server.newClient()))
+                .types(ResourceType.VOLUME)
+                .minInterval(1, TimeUnit.SECONDS)
+                .maxInterval(4, TimeUnit.SECONDS)
+                .listenerExecutor(DIRECT);
+    }
+
+    private static void assertEvent(ResourceWatcher.Event event, ResourceWatcher.Kind kind, String id) {
+        assertEquals(kind, event.getKind());
+        assertEquals(ResourceType.VOLUME, event.getType());
+        assertEquals(id, event.getId());
+    }
+
+    @Test
+    public void testPoll() {
+        server.stub("GET", Constants.VOLUME_ROOT, "[{\"id\": \"v1\", \"name\": \"a\"}, {\"id\": \"v2\"}]");
+        ResourceWatcher watcher = builder().build();
+        watcher.addListener(listener);
+
+        List<ResourceWatcher.Event> events = watcher.poll(ResourceType.VOLUME);
+        assertEquals(2, events.size());
+        assertEvent(events.get(0), ResourceWatcher.Kind.ADDED, "v1");
+        assertEvent(events.get(1), ResourceWatcher.Kind.ADDED, "v2");
+        assertNull(events.get(0).getOldResource());
+        assertEquals(events, received);
+        Object v1 = events.get(0).getNewResource();
+        assertEquals(1000, watcher.getIntervalMillis(ResourceType.VOLUME));
+
+        // Nothing changed.  The interval backs off.
+        assertTrue(watcher.poll(ResourceType.VOLUME).isEmpty());
+        assertEquals(2000, watcher.getIntervalMillis(ResourceType.VOLUME));
+        assertTrue(watcher.poll(ResourceType.VOLUME).isEmpty());
+        assertTrue(watcher.poll(ResourceType.VOLUME).isEmpty());
+        assertEquals(4000, watcher.getIntervalMillis(ResourceType.VOLUME));
+        assertEquals(2, received.size());
+
+        // v1 is renamed, v2 is removed and v3 is added.
+        server.stub("GET", Constants.VOLUME_ROOT, "[{\"id\": \"v1\", \"name\": \"b\"}, {\"id\": \"v3\"}]");
+        events = watcher.poll(ResourceType.VOLUME);
+        assertEquals(3, events.size());
+        assertEvent(events.get(0), ResourceWatcher.Kind.MODIFIED, "v1");
+        assertEvent(events.get(1), ResourceWatcher.Kind.ADDED, "v3");
+        assertEvent(events.get(2), ResourceWatcher.Kind.REMOVED, "v2");
+        // The unchanged polls kept the original object instead of deserializing it again.
+        assertSame(v1, events.get(0).getOldResource());
+        assertEquals("b", ((Volume) events.get(0).getNewResource()).getName());
+        assertNull(events.get(2).getNewResource());
+        assertEquals(1000, watcher.getIntervalMillis(ResourceType.VOLUME));
+        assertEquals(5, received.size());
+    }
+
+    @Test
+    public void testError() {
+        server.stub("GET", Constants.VOLUME_ROOT, 500, "{}", 0);
+        ResourceWatcher watcher = builder().build();
+        watcher.addListener(listener);
+        try {
+            watcher.poll(ResourceType.VOLUME);
+            fail("Poll should have failed");
+        } catch (BrktService.RuntimeHttpError e) {
+            assertEquals(500, e.status);
+        }
+        assertEquals(1, errors.size());
+        assertEquals(2000, watcher.getIntervalMillis(ResourceType.VOLUME));
+    }
+
+    @Test
+    public void testStartAndStop() throws Exception {
+        server.stub("GET", Constants.VOLUME_ROOT, "[{\"id\": \"v1\"}]");
+        ResourceWatcher watcher = builder().minInterval(10, TimeUnit.MILLISECONDS).build();
+        final CountDownLatch latch = new CountDownLatch(1);
+        watcher.addListener(new ResourceWatcher.Listener() {
+            @Override
+            public void onEvents(ResourceType type, List<ResourceWatcher.Event> events) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(ResourceType type, RuntimeException e) {
+            }
+        });
+        watcher.start();
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } finally {
+            watcher.stop();
+        }
+    }
+}
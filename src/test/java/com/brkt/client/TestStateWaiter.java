@@ -0,0 +1,157 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.BrktFuture;
+import com.brkt.client.util.StubServer;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestStateWaiter {
+
+    private StubServer server;
+    private StateWaiter waiter;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubServer();
+        waiter = new StateWaiter.Builder(new BrktService(server.newClient()))
+                .minInterval(10, TimeUnit.MILLISECONDS)
+                .maxInterval(20, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        waiter.shutdown();
+        server.stop();
+    }
+
+    private void stubInstances(String i1State, String i2State) {
+        server.stub("GET", Constants.INSTANCE_ROOT, String.format(
+                "[{\"id\": \"i1\", \"requested_state\": \"%s\"}, {\"id\": \"i2\", \"requested_state\": \"%s\"}]",
+                i1State, i2State));
+    }
+
+    private static Throwable getCause(BrktFuture<?> future) throws InterruptedException {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Future should have failed");
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (TimeoutException e) {
+            throw new AssertionError("Future didn't complete");
+        }
+    }
+
+    @Test
+    public void testSharedPoll() throws Exception {
+        stubInstances("STOPPED", "AVAILABLE");
+        BrktFuture<Constants.RequestedState> f1 =
+                waiter.awaitInstanceState("i1", Constants.RequestedState.AVAILABLE, 10, TimeUnit.SECONDS);
+        BrktFuture<Constants.RequestedState> f2 =
+                waiter.awaitInstanceState("i2", Constants.RequestedState.AVAILABLE, 10, TimeUnit.SECONDS);
+
+        assertEquals(Constants.RequestedState.AVAILABLE, f2.get(5, TimeUnit.SECONDS));
+        assertFalse(f1.isDone());
+        assertEquals(1, waiter.getPendingCount());
+
+        stubInstances("AVAILABLE", "AVAILABLE");
+        assertEquals(Constants.RequestedState.AVAILABLE, f1.get(5, TimeUnit.SECONDS));
+
+        // Every request was a list call, never a GET per instance.
+        assertEquals(server.getRequests().size(), server.count("GET", Constants.INSTANCE_ROOT));
+        assertEquals(0, server.count("GET", Constants.INSTANCE_ROOT + "/i1"));
+
+        // Polling stops when nothing is pending.
+        Thread.sleep(100);
+        int requests = server.getRequests().size();
+        Thread.sleep(100);
+        assertEquals(requests, server.getRequests().size());
+    }
+
+    @Test
+    public void testDeleted() throws Exception {
+        stubInstances("STOPPED", "DELETED");
+        BrktFuture<Constants.RequestedState> deleted =
+                waiter.awaitInstanceState("i3", Constants.RequestedState.DELETED, 10, TimeUnit.SECONDS);
+        BrktFuture<Constants.RequestedState> available =
+                waiter.awaitInstanceState("i2", Constants.RequestedState.AVAILABLE, 10, TimeUnit.SECONDS);
+        assertEquals(Constants.RequestedState.DELETED, deleted.get(5, TimeUnit.SECONDS));
+        assertTrue(getCause(available) instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        stubInstances("STOPPED", "STOPPED");
+        BrktFuture<Constants.RequestedState> future =
+                waiter.awaitInstanceState("i1", Constants.RequestedState.AVAILABLE, 50, TimeUnit.MILLISECONDS);
+        assertTrue(getCause(future) instanceof TimeoutException);
+        assertEquals(0, waiter.getPendingCount());
+    }
+
+    @Test
+    public void testPollErrorIsTheTimeoutCause() throws Exception {
+        server.stub("GET", Constants.VOLUME_ROOT, 500, "{}", 0);
+        BrktFuture<Constants.RequestedState> future =
+                waiter.awaitVolumeState("v1", Constants.RequestedState.AVAILABLE, 50, TimeUnit.MILLISECONDS);
+        Throwable cause = getCause(future);
+        assertTrue(cause instanceof TimeoutException);
+        assertTrue(cause.getCause() instanceof BrktService.RuntimeHttpError);
+    }
+
+    /**
+     * Waits with ever closer deadlines reschedule the poll many times, but
+     * never start a second poll chain.
+     */
+    @Test
+    public void testOnePollAtATime() throws Exception {
+        server.stub("GET", Constants.INSTANCE_ROOT, 200, "[{\"id\": \"i1\", \"requested_state\": \"STOPPED\"}]", 5);
+        List<BrktFuture<Constants.RequestedState>> futures = Lists.newArrayList();
+        for (int i = 0; i < 50; i++) {
+            futures.add(waiter.awaitInstanceState(
+                    "i1", Constants.RequestedState.AVAILABLE, 300 - 5 * i, TimeUnit.MILLISECONDS));
+            Thread.sleep(1);
+        }
+        for (BrktFuture<Constants.RequestedState> future : futures) {
+            assertTrue(getCause(future) instanceof TimeoutException);
+        }
+        assertEquals(1, server.getMaxActive());
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        stubInstances("STOPPED", "STOPPED");
+        BrktFuture<Constants.RequestedState> future =
+                waiter.awaitInstanceState("i1", Constants.RequestedState.AVAILABLE, 10, TimeUnit.SECONDS);
+        waiter.shutdown();
+        assertTrue(future.isCancelled());
+    }
+}
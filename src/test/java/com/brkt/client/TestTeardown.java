@@ -0,0 +1,159 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.BrktRestClient;
+import com.brkt.client.util.StubServer;
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestTeardown {
+
+    private static final long DELAY_MILLIS = 50;
+    private static final Gson GSON = BrktRestClient.newGson();
+
+    private StubServer server;
+    private ExecutorService executor;
+    private BrktService service;
+    private List<BrktResource> resources;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubServer();
+        executor = Executors.newCachedThreadPool();
+        service = new BrktService(server.newClient());
+
+        resources = Lists.newArrayList();
+        add(Workload.class, Constants.WORKLOAD_ROOT, "{\"id\": \"w1\", \"billing_group\": \"bg1\"}");
+        add(BillingGroup.class, Constants.BILLING_GROUP_ROOT, "{\"id\": \"bg1\"}");
+        add(LoadBalancer.class, Constants.LOAD_BALANCER_ROOT, "{\"id\": \"lb1\", \"workload\": \"w1\"}");
+        add(LoadBalancerListener.class, Constants.LOAD_BALANCER_LISTENER_ROOT,
+                "{\"id\": \"l1\", \"load_balancer\": \"lb1\"}");
+        add(SecurityGroup.class, Constants.SECURITY_GROUP_ROOT, "{\"id\": \"sg1\"}");
+        add(SecurityGroupRule.class, Constants.SECURITY_GROUP_RULE_ROOT,
+                "{\"id\": \"r1\", \"security_group\": \"sg1\"}");
+        for (int i = 0; i < 5; i++) {
+            add(Instance.class, Constants.INSTANCE_ROOT,
+                    "{\"id\": \"i" + i + "\", \"workload\": \"w1\", \"security_groups\": [\"sg1\"]}");
+            add(Volume.class, Constants.VOLUME_ROOT, "{\"id\": \"v" + i + "\", \"instance\": \"i" + i + "\"}");
+        }
+        add(Volume.class, Constants.VOLUME_ROOT, "{\"id\": \"snap\", \"parent\": \"v0\"}");
+    }
+
+    private void add(Class<? extends BrktResource> resourceClass, String root, String json) {
+        BrktResource resource = GSON.fromJson(json, resourceClass);
+        resources.add(resource);
+        server.stub("DELETE", root + "/" + resource.getId(), 200, json, DELAY_MILLIS);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        executor.shutdown();
+    }
+
+    private static int indexOf(List<String> requests, String root, String id) {
+        int index = requests.indexOf("DELETE " + root + "/" + id);
+        assertTrue("Not deleted: " + id, index >= 0);
+        return index;
+    }
+
+    @Test
+    public void testPlan() {
+        List<List<BrktResource>> waves = Teardown.plan(resources);
+        // The snapshot, its parent, the parent's instance, the workload and the billing group.
+        assertEquals(5, waves.size());
+        // The listener, the rule, the snapshot and the volumes without snapshots.
+        assertEquals(7, waves.get(0).size());
+        assertEquals(Lists.newArrayList(resources.get(1)), waves.get(4));
+    }
+
+    @Test
+    public void testRun() throws InterruptedException {
+        final List<Integer> waveStarts = Collections.synchronizedList(Lists.<Integer>newArrayList());
+        final List<Integer> progress = Collections.synchronizedList(Lists.<Integer>newArrayList());
+        Teardown teardown = new Teardown.Builder(service)
+                .options(new BulkOptions.Builder().executor(executor).parallelism(16).build())
+                .listener(new Teardown.Listener() {
+                    @Override
+                    public void onWaveStarted(int wave, int waveCount, List<BrktResource> waveResources) {
+                        waveStarts.add(wave);
+                    }
+
+                    @Override
+                    public void onCompleted(BulkResult.Item<BrktResource, Object> item, int completed, int total) {
+                        progress.add(completed);
+                        assertEquals(17, total);
+                    }
+                })
+                .build();
+
+        BulkResult<BrktResource, Object> result = teardown.run(resources);
+        assertTrue(result.isAllSuccessful());
+        assertEquals("w1", result.getItems().get(0).getInput().getId());
+        assertEquals(Lists.newArrayList(0, 1, 2, 3, 4), waveStarts);
+        assertEquals(17, progress.size());
+
+        // The seven resources of the first wave were deleted in parallel.
+        assertTrue(server.getMaxActive() >= 7);
+
+        List<String> requests = server.getRequests();
+        assertTrue(indexOf(requests, Constants.VOLUME_ROOT, "snap") < indexOf(requests, Constants.VOLUME_ROOT, "v0"));
+        assertTrue(indexOf(requests, Constants.VOLUME_ROOT, "v3") < indexOf(requests, Constants.INSTANCE_ROOT, "i3"));
+        assertTrue(indexOf(requests, Constants.INSTANCE_ROOT, "i3") < indexOf(requests, Constants.WORKLOAD_ROOT, "w1"));
+        assertTrue(indexOf(requests, Constants.LOAD_BALANCER_LISTENER_ROOT, "l1")
+                < indexOf(requests, Constants.LOAD_BALANCER_ROOT, "lb1"));
+        assertTrue(indexOf(requests, Constants.SECURITY_GROUP_RULE_ROOT, "r1")
+                < indexOf(requests, Constants.SECURITY_GROUP_ROOT, "sg1"));
+        assertTrue(indexOf(requests, Constants.WORKLOAD_ROOT, "w1")
+                < indexOf(requests, Constants.BILLING_GROUP_ROOT, "bg1"));
+    }
+
+    @Test
+    public void testFailureSkipsDependents() throws InterruptedException {
+        server.stub("DELETE", Constants.VOLUME_ROOT + "/v2", 503, "{}", 0);
+        // Already gone.
+        server.stub("DELETE", Constants.VOLUME_ROOT + "/v4", 404, "{}", 0);
+        Teardown teardown = new Teardown.Builder(service)
+                .options(new BulkOptions.Builder().executor(executor).retries(2, 1).build())
+                .build();
+
+        BulkResult<BrktResource, Object> result = teardown.run(resources);
+        assertFalse(result.isAllSuccessful());
+        assertEquals(3, server.count("DELETE", Constants.VOLUME_ROOT + "/v2"));
+        // v2 failed, so i2 and everything that waits for it were skipped.
+        List<String> failed = Lists.newArrayList();
+        for (BulkResult.Item<BrktResource, Object> item : result.getFailures()) {
+            failed.add(item.getInput().getId());
+        }
+        assertEquals(Lists.newArrayList("w1", "bg1", "sg1", "i2", "v2"), failed);
+        assertEquals(0, server.count("DELETE", Constants.INSTANCE_ROOT + "/i2"));
+        assertEquals(1, server.count("DELETE", Constants.INSTANCE_ROOT + "/i4"));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.StubServer;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.brkt.client.util.ResourceAsserts.assertIds;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestTopologyGraph {
+
+    private static final long DELAY_MILLIS = 100;
+
+    private StubServer server;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubServer();
+        stub(ResourceType.COMPUTING_CELL, "[{\"id\": \"c1\", \"network\": {\"id\": \"n1\"}}]");
+        stub(ResourceType.NETWORK, "[{\"id\": \"n1\", \"computing_cell\": \"c1\"}]");
+        stub(ResourceType.ZONE, "[{\"id\": \"z1\", \"network\": \"n1\"}]");
+        stub(ResourceType.WORKLOAD, "[{\"id\": \"w1\", \"zone\": \"z1\"}, {\"id\": \"w2\", \"zone\": \"z1\"}]");
+        stub(ResourceType.INSTANCE, "["
+                + "{\"id\": \"i1\", \"workload\": \"w1\", \"zone\": \"z1\", \"security_groups\": [\"sg1\"],"
+                + " \"load_balancer\": \"lb1\"},"
+                + "{\"id\": \"i2\", \"workload\": \"w2\", \"zone\": \"z1\", \"load_balancer\": \"lb1\"}"
+                + "]");
+        stub(ResourceType.VOLUME, "["
+                + "{\"id\": \"v1\", \"instance\": \"i1\", \"computing_cell\": \"c1\"},"
+                + "{\"id\": \"v2\", \"parent\": \"v1\", \"computing_cell\": \"c1\", \"instance\": \"missing\"}"
+                + "]");
+        stub(ResourceType.LOAD_BALANCER, "[{\"id\": \"lb1\", \"workload\": \"w1\"}]");
+        stub(ResourceType.LOAD_BALANCER_LISTENER, "[{\"id\": \"l1\", \"load_balancer\": \"lb1\"}]");
+        stub(ResourceType.SECURITY_GROUP, "[{\"id\": \"sg1\"}, {\"id\": \"sg2\"}]");
+        server.stub("GET", Constants.SECURITY_GROUP_ROOT + "/sg1/rules", 200,
+                "[{\"id\": \"r1\", \"security_group\": \"sg1\", \"src_security_group\": \"sg2\"}]", DELAY_MILLIS);
+        server.stub("GET", Constants.SECURITY_GROUP_ROOT + "/sg2/rules", 200, "[]", DELAY_MILLIS);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    private void stub(ResourceType type, String json) {
+        server.stub("GET", type.rootPath, 200, json, DELAY_MILLIS);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testTraversals() throws InterruptedException {
+        TopologyGraph graph = TopologyGraph.fetch(new BrktService(server.newClient()), executor, 16);
+
+        // Two levels, each fetched in parallel.
+        assertEquals(11, server.getRequests().size());
+        assertTrue(server.getMaxActive() > 1);
+        assertEquals(14, graph.getNodeCount());
+
+        assertIds(graph.getChildren("w1"), "i1", "lb1");
+        assertIds(graph.getParents("i1"), "w1", "z1", "sg1");
+        assertIds(graph.getChildren("sg2"), "r1");
+        assertIds(graph.getParents("v2"), "c1", "v1");
+
+        assertIds(graph.getDescendants("i1"), "v1", "v2");
+        assertIds(graph.getDescendants("z1", Instance.class), "i1", "i2");
+        assertEquals(10, graph.getDescendants("c1").size());
+        assertIds(graph.getAncestors("v2", Workload.class), "w1");
+        assertIds(graph.getAncestors("c1"));
+        assertIds(graph.getAncestors("r1"), "sg1", "sg2");
+
+        // Nearest first, even when the walk reuses w1's memoized descendants.
+        graph.getDescendants("w1");
+        List<BrktResource> descendants = graph.getDescendants("z1");
+        assertEquals(8, descendants.size());
+        Set<String> nearest = Sets.newHashSet();
+        for (BrktResource resource : descendants.subList(0, 4)) {
+            nearest.add(resource.getId());
+        }
+        assertEquals(Sets.newHashSet("w1", "w2", "i1", "i2"), nearest);
+
+        // Memoized.
+        assertSame(graph.getBlastRadius("w1"), graph.getBlastRadius("w1"));
+
+        // w2's instance is behind w1's load balancer, so it loses traffic if w1 fails.
+        TopologyGraph.BlastRadius radius = graph.getBlastRadius("w1");
+        assertIds(radius.get(Instance.class), "i1", "i2");
+        assertIds(radius.get(LoadBalancerListener.class), "l1");
+        assertEquals(6, radius.size());
+        assertIds(graph.getBlastRadius("v2").getResources());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client;
+
+import com.brkt.client.util.StubServer;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.brkt.client.util.ResourceAsserts.assertIds;
+import static org.junit.Assert.assertEquals;
+
+public class TestVolumeLookup {
+
+    private static final String ALL_VOLUMES = "["
+            + "{\"id\": \"v1\", \"instance\": \"i1\", \"computing_cell\": \"c1\"},"
+            + "{\"id\": \"v2\", \"instance\": \"i1\", \"computing_cell\": \"c1\"},"
+            + "{\"id\": \"v3\", \"instance\": \"i2\", \"computing_cell\": \"c2\"},"
+            + "{\"id\": \"v4\", \"computing_cell\": \"c2\"}"
+            + "]";
+
+    private StubServer server;
+    private ExecutorService executor;
+    private VolumeLookup lookup;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubServer();
+        server.stub("GET", Constants.VOLUME_ROOT, ALL_VOLUMES);
+        server.stub("GET", Constants.V1_INSTANCE_ROOT + "/i1/brktvolumes", "[{\"id\": \"v1\"}, {\"id\": \"v2\"}]");
+        server.stub("GET", Constants.V1_INSTANCE_ROOT + "/i2/brktvolumes", "[{\"id\": \"v3\"}]");
+        server.stub("GET", Constants.V1_INSTANCE_ROOT + "/i3/brktvolumes", "[]");
+        executor = Executors.newCachedThreadPool();
+        lookup = new VolumeLookup(new BrktService(server.newClient()), executor, 4, 3);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFanOut() throws InterruptedException {
+        Map<String, List<Volume>> result = lookup.getVolumesForInstances(Sets.newHashSet("i1", "i2", "i3"));
+        assertIds(result.get("i1"), "v1", "v2");
+        assertIds(result.get("i2"), "v3");
+        assertIds(result.get("i3"));
+        assertEquals(3, server.getRequests().size());
+        assertEquals(0, server.count("GET", Constants.VOLUME_ROOT));
+    }
+
+    @Test
+    public void testGroupInMemory() throws InterruptedException {
+        Map<String, List<Volume>> result = lookup.getVolumesForInstances(Sets.newHashSet("i1", "i2", "i3", "i4"));
+        assertIds(result.get("i1"), "v1", "v2");
+        assertIds(result.get("i2"), "v3");
+        assertIds(result.get("i4"));
+        assertEquals(1, server.getRequests().size());
+
+        Map<String, List<Volume>> cells = lookup.getVolumesForComputingCells(
+                Sets.newHashSet("c1", "c2", "c3", "c4"));
+        assertIds(cells.get("c2"), "v3", "v4");
+        assertEquals(4, cells.size());
+    }
+}
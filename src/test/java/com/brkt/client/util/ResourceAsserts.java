@@ -0,0 +1,42 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.brkt.client.BrktResource;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Assertions about lists of resources, shared by the tests.
+ */
+public class ResourceAsserts {
+
+    private ResourceAsserts() {
+    }
+
+    /**
+     * Assert that {@code resources} has exactly the given ids, in order.
+     */
+    public static void assertIds(List<?> resources, String... ids) {
+        assertEquals(ids.length, resources.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], ((BrktResource) resources.get(i)).getId());
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local HTTP server that returns canned responses, for testing code that
+ * talks to the Bracket service.
+ */
+public class StubServer {
+
+    /**
+     * A canned response.
+     */
+    public static class Stub {
+        final int status;
+        final byte[] body;
+        final long delayMillis;
+
+        public Stub(int status, String body, long delayMillis) {
+            this.status = status;
+            this.body = body.getBytes(Utf8Reader.UTF_8);
+            this.delayMillis = delayMillis;
+        }
+    }
+
+    private final HttpServer server;
+    private final Map<String, Stub> stubs = new ConcurrentHashMap<String, Stub>();
+    private final List<String> requests = new CopyOnWriteArrayList<String>();
+    private final List<String> requestBodies = new CopyOnWriteArrayList<String>();
+    private final List<String> authorizations = new CopyOnWriteArrayList<String>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    public StubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleRequest(exchange);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Respond to {@code method} requests for {@code path} with the given
+     * status and body, after waiting {@code delayMillis}.
+     */
+    public StubServer stub(String method, String path, int status, String body, long delayMillis) {
+        stubs.put(method + " " + path, new Stub(status, body, delayMillis));
+        return this;
+    }
+
+    public StubServer stub(String method, String path, String body) {
+        return stub(method, path, 200, body, 0);
+    }
+
+    /**
+     * Return the requests received so far, as {@code "METHOD path"}.
+     */
+    public List<String> getRequests() {
+        return new ArrayList<String>(requests);
+    }
+
+    /**
+     * Return the bodies of the requests received so far.
+     */
+    public List<String> getRequestBodies() {
+        return new ArrayList<String>(requestBodies);
+    }
+
+    /**
+     * Return the {@code Authorization} headers of the requests received so
+     * far, or {@code ""} for requests without one.
+     */
+    public List<String> getAuthorizations() {
+        return new ArrayList<String>(authorizations);
+    }
+
+    /**
+     * Return the number of requests for the given method and path.
+     */
+    public int count(String method, String path) {
+        int count = 0;
+        for (String request : requests) {
+            if (request.equals(method + " " + path)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the largest number of requests that were handled at the same time.
+     */
+    public int getMaxActive() {
+        return maxActive.get();
+    }
+
+    public BrktRestClient.Builder clientBuilder() {
+        return new BrktRestClient.Builder("http://127.0.0.1:" + server.getAddress().getPort())
+                .accessToken("token").macKey("key");
+    }
+
+    public BrktRestClient newClient() {
+        return clientBuilder().build();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handleRequest(HttpExchange exchange) throws IOException {
+        int now = active.incrementAndGet();
+        while (true) {
+            int max = maxActive.get();
+            if (now <= max || maxActive.compareAndSet(max, now)) {
+                break;
+            }
+        }
+        try {
+            String key = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            authorizations.add(authorization != null ? authorization : "");
+            requests.add(key);
+            requestBodies.add(new String(ByteStreams.toByteArray(exchange.getRequestBody()), Utf8Reader.UTF_8));
+            Stub stub = stubs.get(key);
+            if (stub == null) {
+                stub = new Stub(404, "", 0);
+            }
+            if (stub.delayMillis > 0) {
+                try {
+                    Thread.sleep(stub.delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (stub.body.length == 0) {
+                // Writing a body after declaring none corrupts the next exchange on the connection.
+                exchange.sendResponseHeaders(stub.status, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(stub.status, stub.body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(stub.body);
+            out.close();
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class TestBoundedCache {
+
+    private static final long HOUR = 3600L * 1000 * 1000 * 1000;
+
+    /**
+     * Returns the key followed by the number of times it was loaded.
+     */
+    private static class CountingLoader implements BoundedCache.Loader<String, String> {
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public String load(String key) {
+            return key + count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Runs tasks when {@link #runAll} is called.
+     */
+    private static class QueueExecutor implements Executor {
+        final List<Runnable> tasks = Lists.newArrayList();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+            tasks.clear();
+        }
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        BoundedCache<String, String> cache = new BoundedCache<String, String>(10, BrktFuture.DIRECT_EXECUTOR);
+        CountingLoader loader = new CountingLoader();
+        assertEquals("a1", cache.get("a", HOUR, 0, loader));
+        assertEquals("a1", cache.get("a", HOUR, 0, loader));
+        assertEquals("b2", cache.get("b", HOUR, 0, loader));
+
+        BoundedCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hitCount);
+        assertEquals(2, stats.missCount);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testExpiration() {
+        BoundedCache<String, String> cache = new BoundedCache<String, String>(10, BrktFuture.DIRECT_EXECUTOR);
+        CountingLoader loader = new CountingLoader();
+        assertEquals("a1", cache.get("a", 0, 0, loader));
+        assertEquals("a2", cache.get("a", 0, 0, loader));
+        assertEquals(2, cache.stats().missCount);
+    }
+
+    @Test
+    public void testRefreshAhead() {
+        QueueExecutor executor = new QueueExecutor();
+        BoundedCache<String, String> cache = new BoundedCache<String, String>(10, executor);
+        CountingLoader loader = new CountingLoader();
+        assertEquals("a1", cache.get("a", 0, HOUR, loader));
+
+        // The stale value is returned, and only one refresh is scheduled.
+        assertEquals("a1", cache.get("a", 0, HOUR, loader));
+        assertEquals("a1", cache.get("a", 0, HOUR, loader));
+        assertEquals(1, executor.tasks.size());
+
+        executor.runAll();
+        assertEquals("a2", cache.getIfPresent("a"));
+        assertEquals(2, cache.stats().staleHitCount);
+        assertEquals(1, cache.stats().refreshCount);
+    }
+
+    @Test
+    public void testLoadFailure() {
+        BoundedCache<String, String> cache = new BoundedCache<String, String>(10, BrktFuture.DIRECT_EXECUTOR);
+        try {
+            cache.get("a", HOUR, 0, new BoundedCache.Loader<String, String>() {
+                @Override
+                public String load(String key) {
+                    throw new IllegalStateException("failed");
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.stats().loadFailureCount);
+    }
+
+    @Test
+    public void testFrequencyAwareEviction() {
+        BoundedCache<String, String> cache = new BoundedCache<String, String>(2, BrktFuture.DIRECT_EXECUTOR);
+        CountingLoader loader = new CountingLoader();
+        for (int i = 0; i < 5; i++) {
+            cache.get("hot1", HOUR, 0, loader);
+            cache.get("hot2", HOUR, 0, loader);
+        }
+
+        // A scan of keys that are used once doesn't evict the hot entries.
+        for (int i = 0; i < 20; i++) {
+            cache.get("cold" + i, HOUR, 0, loader);
+        }
+        assertEquals("hot11", cache.getIfPresent("hot1"));
+        assertEquals("hot22", cache.getIfPresent("hot2"));
+        assertEquals(20, cache.stats().rejectionCount);
+
+        // A key that becomes more popular than the LRU entry replaces it.
+        for (int i = 0; i < 10; i++) {
+            cache.get("new", HOUR, 0, loader);
+        }
+        assertEquals(2, cache.size());
+        assertNull(cache.getIfPresent("hot1"));
+        assertEquals(1, cache.stats().evictionCount);
+    }
+
+    @Test
+    public void testInvalidate() {
+        BoundedCache<String, String> cache = new BoundedCache<String, String>(10, BrktFuture.DIRECT_EXECUTOR);
+        CountingLoader loader = new CountingLoader();
+        cache.get("a", HOUR, 0, loader);
+        cache.get("b", HOUR, 0, loader);
+        cache.get("c", HOUR, 0, loader);
+
+        cache.invalidate("a");
+        assertNull(cache.getIfPresent("a"));
+        cache.invalidateIf(new Predicate<String>() {
+            @Override
+            public boolean apply(String key) {
+                return key.equals("b");
+            }
+        });
+        assertEquals(1, cache.size());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidateDuringRefresh() {
+        QueueExecutor executor = new QueueExecutor();
+        BoundedCache<String, String> cache = new BoundedCache<String, String>(10, executor);
+        CountingLoader loader = new CountingLoader();
+        cache.get("a", 0, HOUR, loader);
+        cache.get("a", 0, HOUR, loader);
+
+        // A refresh that started before the invalidation doesn't store its result.
+        cache.invalidate("a");
+        executor.runAll();
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testInvalidateOtherKeyDuringRefresh() {
+        QueueExecutor executor = new QueueExecutor();
+        BoundedCache<String, String> cache = new BoundedCache<String, String>(10, executor);
+        CountingLoader loader = new CountingLoader();
+        cache.get("a", 0, HOUR, loader);
+        cache.get("b", 0, HOUR, loader);
+        assertEquals("a1", cache.get("a", 0, HOUR, loader));
+
+        // Writes to other keys don't discard the refresh of "a".
+        cache.invalidate("b");
+        cache.put("c", "c0");
+        executor.runAll();
+        assertEquals("a3", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testDiscardedRefreshIsRetried() {
+        QueueExecutor executor = new QueueExecutor();
+        BoundedCache<String, String> cache = new BoundedCache<String, String>(10, executor);
+        CountingLoader loader = new CountingLoader();
+        cache.get("a", 0, HOUR, loader);
+        cache.get("a", 0, HOUR, loader);
+
+        // Overwritten while refreshing, so the refreshed value is discarded.
+        cache.put("a", "a0");
+        executor.runAll();
+        assertEquals("a0", cache.getIfPresent("a"));
+
+        // The next stale hit starts another refresh.
+        cache.get("a", 0, HOUR, loader);
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertEquals("a3", cache.getIfPresent("a"));
+    }
+}
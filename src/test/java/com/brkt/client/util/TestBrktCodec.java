@@ -0,0 +1,103 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.brkt.client.Constants;
+import com.brkt.client.Instance;
+import com.brkt.client.Volume;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.JsonSyntaxException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestBrktCodec {
+
+    private static String encode(BrktCodec codec, Object value) throws IOException {
+        StringWriter writer = new StringWriter();
+        codec.encode(value, writer);
+        return writer.toString();
+    }
+
+    private static void assertSameDecoding(String json, Type type) throws IOException {
+        BrktCodec gson = new GsonCodec();
+        BrktCodec streaming = new StreamingCodec();
+        Object expected = gson.decode(new StringReader(json), type);
+        Object actual = streaming.decode(new StringReader(json), type);
+        assertEquals(encode(gson, expected), encode(gson, actual));
+    }
+
+    /**
+     * Make sure that both codecs bind the same values.
+     */
+    @Test
+    public void testDecode() throws IOException {
+        assertSameDecoding(TestBrktTypeAdapterFactory.VOLUME_JSON, Volume.class);
+        assertSameDecoding(TestBrktTypeAdapterFactory.INSTANCE_JSON, Instance.class);
+        assertSameDecoding("[" + TestBrktTypeAdapterFactory.VOLUME_JSON + ", null]",
+                Constants.TYPE_VOLUME_LIST);
+        assertNull(new StreamingCodec().decode(new StringReader(""), Volume.class));
+    }
+
+    /**
+     * Make sure that both codecs write the same JSON.
+     */
+    @Test
+    public void testEncode() throws IOException {
+        BrktCodec gson = new GsonCodec();
+        BrktCodec streaming = new StreamingCodec();
+
+        Instance instance = gson.decode(new StringReader(TestBrktTypeAdapterFactory.INSTANCE_JSON), Instance.class);
+        assertEquals(encode(gson, instance), encode(streaming, instance));
+        Volume volume = gson.decode(new StringReader(TestBrktTypeAdapterFactory.VOLUME_JSON), Volume.class);
+        assertEquals(encode(gson, volume), encode(streaming, volume));
+
+        Map<String, Object> attrs = Maps.newHashMap();
+        attrs.put("name", "web");
+        attrs.put("cpu_cores", 4);
+        attrs.put("encrypted", true);
+        attrs.put("security_groups", Lists.newArrayList("sg1", "sg2"));
+        attrs.put("slo", Constants.ServiceLevelObjective.GOLD);
+        attrs.put("description", null);
+        assertEquals(encode(gson, attrs), encode(streaming, attrs));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        BrktCodec streaming = new StreamingCodec();
+        String json = "[" + TestBrktTypeAdapterFactory.VOLUME_JSON + "]";
+        List<Volume> volumes = streaming.decode(new StringReader(json), Constants.TYPE_VOLUME_LIST);
+        String encoded = encode(streaming, volumes);
+        List<Volume> decoded = streaming.decode(new StringReader(encoded), Constants.TYPE_VOLUME_LIST);
+        assertEquals(encoded, encode(streaming, decoded));
+        assertEquals(volumes.get(0).getCreatedTime(), decoded.get(0).getCreatedTime());
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void testInvalid() throws IOException {
+        new StreamingCodec().decode(new StringReader("{\"id\": [}"), Volume.class);
+    }
+}
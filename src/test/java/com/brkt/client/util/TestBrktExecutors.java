@@ -0,0 +1,62 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestBrktExecutors {
+
+    @Test
+    public void testBlockingExecutor() throws InterruptedException, ExecutionException {
+        ExecutorService executor = BrktExecutors.newBlockingExecutor();
+        try {
+            Future<Boolean> daemon = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return Thread.currentThread().isDaemon();
+                }
+            });
+            // Both virtual threads and the fallback pool's threads are daemons.
+            assertTrue(daemon.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDisableVirtualThreads() {
+        String old = System.getProperty(BrktExecutors.VIRTUAL_THREADS_PROPERTY);
+        System.setProperty(BrktExecutors.VIRTUAL_THREADS_PROPERTY, "false");
+        try {
+            assertEquals(false, BrktExecutors.isVirtualThreadSupported());
+        } finally {
+            if (old == null) {
+                System.clearProperty(BrktExecutors.VIRTUAL_THREADS_PROPERTY);
+            } else {
+                System.setProperty(BrktExecutors.VIRTUAL_THREADS_PROPERTY, old);
+            }
+        }
+    }
+}
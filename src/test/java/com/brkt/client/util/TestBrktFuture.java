@@ -0,0 +1,124 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.brkt.client.BrktService;
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestBrktFuture {
+
+    private static BrktFuture<Integer> newFuture(final int value) {
+        return new BrktFuture<Integer>(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return value;
+            }
+        });
+    }
+
+    @Test
+    public void testListeners() {
+        final AtomicInteger count = new AtomicInteger();
+        Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        };
+        BrktFuture<Integer> future = newFuture(1);
+        future.addListener(listener, BrktFuture.DIRECT_EXECUTOR);
+        assertEquals(0, count.get());
+        future.run();
+        assertEquals(1, count.get());
+
+        // Listeners added after completion run immediately.
+        future.addListener(listener, BrktFuture.DIRECT_EXECUTOR);
+        assertEquals(2, count.get());
+    }
+
+    @Test
+    public void testTransform() {
+        BrktFuture<Integer> future = newFuture(2);
+        BrktFuture<String> transformed = future.transform(new Function<Integer, String>() {
+            @Override
+            public String apply(Integer input) {
+                return "value " + input;
+            }
+        });
+        assertTrue(!transformed.isDone());
+        future.run();
+        assertEquals("value 2", transformed.getUnchecked());
+    }
+
+    @Test
+    public void testTypedException() {
+        final BrktService.RuntimeIoException error = new BrktService.RuntimeIoException(new IOException("timeout"));
+        BrktFuture<Integer> future = new BrktFuture<Integer>(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                throw error;
+            }
+        });
+        BrktFuture<Integer> transformed = future.transform(new Function<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer input) {
+                return input + 1;
+            }
+        });
+        future.run();
+        try {
+            transformed.getUnchecked();
+            fail("Expected an exception");
+        } catch (BrktService.RuntimeIoException e) {
+            assertTrue(e == error);
+        }
+    }
+
+    @Test
+    public void testAllAsList() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<BrktFuture<Integer>> futures = Lists.newArrayList();
+            for (int i = 0; i < 20; i++) {
+                BrktFuture<Integer> future = newFuture(i);
+                futures.add(future);
+                executor.execute(future);
+            }
+            List<Integer> values = BrktFuture.allAsList(futures).getUnchecked();
+            assertEquals(20, values.size());
+            for (int i = 0; i < 20; i++) {
+                assertEquals(i, values.get(i).intValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, BrktFuture.allAsList(Lists.<BrktFuture<Integer>>newArrayList()).getUnchecked().size());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.brkt.client.Constants;
+import com.brkt.client.ImageDefinition;
+import com.brkt.client.Instance;
+import com.brkt.client.MachineType;
+import com.brkt.client.Volume;
+import com.google.common.collect.Sets;
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestBrktTypeAdapterFactory {
+
+    static final String VOLUME_JSON = "{"
+            + "\"id\": \"v1\", \"name\": \"data\", \"customer\": \"c1\","
+            + "\"created_time\": \"2015-03-31T22:34:51.270584+00:00\","
+            + "\"auto_snapshot_duration_days\": 7, \"availability\": 2, \"slo\": 1, \"volume_type\": 3,"
+            + "\"deleted\": false, \"large_io\": \"true\", \"iops\": \"100\", \"size_in_gb\": 10,"
+            + "\"instance\": null, \"parent\": \"v0\", \"requested_state\": \"AVAILABLE\","
+            + "\"metadata\": {\"owner\": \"ops\", \"tier\": 2},"
+            + "\"unknown_field\": {\"nested\": [1, 2, {\"a\": null}]}"
+            + "}";
+
+    static final String INSTANCE_JSON = "{"
+            + "\"id\": \"i1\", \"name\": \"web\", \"cpu_cores\": 4, \"ram\": 7.5, \"encrypted\": true,"
+            + "\"security_groups\": [\"sg1\", \"sg2\"], \"requested_state\": \"NOT_A_STATE\","
+            + "\"csp_image\": {\"id\": \"ci1\", \"image_definition\": {\"id\": \"id1\", \"is_base\": true}},"
+            + "\"lease_expire_time\": \"2015-04-01T00:00:00Z\""
+            + "}";
+
+    private static Gson reflectiveGson() {
+        return new GsonBuilder()
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .create();
+    }
+
+    @Test
+    public void testVolume() {
+        Volume v = BrktRestClient.newGson().fromJson(VOLUME_JSON, Volume.class);
+        assertEquals("v1", v.getId());
+        assertEquals("data", v.getName());
+        assertEquals("c1", v.getCustomerId());
+        assertEquals(7, v.getAutoSnapshotDurationDays().intValue());
+        assertEquals(Constants.Availability.HIGH, v.getAvailability());
+        assertEquals(Constants.ServiceLevelObjective.GOLD, v.getSlo());
+        assertEquals(Constants.VolumeType.COST_OPTIMIZED, v.getVolumeType());
+        assertFalse(v.getDeleted());
+        assertTrue(v.getLargeIo());
+        assertEquals(100, v.getIops().intValue());
+        assertNull(v.getInstanceId());
+        assertEquals("v0", v.getParent());
+        assertEquals(Constants.RequestedState.AVAILABLE, v.getRequestedState());
+        assertEquals("2", v.getMetadata().get("tier"));
+        assertEquals(1427841291270L, v.getCreatedTime().getTime());
+    }
+
+    @Test
+    public void testInstance() {
+        Instance i = BrktRestClient.newGson().fromJson(INSTANCE_JSON, Instance.class);
+        assertEquals(4, i.getCpuCores().intValue());
+        assertEquals("7.5", i.getRam().toString());
+        assertTrue(i.isEncrypted());
+        assertEquals(2, i.getSecurityGroupIds().size());
+        assertEquals("sg2", i.getSecurityGroupIds().get(1));
+        assertEquals("ci1", i.getCspImageId());
+        // Unknown enum names are mapped to null, like Gson does.
+        assertNull(i.getRequestedState());
+    }
+
+    @Test
+    public void testPrimitiveFields() {
+        Gson gson = BrktRestClient.newGson();
+        ImageDefinition id = gson.fromJson("{\"is_base\": true, \"is_encrypted\": null}", ImageDefinition.class);
+        assertTrue(id.isBase());
+        assertFalse(id.isEncrypted());
+
+        MachineType mt = gson.fromJson("{\"id\": \"m1\", \"provider\": 1}", MachineType.class);
+        assertEquals(Constants.Provider.AWS, mt.getProvider());
+    }
+
+    /**
+     * Make sure that the streaming adapters bind the same values as Gson's
+     * reflective adapter.
+     */
+    @Test
+    public void testSameAsReflective() {
+        Gson fast = BrktRestClient.newGson();
+        Gson reflective = reflectiveGson();
+
+        // The reflective Gson doesn't know how to parse timestamps.
+        String volume = VOLUME_JSON.replaceAll("\"created_time\": \"[^\"]*\",", "");
+        String json = "[" + volume + "," + volume.replace("\"slo\": 1", "\"slo\": 0") + "]";
+        List<Volume> expected = reflective.fromJson(json, Constants.TYPE_VOLUME_LIST);
+        List<Volume> actual = fast.fromJson(json, Constants.TYPE_VOLUME_LIST);
+        assertEquals(reflective.toJson(expected), reflective.toJson(actual));
+    }
+
+    @Test
+    public void testProjection() throws IOException {
+        Gson gson = BrktRestClient.newGson();
+        BrktTypeAdapterFactory.ResourceAdapter<Volume> adapter =
+                (BrktTypeAdapterFactory.ResourceAdapter<Volume>) gson.getAdapter(Volume.class);
+        Set<String> fields = Sets.newHashSet("name", Volume.REQUESTED_STATE);
+        Volume v = adapter.read(new JsonReader(new StringReader(VOLUME_JSON)), fields);
+
+        assertEquals("v1", v.getId());
+        assertEquals("data", v.getName());
+        assertEquals(Constants.RequestedState.AVAILABLE, v.getRequestedState());
+        assertNull(v.getCreatedTime());
+        assertNull(v.getSlo());
+        assertNull(v.getMetadata());
+    }
+}
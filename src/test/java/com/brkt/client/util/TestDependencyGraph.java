@@ -0,0 +1,69 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestDependencyGraph {
+
+    @Test
+    public void testWaves() {
+        DependencyGraph<String> graph = new DependencyGraph<String>();
+        graph.add("d");
+        graph.addDependency("b", "a");
+        graph.addDependency("c", "a");
+        graph.addDependency("c", "b");
+        graph.addDependency("e", "d");
+        graph.add("a");
+
+        List<List<String>> waves = graph.getWaves();
+        assertEquals(3, waves.size());
+        assertEquals(Lists.newArrayList("d", "a"), waves.get(0));
+        assertEquals(Lists.newArrayList("b", "e"), waves.get(1));
+        assertEquals(Lists.newArrayList("c"), waves.get(2));
+        assertEquals(5, graph.size());
+        assertTrue(graph.getDependents("a").contains("c"));
+        assertEquals(2, graph.getDependencies("c").size());
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(new DependencyGraph<String>().getWaves().isEmpty());
+    }
+
+    @Test
+    public void testCycle() {
+        DependencyGraph<String> graph = new DependencyGraph<String>();
+        graph.addDependency("a", "b");
+        graph.addDependency("b", "c");
+        graph.addDependency("c", "a");
+        graph.add("d");
+        try {
+            graph.getWaves();
+            fail("Cycle was not detected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("a"));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.brkt.client.Constants;
+import com.brkt.client.Volume;
+import com.google.common.collect.Sets;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TestLazyResourceList {
+
+    @SuppressWarnings("unchecked")
+    private static LazyResourceList<Volume> newList(String json) {
+        Gson gson = BrktRestClient.newGson();
+        return new LazyResourceList<Volume>(json.getBytes(Utf8Reader.UTF_8),
+                (BrktTypeAdapterFactory.ResourceAdapter<Volume>) gson.getAdapter(Volume.class));
+    }
+
+    @Test
+    public void testIndexArray() {
+        assertArrayEquals(new int[0], LazyResourceList.indexArray(" [ ] ".getBytes()));
+        assertArrayEquals(new int[] { 1, 3, 5, 9, 11, 22 },
+                LazyResourceList.indexArray("[{}, null,\n{\"a\": \"]}\"} ]".getBytes()));
+        assertArrayEquals(new int[] { 1, 9, 10, 19 },
+                LazyResourceList.indexArray("[\"a\\\"b,]\",[[1], {}]]".getBytes()));
+
+        String[] invalid = { "", "{}", "[", "[{}", "[{},]", "[{} {}]", "[{}] x", "[\"abc]" };
+        for (String s : invalid) {
+            try {
+                LazyResourceList.indexArray(s.getBytes());
+                fail("Indexed invalid array " + s);
+            } catch (JsonSyntaxException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testGet() {
+        String json = "[" + TestBrktTypeAdapterFactory.VOLUME_JSON + ", null, {\"id\": \"v2\"}]";
+        LazyResourceList<Volume> lazy = newList(json);
+        List<Volume> eager = BrktRestClient.newGson().fromJson(json, Constants.TYPE_VOLUME_LIST);
+
+        assertEquals(3, lazy.size());
+        assertEquals(eager.get(0).getName(), lazy.get(0).getName());
+        assertEquals(eager.get(0).getSlo(), lazy.get(0).getSlo());
+        assertEquals(eager.get(0).getMetadata(), lazy.get(0).getMetadata());
+        assertNull(lazy.get(1));
+        assertEquals("v2", lazy.get(2).getId());
+
+        // Elements are cached after the first access.
+        assertSame(lazy.get(0), lazy.get(0));
+    }
+
+    @Test
+    public void testProjection() {
+        LazyResourceList<Volume> lazy = newList("[" + TestBrktTypeAdapterFactory.VOLUME_JSON + "]");
+        Volume v = lazy.get(0, Sets.newHashSet("name"));
+        assertEquals("v1", v.getId());
+        assertEquals("data", v.getName());
+        assertNull(v.getParent());
+    }
+
+    @Test
+    public void testContentHash() {
+        LazyResourceList<Volume> lazy = newList("[{\"id\": \"v1\"}, {\"id\": \"v2\"}, {\"id\": \"v1\"}]");
+        assertEquals(lazy.contentHash(0), lazy.contentHash(2));
+        assertNotEquals(lazy.contentHash(0), lazy.contentHash(1));
+        assertEquals(lazy.contentHash(0), newList("[ {\"id\": \"v1\"} ]").contentHash(0));
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void testInvalidElement() {
+        newList("[{\"id\": }]").get(0);
+    }
+}
@@ -0,0 +1,274 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.brkt.client.Constants;
+import com.brkt.client.ResourceType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestMappedFileResponseCache {
+
+    private static final String MACHINE_TYPES = Constants.MACHINE_TYPE_ROOT;
+    private static final String VOLUMES = Constants.VOLUME_ROOT;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private MappedFileResponseCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "sub/responses.cache");
+        cache = open();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.close();
+    }
+
+    private MappedFileResponseCache open() throws IOException {
+        return new MappedFileResponseCache.Builder(file)
+                .cacheReferenceData(1, TimeUnit.HOURS)
+                .ttl(ResourceType.ZONE, 1, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(Utf8Reader.UTF_8);
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        byte[] payload = bytes("[{\"id\": \"m1\", \"name\": \"caf\u00e9\"}]");
+        cache.put(MACHINE_TYPES, payload);
+        assertArrayEquals(payload, cache.get(MACHINE_TYPES));
+        assertNull(cache.get(MACHINE_TYPES + "/m1"));
+
+        // Types without a TTL aren't cached.
+        cache.put(VOLUMES, bytes("[]"));
+        assertNull(cache.get(VOLUMES));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        cache.put(MACHINE_TYPES, bytes("[1]"));
+        cache.put(MACHINE_TYPES, bytes("[2]"));
+        cache.close();
+        cache = open();
+        assertArrayEquals(bytes("[2]"), cache.get(MACHINE_TYPES));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        cache.put(Constants.ZONE_ROOT, bytes("[]"));
+        Thread.sleep(10);
+        assertNull(cache.get(Constants.ZONE_ROOT));
+
+        // With max-stale, expired payloads are still returned.
+        MappedFileResponseCache stale = new MappedFileResponseCache.Builder(new File(folder.getRoot(), "stale"))
+                .maxStale(1, TimeUnit.HOURS)
+                .build();
+        try {
+            stale.put(VOLUMES, bytes("[]"));
+            assertArrayEquals(bytes("[]"), stale.get(VOLUMES));
+        } finally {
+            stale.close();
+        }
+    }
+
+    @Test
+    public void testInvalidateSharedBetweenInstances() throws IOException {
+        MappedFileResponseCache other = open();
+        try {
+            cache.put(MACHINE_TYPES, bytes("[]"));
+            cache.put(Constants.OPERATING_SYSTEM_ROOT, bytes("[]"));
+            assertArrayEquals(bytes("[]"), other.get(MACHINE_TYPES));
+
+            // A write invalidates every path of the same type.
+            other.invalidate(MACHINE_TYPES + "/m1");
+            assertNull(cache.get(MACHINE_TYPES));
+            assertArrayEquals(bytes("[]"), cache.get(Constants.OPERATING_SYSTEM_ROOT));
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        cache.close();
+        cache = new MappedFileResponseCache.Builder(file)
+                .cacheReferenceData(1, TimeUnit.HOURS)
+                .maxFileBytes(4096)
+                .build();
+        byte[] payload = new byte[300];
+        for (int i = 0; i < 100; i++) {
+            payload[0] = (byte) i;
+            cache.put(MACHINE_TYPES, payload);
+            cache.put(Constants.OPERATING_SYSTEM_ROOT + "/" + i, payload);
+            assertArrayEquals(payload, cache.get(MACHINE_TYPES));
+        }
+        assertTrue(file.length() <= 4096);
+        assertArrayEquals(payload, cache.get(Constants.OPERATING_SYSTEM_ROOT + "/99"));
+    }
+
+    /**
+     * Another instance notices that the file was replaced by a compaction.
+     */
+    @Test
+    public void testCompactionSharedBetweenInstances() throws IOException {
+        cache.close();
+        MappedFileResponseCache.Builder builder = new MappedFileResponseCache.Builder(file)
+                .cacheReferenceData(1, TimeUnit.HOURS)
+                .maxFileBytes(4096);
+        cache = builder.build();
+        MappedFileResponseCache other = builder.build();
+        try {
+            other.put(VOLUMES + "/ignored", bytes("[]"));
+            other.put(Constants.CSP_IMAGE_ROOT, bytes("[\"other\"]"));
+            byte[] payload = new byte[300];
+            for (int i = 0; i < 100; i++) {
+                payload[0] = (byte) i;
+                cache.put(Constants.OPERATING_SYSTEM_ROOT + "/" + i, payload);
+                assertArrayEquals(payload, other.get(Constants.OPERATING_SYSTEM_ROOT + "/" + i));
+            }
+            assertTrue(file.length() <= 4096);
+            assertFalse(new File(file.getPath() + ".tmp").exists());
+
+            // Both instances keep writing to the same file.
+            other.put(MACHINE_TYPES, bytes("[1]"));
+            assertArrayEquals(bytes("[1]"), cache.get(MACHINE_TYPES));
+            cache.put(MACHINE_TYPES, bytes("[2]"));
+            assertArrayEquals(bytes("[2]"), other.get(MACHINE_TYPES));
+        } finally {
+            other.close();
+        }
+
+        MappedFileResponseCache reopened = open();
+        try {
+            assertArrayEquals(bytes("[2]"), reopened.get(MACHINE_TYPES));
+            assertEquals(99, reopened.get(Constants.OPERATING_SYSTEM_ROOT + "/99")[0]);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testCorruptFileIsReset() throws IOException {
+        cache.put(MACHINE_TYPES, bytes("[]"));
+        cache.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.writeInt(0);
+        raf.close();
+
+        cache = open();
+        assertNull(cache.get(MACHINE_TYPES));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPartialRecordIsIgnored() throws IOException {
+        cache.put(MACHINE_TYPES, bytes("[1]"));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(raf.length());
+        raf.writeInt(1000);
+        raf.close();
+
+        assertArrayEquals(bytes("[1]"), cache.get(MACHINE_TYPES));
+        cache.put(Constants.OPERATING_SYSTEM_ROOT, bytes("[2]"));
+        assertArrayEquals(bytes("[2]"), cache.get(Constants.OPERATING_SYSTEM_ROOT));
+    }
+
+    @Test
+    public void testRestClient() throws Exception {
+        StubServer server = new StubServer();
+        try {
+            server.stub("GET", MACHINE_TYPES, "[{\"id\": \"m1\"}]");
+            server.stub("POST", MACHINE_TYPES + "/m1", "{\"id\": \"m1\"}");
+            BrktRestClient client = server.clientBuilder().responseCache(cache).build();
+            client.getRaw(MACHINE_TYPES);
+            assertEquals("m1", client.getJson(MACHINE_TYPES).getAsJsonArray().get(0)
+                    .getAsJsonObject().get("id").getAsString());
+            assertEquals(1, server.count("GET", MACHINE_TYPES));
+
+            client.postRaw(MACHINE_TYPES + "/m1", bytes("{}"));
+            client.getRaw(MACHINE_TYPES);
+            assertEquals(2, server.count("GET", MACHINE_TYPES));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Errors from the cache don't fail requests that the server answered.
+     */
+    @Test
+    public void testFailingCache() throws Exception {
+        ResponseCache failing = new ResponseCache() {
+            @Override
+            public byte[] get(String path) throws IOException {
+                throw new IOException("get");
+            }
+
+            @Override
+            public void put(String path, byte[] payload) throws IOException {
+                throw new IOException("put");
+            }
+
+            @Override
+            public void invalidate(String path) throws IOException {
+                throw new IOException("invalidate");
+            }
+        };
+        StubServer server = new StubServer();
+        try {
+            server.stub("GET", MACHINE_TYPES, "[]");
+            server.stub("POST", MACHINE_TYPES, 503, "{}", 0);
+            BrktRestClient client = server.clientBuilder().responseCache(failing).build();
+            assertArrayEquals(bytes("[]"), client.getRaw(MACHINE_TYPES));
+            assertArrayEquals(bytes("[]"), client.getRaw(MACHINE_TYPES));
+            assertEquals(2, server.count("GET", MACHINE_TYPES));
+
+            try {
+                client.postRaw(MACHINE_TYPES, bytes("{}"));
+                fail("Expected HttpError");
+            } catch (BrktRestClient.HttpError e) {
+                assertEquals(503, e.status);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+}
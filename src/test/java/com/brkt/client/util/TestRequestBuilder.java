@@ -16,9 +16,17 @@
 
 package com.brkt.client.util;
 
+import com.brkt.client.Constants;
+import com.brkt.client.VolumeRequestBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import org.junit.Test;
 
+import java.sql.Timestamp;
+import java.util.Date;
 import java.util.Map;
+import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -34,4 +42,79 @@ public class TestRequestBuilder {
         assertEquals(1, attrs.get("one"));
         assertEquals(2, attrs.get("two"));
     }
+
+    @Test
+    public void testBuildBody() {
+        RequestBuilder builder = new RequestBuilder().attr("one", 1).attr("name", "caf\u00e9");
+        RequestBody body = builder.buildBody();
+        assertEquals("{\"one\":1,\"name\":\"caf\u00e9\"}", body.toJson());
+        assertEquals(1, body.get("one"));
+        assertEquals(2, body.size());
+
+        // The body doesn't change when the builder does.
+        builder.attr("two", 2).attr("skipped", null);
+        assertEquals("{\"one\":1,\"name\":\"caf\u00e9\",\"two\":2}", builder.buildBody().toJson());
+        assertEquals(2, body.size());
+        try {
+            body.put("three", 3);
+            fail("RequestBody is mutable");
+        } catch (UnsupportedOperationException e) {
+            // Expected.
+        }
+
+        // Replacing an attribute rewrites the buffer.
+        builder.attr("one", "uno");
+        assertEquals("{\"one\":\"uno\",\"name\":\"caf\u00e9\",\"two\":2}", builder.buildBody().toJson());
+    }
+
+    /**
+     * Make sure that the encoded body matches what Gson writes for the
+     * attribute map.
+     */
+    @Test
+    public void testSameAsGson() {
+        Timestamp ts = new Timestamp(1427841291270L);
+        VolumeRequestBuilder builder = new VolumeRequestBuilder()
+                .name("data")
+                .sizeInGb(10)
+                .largeIo(true)
+                .slo(Constants.ServiceLevelObjective.GOLD)
+                .requestedState(Constants.RequestedState.AVAILABLE)
+                .leaseExpireTime(ts)
+                .metadata(ImmutableMap.of("owner", "ops"));
+
+        Gson gson = BrktRestClient.newGson();
+        JsonObject expected = gson.toJsonTree(builder.build()).getAsJsonObject();
+        JsonObject actual = gson.fromJson(builder.buildBody().toJson(), JsonObject.class);
+        assertEquals(expected, actual);
+    }
+
+    private static class Owner {
+        String team = "ops";
+        int oncall = 3;
+    }
+
+    /**
+     * Values that the streaming codec doesn't support are serialized with Gson.
+     */
+    @Test
+    public void testNonPrimitiveValues() {
+        UUID uuid = UUID.fromString("6ba7b810-9dad-11d1-80b4-00c04fd430c8");
+        RequestBuilder builder = new RequestBuilder()
+                .attr("name", "data")
+                .attr("owner", new Owner())
+                .attr("token", uuid)
+                .attr("created", new Date(1427841291270L));
+
+        Gson gson = BrktRestClient.newGson();
+        JsonObject expected = gson.toJsonTree(builder.build()).getAsJsonObject();
+        JsonObject actual = gson.fromJson(builder.buildBody().toJson(), JsonObject.class);
+        assertEquals(expected, actual);
+        assertEquals("ops", actual.getAsJsonObject("owner").get("team").getAsString());
+        assertEquals(uuid.toString(), actual.get("token").getAsString());
+
+        // Replacing an attribute with an unsupported value also falls back to Gson.
+        builder = new RequestBuilder().attr("owner", "ops").attr("owner", new Owner());
+        assertEquals("{\"owner\":{\"team\":\"ops\",\"oncall\":3}}", builder.buildBody().toJson());
+    }
 }
@@ -0,0 +1,165 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import com.brkt.client.Volume;
+import com.google.common.collect.Lists;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestResourceListPublisher {
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private BrktRestClient client;
+
+    /**
+     * Collects the elements and waits for the stream to end.
+     */
+    private static class Collector implements BrktFlow.Subscriber<Volume> {
+        final List<Volume> items = Lists.newArrayList();
+        final CountDownLatch finished = new CountDownLatch(1);
+        final long batchSize;
+        final int cancelAfter;
+        BrktFlow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        Collector(long batchSize, int cancelAfter) {
+            this.batchSize = batchSize;
+            this.cancelAfter = cancelAfter;
+        }
+
+        @Override
+        public void onSubscribe(BrktFlow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(batchSize);
+        }
+
+        @Override
+        public void onNext(Volume item) {
+            items.add(item);
+            if (items.size() == cancelAfter) {
+                subscription.cancel();
+                finished.countDown();
+            } else if (items.size() % batchSize == 0) {
+                subscription.request(batchSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            finished.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            finished.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/volumes", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                out.write('[');
+                for (int i = 0; i < 1000; i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    out.write(("{\"id\": \"v" + i + "\", \"name\": \"volume " + i + "\"}").getBytes(Utf8Reader.UTF_8));
+                }
+                out.write(']');
+                out.close();
+            }
+        });
+        server.start();
+        executor = Executors.newCachedThreadPool();
+        client = new BrktRestClient.Builder("http://127.0.0.1:" + server.getAddress().getPort())
+                .accessToken("token").macKey("key").build();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testBackpressure() throws InterruptedException {
+        Collector collector = new Collector(7, -1);
+        client.publish("/volumes", Volume.class, executor).subscribe(collector);
+        collector.await();
+        assertNull(collector.error);
+        assertTrue(collector.completed);
+        assertEquals(1000, collector.items.size());
+        assertEquals("v999", collector.items.get(999).getId());
+        assertEquals("volume 5", collector.items.get(5).getName());
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        Collector collector = new Collector(Long.MAX_VALUE, 10);
+        client.publish("/volumes", Volume.class, executor).subscribe(collector);
+        collector.await();
+        assertEquals(10, collector.items.size());
+        assertTrue(!collector.completed);
+    }
+
+    @Test
+    public void testHttpError() throws InterruptedException {
+        Collector collector = new Collector(1, -1);
+        client.publish("/missing", Volume.class, executor).subscribe(collector);
+        collector.await();
+        assertEquals(404, ((BrktRestClient.HttpError) collector.error).status);
+    }
+
+    @Test
+    public void testInvalidRequest() throws InterruptedException {
+        Collector collector = new Collector(0, -1);
+        client.publish("/volumes", Volume.class, executor).subscribe(collector);
+        collector.await();
+        assertTrue(collector.error instanceof IllegalArgumentException);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+* Copyright 2015 Bracket Computing, Inc. All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License").
+* You may not use this file except in compliance with the License.
+* A copy of the License is located at
+*
+* https://github.com/brkt/brkt-sdk-java/blob/master/LICENSE
+*
+* or in the "license" file accompanying this file. This file is
+* distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+* CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.brkt.client.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestUtf8Reader {
+
+    private static String readAll(Reader reader, int bufferSize) throws IOException {
+        StringBuilder buf = new StringBuilder();
+        char[] chars = new char[bufferSize];
+        int count;
+        while ((count = reader.read(chars, 0, bufferSize)) >= 0) {
+            buf.append(chars, 0, count);
+        }
+        return buf.toString();
+    }
+
+    private static void assertDecodes(byte[] bytes) throws IOException {
+        String expected = new String(bytes, Utf8Reader.UTF_8);
+        for (int bufferSize = 1; bufferSize <= 5; bufferSize++) {
+            assertEquals(expected, readAll(new Utf8Reader(bytes), bufferSize));
+        }
+        assertEquals(expected, readAll(new Utf8Reader(bytes), 1024));
+    }
+
+    @Test
+    public void testValid() throws IOException {
+        assertDecodes(new byte[0]);
+        assertDecodes("{\"name\": \"plain ascii\"}".getBytes(Utf8Reader.UTF_8));
+        assertDecodes("{\"name\": \"caf\u00e9 \u20ac \u65e5\u672c\"}".getBytes(Utf8Reader.UTF_8));
+
+        // Supplementary characters are decoded to surrogate pairs.
+        assertDecodes("a\ud83d\ude00b\ud834\udd1e".getBytes(Utf8Reader.UTF_8));
+    }
+
+    private static void assertDecodes(String expected, byte[] bytes) throws IOException {
+        for (int bufferSize = 1; bufferSize <= 5; bufferSize++) {
+            assertEquals(expected, readAll(new Utf8Reader(bytes), bufferSize));
+        }
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        // Each maximal invalid subsequence is replaced with one U+FFFD.
+        assertDecodes("a\ufffdb", new byte[] { 'a', (byte) 0x80, 'b' });
+        assertDecodes("a\ufffd", new byte[] { 'a', (byte) 0xe2, (byte) 0x82 });
+        assertDecodes("a\ufffdb", new byte[] { 'a', (byte) 0xe2, 'b' });
+
+        // Overlong encodings, encoded surrogates and code points above U+10FFFF.
+        assertDecodes("\ufffd\ufffd", new byte[] { (byte) 0xc0, (byte) 0xaf });
+        assertDecodes("\ufffd\ufffd\ufffd", new byte[] { (byte) 0xed, (byte) 0xa0, (byte) 0x80 });
+        assertDecodes("\ufffd\ufffd", new byte[] { (byte) 0xf5, (byte) 0x80 });
+    }
+
+    @Test
+    public void testOffset() throws IOException {
+        byte[] bytes = "xx\u00e9yy".getBytes(Utf8Reader.UTF_8);
+        assertEquals("x\u00e9y", readAll(new Utf8Reader(bytes, 1, 4), 16));
+    }
+}